@@ -0,0 +1,43 @@
+package com.testinsure.controller;
+
+import com.testinsure.dto.AnalyticsReport;
+import com.testinsure.service.AnalyticsService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AnalyticsController {
+
+    private final AnalyticsService analyticsService;
+
+    public AnalyticsController(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    // 1. Claims per provider per day, revenue per test per day, approval latency percentiles
+    // URL Example: GET /api/analytics?from=2025-01-01&to=2025-01-31 (default: last 30 days)
+    @GetMapping
+    public AnalyticsReport getReport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analyticsService.getReport(from, to);
+    }
+
+    // 2. Rollup buffer / flush counters
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return analyticsService.getStats();
+    }
+
+    // 3. Recompute every rollup from bookings and claims; returns how many rows were written
+    @PostMapping("/rebuild")
+    public int rebuild() {
+        return analyticsService.rebuild();
+    }
+}
@@ -1,13 +1,18 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.BookingFilter;
 import com.testinsure.dto.BookingRequest;
+import com.testinsure.dto.BookingView;
+import com.testinsure.dto.CursorPage;
 import com.testinsure.entity.Booking;
 import com.testinsure.service.BillService;
+import com.testinsure.service.BookingAdmissionQueue;
 import com.testinsure.service.BookingService;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.ByteArrayInputStream;
@@ -20,21 +25,27 @@ public class BookingController {
 
     private final BookingService bookingService;
     private final BillService billService;
+    private final BookingAdmissionQueue admissionQueue;
 
-    public BookingController(BookingService bookingService, BillService billService) {
+    public BookingController(BookingService bookingService, BillService billService,
+                             BookingAdmissionQueue admissionQueue) {
         this.bookingService = bookingService;
         this.billService = billService;
+        this.admissionQueue = admissionQueue;
     }
 
-    // 1. Create Booking
+    // 1. Create Booking (through the per-slot admission queue when it is switched on)
     @PostMapping
     public Booking createBooking(@RequestBody BookingRequest request, Principal principal) {
+        if (admissionQueue.isEnabled()) {
+            return admissionQueue.submit(principal.getName(), request);
+        }
         return bookingService.createBooking(principal.getName(), request);
     }
 
     // 2. View My Bookings
     @GetMapping("/my")
-    public List<Booking> getMyBookings(Principal principal) {
+    public List<BookingView> getMyBookings(Principal principal) {
         return bookingService.getUserBookings(principal.getName());
     }
 
@@ -59,10 +70,18 @@ public class BookingController {
  // 5. Get All Bookings (Admin Only)
     @GetMapping("/all")
     // @PreAuthorize("hasRole('ADMIN')") // Uncomment if using security strictly
-    public List<Booking> getAllBookings() {
+    public List<BookingView> getAllBookings() {
         return bookingService.getAllBookings();
     }
     
+ // 5b. Search Bookings (Admin Only) - paginated & filterable
+    // URL Example: GET /api/bookings/page?status=CONFIRMED&testId=3&from=2025-01-01&size=50&cursor=...
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CursorPage<BookingView> searchBookings(BookingFilter filter) {
+        return bookingService.searchBookings(filter);
+    }
+
  // 6. Cancel Booking
     @PutMapping("/{id}/cancel")
     public void cancelBooking(@PathVariable Long id, Principal principal) {
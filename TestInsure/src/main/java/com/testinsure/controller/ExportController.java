@@ -0,0 +1,99 @@
+package com.testinsure.controller;
+
+import com.testinsure.dto.ClaimAckImportResult;
+import com.testinsure.dto.ClaimBatchExportResult;
+import com.testinsure.service.ClaimBatchExchange;
+import com.testinsure.service.ExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/exports")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+
+    private final ExportService exportService;
+    private final ClaimBatchExchange batchExchange;
+
+    public ExportController(ExportService exportService, ClaimBatchExchange batchExchange) {
+        this.exportService = exportService;
+        this.batchExchange = batchExchange;
+    }
+
+    // 1. Export Bookings
+    // URL Example: GET /api/exports/bookings?format=csv&gzip=true&from=2025-01-01&to=2025-01-31
+    @GetMapping("/bookings")
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ExportService.Format f = parseFormat(format);
+        return stream("bookings", f, gzip,
+                out -> exportService.exportBookings(out, f, gzip, from, to));
+    }
+
+    // 2. Export Claims
+    // URL Example: GET /api/exports/claims?format=ndjson&from=2025-01-01
+    @GetMapping("/claims")
+    public ResponseEntity<StreamingResponseBody> exportClaims(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ExportService.Format f = parseFormat(format);
+        return stream("claims", f, gzip,
+                out -> exportService.exportClaims(out, f, gzip, from, to));
+    }
+
+    // 3. Insurer batch files: write the claims raised since the last batch to the drop directory now
+    @PostMapping("/claim-batches")
+    public ClaimBatchExportResult exportClaimBatch() throws IOException {
+        return batchExchange.exportBatch();
+    }
+
+    // 4. Insurer batch files: apply the acknowledgement files waiting in the inbox now
+    @PostMapping("/claim-batches/acks")
+    public ClaimAckImportResult importClaimAcks() throws IOException {
+        return batchExchange.importAcks();
+    }
+
+    // 5. Insurer batch files: watermark, drop directory and last runs
+    @GetMapping("/claim-batches/stats")
+    public Map<String, Object> getClaimBatchStats() {
+        return batchExchange.getStats();
+    }
+
+    // The body runs on an async thread after this method returns; the service opens its own
+    // read-only transaction there and keeps it open only while rows are being written.
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportService.Format format, boolean gzip,
+                                                         StreamingResponseBody body) {
+        String extension = format == ExportService.Format.CSV ? ".csv" : ".ndjson";
+        MediaType type = gzip ? MediaType.parseMediaType("application/gzip")
+                : format == ExportService.Format.CSV ? MediaType.parseMediaType("text/csv")
+                : MediaType.parseMediaType("application/x-ndjson");
+
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + extension + (gzip ? ".gz" : "") + "\"")
+                .body(body);
+    }
+
+    private ExportService.Format parseFormat(String format) {
+        try {
+            return ExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported export format: " + format + " (use ndjson or csv)");
+        }
+    }
+}
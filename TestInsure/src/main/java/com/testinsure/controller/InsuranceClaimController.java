@@ -1,25 +1,35 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.AutoAdjudicationReport;
+import com.testinsure.dto.BulkAdjudicationResult;
+import com.testinsure.dto.ClaimDecision;
+import com.testinsure.dto.ClaimFilter;
+import com.testinsure.dto.ClaimView;
+import com.testinsure.dto.CursorPage;
 import com.testinsure.entity.InsuranceClaim;
+import com.testinsure.service.AutoAdjudicationWorker;
 import com.testinsure.service.InsuranceClaimService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/insurance/claims")
 public class InsuranceClaimController {
 
     private final InsuranceClaimService claimService;
+    private final AutoAdjudicationWorker autoAdjudicationWorker;
 
-    public InsuranceClaimController(InsuranceClaimService claimService) {
+    public InsuranceClaimController(InsuranceClaimService claimService, AutoAdjudicationWorker autoAdjudicationWorker) {
         this.claimService = claimService;
+        this.autoAdjudicationWorker = autoAdjudicationWorker;
     }
 
     // 1. View All Claims (Admin Only)
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public List<InsuranceClaim> getAllClaims() {
+    public List<ClaimView> getAllClaims() {
         return claimService.getAllClaims();
     }
 
@@ -39,4 +49,41 @@ public class InsuranceClaimController {
         
         return claimService.rejectClaim(id, reason);
     }
-    }
\ No newline at end of file
+
+    // 4. Bulk Approve / Reject (Admin Only)
+    // Body: [{"claimId": 1, "decision": "APPROVE"}, {"claimId": 2, "decision": "REJECT", "reason": "..."}]
+    @PostMapping("/adjudicate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public BulkAdjudicationResult adjudicateClaims(@RequestBody List<ClaimDecision> decisions) {
+        return claimService.adjudicateClaims(decisions);
+    }
+
+    // 5. Run the auto-adjudication rules now (Admin Only); dryRun=true only reports
+    @PostMapping("/auto-adjudicate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public AutoAdjudicationReport autoAdjudicate(@RequestParam(defaultValue = "false") boolean dryRun) {
+        return autoAdjudicationWorker.run(dryRun);
+    }
+
+    // 6. Auto-adjudication throughput and outcome counters (Admin Only)
+    @GetMapping("/auto-adjudicate/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getAutoAdjudicationStats() {
+        return autoAdjudicationWorker.getStats();
+    }
+
+    // 7. Claims Work Queue: filtered, keyset-paginated (Admin Only)
+    // URL Example: GET /api/insurance/claims/queue?status=PENDING&provider=Star Health&minAmount=500&oldestFirst=true&size=50&cursor=...
+    @GetMapping("/queue")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CursorPage<ClaimView> searchClaims(ClaimFilter filter) {
+        return claimService.searchClaims(filter);
+    }
+
+    // 8. Claim Count per Status (Admin Only)
+    @GetMapping("/summary")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Long> getStatusSummary() {
+        return claimService.getStatusSummary();
+    }
+}
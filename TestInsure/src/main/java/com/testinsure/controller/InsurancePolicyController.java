@@ -1,19 +1,31 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.LedgerReconciliation;
+import com.testinsure.dto.PolicyExpiryReport;
 import com.testinsure.entity.InsurancePolicy;
+import com.testinsure.service.CoverageSnapshotWorker;
 import com.testinsure.service.InsurancePolicyService;
+import com.testinsure.service.PolicyExpirySweeper;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/insurance/policies")
 public class InsurancePolicyController {
 
     private final InsurancePolicyService policyService;
+    private final CoverageSnapshotWorker snapshotWorker;
+    private final PolicyExpirySweeper expirySweeper;
 
-    public InsurancePolicyController(InsurancePolicyService policyService) {
+    public InsurancePolicyController(InsurancePolicyService policyService, CoverageSnapshotWorker snapshotWorker,
+                                     PolicyExpirySweeper expirySweeper) {
         this.policyService = policyService;
+        this.snapshotWorker = snapshotWorker;
+        this.expirySweeper = expirySweeper;
     }
 
     // 1. Add a Policy (User matches Token)
@@ -27,4 +39,39 @@ public class InsurancePolicyController {
     public List<InsurancePolicy> getMyPolicies(Principal principal) {
         return policyService.getUserPolicies(principal.getName());
     }
-}
\ No newline at end of file
+
+    // 3. Coverage Ledger: cache counters and last snapshot / reconciliation (Admin Only)
+    @GetMapping("/ledger/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getLedgerStats() {
+        return snapshotWorker.getStats();
+    }
+
+    // 4. Take balance snapshots now (Admin Only); returns how many were written
+    @PostMapping("/ledger/snapshot")
+    @PreAuthorize("hasRole('ADMIN')")
+    public int snapshotLedger() {
+        return snapshotWorker.snapshot();
+    }
+
+    // 5. Check ledger vs snapshots vs cached balances now (Admin Only)
+    @PostMapping("/ledger/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public LedgerReconciliation reconcileLedger() {
+        return snapshotWorker.reconcile();
+    }
+
+    // 6. Expire every ACTIVE policy past its expiry date now (Admin Only)
+    @PostMapping("/expiry/sweep")
+    @PreAuthorize("hasRole('ADMIN')")
+    public PolicyExpiryReport sweepExpired() {
+        return expirySweeper.sweep(LocalDate.now());
+    }
+
+    // 7. Expiry sweeper counters and last run (Admin Only)
+    @GetMapping("/expiry/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getExpiryStats() {
+        return expirySweeper.getStats();
+    }
+}
@@ -0,0 +1,23 @@
+package com.testinsure.controller;
+
+import com.testinsure.dto.PatientDashboard;
+import com.testinsure.service.PatientDashboardService;
+import org.springframework.web.bind.annotation.*;
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/me")
+public class MeController {
+
+    private final PatientDashboardService dashboardService;
+
+    public MeController(PatientDashboardService dashboardService) {
+        this.dashboardService = dashboardService;
+    }
+
+    // 1. Patient Dashboard: upcoming bookings, policy balances, open claims and reports in one response
+    @GetMapping("/dashboard")
+    public PatientDashboard getDashboard(Principal principal) {
+        return dashboardService.getDashboard(principal.getName());
+    }
+}
@@ -0,0 +1,148 @@
+package com.testinsure.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.testinsure.service.ReportStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/*
+ * Sends a stored report with HTTP caching and byte ranges, without reading it into the heap.
+ *
+ *   - ETag / Last-Modified come from the caller (stored metadata); If-None-Match and
+ *     If-Modified-Since answer 304 before the file is touched.
+ *   - A single "Range: bytes=..." gives 206 + Content-Range, or 416 if it starts past the end.
+ *     If-Range only honours the Range when the validator still matches (strong ETag or exact
+ *     date), otherwise the whole file is sent. Several ranges at once get the whole file too
+ *     (allowed by RFC 9110, and no client of ours asks for them).
+ *   - A plain file goes out through Tomcat's sendfile when the connector offers it (the kernel
+ *     copies file -> socket, no user-space buffer), else through FileChannel.transferTo on the
+ *     response stream. Anything else (a cold, packed blob) is decoded while it is copied
+ *     through one small buffer; a range start is skipped in the decoded stream.
+ */
+final class RangedFileResponse {
+
+    // Tomcat's sendfile request attributes (org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int BUFFER = 64 * 1024;
+
+    private RangedFileResponse() {
+    }
+
+    static void send(HttpServletRequest request, HttpServletResponse response, ReportStore.Content content, long size,
+                     String contentType, String etag, long lastModified, String disposition,
+                     String cacheControl) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return; // 304 (or 412 for a failed If-Match), validators already set
+        }
+
+        long first = 0;
+        long last = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && size > 0 && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // Malformed: ignore it and send everything
+            }
+            if (ranges.size() == 1) {
+                first = ranges.get(0).getRangeStart(size);
+                last = ranges.get(0).getRangeEnd(size);
+                if (first >= size || first > last) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + size);
+            }
+        }
+
+        long length = last - first + 1;
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        Path file = content.getFile();
+        if (file == null) {
+            copy(content, response.getOutputStream(), first, length);
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector writes the region after the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, first);
+            request.setAttribute(SENDFILE_END, last + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = first;
+            while (position <= last) {
+                long sent = channel.transferTo(position, last + 1 - position, out);
+                if (sent <= 0) {
+                    throw new IOException("File shrank while being sent: " + file);
+                }
+                position += sent;
+            }
+        }
+    }
+
+    private static void copy(ReportStore.Content content, OutputStream out, long first, long length) throws IOException {
+        try (InputStream in = content.open()) {
+            in.skipNBytes(first);
+            byte[] buffer = new byte[BUFFER];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Report ended " + remaining + " bytes early");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    // No If-Range, or it names the current version of the file
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !etag.startsWith("W/") && ifRange.equals(etag); // Strong comparison only
+        }
+        try {
+            // HTTP dates have whole seconds
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date == lastModified / 1000 * 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
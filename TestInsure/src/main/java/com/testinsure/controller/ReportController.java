@@ -1,27 +1,47 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.ReportBulkResult;
+import com.testinsure.dto.ReportTieringResult;
 import com.testinsure.entity.Report;
+import com.testinsure.service.ReportBulkImporter;
+import com.testinsure.service.ReportPreviewService;
 import com.testinsure.service.ReportService;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import com.testinsure.service.ReportStore;
+import com.testinsure.service.ReportTierMigrator;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.Principal;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/reports")
 public class ReportController {
 
     private final ReportService reportService;
+    private final ReportTierMigrator tierMigrator;
+    private final ReportBulkImporter bulkImporter;
+    private final ReportPreviewService previewService;
 
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService, ReportTierMigrator tierMigrator, ReportBulkImporter bulkImporter,
+                            ReportPreviewService previewService) {
         this.reportService = reportService;
+        this.tierMigrator = tierMigrator;
+        this.bulkImporter = bulkImporter;
+        this.previewService = previewService;
     }
 
     // 1. Upload Report (Admin Only)
@@ -33,27 +53,92 @@ public class ReportController {
         return reportService.uploadReport(bookingId, file, principal.getName());
     }
 
- // 2. Download Report (Smart Version)
+    // 2. Download Report (Smart Version)
+    // Validators, type and size come from the report row; Range / If-Range resume a broken download
     @GetMapping("/download/{bookingId}")
-    public ResponseEntity<Resource> downloadReport(@PathVariable Long bookingId) throws IOException {
+    public void downloadReport(@PathVariable Long bookingId,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
         Report report = reportService.getReportByBooking(bookingId);
-        File file = new File(report.getFileUrl());
+        ReportStore.Content content = reportService.contentOf(report);
 
-        if (!file.exists()) {
-            throw new RuntimeException("File not found on server");
-        }
+        String name = report.getFileName() != null
+                ? report.getFileName()
+                : Paths.get(report.getFileUrl()).getFileName().toString();
+        // Rows from before the metadata columns fall back to the file itself (always a plain file)
+        long size = report.getSizeBytes() != null ? report.getSizeBytes() : Files.size(content.getFile());
+        long lastModified = report.getUploadedAt() != null
+                ? report.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : Files.getLastModifiedTime(content.getFile()).toMillis();
+        String etag = report.getSha256() != null
+                ? "\"" + report.getSha256() + "\""
+                : "W/\"" + size + "-" + lastModified + "\"";
+        String contentType = report.getContentType() != null
+                ? report.getContentType()
+                : ReportService.contentType(name, null);
+
+        RangedFileResponse.send(request, response, content, size, contentType, etag, lastModified,
+                ContentDisposition.attachment().filename(name).build().toString(),
+                CacheControl.noCache().cachePrivate().getHeaderValue());
+    }
+
+    // 3. Report Store Stats (Admin Only)
+    @GetMapping("/store/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getStoreStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(reportService.getStoreStats());
+        stats.put("tiering", tierMigrator.getStats());
+        stats.put("previews", previewService.getStats());
+        return stats;
+    }
+
+    // 4. Archive Old Reports Now (Admin Only)
+    @PostMapping("/store/tiering")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ReportTieringResult runTiering() {
+        return tierMigrator.migrate();
+    }
 
-        Resource resource = new FileSystemResource(file);
-        
-        // Detect the file type dynamically (PDF, TXT, PNG, etc.)
-        String contentType = java.nio.file.Files.probeContentType(file.toPath());
-        if (contentType == null) {
-            contentType = "application/octet-stream"; // Default to generic download
+    // 5. Bulk Upload Reports (Admin Only)
+    // A ZIP of files named by booking id ("1042.pdf", "1042_lipid.pdf"); answers with a line per file
+    @PostMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ReportBulkResult bulkUpload(@RequestParam("file") MultipartFile file, Principal principal) throws IOException {
+        return bulkImporter.importZip(file, principal.getName());
+    }
+
+    // 6. Ingest the Drop Folder Now (Admin Only)
+    @PostMapping("/bulk/drop")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<ReportBulkResult> scanDropFolder() throws IOException {
+        return bulkImporter.scanDropFolder();
+    }
+
+    // 7. Bulk Ingestion Stats (Admin Only)
+    @GetMapping("/bulk/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getBulkStats() {
+        return bulkImporter.getStats();
+    }
+
+    // 8. Report Preview (first page as a small JPEG)
+    // 404 while it is being rendered or if the file type has none. With ?v=<sha256> of the report the URL
+    // names one immutable image and is cached for a year; without it the browser revalidates (304, no body).
+    @GetMapping("/preview/{bookingId}")
+    public void previewReport(@PathVariable Long bookingId, @RequestParam(value = "v", required = false) String version,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Report report = reportService.getReportByBooking(bookingId);
+        Path preview = previewService.preview(report);
+        if (preview == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
-                .body(resource);
+        CacheControl cacheControl = report.getSha256().equals(version)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        RangedFileResponse.send(request, response, ReportStore.Content.of(preview), Files.size(preview), "image/jpeg",
+                "\"" + report.getSha256() + "-preview\"", Files.getLastModifiedTime(preview).toMillis(),
+                ContentDisposition.inline().filename("preview_" + bookingId + ".jpg").build().toString(),
+                cacheControl.getHeaderValue());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.testinsure.controller;
+
+import com.testinsure.dto.SlotGenerationResult;
+import com.testinsure.entity.SlotTemplate;
+import com.testinsure.service.SlotScheduleService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/slot-templates")
+@PreAuthorize("hasRole('ADMIN')")
+public class SlotTemplateController {
+
+    private final SlotScheduleService scheduleService;
+
+    public SlotTemplateController(SlotScheduleService scheduleService) {
+        this.scheduleService = scheduleService;
+    }
+
+    // 1. Create Template
+    // URL Example: POST /api/slot-templates?testId=1
+    @PostMapping
+    public SlotTemplate createTemplate(@RequestParam Long testId, @RequestBody SlotTemplate template) {
+        return scheduleService.createTemplate(testId, template);
+    }
+
+    // 2. List Templates (optionally for one test)
+    @GetMapping
+    public List<SlotTemplate> getTemplates(@RequestParam(required = false) Long testId) {
+        return scheduleService.getTemplates(testId);
+    }
+
+    // 3. Delete Template (generated slots are kept)
+    @DeleteMapping("/{id}")
+    public void deleteTemplate(@PathVariable Long id) {
+        scheduleService.deleteTemplate(id);
+    }
+
+    // 4. Generate Slots for one Template (safe to re-run: fills only missing slots)
+    // URL Example: POST /api/slot-templates/1/generate?from=2025-01-01
+    @PostMapping("/{id}/generate")
+    public SlotGenerationResult generate(@PathVariable Long id,
+                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from) {
+        return scheduleService.generate(id, from);
+    }
+
+    // 5. Generate Slots for every Template
+    @PostMapping("/generate")
+    public List<SlotGenerationResult> generateAll(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from) {
+        return scheduleService.generateAll(from);
+    }
+}
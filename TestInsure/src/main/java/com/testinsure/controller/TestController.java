@@ -1,9 +1,21 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.ImportResult;
+import com.testinsure.dto.TestSuggestion;
 import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.service.CatalogImportService;
 import com.testinsure.service.LaboratoryTestService;
+import com.testinsure.service.TestCatalogCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -12,14 +24,40 @@ public class TestController {
 
     private final LaboratoryTestService testService;
 
-    public TestController(LaboratoryTestService testService) {
+    private final CatalogImportService importService;
+
+    public TestController(LaboratoryTestService testService, CatalogImportService importService) {
         this.testService = testService;
+        this.importService = importService;
     }
 
     // 1. Get All Tests (Open to everyone, or at least authenticated users)
+    // Pre-serialized snapshot; clients revalidate with If-None-Match and usually get a 304
     @GetMapping
-    public List<LaboratoryTest> getAllTests() {
-        return testService.getAllTests();
+    public ResponseEntity<byte[]> getAllTests(WebRequest request) {
+        TestCatalogCache.Snapshot catalog = testService.getCatalog();
+        if (request.checkNotModified(catalog.getEtag())) {
+            return null; // 304 already written
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(catalog.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(catalog.getJson());
+    }
+
+    // Search tests by name, description or prep instructions, best match first
+    @GetMapping("/search")
+    public List<LaboratoryTest> searchTests(@RequestParam("q") String query,
+                                            @RequestParam(value = "limit", required = false) Integer limit) {
+        return testService.searchTests(query, limit);
+    }
+
+    // Autocomplete for the search box (matches test names by prefix)
+    @GetMapping("/autocomplete")
+    public List<TestSuggestion> autocomplete(@RequestParam("q") String prefix,
+                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        return testService.suggestTests(prefix, limit);
     }
 
     // 2. Add Test (RESTRICTED TO ADMIN)
@@ -29,6 +67,21 @@ public class TestController {
         return testService.addTest(test);
     }
     
+    // Bulk Import (RESTRICTED TO ADMIN)
+    // multipart "file": CSV with a header row, or JSON (array / one object per line).
+    // Format comes from ?format=csv|json, else from the file extension.
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ImportResult importTests(@RequestParam("file") MultipartFile file,
+                                    @RequestParam(value = "format", required = false) String format) throws IOException {
+        if (file.isEmpty()) {
+            throw new RuntimeException("Error: The uploaded file is empty!");
+        }
+        try (InputStream in = file.getInputStream()) {
+            return importService.importTests(in, importFormat(format, file.getOriginalFilename()));
+        }
+    }
+
     // 3. Update Test (RESTRICTED TO ADMIN)
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -42,4 +95,17 @@ public class TestController {
     public void deleteTest(@PathVariable Long id) {
         testService.deleteTest(id);
     }
-}
\ No newline at end of file
+
+    private CatalogImportService.Format importFormat(String format, String fileName) {
+        if (format == null) {
+            String lower = fileName != null ? fileName.toLowerCase() : "";
+            return lower.endsWith(".json") || lower.endsWith(".ndjson")
+                    ? CatalogImportService.Format.JSON : CatalogImportService.Format.CSV;
+        }
+        try {
+            return CatalogImportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported import format: " + format + " (use csv or json)");
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.testinsure.controller;
 
+import com.testinsure.dto.SlotAvailability;
 import com.testinsure.entity.TimeSlot;
 import com.testinsure.service.TimeSlotService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
@@ -25,9 +29,18 @@ public class TimeSlotController {
     }
 
     // 2. Get Slots for a Test (Public/Patient)
-    // URL Example: GET /api/tests/1/slots
+    // URL Example: GET /api/tests/1/slots?from=2025-01-01&to=2025-01-31 (from/to optional; from today on is cached)
     @GetMapping("/tests/{testId}/slots")
-    public List<TimeSlot> getSlotsForTest(@PathVariable Long testId) {
-        return timeSlotService.getSlotsForTest(testId);
+    public List<SlotAvailability> getSlotsForTest(@PathVariable Long testId,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return timeSlotService.getSlotsForTest(testId, from, to);
+    }
+
+    // 3. Availability cache counters (Admin Only)
+    @GetMapping("/slots/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getCacheStats() {
+        return timeSlotService.getCacheStats();
     }
 }
\ No newline at end of file
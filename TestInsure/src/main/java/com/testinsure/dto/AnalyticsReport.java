@@ -0,0 +1,120 @@
+package com.testinsure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Analytics for a date range, read from the daily rollups (AnalyticsService.getReport)
+public class AnalyticsReport {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final List<ProviderDay> claims = new ArrayList<>();
+    private final List<TestDay> revenue = new ArrayList<>();
+    private final Latency approvalLatency;
+
+    public AnalyticsReport(LocalDate from, LocalDate to, Latency approvalLatency) {
+        this.from = from;
+        this.to = to;
+        this.approvalLatency = approvalLatency;
+    }
+
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public List<ProviderDay> getClaims() { return claims; }
+    public List<TestDay> getRevenue() { return revenue; }
+    public Latency getApprovalLatency() { return approvalLatency; }
+
+    // Claims of one provider on one day
+    public static class ProviderDay {
+        private final LocalDate day;
+        private final String provider;
+        private long raised;
+        private BigDecimal raisedAmount = BigDecimal.ZERO;
+        private long approved;
+        private BigDecimal approvedAmount = BigDecimal.ZERO;
+        private long rejected;
+        private BigDecimal rejectedAmount = BigDecimal.ZERO;
+
+        public ProviderDay(LocalDate day, String provider) {
+            this.day = day;
+            this.provider = provider;
+        }
+
+        public void raised(long count, BigDecimal amount) { raised += count; raisedAmount = raisedAmount.add(amount); }
+        public void approved(long count, BigDecimal amount) { approved += count; approvedAmount = approvedAmount.add(amount); }
+        public void rejected(long count, BigDecimal amount) { rejected += count; rejectedAmount = rejectedAmount.add(amount); }
+
+        public LocalDate getDay() { return day; }
+        public String getProvider() { return provider; }
+        public long getRaised() { return raised; }
+        public BigDecimal getRaisedAmount() { return raisedAmount; }
+        public long getApproved() { return approved; }
+        public BigDecimal getApprovedAmount() { return approvedAmount; }
+        public long getRejected() { return rejected; }
+        public BigDecimal getRejectedAmount() { return rejectedAmount; }
+    }
+
+    // Bookings and money of one test on one day; revenue = paid - refunded
+    public static class TestDay {
+        private final LocalDate day;
+        private final Long testId;
+        private final String testName;
+        private long bookings;
+        private long payments;
+        private BigDecimal paid = BigDecimal.ZERO;
+        private long cancellations;
+        private BigDecimal refunded = BigDecimal.ZERO;
+
+        public TestDay(LocalDate day, Long testId, String testName) {
+            this.day = day;
+            this.testId = testId;
+            this.testName = testName;
+        }
+
+        // Same totals under a test name looked up later
+        public TestDay named(String name) {
+            TestDay copy = new TestDay(day, testId, name);
+            copy.booked(bookings);
+            copy.paid(payments, paid);
+            copy.cancelled(cancellations, refunded);
+            return copy;
+        }
+
+        public void booked(long count) { bookings += count; }
+        public void paid(long count, BigDecimal amount) { payments += count; paid = paid.add(amount); }
+        public void cancelled(long count, BigDecimal amount) { cancellations += count; refunded = refunded.add(amount); }
+
+        public LocalDate getDay() { return day; }
+        public Long getTestId() { return testId; }
+        public String getTestName() { return testName; }
+        public long getBookings() { return bookings; }
+        public long getPayments() { return payments; }
+        public BigDecimal getPaid() { return paid; }
+        public long getCancellations() { return cancellations; }
+        public BigDecimal getRefunded() { return refunded; }
+        public BigDecimal getRevenue() { return paid.subtract(refunded); }
+    }
+
+    // raisedAt -> resolvedAt of the approvals in the range. Percentiles come from a log-scale
+    // histogram, so each is the upper edge of its bucket (within ~19% of the true value).
+    public static class Latency {
+        private final long approvals;
+        private final Long p50Seconds;
+        private final Long p90Seconds;
+        private final Long p99Seconds;
+
+        public Latency(long approvals, Long p50Seconds, Long p90Seconds, Long p99Seconds) {
+            this.approvals = approvals;
+            this.p50Seconds = p50Seconds;
+            this.p90Seconds = p90Seconds;
+            this.p99Seconds = p99Seconds;
+        }
+
+        public long getApprovals() { return approvals; }
+        public Long getP50Seconds() { return p50Seconds; }
+        public Long getP90Seconds() { return p90Seconds; }
+        public Long getP99Seconds() { return p99Seconds; }
+    }
+}
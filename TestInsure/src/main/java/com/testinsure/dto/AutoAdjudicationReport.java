@@ -0,0 +1,69 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+// What one auto-adjudication run (or one chunk of it) did. In a dry run 'approved' counts
+// the claims that would have been approved; nothing is written.
+public class AutoAdjudicationReport {
+
+    private final boolean dryRun;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int scanned;
+    private int approved;
+    private int leftForReview;
+    private int skipped; // Decided by someone else between the scan and the update
+    private int failed;  // In chunks whose transaction rolled back; still PENDING
+    private String lastError;
+    private final Map<String, Integer> reviewReasons = new TreeMap<>();
+
+    public AutoAdjudicationReport(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public void scanned() { scanned++; }
+    public void approved() { approved++; }
+    public void skipped() { skipped++; }
+
+    public synchronized void failed(int claims, String error) {
+        failed += claims;
+        lastError = error;
+    }
+
+    public void leftForReview(String reason) {
+        leftForReview++;
+        reviewReasons.merge(reason, 1, Integer::sum);
+    }
+
+    // Fold a chunk's numbers into the run's
+    public synchronized void add(AutoAdjudicationReport chunk) {
+        scanned += chunk.scanned;
+        approved += chunk.approved;
+        leftForReview += chunk.leftForReview;
+        skipped += chunk.skipped;
+        failed += chunk.failed;
+        chunk.reviewReasons.forEach((reason, count) -> reviewReasons.merge(reason, count, Integer::sum));
+    }
+
+    public void finished(LocalDateTime startedAt, long durationMs) {
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+    }
+
+    public boolean isDryRun() { return dryRun; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public long getDurationMs() { return durationMs; }
+    public int getScanned() { return scanned; }
+    public int getApproved() { return approved; }
+    public int getLeftForReview() { return leftForReview; }
+    public int getSkipped() { return skipped; }
+    public int getFailed() { return failed; }
+    public String getLastError() { return lastError; }
+    public Map<String, Integer> getReviewReasons() { return reviewReasons; }
+
+    public double getClaimsPerSecond() {
+        return durationMs > 0 ? scanned * 1000.0 / durationMs : scanned;
+    }
+}
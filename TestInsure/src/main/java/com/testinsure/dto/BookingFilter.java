@@ -0,0 +1,50 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.PaymentStatus;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Query parameters for GET /api/bookings/page. Every filter is optional.
+@Data
+public class BookingFilter {
+    private BookingStatus status;          // Default: everything except CANCELLED
+    private PaymentStatus paymentStatus;
+    private Long testId;
+    private Long userId;                   // Patient
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;                // Booked on or after (createdAt)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;                  // Booked on or before (createdAt)
+
+    private String cursor;
+    private Integer size;
+
+    public BookingStatus getStatus() { return status; }
+    public void setStatus(BookingStatus status) { this.status = status; }
+
+    public PaymentStatus getPaymentStatus() { return paymentStatus; }
+    public void setPaymentStatus(PaymentStatus paymentStatus) { this.paymentStatus = paymentStatus; }
+
+    public Long getTestId() { return testId; }
+    public void setTestId(Long testId) { this.testId = testId; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public LocalDate getFrom() { return from; }
+    public void setFrom(LocalDate from) { this.from = from; }
+
+    public LocalDate getTo() { return to; }
+    public void setTo(LocalDate to) { this.to = to; }
+
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+
+    public Integer getSize() { return size; }
+    public void setSize(Integer size) { this.size = size; }
+}
@@ -0,0 +1,110 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.Booking;
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// Read-side booking for the list endpoints. Same JSON shape the frontend already uses
+// (booking.user.name, booking.timeSlot.date, ...) but only the fields it needs, no password hash,
+// and built from a single constructor-expression query instead of eager entity graphs.
+public class BookingView {
+
+    private final Long bookingId;
+    private final BookingStatus status;
+    private final PaymentStatus paymentStatus;
+    private final LocalDateTime createdAt;
+    private final UserSummary user;
+    private final TestSummary laboratoryTest;
+    private final SlotSummary timeSlot;
+    // SHA-256 of the uploaded report (null if none): the version the preview URL carries, so
+    // the browser can cache it for good and still see a replacement
+    private final String reportSha256;
+
+    // Used by JPQL "select new" (flat columns)
+    public BookingView(Long bookingId, BookingStatus status, PaymentStatus paymentStatus, LocalDateTime createdAt,
+                       Long userId, String userName, String userEmail,
+                       Long testId, String testName, BigDecimal cost,
+                       Long slotId, LocalDate date, LocalTime startTime, LocalTime endTime, String reportSha256) {
+        this.bookingId = bookingId;
+        this.status = status;
+        this.paymentStatus = paymentStatus;
+        this.createdAt = createdAt;
+        this.user = new UserSummary(userId, userName, userEmail);
+        this.laboratoryTest = new TestSummary(testId, testName, cost);
+        this.timeSlot = new SlotSummary(slotId, date, startTime, endTime);
+        this.reportSha256 = reportSha256;
+    }
+
+    // From an already fetch-joined entity (no extra queries, so no report version)
+    public static BookingView from(Booking b) {
+        return new BookingView(b.getBookingId(), b.getStatus(), b.getPaymentStatus(), b.getCreatedAt(),
+                b.getUser().getUserId(), b.getUser().getName(), b.getUser().getEmail(),
+                b.getLaboratoryTest().getTestId(), b.getLaboratoryTest().getName(), b.getLaboratoryTest().getCost(),
+                b.getTimeSlot().getSlotId(), b.getTimeSlot().getDate(), b.getTimeSlot().getStartTime(), b.getTimeSlot().getEndTime(), null);
+    }
+
+    public Long getBookingId() { return bookingId; }
+    public BookingStatus getStatus() { return status; }
+    public PaymentStatus getPaymentStatus() { return paymentStatus; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public UserSummary getUser() { return user; }
+    public TestSummary getLaboratoryTest() { return laboratoryTest; }
+    public SlotSummary getTimeSlot() { return timeSlot; }
+    public String getReportSha256() { return reportSha256; }
+
+    public static class UserSummary {
+        private final Long userId;
+        private final String name;
+        private final String email;
+
+        public UserSummary(Long userId, String name, String email) {
+            this.userId = userId;
+            this.name = name;
+            this.email = email;
+        }
+
+        public Long getUserId() { return userId; }
+        public String getName() { return name; }
+        public String getEmail() { return email; }
+    }
+
+    public static class TestSummary {
+        private final Long testId;
+        private final String name;
+        private final BigDecimal cost;
+
+        public TestSummary(Long testId, String name, BigDecimal cost) {
+            this.testId = testId;
+            this.name = name;
+            this.cost = cost;
+        }
+
+        public Long getTestId() { return testId; }
+        public String getName() { return name; }
+        public BigDecimal getCost() { return cost; }
+    }
+
+    public static class SlotSummary {
+        private final Long slotId;
+        private final LocalDate date;
+        private final LocalTime startTime;
+        private final LocalTime endTime;
+
+        public SlotSummary(Long slotId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+            this.slotId = slotId;
+            this.date = date;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public Long getSlotId() { return slotId; }
+        public LocalDate getDate() { return date; }
+        public LocalTime getStartTime() { return startTime; }
+        public LocalTime getEndTime() { return endTime; }
+    }
+}
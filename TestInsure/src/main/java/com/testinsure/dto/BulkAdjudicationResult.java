@@ -0,0 +1,52 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.ClaimStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-claim outcome of a bulk adjudication, in request order, plus totals
+public class BulkAdjudicationResult {
+
+    private int approved;
+    private int rejected;
+    private int failed;
+    private final List<Outcome> outcomes = new ArrayList<>();
+
+    public void succeeded(Long claimId, ClaimDecision.Decision decision, ClaimStatus status) {
+        if (decision == ClaimDecision.Decision.APPROVE) approved++; else rejected++;
+        outcomes.add(new Outcome(claimId, decision, true, status, null));
+    }
+
+    public void failed(Long claimId, ClaimDecision.Decision decision, String message) {
+        failed++;
+        outcomes.add(new Outcome(claimId, decision, false, null, message));
+    }
+
+    public int getApproved() { return approved; }
+    public int getRejected() { return rejected; }
+    public int getFailed() { return failed; }
+    public List<Outcome> getOutcomes() { return outcomes; }
+
+    public static class Outcome {
+        private final Long claimId;
+        private final ClaimDecision.Decision decision;
+        private final boolean success;
+        private final ClaimStatus status;
+        private final String message;
+
+        public Outcome(Long claimId, ClaimDecision.Decision decision, boolean success, ClaimStatus status, String message) {
+            this.claimId = claimId;
+            this.decision = decision;
+            this.success = success;
+            this.status = status;
+            this.message = message;
+        }
+
+        public Long getClaimId() { return claimId; }
+        public ClaimDecision.Decision getDecision() { return decision; }
+        public boolean isSuccess() { return success; }
+        public ClaimStatus getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+}
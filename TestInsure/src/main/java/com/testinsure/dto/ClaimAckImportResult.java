@@ -0,0 +1,57 @@
+package com.testinsure.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of reading insurer acknowledgement files back in. Only the first MAX_ERRORS
+// problems are listed so a bad file can't blow up the response.
+public class ClaimAckImportResult {
+
+    public static final int MAX_ERRORS = 1000;
+
+    private int files;
+    private int failedFiles;   // Could not be read; moved to failed/
+    private long lines;
+    private long approved;
+    private long rejected;
+    private long failed;       // Unreadable line, unknown claim, or already decided
+    private final List<String> errors = new ArrayList<>();
+
+    public void file() { files++; }
+    public void lineSeen() { lines++; }
+
+    public void failedFile(String fileName, String message) {
+        failedFiles++;
+        error(fileName + ": " + message);
+    }
+
+    public void fail(String fileName, long line, String message) {
+        failed++;
+        error(fileName + ":" + line + ": " + message);
+    }
+
+    public void add(BulkAdjudicationResult result) {
+        approved += result.getApproved();
+        rejected += result.getRejected();
+        failed += result.getFailed();
+        for (BulkAdjudicationResult.Outcome outcome : result.getOutcomes()) {
+            if (!outcome.isSuccess()) {
+                error("claim " + outcome.getClaimId() + ": " + outcome.getMessage());
+            }
+        }
+    }
+
+    private void error(String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(message);
+        }
+    }
+
+    public int getFiles() { return files; }
+    public int getFailedFiles() { return failedFiles; }
+    public long getLines() { return lines; }
+    public long getApproved() { return approved; }
+    public long getRejected() { return rejected; }
+    public long getFailed() { return failed; }
+    public List<String> getErrors() { return errors; }
+}
@@ -0,0 +1,60 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// One run of the insurer batch exporter: which claims went out and in which files
+public class ClaimBatchExportResult {
+
+    private final String batchId;
+    private final Long afterClaimId;
+    private Long upToClaimId;      // New watermark (unchanged if nothing was due)
+    private long claims;
+    private final List<BatchFile> files = new ArrayList<>();
+    private LocalDateTime startedAt;
+    private long durationMs;
+
+    public ClaimBatchExportResult(String batchId, Long afterClaimId) {
+        this.batchId = batchId;
+        this.afterClaimId = afterClaimId;
+        this.upToClaimId = afterClaimId;
+    }
+
+    public void exported(Long upToClaimId, long claims) {
+        this.upToClaimId = upToClaimId;
+        this.claims = claims;
+    }
+
+    public void finished(LocalDateTime startedAt, long durationMs) {
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+    }
+
+    public String getBatchId() { return batchId; }
+    public Long getAfterClaimId() { return afterClaimId; }
+    public Long getUpToClaimId() { return upToClaimId; }
+    public long getClaims() { return claims; }
+    public List<BatchFile> getFiles() { return files; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public long getDurationMs() { return durationMs; }
+
+    public static class BatchFile {
+        private final String provider;
+        private final String fileName;
+        private final long claims;
+        private final long bytes; // Compressed
+
+        public BatchFile(String provider, String fileName, long claims, long bytes) {
+            this.provider = provider;
+            this.fileName = fileName;
+            this.claims = claims;
+            this.bytes = bytes;
+        }
+
+        public String getProvider() { return provider; }
+        public String getFileName() { return fileName; }
+        public long getClaims() { return claims; }
+        public long getBytes() { return bytes; }
+    }
+}
@@ -0,0 +1,18 @@
+package com.testinsure.dto;
+
+// One line of a bulk adjudication request: approve or reject a claim (reason only used for rejections)
+public class ClaimDecision {
+
+    public enum Decision { APPROVE, REJECT }
+
+    private Long claimId;
+    private Decision decision;
+    private String reason;
+
+    public Long getClaimId() { return claimId; }
+    public void setClaimId(Long claimId) { this.claimId = claimId; }
+    public Decision getDecision() { return decision; }
+    public void setDecision(Decision decision) { this.decision = decision; }
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
@@ -0,0 +1,53 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.ClaimStatus;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Query parameters for GET /api/insurance/claims/queue. Every filter is optional.
+public class ClaimFilter {
+    private ClaimStatus status;
+    private String provider;               // Policy provider name, exact match
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;                // Raised on or after
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;                  // Raised on or before
+
+    private BigDecimal minAmount;          // Claimed amount (the test's cost), inclusive
+    private BigDecimal maxAmount;
+    private boolean oldestFirst;           // Default: newest first
+
+    private String cursor;
+    private Integer size;
+
+    public ClaimStatus getStatus() { return status; }
+    public void setStatus(ClaimStatus status) { this.status = status; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public LocalDate getFrom() { return from; }
+    public void setFrom(LocalDate from) { this.from = from; }
+
+    public LocalDate getTo() { return to; }
+    public void setTo(LocalDate to) { this.to = to; }
+
+    public BigDecimal getMinAmount() { return minAmount; }
+    public void setMinAmount(BigDecimal minAmount) { this.minAmount = minAmount; }
+
+    public BigDecimal getMaxAmount() { return maxAmount; }
+    public void setMaxAmount(BigDecimal maxAmount) { this.maxAmount = maxAmount; }
+
+    public boolean isOldestFirst() { return oldestFirst; }
+    public void setOldestFirst(boolean oldestFirst) { this.oldestFirst = oldestFirst; }
+
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+
+    public Integer getSize() { return size; }
+    public void setSize(Integer size) { this.size = size; }
+}
@@ -0,0 +1,79 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.Booking;
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.ClaimStatus;
+import com.testinsure.entity.InsuranceClaim;
+import com.testinsure.entity.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// Read-side claim for the admin claims list: claim + its booking (as BookingView) + policy summary,
+// all from one constructor-expression query.
+public class ClaimView {
+
+    private final Long claimId;
+    private final ClaimStatus status;
+    private final BigDecimal approvedAmount;
+    private final String remarks;
+    private final LocalDateTime raisedAt;
+    private final LocalDateTime resolvedAt;
+    private final BookingView booking;
+    private final PolicySummary policy;
+
+    public ClaimView(Long claimId, ClaimStatus status, BigDecimal approvedAmount, String remarks,
+                     LocalDateTime raisedAt, LocalDateTime resolvedAt,
+                     Long bookingId, BookingStatus bookingStatus, PaymentStatus paymentStatus, LocalDateTime createdAt,
+                     Long userId, String userName, String userEmail,
+                     Long testId, String testName, BigDecimal cost,
+                     Long slotId, LocalDate date, LocalTime startTime, LocalTime endTime,
+                     Long policyId, String policyNumber, String providerName) {
+        this.claimId = claimId;
+        this.status = status;
+        this.approvedAmount = approvedAmount;
+        this.remarks = remarks;
+        this.raisedAt = raisedAt;
+        this.resolvedAt = resolvedAt;
+        this.booking = new BookingView(bookingId, bookingStatus, paymentStatus, createdAt, userId, userName, userEmail,
+                testId, testName, cost, slotId, date, startTime, endTime, null);
+        this.policy = new PolicySummary(policyId, policyNumber, providerName);
+    }
+
+    public static ClaimView from(InsuranceClaim c) {
+        Booking b = c.getBooking();
+        return new ClaimView(c.getClaimId(), c.getStatus(), c.getApprovedAmount(), c.getRemarks(), c.getRaisedAt(), c.getResolvedAt(),
+                b.getBookingId(), b.getStatus(), b.getPaymentStatus(), b.getCreatedAt(),
+                b.getUser().getUserId(), b.getUser().getName(), b.getUser().getEmail(),
+                b.getLaboratoryTest().getTestId(), b.getLaboratoryTest().getName(), b.getLaboratoryTest().getCost(),
+                b.getTimeSlot().getSlotId(), b.getTimeSlot().getDate(), b.getTimeSlot().getStartTime(), b.getTimeSlot().getEndTime(),
+                c.getPolicy().getPolicyId(), c.getPolicy().getPolicyNumber(), c.getPolicy().getProviderName());
+    }
+
+    public Long getClaimId() { return claimId; }
+    public ClaimStatus getStatus() { return status; }
+    public BigDecimal getApprovedAmount() { return approvedAmount; }
+    public String getRemarks() { return remarks; }
+    public LocalDateTime getRaisedAt() { return raisedAt; }
+    public LocalDateTime getResolvedAt() { return resolvedAt; }
+    public BookingView getBooking() { return booking; }
+    public PolicySummary getPolicy() { return policy; }
+
+    public static class PolicySummary {
+        private final Long policyId;
+        private final String policyNumber;
+        private final String providerName;
+
+        public PolicySummary(Long policyId, String policyNumber, String providerName) {
+            this.policyId = policyId;
+            this.policyNumber = policyNumber;
+            this.providerName = providerName;
+        }
+
+        public Long getPolicyId() { return policyId; }
+        public String getPolicyNumber() { return policyNumber; }
+        public String getProviderName() { return providerName; }
+    }
+}
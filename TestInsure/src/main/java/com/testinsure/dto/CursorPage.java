@@ -0,0 +1,19 @@
+package com.testinsure.dto;
+
+import java.util.List;
+
+// One page of a keyset-paginated list. Pass nextCursor back to get the following page.
+public class CursorPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor; // null on the last page
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean isHasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,56 @@
+package com.testinsure.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import: counts plus the rows that were skipped and why.
+// Only the first MAX_ERRORS errors are listed so a bad file can't blow up the response.
+public class ImportResult {
+
+    public static final int MAX_ERRORS = 1000;
+
+    private int totalRows;
+    private int inserted;
+    private int updated;
+    private int failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void rowSeen() {
+        totalRows++;
+    }
+
+    public void inserted(int rows) {
+        inserted += rows;
+    }
+
+    public void updated(int rows) {
+        updated += rows;
+    }
+
+    public void fail(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public int getTotalRows() { return totalRows; }
+    public int getInserted() { return inserted; }
+    public int getUpdated() { return updated; }
+    public int getFailed() { return failed; }
+    public List<RowError> getErrors() { return errors; }
+    public boolean isErrorsTruncated() { return failed > errors.size(); }
+
+    public static class RowError {
+        private final int row;
+        private final String message;
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() { return row; }
+        public String getMessage() { return message; }
+    }
+}
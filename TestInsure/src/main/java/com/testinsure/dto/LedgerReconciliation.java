@@ -0,0 +1,56 @@
+package com.testinsure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Result of checking policy balances three ways: straight from the ledger (the truth),
+// from the latest snapshot + later entries, and from the in-memory cache.
+public class LedgerReconciliation {
+
+    private final LocalDateTime checkedAt;
+    private int policiesChecked;
+    private int cachedChecked;
+    private long durationMs;
+    private final List<Mismatch> snapshotMismatches = new ArrayList<>();
+    private final List<Mismatch> cacheMismatches = new ArrayList<>(); // Evicted; reloaded on next use
+
+    public LedgerReconciliation(LocalDateTime checkedAt) {
+        this.checkedAt = checkedAt;
+    }
+
+    public void checked(int policies, int cached) {
+        this.policiesChecked = policies;
+        this.cachedChecked = cached;
+    }
+
+    public void finished(long durationMs) { this.durationMs = durationMs; }
+
+    public LocalDateTime getCheckedAt() { return checkedAt; }
+    public int getPoliciesChecked() { return policiesChecked; }
+    public int getCachedChecked() { return cachedChecked; }
+    public long getDurationMs() { return durationMs; }
+    public List<Mismatch> getSnapshotMismatches() { return snapshotMismatches; }
+    public List<Mismatch> getCacheMismatches() { return cacheMismatches; }
+
+    public boolean isBalanced() {
+        return snapshotMismatches.isEmpty() && cacheMismatches.isEmpty();
+    }
+
+    public static class Mismatch {
+        private final Long policyId;
+        private final BigDecimal ledger;
+        private final BigDecimal found;
+
+        public Mismatch(Long policyId, BigDecimal ledger, BigDecimal found) {
+            this.policyId = policyId;
+            this.ledger = ledger;
+            this.found = found;
+        }
+
+        public Long getPolicyId() { return policyId; }
+        public BigDecimal getLedger() { return ledger; }
+        public BigDecimal getFound() { return found; }
+    }
+}
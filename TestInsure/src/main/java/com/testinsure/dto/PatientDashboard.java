@@ -0,0 +1,34 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Everything the patient home screen shows, returned by GET /api/me/dashboard in one response
+public class PatientDashboard {
+
+    private final String name;
+    private final String email;
+    private final List<BookingView> upcomingBookings;
+    private final List<PolicyBalance> policies;
+    private final List<ClaimView> openClaims;
+    private final List<ReportSummary> reports;
+    private final LocalDateTime generatedAt = LocalDateTime.now();
+
+    public PatientDashboard(String name, String email, List<BookingView> upcomingBookings, List<PolicyBalance> policies,
+                            List<ClaimView> openClaims, List<ReportSummary> reports) {
+        this.name = name;
+        this.email = email;
+        this.upcomingBookings = upcomingBookings;
+        this.policies = policies;
+        this.openClaims = openClaims;
+        this.reports = reports;
+    }
+
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    public List<BookingView> getUpcomingBookings() { return upcomingBookings; }
+    public List<PolicyBalance> getPolicies() { return policies; }
+    public List<ClaimView> getOpenClaims() { return openClaims; }
+    public List<ReportSummary> getReports() { return reports; }
+    public LocalDateTime getGeneratedAt() { return generatedAt; }
+}
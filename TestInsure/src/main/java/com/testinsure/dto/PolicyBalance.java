@@ -0,0 +1,46 @@
+package com.testinsure.dto;
+
+import com.testinsure.entity.PolicyStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// One policy on the patient dashboard with its money already added up by the DB.
+// 'balance' is the policy's remaining coverage (bookings deduct up front, rejections refund),
+// 'held' is what pending claims still have reserved against it, 'paid' what was approved.
+public class PolicyBalance {
+
+    private final Long policyId;
+    private final String policyNumber;
+    private final String providerName;
+    private final PolicyStatus status;
+    private final LocalDate expiryDate;
+    private final BigDecimal balance;
+    private final BigDecimal held;
+    private final BigDecimal paid;
+    private final long openClaims;
+
+    // Used by JPQL "select new" (grouped per policy)
+    public PolicyBalance(Long policyId, String policyNumber, String providerName, PolicyStatus status, LocalDate expiryDate,
+                         BigDecimal balance, BigDecimal held, BigDecimal paid, Long openClaims) {
+        this.policyId = policyId;
+        this.policyNumber = policyNumber;
+        this.providerName = providerName;
+        this.status = status;
+        this.expiryDate = expiryDate;
+        this.balance = balance;
+        this.held = held != null ? held : BigDecimal.ZERO;
+        this.paid = paid != null ? paid : BigDecimal.ZERO;
+        this.openClaims = openClaims != null ? openClaims : 0;
+    }
+
+    public Long getPolicyId() { return policyId; }
+    public String getPolicyNumber() { return policyNumber; }
+    public String getProviderName() { return providerName; }
+    public PolicyStatus getStatus() { return status; }
+    public LocalDate getExpiryDate() { return expiryDate; }
+    public BigDecimal getBalance() { return balance; }
+    public BigDecimal getHeld() { return held; }
+    public BigDecimal getPaid() { return paid; }
+    public long getOpenClaims() { return openClaims; }
+}
@@ -0,0 +1,50 @@
+package com.testinsure.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// What one policy-expiry sweep did
+public class PolicyExpiryReport {
+
+    private final LocalDate expiredBefore;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int chunks;
+    private int expired;
+    private int claimsRejected;
+    private int claimsKept;    // PENDING claims the rules leave for an admin
+    private int failedChunks;  // Rolled back; still ACTIVE, picked up by the next sweep
+    private String lastError;
+
+    public PolicyExpiryReport(LocalDate expiredBefore) {
+        this.expiredBefore = expiredBefore;
+    }
+
+    public void chunk(int expired, int claimsRejected, int claimsKept) {
+        this.chunks++;
+        this.expired += expired;
+        this.claimsRejected += claimsRejected;
+        this.claimsKept += claimsKept;
+    }
+
+    public void failed(String error) {
+        this.chunks++;
+        this.failedChunks++;
+        this.lastError = error;
+    }
+
+    public void finished(LocalDateTime startedAt, long durationMs) {
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+    }
+
+    public LocalDate getExpiredBefore() { return expiredBefore; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public long getDurationMs() { return durationMs; }
+    public int getChunks() { return chunks; }
+    public int getExpired() { return expired; }
+    public int getClaimsRejected() { return claimsRejected; }
+    public int getClaimsKept() { return claimsKept; }
+    public int getFailedChunks() { return failedChunks; }
+    public String getLastError() { return lastError; }
+}
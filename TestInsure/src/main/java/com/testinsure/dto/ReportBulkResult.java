@@ -0,0 +1,115 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Manifest of one bulk report ingestion: a line per file in the ZIP / folder and what became of it.
+// Only the first MAX_FILES lines are listed so a huge archive can't blow up the response.
+public class ReportBulkResult {
+
+    public static final int MAX_FILES = 10_000;
+
+    public enum Outcome {
+        STORED,    // New report for the booking
+        REPLACED,  // The booking's earlier report was replaced
+        SKIPPED,   // Not a report file (folder, hidden file, name without a booking id)
+        FAILED     // Nothing stored; see message
+    }
+
+    private final String source;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int files;
+    private int stored;
+    private int replaced;
+    private int skipped;
+    private int failed;
+    private int batches;
+    private String error; // Set when the source as a whole couldn't be read
+    private final List<FileResult> manifest = new ArrayList<>();
+
+    public ReportBulkResult(String source) {
+        this.source = source;
+    }
+
+    public synchronized void add(FileResult file) {
+        files++;
+        switch (file.getOutcome()) {
+            case STORED -> stored++;
+            case REPLACED -> replaced++;
+            case SKIPPED -> skipped++;
+            case FAILED -> failed++;
+        }
+        if (manifest.size() < MAX_FILES) {
+            manifest.add(file);
+        }
+    }
+
+    public synchronized void batchCommitted() {
+        batches++;
+    }
+
+    public void failed(String error) {
+        this.error = error;
+    }
+
+    public void finished(LocalDateTime startedAt, long durationMs) {
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+    }
+
+    public String getSource() { return source; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public long getDurationMs() { return durationMs; }
+    public int getFiles() { return files; }
+    public int getStored() { return stored; }
+    public int getReplaced() { return replaced; }
+    public int getSkipped() { return skipped; }
+    public int getFailed() { return failed; }
+    public int getBatches() { return batches; }
+    public String getError() { return error; }
+    public List<FileResult> getManifest() { return manifest; }
+    public boolean isManifestTruncated() { return files > manifest.size(); }
+
+    public static class FileResult {
+        private final String name;
+        private final Long bookingId;
+        private final Outcome outcome;
+        private final Long reportId;
+        private final String sha256;
+        private final Long sizeBytes;
+        private final String message;
+
+        private FileResult(String name, Long bookingId, Outcome outcome, Long reportId, String sha256, Long sizeBytes,
+                           String message) {
+            this.name = name;
+            this.bookingId = bookingId;
+            this.outcome = outcome;
+            this.reportId = reportId;
+            this.sha256 = sha256;
+            this.sizeBytes = sizeBytes;
+            this.message = message;
+        }
+
+        public static FileResult stored(String name, Long bookingId, boolean replaced, Long reportId, String sha256, long sizeBytes) {
+            return new FileResult(name, bookingId, replaced ? Outcome.REPLACED : Outcome.STORED, reportId, sha256, sizeBytes, null);
+        }
+
+        public static FileResult skipped(String name, String message) {
+            return new FileResult(name, null, Outcome.SKIPPED, null, null, null, message);
+        }
+
+        public static FileResult failed(String name, Long bookingId, String message) {
+            return new FileResult(name, bookingId, Outcome.FAILED, null, null, null, message);
+        }
+
+        public String getName() { return name; }
+        public Long getBookingId() { return bookingId; }
+        public Outcome getOutcome() { return outcome; }
+        public Long getReportId() { return reportId; }
+        public String getSha256() { return sha256; }
+        public Long getSizeBytes() { return sizeBytes; }
+        public String getMessage() { return message; }
+    }
+}
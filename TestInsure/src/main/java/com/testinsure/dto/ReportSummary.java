@@ -0,0 +1,24 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+
+// A report that is ready to download (GET /api/reports/download/{bookingId})
+public class ReportSummary {
+
+    private final Long reportId;
+    private final Long bookingId;
+    private final String testName;
+    private final LocalDateTime uploadedAt;
+
+    public ReportSummary(Long reportId, Long bookingId, String testName, LocalDateTime uploadedAt) {
+        this.reportId = reportId;
+        this.bookingId = bookingId;
+        this.testName = testName;
+        this.uploadedAt = uploadedAt;
+    }
+
+    public Long getReportId() { return reportId; }
+    public Long getBookingId() { return bookingId; }
+    public String getTestName() { return testName; }
+    public LocalDateTime getUploadedAt() { return uploadedAt; }
+}
@@ -0,0 +1,51 @@
+package com.testinsure.dto;
+
+import java.time.LocalDateTime;
+
+// What one run of the report tier migrator did
+public class ReportTieringResult {
+
+    private final LocalDateTime hotBefore;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int moved;
+    private int skipped;      // Re-uploaded or deleted while being archived; still where they were
+    private int failed;       // Left hot, tried again next run
+    private long contentBytes; // Size of what moved
+    private long storedBytes;  // What it takes in the cold tier
+    private String lastError;
+
+    public ReportTieringResult(LocalDateTime hotBefore) {
+        this.hotBefore = hotBefore;
+    }
+
+    public void moved(long contentBytes, long storedBytes) {
+        this.moved++;
+        this.contentBytes += contentBytes;
+        this.storedBytes += storedBytes;
+    }
+
+    public void skipped() {
+        this.skipped++;
+    }
+
+    public void failed(String error) {
+        this.failed++;
+        this.lastError = error;
+    }
+
+    public void finished(LocalDateTime startedAt, long durationMs) {
+        this.startedAt = startedAt;
+        this.durationMs = durationMs;
+    }
+
+    public LocalDateTime getHotBefore() { return hotBefore; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public long getDurationMs() { return durationMs; }
+    public int getMoved() { return moved; }
+    public int getSkipped() { return skipped; }
+    public int getFailed() { return failed; }
+    public long getContentBytes() { return contentBytes; }
+    public long getStoredBytes() { return storedBytes; }
+    public String getLastError() { return lastError; }
+}
@@ -0,0 +1,38 @@
+package com.testinsure.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Read-only view of a slot for patients: built straight from a JPQL constructor
+// expression, so it is never a managed entity and can't leak back to the DB.
+public class SlotAvailability {
+
+    private final Long slotId;
+    private final LocalDate date;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final int capacity;
+    private final int remaining;
+
+    public SlotAvailability(Long slotId, LocalDate date, LocalTime startTime, LocalTime endTime,
+                            Integer capacity, Integer bookedCount) {
+        this.slotId = slotId;
+        this.date = date;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.capacity = capacity == null ? 0 : capacity;
+        this.remaining = Math.max(0, this.capacity - (bookedCount == null ? 0 : bookedCount));
+    }
+
+    public Long getSlotId() { return slotId; }
+    public LocalDate getDate() { return date; }
+    public LocalTime getStartTime() { return startTime; }
+    public LocalTime getEndTime() { return endTime; }
+    public int getCapacity() { return capacity; }
+    public int getRemaining() { return remaining; }
+
+    // Copy with 'seats' more booked (negative to release); used by SlotAvailabilityCache
+    public SlotAvailability withBooked(int seats) {
+        return new SlotAvailability(slotId, date, startTime, endTime, capacity, capacity - remaining + seats);
+    }
+}
@@ -0,0 +1,30 @@
+package com.testinsure.dto;
+
+import java.time.LocalDate;
+
+// Outcome of expanding one SlotTemplate
+public class SlotGenerationResult {
+
+    private final Long templateId;
+    private final Long testId;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final int created;   // New slots inserted
+    private final int existing;  // Slots that were already there (skipped)
+
+    public SlotGenerationResult(Long templateId, Long testId, LocalDate from, LocalDate to, int created, int existing) {
+        this.templateId = templateId;
+        this.testId = testId;
+        this.from = from;
+        this.to = to;
+        this.created = created;
+        this.existing = existing;
+    }
+
+    public Long getTemplateId() { return templateId; }
+    public Long getTestId() { return testId; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public int getCreated() { return created; }
+    public int getExisting() { return existing; }
+}
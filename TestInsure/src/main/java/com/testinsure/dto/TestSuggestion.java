@@ -0,0 +1,21 @@
+package com.testinsure.dto;
+
+import java.math.BigDecimal;
+
+// One autocomplete entry for the test search box
+public class TestSuggestion {
+
+    private final Long testId;
+    private final String name;
+    private final BigDecimal cost;
+
+    public TestSuggestion(Long testId, String name, BigDecimal cost) {
+        this.testId = testId;
+        this.name = name;
+        this.cost = cost;
+    }
+
+    public Long getTestId() { return testId; }
+    public String getName() { return name; }
+    public BigDecimal getCost() { return cost; }
+}
@@ -6,7 +6,14 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        // Keyset pagination for the admin list: (created_at, booking_id), optionally after one equality filter
+        @Index(name = "idx_booking_created", columnList = "created_at, booking_id"),
+        @Index(name = "idx_booking_status_created", columnList = "status, created_at, booking_id"),
+        @Index(name = "idx_booking_payment_created", columnList = "payment_status, created_at, booking_id"),
+        @Index(name = "idx_booking_test_created", columnList = "test_id, created_at, booking_id"),
+        @Index(name = "idx_booking_user_created", columnList = "user_id, created_at, booking_id")
+})
 @Data
 public class Booking {
 
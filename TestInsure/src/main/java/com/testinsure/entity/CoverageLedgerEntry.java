@@ -0,0 +1,77 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One movement on a policy's coverage. Rows are only ever inserted: a refund is a new CREDIT,
+// never an edit of the DEBIT. Balance = policy.coverageAmount (the opening cover) + sum(amount).
+@Entity
+@Table(name = "coverage_ledger", indexes = {
+        @Index(name = "idx_ledger_policy_entry", columnList = "policy_id, entry_id"),
+        @Index(name = "idx_ledger_created", columnList = "created_at")
+})
+public class CoverageLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long entryId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "policy_id", nullable = false, updatable = false)
+    private InsurancePolicy policy;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "booking_id", updatable = false)
+    private Booking booking;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private LedgerEntryType type;
+
+    // Signed: negative for a DEBIT
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    protected CoverageLedgerEntry() {
+    }
+
+    public CoverageLedgerEntry(InsurancePolicy policy, Booking booking, LedgerEntryType type, BigDecimal amount) {
+        this.policy = policy;
+        this.booking = booking;
+        this.type = type;
+        this.amount = amount;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+	public Long getEntryId() {
+		return entryId;
+	}
+
+	public InsurancePolicy getPolicy() {
+		return policy;
+	}
+
+	public Booking getBooking() {
+		return booking;
+	}
+
+	public LedgerEntryType getType() {
+		return type;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+}
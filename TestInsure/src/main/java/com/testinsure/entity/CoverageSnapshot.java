@@ -0,0 +1,61 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// A policy's balance including every ledger entry up to lastEntryId. Loading a balance starts
+// from the latest snapshot and only sums the entries after it.
+@Entity
+@Table(name = "coverage_snapshots", indexes = {
+        @Index(name = "idx_snapshot_policy_entry", columnList = "policy_id, last_entry_id")
+})
+public class CoverageSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long snapshotId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "policy_id", nullable = false, updatable = false)
+    private InsurancePolicy policy;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal balance;
+
+    @Column(nullable = false, updatable = false)
+    private Long lastEntryId;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime takenAt;
+
+    protected CoverageSnapshot() {
+    }
+
+    public CoverageSnapshot(InsurancePolicy policy, BigDecimal balance, Long lastEntryId, LocalDateTime takenAt) {
+        this.policy = policy;
+        this.balance = balance;
+        this.lastEntryId = lastEntryId;
+        this.takenAt = takenAt;
+    }
+
+	public Long getSnapshotId() {
+		return snapshotId;
+	}
+
+	public InsurancePolicy getPolicy() {
+		return policy;
+	}
+
+	public BigDecimal getBalance() {
+		return balance;
+	}
+
+	public Long getLastEntryId() {
+		return lastEntryId;
+	}
+
+	public LocalDateTime getTakenAt() {
+		return takenAt;
+	}
+}
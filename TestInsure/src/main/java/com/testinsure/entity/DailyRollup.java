@@ -0,0 +1,123 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+// One running total: a metric, on a day, for one provider / test / latency bucket.
+// Maintained incrementally by AnalyticsService, so reports read a few rows per day
+// instead of aggregating claims and bookings.
+@Entity
+@Table(name = "daily_rollups")
+@IdClass(DailyRollup.Key.class)
+public class DailyRollup implements Persistable<DailyRollup.Key> {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private RollupMetric metric;
+
+    @Id
+    @Column(name = "rollup_day")
+    private LocalDate day;
+
+    @Id
+    @Column(length = 100)
+    private String dimension;
+
+    @Column(name = "item_count")
+    private long count;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    // Keys are assigned, so tell Spring Data when to INSERT without a SELECT first
+    @Transient
+    private boolean fresh = true;
+
+    protected DailyRollup() {
+    }
+
+    public DailyRollup(Key key) {
+        this.metric = key.metric;
+        this.day = key.day;
+        this.dimension = key.dimension;
+    }
+
+    public void add(long count, BigDecimal amount) {
+        this.count += count;
+        this.amount = this.amount.add(amount);
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        this.fresh = false;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(metric, day, dimension);
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+	public RollupMetric getMetric() {
+		return metric;
+	}
+
+	public LocalDate getDay() {
+		return day;
+	}
+
+	public String getDimension() {
+		return dimension;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+    public static class Key implements Serializable {
+        private RollupMetric metric;
+        private LocalDate day;
+        private String dimension;
+
+        protected Key() {
+        }
+
+        public Key(RollupMetric metric, LocalDate day, String dimension) {
+            this.metric = metric;
+            this.day = day;
+            this.dimension = dimension;
+        }
+
+        public RollupMetric getMetric() { return metric; }
+        public LocalDate getDay() { return day; }
+        public String getDimension() { return dimension; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return metric == key.metric && Objects.equals(day, key.day) && Objects.equals(dimension, key.dimension);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metric, day, dimension);
+        }
+    }
+}
@@ -5,7 +5,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "insurance_claims")
+@Table(name = "insurance_claims", indexes = {
+        // Keyset pagination for the claims queue: (raised_at, claim_id), optionally after one equality filter.
+        // The status index also answers the per-status counts without touching the rows.
+        @Index(name = "idx_claim_raised", columnList = "raised_at, claim_id"),
+        @Index(name = "idx_claim_status_raised", columnList = "status, raised_at, claim_id"),
+        @Index(name = "idx_claim_policy_raised", columnList = "policy_id, raised_at, claim_id")
+})
 @Data
 public class InsuranceClaim {
 
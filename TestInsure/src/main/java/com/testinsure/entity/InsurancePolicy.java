@@ -6,7 +6,11 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "insurance_policies")
+@Table(name = "insurance_policies", indexes = {
+        @Index(name = "idx_policy_provider", columnList = "provider_name"), // Claims queue provider filter
+        // Expiry sweeper: ACTIVE policies past their date, read in (expiry_date, policy_id) order
+        @Index(name = "idx_policy_status_expiry", columnList = "status, expiry_date, policy_id")
+})
 @Data
 public class InsurancePolicy {
 
@@ -23,12 +27,17 @@ public class InsurancePolicy {
     @Column(unique = true, nullable = false)
     private String policyNumber;
     
+    // Opening cover. What is left is this plus the coverage ledger (see CoverageLedger)
     private BigDecimal coverageAmount;
     private LocalDate expiryDate;
 
     @Enumerated(EnumType.STRING)
     private PolicyStatus status;
 
+    // Remaining coverage, filled in from the ledger for API responses; never stored
+    @Transient
+    private BigDecimal balance;
+
 	public Long getPolicyId() {
 		return policyId;
 	}
@@ -84,4 +93,12 @@ public class InsurancePolicy {
 	public void setStatus(PolicyStatus status) {
 		this.status = status;
 	}
-}
\ No newline at end of file
+
+	public BigDecimal getBalance() {
+		return balance;
+	}
+
+	public void setBalance(BigDecimal balance) {
+		this.balance = balance;
+	}
+}
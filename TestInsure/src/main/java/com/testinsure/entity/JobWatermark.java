@@ -0,0 +1,44 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// How far a background job has got, by the last id it fully handled. Survives restarts.
+@Entity
+@Table(name = "job_watermarks")
+public class JobWatermark {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private Long lastId;
+
+    private LocalDateTime updatedAt;
+
+    protected JobWatermark() {
+    }
+
+    public JobWatermark(String name) {
+        this.name = name;
+        this.lastId = 0L;
+    }
+
+	public String getName() {
+		return name;
+	}
+
+	public Long getLastId() {
+		return lastId;
+	}
+
+	public void setLastId(Long lastId) {
+		this.lastId = lastId;
+		this.updatedAt = LocalDateTime.now();
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+}
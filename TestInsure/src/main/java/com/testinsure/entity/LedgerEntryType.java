@@ -0,0 +1,6 @@
+package com.testinsure.entity;
+
+public enum LedgerEntryType {
+    DEBIT,  // Booking paid with insurance
+    CREDIT  // Refund: booking cancelled or claim rejected
+}
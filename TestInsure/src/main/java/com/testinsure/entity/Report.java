@@ -17,7 +17,10 @@ public class Report {
     @JoinColumn(name = "booking_id", nullable = false)
     private Booking booking;
 
-    private String fileUrl; // Path to the file (e.g., /uploads/report123.pdf)
+    private String fileUrl; // Path to the file (e.g., uploads/blobs/ab/cd/abcd...)
+
+    // Name the file is downloaded under; the stored blob is named by its hash
+    private String fileName;
 
     @ManyToOne
     @JoinColumn(name = "uploaded_by_admin_id", nullable = false)
@@ -25,6 +28,16 @@ public class Report {
 
     private LocalDateTime uploadedAt;
 
+    // Taken while the upload streams in (ReportStore)
+    private Long sizeBytes;
+
+    @Column(length = 64)
+    private String sha256;
+
+    // Resolved once at upload, so downloads never probe the file
+    @Column(length = 100)
+    private String contentType;
+
     @PrePersist
     protected void onCreate() {
         this.uploadedAt = LocalDateTime.now();
@@ -55,6 +68,14 @@ public class Report {
 		this.fileUrl = fileUrl;
 	}
 
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
 	public User getUploadedByAdmin() {
 		return uploadedByAdmin;
 	}
@@ -70,4 +91,28 @@ public class Report {
 	public void setUploadedAt(LocalDateTime uploadedAt) {
 		this.uploadedAt = uploadedAt;
 	}
+
+	public Long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public void setSizeBytes(Long sizeBytes) {
+		this.sizeBytes = sizeBytes;
+	}
+
+	public String getSha256() {
+		return sha256;
+	}
+
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One stored report file, keyed by its SHA-256; refCount = how many reports point at it (ReportStore)
+@Entity
+@Table(name = "report_blobs", indexes = {
+        // Tiering: hot blobs oldest first
+        @Index(name = "idx_blob_tier_hot_since", columnList = "tier, hot_since, sha256")
+})
+public class ReportBlob {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false)
+    private Integer refCount;
+
+    private LocalDateTime createdAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private StorageTier tier;
+
+    // Stored or last re-uploaded; the tier migrator moves blobs by this
+    @Column(name = "hot_since")
+    private LocalDateTime hotSince;
+
+    // Where a COLD blob sits: segment file, byte offset, bytes taken there, gzip or raw
+    @Column(length = 64)
+    private String segment;
+
+    private Long segmentOffset;
+
+    private Long storedBytes;
+
+    private Boolean compressed;
+
+    protected ReportBlob() {
+    }
+
+    public ReportBlob(String sha256, long sizeBytes) {
+        this.sha256 = sha256;
+        this.sizeBytes = sizeBytes;
+        this.refCount = 1;
+        this.tier = StorageTier.HOT;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.hotSince = this.createdAt;
+    }
+
+	public String getSha256() {
+		return sha256;
+	}
+
+	public Long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public Integer getRefCount() {
+		return refCount;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public StorageTier getTier() {
+		return tier;
+	}
+
+	public LocalDateTime getHotSince() {
+		return hotSince;
+	}
+
+	public String getSegment() {
+		return segment;
+	}
+
+	public Long getSegmentOffset() {
+		return segmentOffset;
+	}
+
+	public Long getStoredBytes() {
+		return storedBytes;
+	}
+
+	public Boolean getCompressed() {
+		return compressed;
+	}
+}
@@ -0,0 +1,60 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// A change to one DailyRollup that has committed but not been added onto it yet. Written in the
+// same transaction as the booking / claim change it counts, so it survives a restart; the
+// analytics flush folds these into daily_rollups and deletes them in one transaction.
+@Entity
+@Table(name = "rollup_deltas")
+public class RollupDelta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long deltaId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false, updatable = false)
+    private RollupMetric metric;
+
+    @Column(name = "rollup_day", nullable = false, updatable = false)
+    private LocalDate day;
+
+    @Column(length = 100, nullable = false, updatable = false)
+    private String dimension;
+
+    @Column(name = "item_count", nullable = false, updatable = false)
+    private long count;
+
+    @Column(precision = 19, scale = 2, nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    protected RollupDelta() {
+    }
+
+    public RollupDelta(DailyRollup.Key key, long count, BigDecimal amount) {
+        this.metric = key.getMetric();
+        this.day = key.getDay();
+        this.dimension = key.getDimension();
+        this.count = count;
+        this.amount = amount;
+    }
+
+    public DailyRollup.Key getKey() {
+        return new DailyRollup.Key(metric, day, dimension);
+    }
+
+	public Long getDeltaId() {
+		return deltaId;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+}
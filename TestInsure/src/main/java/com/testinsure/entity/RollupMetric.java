@@ -0,0 +1,12 @@
+package com.testinsure.entity;
+
+// What a DailyRollup row counts, and what its dimension is
+public enum RollupMetric {
+    CLAIMS_RAISED,     // provider: claims raised, amount claimed
+    CLAIMS_APPROVED,   // provider: claims approved, amount approved
+    CLAIMS_REJECTED,   // provider: claims rejected, amount that was claimed
+    APPROVAL_LATENCY,  // histogram bucket (see AnalyticsService.latencyBucket): approvals resolved that day
+    BOOKINGS,          // testId: bookings made, value at list price
+    PAYMENTS,          // testId: bookings paid (card at booking, insurance on approval), revenue in
+    CANCELLATIONS      // testId: bookings cancelled, amount refunded
+}
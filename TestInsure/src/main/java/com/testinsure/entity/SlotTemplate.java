@@ -0,0 +1,109 @@
+package com.testinsure.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalTime;
+
+// A recurring schedule, e.g. "MON-FRI 08:00-12:00, 15 min slots, capacity 4, 90 days ahead".
+// SlotScheduleService expands it into TimeSlot rows.
+@Entity
+@Table(name = "slot_templates")
+@Data
+public class SlotTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long templateId;
+
+    @ManyToOne
+    @JoinColumn(name = "test_id", nullable = false)
+    private LaboratoryTest laboratoryTest;
+
+    private String name;
+
+    // Comma separated days, e.g. "MON,TUE,WED,THU,FRI" (full names work too)
+    @Column(nullable = false)
+    private String daysOfWeek;
+
+    @Column(nullable = false)
+    private LocalTime dayStart;
+
+    @Column(nullable = false)
+    private LocalTime dayEnd;
+
+    private int slotMinutes;
+    private int capacity;
+    private int horizonDays; // How many days ahead to keep generated
+
+	public Long getTemplateId() {
+		return templateId;
+	}
+
+	public void setTemplateId(Long templateId) {
+		this.templateId = templateId;
+	}
+
+	public LaboratoryTest getLaboratoryTest() {
+		return laboratoryTest;
+	}
+
+	public void setLaboratoryTest(LaboratoryTest laboratoryTest) {
+		this.laboratoryTest = laboratoryTest;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDaysOfWeek() {
+		return daysOfWeek;
+	}
+
+	public void setDaysOfWeek(String daysOfWeek) {
+		this.daysOfWeek = daysOfWeek;
+	}
+
+	public LocalTime getDayStart() {
+		return dayStart;
+	}
+
+	public void setDayStart(LocalTime dayStart) {
+		this.dayStart = dayStart;
+	}
+
+	public LocalTime getDayEnd() {
+		return dayEnd;
+	}
+
+	public void setDayEnd(LocalTime dayEnd) {
+		this.dayEnd = dayEnd;
+	}
+
+	public int getSlotMinutes() {
+		return slotMinutes;
+	}
+
+	public void setSlotMinutes(int slotMinutes) {
+		this.slotMinutes = slotMinutes;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public int getHorizonDays() {
+		return horizonDays;
+	}
+
+	public void setHorizonDays(int horizonDays) {
+		this.horizonDays = horizonDays;
+	}
+}
@@ -0,0 +1,6 @@
+package com.testinsure.entity;
+
+public enum StorageTier {
+    HOT,  // Plain file in its shard on the primary disk; sent with sendfile
+    COLD  // Packed into an archive segment, usually compressed
+}
@@ -6,7 +6,9 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "time_slots")
+@Table(name = "time_slots", indexes = {
+        @Index(name = "idx_slot_test_date", columnList = "test_id, date")
+})
 @Data
 public class TimeSlot {
 
@@ -50,6 +52,14 @@ public class TimeSlot {
 		this.capacity = capacity;
 	}
 
+	public int getBookedCount() {
+		return bookedCount;
+	}
+
+	public void setBookedCount(int bookedCount) {
+		this.bookedCount = bookedCount;
+	}
+
 	public LaboratoryTest getLaboratoryTest() {
 		return laboratoryTest;
 	}
@@ -68,6 +78,12 @@ public class TimeSlot {
 
     private Integer capacity; // Max patients allowed for this slot
 
+    // Seats currently taken (non-cancelled bookings).
+    // Only ever changed by the conditional UPDATEs in TimeSlotRepository,
+    // so a stale entity can never write an old count back.
+    @Column(name = "booked_count", nullable = false, updatable = false)
+    private int bookedCount;
+
     @ManyToOne
     @JoinColumn(name = "test_id", nullable = false)
     private LaboratoryTest laboratoryTest;
@@ -1,5 +1,6 @@
 package com.testinsure.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -18,6 +19,7 @@ public class User {
     private String email;
 
     @Column(nullable = false)
+    @JsonIgnore // BCrypt hash - never serialize it (User is nested in Booking/Policy responses)
     private String password;
 
     private String phone;
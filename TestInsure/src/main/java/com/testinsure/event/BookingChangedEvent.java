@@ -0,0 +1,40 @@
+package com.testinsure.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Raised when a booking is made, paid for, or cancelled. AnalyticsService folds it into the
+// per-test daily rollups (as a rollup delta written in the same transaction).
+public class BookingChangedEvent {
+
+    public enum Type { BOOKED, PAID, CANCELLED }
+
+    private final Type type;
+    private final Long testId;
+    private final BigDecimal amount; // Test cost; for CANCELLED what was refunded (zero if it was never paid)
+    private final LocalDateTime at;
+
+    private BookingChangedEvent(Type type, Long testId, BigDecimal amount, LocalDateTime at) {
+        this.type = type;
+        this.testId = testId;
+        this.amount = amount;
+        this.at = at;
+    }
+
+    public static BookingChangedEvent booked(Long testId, BigDecimal cost) {
+        return new BookingChangedEvent(Type.BOOKED, testId, cost, LocalDateTime.now());
+    }
+
+    public static BookingChangedEvent paid(Long testId, BigDecimal amount) {
+        return new BookingChangedEvent(Type.PAID, testId, amount, LocalDateTime.now());
+    }
+
+    public static BookingChangedEvent cancelled(Long testId, BigDecimal refunded) {
+        return new BookingChangedEvent(Type.CANCELLED, testId, refunded, LocalDateTime.now());
+    }
+
+    public Type getType() { return type; }
+    public Long getTestId() { return testId; }
+    public BigDecimal getAmount() { return amount; }
+    public LocalDateTime getAt() { return at; }
+}
@@ -0,0 +1,60 @@
+package com.testinsure.event;
+
+import com.testinsure.entity.ClaimStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Raised when a claim is raised or decided. AnalyticsService records it as a rollup delta in the same
+// transaction; InsuranceClaimService moves its per-status counts once it commits.
+public class ClaimChangedEvent {
+
+    public enum Type { RAISED, APPROVED, REJECTED }
+
+    private final Type type;
+    private final String provider;
+    private final BigDecimal amount;     // Claimed amount, or the approved amount for APPROVED
+    private final LocalDateTime raisedAt;
+    private final LocalDateTime at;      // When this change happened
+    private final ClaimStatus previous;  // Status before this change; null when RAISED
+
+    private ClaimChangedEvent(Type type, String provider, BigDecimal amount, LocalDateTime raisedAt, LocalDateTime at,
+                              ClaimStatus previous) {
+        this.type = type;
+        this.provider = provider;
+        this.amount = amount;
+        this.raisedAt = raisedAt;
+        this.at = at;
+        this.previous = previous;
+    }
+
+    public static ClaimChangedEvent raised(String provider, BigDecimal amount, LocalDateTime at) {
+        return new ClaimChangedEvent(Type.RAISED, provider, amount, at, at, null);
+    }
+
+    public static ClaimChangedEvent approved(ClaimStatus previous, String provider, BigDecimal amount,
+                                             LocalDateTime raisedAt, LocalDateTime resolvedAt) {
+        return new ClaimChangedEvent(Type.APPROVED, provider, amount, raisedAt, resolvedAt, previous);
+    }
+
+    public static ClaimChangedEvent rejected(ClaimStatus previous, String provider, BigDecimal amount,
+                                             LocalDateTime raisedAt, LocalDateTime resolvedAt) {
+        return new ClaimChangedEvent(Type.REJECTED, provider, amount, raisedAt, resolvedAt, previous);
+    }
+
+    // Status after this change
+    public ClaimStatus getStatus() {
+        return switch (type) {
+            case RAISED -> ClaimStatus.PENDING;
+            case APPROVED -> ClaimStatus.APPROVED;
+            case REJECTED -> ClaimStatus.REJECTED;
+        };
+    }
+
+    public Type getType() { return type; }
+    public String getProvider() { return provider; }
+    public BigDecimal getAmount() { return amount; }
+    public LocalDateTime getRaisedAt() { return raisedAt; }
+    public LocalDateTime getAt() { return at; }
+    public ClaimStatus getPrevious() { return previous; }
+}
@@ -0,0 +1,17 @@
+package com.testinsure.event;
+
+// Raised when a report file is uploaded (singly or in bulk). ReportPreviewService renders its
+// preview image after commit.
+public class ReportStoredEvent {
+
+    private final String sha256;
+    private final String contentType;
+
+    public ReportStoredEvent(String sha256, String contentType) {
+        this.sha256 = sha256;
+        this.contentType = contentType;
+    }
+
+    public String getSha256() { return sha256; }
+    public String getContentType() { return contentType; }
+}
@@ -0,0 +1,51 @@
+package com.testinsure.event;
+
+import com.testinsure.dto.SlotAvailability;
+
+// Raised whenever a slot's availability changes (booked, released, created, bulk created).
+// Listeners such as SlotAvailabilityCache apply it incrementally after commit.
+public class SlotChangedEvent {
+
+    public enum Type { BOOKED, RELEASED, CREATED, BULK_CREATED }
+
+    private final Type type;
+    private final Long testId;
+    private final Long slotId;
+    private final int seats;
+    private final SlotAvailability slot; // Only set for CREATED
+
+    private SlotChangedEvent(Type type, Long testId, Long slotId, int seats, SlotAvailability slot) {
+        this.type = type;
+        this.testId = testId;
+        this.slotId = slotId;
+        this.seats = seats;
+        this.slot = slot;
+    }
+
+    public static SlotChangedEvent booked(Long testId, Long slotId, int seats) {
+        return new SlotChangedEvent(Type.BOOKED, testId, slotId, seats, null);
+    }
+
+    public static SlotChangedEvent released(Long testId, Long slotId) {
+        return released(testId, slotId, 1);
+    }
+
+    public static SlotChangedEvent released(Long testId, Long slotId, int seats) {
+        return new SlotChangedEvent(Type.RELEASED, testId, slotId, seats, null);
+    }
+
+    public static SlotChangedEvent created(Long testId, SlotAvailability slot) {
+        return new SlotChangedEvent(Type.CREATED, testId, slot.getSlotId(), 0, slot);
+    }
+
+    // Many slots inserted at once (template generation); listeners should reload the test
+    public static SlotChangedEvent bulkCreated(Long testId) {
+        return new SlotChangedEvent(Type.BULK_CREATED, testId, null, 0, null);
+    }
+
+    public Type getType() { return type; }
+    public Long getTestId() { return testId; }
+    public Long getSlotId() { return slotId; }
+    public int getSeats() { return seats; }
+    public SlotAvailability getSlot() { return slot; }
+}
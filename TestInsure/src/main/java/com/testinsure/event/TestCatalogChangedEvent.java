@@ -0,0 +1,37 @@
+package com.testinsure.event;
+
+import com.testinsure.entity.LaboratoryTest;
+
+// Raised when a lab test is added, updated or deleted (or many at once, RELOADED). Listeners such as TestCatalogCache
+// apply it to their in-memory copy after commit instead of re-reading the catalog.
+public class TestCatalogChangedEvent {
+
+    public enum Type { SAVED, DELETED, RELOADED }
+
+    private final Type type;
+    private final Long testId;
+    private final LaboratoryTest test; // Only set for SAVED
+
+    private TestCatalogChangedEvent(Type type, Long testId, LaboratoryTest test) {
+        this.type = type;
+        this.testId = testId;
+        this.test = test;
+    }
+
+    public static TestCatalogChangedEvent saved(LaboratoryTest test) {
+        return new TestCatalogChangedEvent(Type.SAVED, test.getTestId(), test);
+    }
+
+    public static TestCatalogChangedEvent deleted(Long testId) {
+        return new TestCatalogChangedEvent(Type.DELETED, testId, null);
+    }
+
+    // Many tests changed at once (bulk import); listeners should reload the whole catalog
+    public static TestCatalogChangedEvent reloaded() {
+        return new TestCatalogChangedEvent(Type.RELOADED, null, null);
+    }
+
+    public Type getType() { return type; }
+    public Long getTestId() { return testId; }
+    public LaboratoryTest getTest() { return test; }
+}
@@ -1,12 +1,21 @@
 package com.testinsure.repository;
 
+import com.testinsure.dto.BookingView;
 import com.testinsure.entity.Booking;
 import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.PaymentStatus;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+// JpaSpecificationExecutor: the admin booking list builds only the filters it needs (BookingService.searchBookings)
+public interface BookingRepository extends JpaRepository<Booking, Long>, JpaSpecificationExecutor<Booking> {
     // Find all bookings made by a specific user (for Patient Dashboard)
     List<Booking> findByUser_UserId(Long userId);
     
@@ -21,4 +30,42 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     
  // Fetch all bookings where status is NOT 'CANCELLED'
     List<Booking> findByStatusNot(com.testinsure.entity.BookingStatus status);
+
+    // Read-side list views: one statement each, straight into BookingView (no entity graphs)
+    String BOOKING_VIEW = "select new com.testinsure.dto.BookingView(b.bookingId, b.status, b.paymentStatus, b.createdAt, " +
+            "u.userId, u.name, u.email, t.testId, t.name, t.cost, s.slotId, s.date, s.startTime, s.endTime, r.sha256) " +
+            "from Booking b join b.user u join b.laboratoryTest t join b.timeSlot s left join Report r on r.booking = b ";
+
+    // Patient dashboard: resolves the user by email in the same statement
+    @Query(BOOKING_VIEW + "where u.email = :email order by b.createdAt desc, b.bookingId desc")
+    List<BookingView> findViewsByUserEmail(@Param("email") String email);
+
+    // Patient dashboard: bookings still ahead of the patient (slot date on or after 'from')
+    @Query(BOOKING_VIEW + "where u.email = :email and b.status in :statuses and s.date >= :from " +
+            "order by s.date, s.startTime, b.bookingId")
+    List<BookingView> findUpcomingViewsByUserEmail(@Param("email") String email,
+                                                   @Param("statuses") Collection<BookingStatus> statuses,
+                                                   @Param("from") LocalDate from);
+
+    // Admin list (everything except the given status)
+    @Query(BOOKING_VIEW + "where b.status <> :status order by b.createdAt desc, b.bookingId desc")
+    List<BookingView> findViewsByStatusNot(@Param("status") BookingStatus status);
+
+    // Auto-adjudication: mark the approved claims' bookings in one statement
+    @Modifying
+    @Query("update Booking b set b.paymentStatus = :status where b.bookingId in :ids")
+    int updatePaymentStatus(@Param("ids") Collection<Long> ids, @Param("status") PaymentStatus status);
+
+    // Export: flat rows (no entities, so the persistence context stays empty), streamed through
+    // RowStreamer with :from / :to. Columns match ExportService.BOOKING_COLUMNS.
+    String EXPORT_ROWS = "select b.bookingId, b.createdAt, b.status, b.paymentStatus, u.userId, u.name, u.email, " +
+           "t.testId, t.name, t.cost, s.date, s.startTime " +
+           "from Booking b join b.user u join b.laboratoryTest t join b.timeSlot s " +
+           "where b.createdAt >= :from and b.createdAt < :to order by b.createdAt, b.bookingId";
+
+    // Analytics rebuild: every booking with its claim, flat, streamed through RowStreamer (AnalyticsService.rebuild)
+    String ROLLUP_ROWS = "select t.testId, t.cost, b.createdAt, b.status, b.paymentStatus, " +
+           "c.status, c.raisedAt, c.resolvedAt, c.approvedAmount, p.providerName " +
+           "from Booking b join b.laboratoryTest t left join b.insuranceClaim c left join c.policy p " +
+           "order by b.bookingId";
 }
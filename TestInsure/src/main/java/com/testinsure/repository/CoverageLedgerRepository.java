@@ -0,0 +1,38 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.CoverageLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface CoverageLedgerRepository extends JpaRepository<CoverageLedgerEntry, Long> {
+
+    // Loading a balance: what moved after the policy's latest snapshot
+    @Query("select coalesce(sum(e.amount), 0) from CoverageLedgerEntry e where e.policy.policyId = :policyId and e.entryId > :after")
+    BigDecimal sumAfter(@Param("policyId") Long policyId, @Param("after") Long after);
+
+    // Same as sumAfter for many policies at once: [policyId, sum of entries after its latest snapshot]
+    @Query("select e.policy.policyId, sum(e.amount) from CoverageLedgerEntry e where e.policy.policyId in :policyIds " +
+           "and e.entryId > coalesce((select max(s.lastEntryId) from CoverageSnapshot s where s.policy = e.policy), 0) " +
+           "group by e.policy.policyId")
+    List<Object[]> sumAfterLatestSnapshots(@Param("policyIds") Collection<Long> policyIds);
+
+    // Snapshot cut-off: newest entry old enough that its transaction has surely finished
+    @Query("select max(e.entryId) from CoverageLedgerEntry e where e.createdAt < :before")
+    Long findMaxIdCreatedBefore(@Param("before") LocalDateTime before);
+
+    // Snapshot: [policyId, sum(amount)] for every policy that moved in (after, upTo]
+    @Query("select e.policy.policyId, sum(e.amount) from CoverageLedgerEntry e " +
+           "where e.entryId > :after and e.entryId <= :upTo group by e.policy.policyId")
+    List<Object[]> sumByPolicyBetween(@Param("after") Long after, @Param("upTo") Long upTo);
+
+    // Reconciliation: [policyId, opening cover + every entry] for all policies, straight from the ledger
+    @Query("select p.policyId, p.coverageAmount + coalesce(sum(e.amount), 0) " +
+           "from InsurancePolicy p left join CoverageLedgerEntry e on e.policy = p " +
+           "group by p.policyId, p.coverageAmount")
+    List<Object[]> findLedgerBalances();
+}
@@ -0,0 +1,29 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.CoverageSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CoverageSnapshotRepository extends JpaRepository<CoverageSnapshot, Long> {
+
+    Optional<CoverageSnapshot> findFirstByPolicy_PolicyIdOrderByLastEntryIdDesc(Long policyId);
+
+    // Where the previous snapshot run stopped
+    @Query("select coalesce(max(s.lastEntryId), 0) from CoverageSnapshot s")
+    Long findMaxLastEntryId();
+
+    // [policyId, balance] of the latest snapshot of each given policy
+    @Query("select s.policy.policyId, s.balance from CoverageSnapshot s where s.policy.policyId in :policyIds " +
+           "and s.lastEntryId = (select max(s2.lastEntryId) from CoverageSnapshot s2 where s2.policy = s.policy)")
+    List<Object[]> findLatestBalances(@Param("policyIds") Collection<Long> policyIds);
+
+    // Reconciliation: [policyId, latest snapshot + the entries after it] for every snapshotted policy
+    @Query("select s.policy.policyId, s.balance + coalesce((select sum(e.amount) from CoverageLedgerEntry e " +
+           "where e.policy = s.policy and e.entryId > s.lastEntryId), 0) from CoverageSnapshot s " +
+           "where s.lastEntryId = (select max(s2.lastEntryId) from CoverageSnapshot s2 where s2.policy = s.policy)")
+    List<Object[]> findSnapshotBalances();
+}
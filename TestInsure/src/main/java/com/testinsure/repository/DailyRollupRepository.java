@@ -0,0 +1,20 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, DailyRollup.Key> {
+
+    // Analytics report: every rollup row in a date range (primary key prefix is metric, day)
+    @Query("select r from DailyRollup r where r.day >= :from and r.day <= :to order by r.day, r.metric, r.dimension")
+    List<DailyRollup> findByDayBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("delete from DailyRollup r")
+    int deleteAllRollups();
+}
@@ -1,13 +1,92 @@
 package com.testinsure.repository;
 
+import com.testinsure.dto.ClaimView;
+import com.testinsure.entity.ClaimStatus;
 import com.testinsure.entity.InsuranceClaim;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface InsuranceClaimRepository extends JpaRepository<InsuranceClaim, Long> {
+public interface InsuranceClaimRepository extends JpaRepository<InsuranceClaim, Long>, JpaSpecificationExecutor<InsuranceClaim> {
     // Find claims for a specific user (via Booking)
     List<InsuranceClaim> findByBooking_User_UserId(Long userId);
 
     // Find specific claim by booking ID
     java.util.Optional<InsuranceClaim> findByBooking_BookingId(Long bookingId);
-}
\ No newline at end of file
+
+    // Read-side claim views: claim + booking + patient + test + slot + policy in one statement
+    String CLAIM_VIEW = "select new com.testinsure.dto.ClaimView(c.claimId, c.status, c.approvedAmount, c.remarks, c.raisedAt, c.resolvedAt, " +
+            "b.bookingId, b.status, b.paymentStatus, b.createdAt, u.userId, u.name, u.email, " +
+            "t.testId, t.name, t.cost, s.slotId, s.date, s.startTime, s.endTime, " +
+            "p.policyId, p.policyNumber, p.providerName) " +
+            "from InsuranceClaim c join c.booking b join b.user u join b.laboratoryTest t join b.timeSlot s join c.policy p ";
+
+    // Admin claims list
+    @Query(CLAIM_VIEW + "order by c.raisedAt desc, c.claimId desc")
+    List<ClaimView> findAllViews();
+
+    // Claims queue landing page: [status, count] rows, read from idx_claim_status_raised
+    @Query("select c.status, count(c) from InsuranceClaim c group by c.status")
+    List<Object[]> countByStatus();
+
+    // Patient dashboard: one patient's claims in a given status
+    @Query(CLAIM_VIEW + "where u.email = :email and c.status = :status order by c.raisedAt desc, c.claimId desc")
+    List<ClaimView> findViewsByUserEmailAndStatus(@Param("email") String email, @Param("status") ClaimStatus status);
+
+    // Bulk adjudication, first statement of the transaction: lock the claim rows, in id order so two
+    // overlapping calls can't deadlock. Whoever comes second then reads the status the first one committed.
+    @Query(value = "select claim_id from insurance_claims where claim_id in (:ids) order by claim_id for update", nativeQuery = true)
+    List<Long> lockForAdjudication(@Param("ids") Collection<Long> ids);
+
+    // Booking cancellation: the same lock, taken by booking before the booking (and with it the claim) is read
+    @Query(value = "select claim_id from insurance_claims where booking_id = :bookingId for update", nativeQuery = true)
+    List<Long> lockByBooking(@Param("bookingId") Long bookingId);
+
+    // Bulk adjudication: claims with everything the approve/reject rules touch, in one statement
+    @Query("select c from InsuranceClaim c " +
+           "join fetch c.booking b join fetch b.user join fetch b.laboratoryTest " +
+           "join fetch b.timeSlot s join fetch s.laboratoryTest " +
+           "join fetch c.policy p join fetch p.user " +
+           "where c.claimId in :ids")
+    List<InsuranceClaim> findAllForAdjudication(@Param("ids") Collection<Long> ids);
+
+    // Expiry sweeper: PENDING claims on the policies it just expired, as (claimId, raisedAt, expiryDate)
+    @Query("select c.claimId, c.raisedAt, p.expiryDate from InsuranceClaim c join c.policy p " +
+           "where p.policyId in :policyIds and p.status = com.testinsure.entity.PolicyStatus.EXPIRED " +
+           "and c.status = com.testinsure.entity.ClaimStatus.PENDING order by c.claimId")
+    List<Object[]> findPendingOnExpiredPolicies(@Param("policyIds") Collection<Long> policyIds);
+
+    // Auto-adjudication scan: next page of claim ids in a status, keyset on claimId
+    @Query("select c.claimId from InsuranceClaim c where c.status = :status and c.claimId > :after order by c.claimId")
+    List<Long> findIdsByStatusAfter(@Param("status") ClaimStatus status, @Param("after") Long after, Limit limit);
+
+    // Approve only if still PENDING, so a concurrent human decision is never overwritten
+    @Modifying
+    @Query("update InsuranceClaim c set c.status = com.testinsure.entity.ClaimStatus.APPROVED, " +
+           "c.resolvedAt = :at, c.approvedAmount = :amount " +
+           "where c.claimId = :claimId and c.status = com.testinsure.entity.ClaimStatus.PENDING")
+    int approveIfPending(@Param("claimId") Long claimId, @Param("amount") BigDecimal amount, @Param("at") LocalDateTime at);
+
+    // Export: flat rows streamed through RowStreamer with :from / :to. Columns match ExportService.CLAIM_COLUMNS.
+    String EXPORT_ROWS = "select c.claimId, c.raisedAt, c.resolvedAt, c.status, c.approvedAmount, c.remarks, " +
+           "b.bookingId, u.name, u.email, t.name, t.cost, p.policyNumber, p.providerName " +
+           "from InsuranceClaim c join c.booking b join b.user u join b.laboratoryTest t join c.policy p " +
+           "where c.raisedAt >= :from and c.raisedAt < :to order by c.raisedAt, c.claimId";
+
+    // Insurer batch cut-off: newest claim after the watermark old enough that its transaction has surely finished
+    @Query("select max(c.claimId) from InsuranceClaim c where c.claimId > :after and c.raisedAt < :before")
+    Long findMaxIdRaisedBefore(@Param("after") Long after, @Param("before") LocalDateTime before);
+
+    // Insurer batch files: claims in (:after, :upTo] as flat rows, streamed through RowStreamer.
+    // Columns match ClaimBatchExchange.BATCH_COLUMNS plus the provider last.
+    String BATCH_ROWS = "select c.claimId, c.raisedAt, c.status, b.bookingId, p.policyNumber, u.name, t.name, t.cost, p.providerName " +
+           "from InsuranceClaim c join c.booking b join b.user u join b.laboratoryTest t join c.policy p " +
+           "where c.claimId > :after and c.claimId <= :upTo order by c.claimId";
+}
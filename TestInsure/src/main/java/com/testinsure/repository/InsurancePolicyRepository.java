@@ -1,10 +1,51 @@
 package com.testinsure.repository;
 
+import com.testinsure.dto.PolicyBalance;
 import com.testinsure.entity.InsurancePolicy;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface InsurancePolicyRepository extends JpaRepository<InsurancePolicy, Long> {
     // Find policies belonging to a specific user
     List<InsurancePolicy> findByUser_UserId(Long userId);
-}
\ No newline at end of file
+
+    // Patient dashboard: every policy of the user with claim totals, grouped in one statement
+    @Query("select new com.testinsure.dto.PolicyBalance(p.policyId, p.policyNumber, p.providerName, p.status, p.expiryDate, " +
+           "p.coverageAmount + coalesce((select sum(e.amount) from CoverageLedgerEntry e where e.policy = p), 0), " +
+           "sum(case when c.status = com.testinsure.entity.ClaimStatus.PENDING then t.cost end), " +
+           "sum(case when c.status = com.testinsure.entity.ClaimStatus.APPROVED then c.approvedAmount end), " +
+           "count(case when c.status = com.testinsure.entity.ClaimStatus.PENDING then c.claimId end)) " +
+           "from InsurancePolicy p join p.user u " +
+           "left join InsuranceClaim c on c.policy = p left join c.booking b left join b.laboratoryTest t " +
+           "where u.email = :email " +
+           "group by p.policyId, p.policyNumber, p.providerName, p.status, p.expiryDate, p.coverageAmount " +
+           "order by p.expiryDate, p.policyId")
+    List<PolicyBalance> findBalancesByUserEmail(@Param("email") String email);
+
+    // Expiry sweeper: first chunk of ACTIVE policies that expired before 'today' (idx_policy_status_expiry).
+    // Rows are (policyId, expiryDate).
+    @Query("select p.policyId, p.expiryDate from InsurancePolicy p " +
+           "where p.status = com.testinsure.entity.PolicyStatus.ACTIVE and p.expiryDate < :today " +
+           "order by p.expiryDate, p.policyId")
+    List<Object[]> findExpiredActive(@Param("today") LocalDate today, Limit limit);
+
+    // ...and the next chunk, keyset on (expiryDate, policyId) so a chunk that failed isn't read again in the same run
+    @Query("select p.policyId, p.expiryDate from InsurancePolicy p " +
+           "where p.status = com.testinsure.entity.PolicyStatus.ACTIVE and p.expiryDate < :today " +
+           "and (p.expiryDate > :afterDate or (p.expiryDate = :afterDate and p.policyId > :afterId)) " +
+           "order by p.expiryDate, p.policyId")
+    List<Object[]> findExpiredActiveAfter(@Param("today") LocalDate today, @Param("afterDate") LocalDate afterDate,
+                                          @Param("afterId") Long afterId, Limit limit);
+
+    // Only policies still ACTIVE and past their date, so one blocked in the meantime stays BLOCKED
+    @Modifying
+    @Query("update InsurancePolicy p set p.status = com.testinsure.entity.PolicyStatus.EXPIRED " +
+           "where p.policyId in :ids and p.status = com.testinsure.entity.PolicyStatus.ACTIVE and p.expiryDate < :today")
+    int expireIfActive(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
+}
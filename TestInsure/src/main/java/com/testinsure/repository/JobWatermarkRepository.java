@@ -0,0 +1,7 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.JobWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobWatermarkRepository extends JpaRepository<JobWatermark, String> {
+}
@@ -2,7 +2,13 @@ package com.testinsure.repository;
 
 import com.testinsure.entity.LaboratoryTest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface LaboratoryTestRepository extends JpaRepository<LaboratoryTest, Long> {
     // We can add search methods here later if needed, e.g., findByName
-}
\ No newline at end of file
+
+    // Slot generation: one expansion per test at a time, until the caller's transaction ends
+    @Query(value = "select test_id from laboratory_tests where test_id = :testId for update", nativeQuery = true)
+    Long lockForSlotGeneration(@Param("testId") Long testId);
+}
@@ -0,0 +1,57 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ReportBlobRepository extends JpaRepository<ReportBlob, String> {
+
+    // One more report uses this blob, which makes it hot again; 0 if the blob isn't known yet
+    @Modifying
+    @Query("update ReportBlob b set b.refCount = b.refCount + 1, b.tier = :hot, b.hotSince = :now where b.sha256 = :sha256")
+    int addReference(@Param("sha256") String sha256, @Param("hot") StorageTier hot, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update ReportBlob b set b.refCount = b.refCount - 1 where b.sha256 = :sha256 and b.refCount > 0")
+    int dropReference(@Param("sha256") String sha256);
+
+    // Only removes the row if nothing took a new reference in the meantime
+    @Modifying
+    @Query("delete from ReportBlob b where b.sha256 = :sha256 and b.refCount = 0")
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+
+    // Stats: [blobs, bytes of content, bytes the reports would take without sharing]
+    @Query("select count(b), coalesce(sum(b.sizeBytes), 0), coalesce(sum(b.sizeBytes * b.refCount), 0) from ReportBlob b")
+    List<Object[]> findTotals();
+
+    // Stats: [tier, blobs, bytes of content, bytes taken in cold segments]
+    @Query("select b.tier, count(b), coalesce(sum(b.sizeBytes), 0), coalesce(sum(b.storedBytes), 0) from ReportBlob b group by b.tier")
+    List<Object[]> findTierTotals();
+
+    // Tiering: blobs in 'tier' since before the cut-off, oldest first (idx_blob_tier_hot_since)
+    @Query("select b from ReportBlob b where b.tier = :tier and b.hotSince < :cutoff order by b.hotSince, b.sha256")
+    List<ReportBlob> findByTierSince(@Param("tier") StorageTier tier, @Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // Next page of findByTierSince after (afterTime, afterSha)
+    @Query("select b from ReportBlob b where b.tier = :tier and b.hotSince < :cutoff " +
+           "and (b.hotSince > :afterTime or (b.hotSince = :afterTime and b.sha256 > :afterSha)) " +
+           "order by b.hotSince, b.sha256")
+    List<ReportBlob> findByTierSinceAfter(@Param("tier") StorageTier tier, @Param("cutoff") LocalDateTime cutoff,
+                                          @Param("afterTime") LocalDateTime afterTime, @Param("afterSha") String afterSha,
+                                          Limit limit);
+
+    // Record a blob's new home, unless it was re-uploaded (hot again) since it was picked
+    @Modifying
+    @Query("update ReportBlob b set b.tier = :tier, b.segment = :segment, b.segmentOffset = :offset, " +
+           "b.storedBytes = :storedBytes, b.compressed = :compressed " +
+           "where b.sha256 = :sha256 and b.tier = :from and b.hotSince < :cutoff")
+    int moveTier(@Param("sha256") String sha256, @Param("from") StorageTier from, @Param("cutoff") LocalDateTime cutoff,
+                 @Param("tier") StorageTier tier, @Param("segment") String segment, @Param("offset") Long offset,
+                 @Param("storedBytes") Long storedBytes, @Param("compressed") Boolean compressed);
+}
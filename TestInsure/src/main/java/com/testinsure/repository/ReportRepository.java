@@ -1,10 +1,24 @@
 package com.testinsure.repository;
 
+import com.testinsure.dto.ReportSummary;
 import com.testinsure.entity.Report;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ReportRepository extends JpaRepository<Report, Long> {
     // Find report by booking ID
     Optional<Report> findByBooking_BookingId(Long bookingId);
-}
\ No newline at end of file
+
+    // Bulk ingestion: the existing reports of a batch of bookings in one query
+    List<Report> findByBooking_BookingIdIn(Collection<Long> bookingIds);
+
+    // Patient dashboard: reports ready for download, newest first
+    @Query("select new com.testinsure.dto.ReportSummary(r.reportId, b.bookingId, t.name, r.uploadedAt) " +
+           "from Report r join r.booking b join b.user u join b.laboratoryTest t " +
+           "where u.email = :email order by r.uploadedAt desc, r.reportId desc")
+    List<ReportSummary> findSummariesByUserEmail(@Param("email") String email);
+}
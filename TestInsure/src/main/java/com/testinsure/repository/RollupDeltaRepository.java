@@ -0,0 +1,33 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.RollupDelta;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+
+public interface RollupDeltaRepository extends JpaRepository<RollupDelta, Long> {
+
+    // Analytics flush: the oldest pending deltas, locked so a second instance flushing at the
+    // same time waits and then skips the ones this flush deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from RollupDelta d order by d.deltaId")
+    List<RollupDelta> findOldestForFlush(Limit limit);
+
+    @Modifying
+    @Query("delete from RollupDelta d where d.deltaId in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select coalesce(max(d.deltaId), 0) from RollupDelta d")
+    Long findMaxId();
+
+    // Analytics rebuild: drop what it is about to recompute from the source tables
+    @Modifying
+    @Query("delete from RollupDelta d where d.deltaId <= :upTo")
+    int deleteUpTo(@Param("upTo") Long upTo);
+}
@@ -0,0 +1,38 @@
+package com.testinsure.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Runs the big flat reads (exports, insurer batches, analytics rebuild) forward-only, streaming
+// rows from the server for that one statement instead of switching the whole connection pool to
+// cursor fetch. The default fetch size, Integer.MIN_VALUE, is how MySQL Connector/J is told to
+// stream a single result set; other databases take a plain size (the h2 test profile sets 500).
+// A streaming MySQL statement holds its connection, so run nothing else in the transaction until
+// the stream is closed. Queries are the *_ROWS constants on the repositories.
+@Repository
+public class RowStreamer {
+
+    private final EntityManager entityManager;
+    private final int fetchSize;
+
+    public RowStreamer(EntityManager entityManager,
+                       @Value("${testinsure.streaming.fetch-size:-2147483648}") int fetchSize) {
+        this.entityManager = entityManager;
+        this.fetchSize = fetchSize;
+    }
+
+    // Rows of a select-list query; caller must close the stream
+    public Stream<Object[]> stream(String jpql, Map<String, Object> params) {
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        params.forEach(query::setParameter);
+        return query.getResultStream();
+    }
+}
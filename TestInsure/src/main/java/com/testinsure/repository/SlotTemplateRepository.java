@@ -0,0 +1,10 @@
+package com.testinsure.repository;
+
+import com.testinsure.entity.SlotTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface SlotTemplateRepository extends JpaRepository<SlotTemplate, Long> {
+    // Templates for a specific test
+    List<SlotTemplate> findByLaboratoryTest_TestId(Long testId);
+}
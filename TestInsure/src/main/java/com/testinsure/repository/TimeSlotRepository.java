@@ -1,10 +1,70 @@
 package com.testinsure.repository;
 
+import com.testinsure.dto.SlotAvailability;
+import com.testinsure.entity.BookingStatus;
 import com.testinsure.entity.TimeSlot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface TimeSlotRepository extends JpaRepository<TimeSlot, Long> {
     // Find all slots for a specific test
     List<TimeSlot> findByLaboratoryTest_TestId(Long testId);
-}
\ No newline at end of file
+
+    // Availability for a test in ONE query (remaining = capacity - booked_count).
+    // from/to are optional; the date filter runs in SQL on the (test_id, date) index.
+    @Query("select new com.testinsure.dto.SlotAvailability(s.slotId, s.date, s.startTime, s.endTime, s.capacity, s.bookedCount) " +
+           "from TimeSlot s where s.laboratoryTest.testId = :testId " +
+           "and (:from is null or s.date >= :from) and (:to is null or s.date <= :to) " +
+           "order by s.date, s.startTime")
+    List<SlotAvailability> findAvailability(@Param("testId") Long testId,
+                                            @Param("from") LocalDate from,
+                                            @Param("to") LocalDate to);
+
+    // Start date-times of the slots a test already has in a range (used to make template generation idempotent)
+    @Query("select s.date, s.startTime from TimeSlot s where s.laboratoryTest.testId = :testId " +
+           "and s.date between :from and :to")
+    List<Object[]> findStartTimes(@Param("testId") Long testId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Take one seat in a single statement. Returns 1 if reserved, 0 if the slot is full.
+    // The row lock taken by the UPDATE is what serializes concurrent bookings.
+    @Modifying
+    @Query("update TimeSlot s set s.bookedCount = s.bookedCount + 1 " +
+           "where s.slotId = :slotId and s.bookedCount < s.capacity")
+    int reserveSeat(@Param("slotId") Long slotId);
+
+    // Take several seats at once for a batch admitted by BookingAdmissionQueue.
+    // All-or-nothing: returns 0 if the batch no longer fits.
+    @Modifying
+    @Query("update TimeSlot s set s.bookedCount = s.bookedCount + :seats " +
+           "where s.slotId = :slotId and s.bookedCount + :seats <= s.capacity")
+    int reserveSeats(@Param("slotId") Long slotId, @Param("seats") int seats);
+
+    // Give a seat back (cancellation / rejected claim). Never goes below zero.
+    @Modifying
+    @Query("update TimeSlot s set s.bookedCount = s.bookedCount - 1 " +
+           "where s.slotId = :slotId and s.bookedCount > 0")
+    int releaseSeat(@Param("slotId") Long slotId);
+
+    // Give back several seats at once (bulk claim rejection); never drops below zero
+    @Modifying
+    @Query("update TimeSlot s set s.bookedCount = case when s.bookedCount > :seats then s.bookedCount - :seats else 0 end " +
+           "where s.slotId = :slotId and s.bookedCount > 0")
+    int releaseSeats(@Param("slotId") Long slotId, @Param("seats") int seats);
+
+    // One-off backfill for slots up to :upTo that were created before booked_count existed.
+    // Only counters still at 0 that have live bookings are written, so a seat taken through
+    // reserveSeat is never overwritten.
+    @Modifying
+    @Query("update TimeSlot s set s.bookedCount = " +
+           "(select count(b) from Booking b where b.timeSlot = s and b.status <> :cancelled) " +
+           "where s.slotId <= :upTo and s.bookedCount = 0 " +
+           "and exists (select b from Booking b where b.timeSlot = s and b.status <> :cancelled)")
+    int backfillBookedCounts(@Param("upTo") Long upTo, @Param("cancelled") BookingStatus cancelled);
+
+    @Query("select max(s.slotId) from TimeSlot s")
+    Long findMaxSlotId();
+}
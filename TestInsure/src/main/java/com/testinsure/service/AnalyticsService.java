@@ -0,0 +1,398 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.AnalyticsReport;
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.ClaimStatus;
+import com.testinsure.entity.DailyRollup;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.entity.PaymentStatus;
+import com.testinsure.entity.RollupDelta;
+import com.testinsure.entity.RollupMetric;
+import com.testinsure.event.BookingChangedEvent;
+import com.testinsure.event.ClaimChangedEvent;
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.DailyRollupRepository;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.repository.RollupDeltaRepository;
+import com.testinsure.repository.RowStreamer;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * Reporting without scanning claims and bookings.
+ *
+ * BookingService and InsuranceClaimService publish a BookingChangedEvent / ClaimChangedEvent for
+ * every state change. The events of one transaction are coalesced into (metric, day, dimension)
+ * -> count + amount deltas and, just before it commits, inserted into rollup_deltas as part of
+ * that same transaction: a change is counted if and only if it commits, and a restart or crash
+ * loses nothing. Every flush-interval-ms the pending deltas are added onto the daily_rollups rows
+ * and deleted, in one transaction (one row per key touched, however many events hit it).
+ * Callers only ever append, so busy days and providers are not hot rows for every booking.
+ * Approval latency is kept as a log-scale histogram: a row per day and bucket.
+ *
+ * A report reads the rollup rows of its date range only, so its cost depends on the range and
+ * the number of providers / tests, not on how many claims or bookings exist. rebuild()
+ * recomputes everything from the source tables if the rollups are ever lost or doubted.
+ */
+@Service
+public class AnalyticsService {
+
+    private static final int DEFAULT_DAYS = 30;
+    private static final int MAX_DAYS = 366;
+    private static final int LATENCY_BUCKETS = 128;
+    private static final int FLUSH_BATCH = 5000;
+
+    private final DailyRollupRepository rollupRepository;
+    private final RollupDeltaRepository deltaRepository;
+    private final RowStreamer rowStreamer;
+    private final LaboratoryTestRepository testRepository;
+    private final TestCatalogCache catalogCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Object flushLock = new Object();
+
+    private final AtomicLong eventsApplied = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile LocalDateTime lastFlushAt;
+    private volatile String lastFlushError;
+
+    public AnalyticsService(DailyRollupRepository rollupRepository, RollupDeltaRepository deltaRepository,
+                            RowStreamer rowStreamer, LaboratoryTestRepository testRepository,
+                            TestCatalogCache catalogCache, PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.deltaRepository = deltaRepository;
+        this.rowStreamer = rowStreamer;
+        this.testRepository = testRepository;
+        this.catalogCache = catalogCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Runs in the publisher's transaction, so only committed changes are counted
+    @EventListener
+    public void onClaimChanged(ClaimChangedEvent event) {
+        String provider = event.getProvider();
+        LocalDate day = event.getAt().toLocalDate();
+        switch (event.getType()) {
+            case RAISED -> add(RollupMetric.CLAIMS_RAISED, day, provider, event.getAmount());
+            case APPROVED -> {
+                add(RollupMetric.CLAIMS_APPROVED, day, provider, event.getAmount());
+                if (event.getRaisedAt() != null) {
+                    add(RollupMetric.APPROVAL_LATENCY, day, latencyBucket(event.getRaisedAt(), event.getAt()), BigDecimal.ZERO);
+                }
+            }
+            case REJECTED -> add(RollupMetric.CLAIMS_REJECTED, day, provider, event.getAmount());
+        }
+        eventsApplied.incrementAndGet();
+    }
+
+    @EventListener
+    public void onBookingChanged(BookingChangedEvent event) {
+        LocalDate day = event.getAt().toLocalDate();
+        String testId = String.valueOf(event.getTestId());
+        switch (event.getType()) {
+            case BOOKED -> add(RollupMetric.BOOKINGS, day, testId, event.getAmount());
+            case PAID -> add(RollupMetric.PAYMENTS, day, testId, event.getAmount());
+            case CANCELLED -> add(RollupMetric.CANCELLATIONS, day, testId, event.getAmount());
+        }
+        eventsApplied.incrementAndGet();
+    }
+
+    private void add(RollupMetric metric, LocalDate day, String dimension, BigDecimal amount) {
+        DailyRollup.Key key = new DailyRollup.Key(metric, day, dimension);
+        BigDecimal value = amount == null ? BigDecimal.ZERO : amount;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // No transaction to join
+            deltaRepository.save(new RollupDelta(key, 1, value));
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.deltas.computeIfAbsent(key, k -> new Delta()).add(1, value);
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.analytics.flush-interval-ms:5000}",
+               fixedDelayString = "${testinsure.analytics.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    // Add the pending deltas onto the rollups; returns how many rollup rows changed.
+    // One flush at a time per instance, so two flushes never insert the same new key. If one
+    // fails, its batch stays in rollup_deltas and the next flush picks it up again.
+    public int flush() {
+        synchronized (flushLock) {
+            int written = 0;
+            try {
+                int batch;
+                do {
+                    int[] result = transactionTemplate.execute(status -> flushBatch());
+                    batch = result[0];
+                    written += result[1];
+                } while (batch == FLUSH_BATCH);
+            } catch (RuntimeException e) {
+                lastFlushError = e.getMessage();
+                throw e;
+            }
+            if (written > 0) {
+                flushes.incrementAndGet();
+                rowsWritten.addAndGet(written);
+                lastFlushAt = LocalDateTime.now();
+                lastFlushError = null;
+            }
+            return written;
+        }
+    }
+
+    // [deltas read, rollup rows changed]
+    private int[] flushBatch() {
+        List<RollupDelta> pending = deltaRepository.findOldestForFlush(Limit.of(FLUSH_BATCH));
+        if (pending.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        Map<DailyRollup.Key, Delta> deltas = new HashMap<>();
+        for (RollupDelta d : pending) {
+            deltas.computeIfAbsent(d.getKey(), k -> new Delta()).add(d.getCount(), d.getAmount());
+        }
+        Map<DailyRollup.Key, DailyRollup> rows = new HashMap<>();
+        rollupRepository.findAllById(deltas.keySet()).forEach(r -> rows.put(r.getId(), r));
+        deltas.forEach((key, delta) -> rows.computeIfAbsent(key, DailyRollup::new).add(delta.count, delta.amount));
+        rollupRepository.saveAll(rows.values());
+        deltaRepository.deleteByIds(pending.stream().map(RollupDelta::getDeltaId).toList());
+        return new int[]{pending.size(), rows.size()};
+    }
+
+    public AnalyticsReport getReport(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+        if (start.isAfter(end)) {
+            throw new RuntimeException("from cannot be after to");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_DAYS) {
+            throw new RuntimeException("Date range too large (max " + MAX_DAYS + " days)");
+        }
+        flush(); // Include what happened in the last few seconds
+
+        Map<Long, String> testNames = new HashMap<>();
+        for (LaboratoryTest test : catalogCache.get().getTests()) {
+            testNames.put(test.getTestId(), test.getName());
+        }
+
+        Map<String, AnalyticsReport.ProviderDay> claims = new LinkedHashMap<>();
+        Map<String, AnalyticsReport.TestDay> revenue = new LinkedHashMap<>();
+        long[] latency = new long[LATENCY_BUCKETS];
+
+        // Rows come back ordered by day, so the per-day lists are too
+        for (DailyRollup r : rollupRepository.findByDayBetween(start, end)) {
+            switch (r.getMetric()) {
+                case CLAIMS_RAISED -> providerDay(claims, r).raised(r.getCount(), r.getAmount());
+                case CLAIMS_APPROVED -> providerDay(claims, r).approved(r.getCount(), r.getAmount());
+                case CLAIMS_REJECTED -> providerDay(claims, r).rejected(r.getCount(), r.getAmount());
+                case APPROVAL_LATENCY -> latency[Integer.parseInt(r.getDimension())] += r.getCount();
+                case BOOKINGS -> testDay(revenue, r, testNames).booked(r.getCount());
+                case PAYMENTS -> testDay(revenue, r, testNames).paid(r.getCount(), r.getAmount());
+                case CANCELLATIONS -> testDay(revenue, r, testNames).cancelled(r.getCount(), r.getAmount());
+            }
+        }
+
+        // Tests the catalog doesn't know (e.g. deleted since): one lookup for all of them
+        Set<Long> unnamed = new HashSet<>();
+        revenue.values().forEach(d -> { if (d.getTestName() == null) unnamed.add(d.getTestId()); });
+        if (!unnamed.isEmpty()) {
+            testRepository.findAllById(unnamed).forEach(t -> testNames.put(t.getTestId(), t.getName()));
+            revenue.replaceAll((k, d) -> d.getTestName() != null ? d : d.named(testNames.get(d.getTestId())));
+        }
+
+        AnalyticsReport report = new AnalyticsReport(start, end, percentiles(latency));
+        report.getClaims().addAll(claims.values());
+        report.getRevenue().addAll(revenue.values());
+        return report;
+    }
+
+    // Recompute every rollup from bookings and claims (admin repair). Live events that commit
+    // while this runs are still added on top, but deltas pending before it are dropped as the
+    // rebuild reads them itself. Returns how many rollup rows were written.
+    //   Limitation: nothing records when a booking was cancelled, so rebuilt cancellations are
+    //   dated on the booking day (resolution day for claims that were approved first).
+    public int rebuild() {
+        synchronized (flushLock) {
+            Map<DailyRollup.Key, Delta> totals = new HashMap<>();
+            Integer written = transactionTemplate.execute(status -> {
+                deltaRepository.deleteUpTo(deltaRepository.findMaxId());
+                try (Stream<Object[]> rows = rowStreamer.stream(BookingRepository.ROLLUP_ROWS, Map.of())) {
+                    rows.forEach(row -> replay(row, totals));
+                }
+                rollupRepository.deleteAllRollups();
+                rollupRepository.saveAll(totals.entrySet().stream().map(e -> {
+                    DailyRollup rollup = new DailyRollup(e.getKey());
+                    rollup.add(e.getValue().count, e.getValue().amount);
+                    return rollup;
+                }).toList());
+                return totals.size();
+            });
+            rowsWritten.addAndGet(written);
+            lastFlushAt = LocalDateTime.now();
+            return written;
+        }
+    }
+
+    // One row of BookingRepository.ROLLUP_ROWS, as the events it would have produced
+    private static void replay(Object[] row, Map<DailyRollup.Key, Delta> totals) {
+        String testId = String.valueOf(row[0]);
+        BigDecimal cost = (BigDecimal) row[1];
+        LocalDate booked = ((LocalDateTime) row[2]).toLocalDate();
+        BookingStatus status = (BookingStatus) row[3];
+        PaymentStatus payment = (PaymentStatus) row[4];
+        ClaimStatus claimStatus = (ClaimStatus) row[5];
+        LocalDateTime raisedAt = (LocalDateTime) row[6];
+        LocalDateTime resolvedAt = (LocalDateTime) row[7];
+        BigDecimal approvedAmount = (BigDecimal) row[8];
+        String provider = (String) row[9];
+
+        tally(totals, RollupMetric.BOOKINGS, booked, testId, cost);
+        if (claimStatus == null) {
+            // Card / cash: paid at booking
+            if (payment == PaymentStatus.PAID) {
+                tally(totals, RollupMetric.PAYMENTS, booked, testId, cost);
+                if (status == BookingStatus.CANCELLED) {
+                    tally(totals, RollupMetric.CANCELLATIONS, booked, testId, cost);
+                }
+            } else if (status == BookingStatus.CANCELLED) {
+                tally(totals, RollupMetric.CANCELLATIONS, booked, testId, BigDecimal.ZERO);
+            }
+            return;
+        }
+
+        LocalDate raised = raisedAt != null ? raisedAt.toLocalDate() : booked;
+        LocalDate resolved = resolvedAt != null ? resolvedAt.toLocalDate() : raised;
+        tally(totals, RollupMetric.CLAIMS_RAISED, raised, provider, cost);
+        // A rejected claim on a PAID booking was approved first and cancelled later
+        boolean wasApproved = claimStatus == ClaimStatus.APPROVED || payment == PaymentStatus.PAID;
+        if (wasApproved) {
+            BigDecimal amount = approvedAmount != null ? approvedAmount : cost;
+            tally(totals, RollupMetric.CLAIMS_APPROVED, resolved, provider, amount);
+            tally(totals, RollupMetric.PAYMENTS, resolved, testId, amount);
+            if (raisedAt != null && resolvedAt != null) {
+                tally(totals, RollupMetric.APPROVAL_LATENCY, resolved, latencyBucket(raisedAt, resolvedAt), BigDecimal.ZERO);
+            }
+        }
+        if (claimStatus == ClaimStatus.REJECTED) {
+            tally(totals, RollupMetric.CLAIMS_REJECTED, resolved, provider, cost);
+            tally(totals, RollupMetric.CANCELLATIONS, resolved, testId, wasApproved ? cost : BigDecimal.ZERO);
+        }
+    }
+
+    private static void tally(Map<DailyRollup.Key, Delta> totals, RollupMetric metric, LocalDate day, String dimension, BigDecimal amount) {
+        totals.computeIfAbsent(new DailyRollup.Key(metric, day, dimension), k -> new Delta()).add(1, amount);
+    }
+
+    // Histogram bucket of a latency: floor(4 * log2(seconds + 1)), i.e. each bucket ~19% wider than the last
+    static String latencyBucket(LocalDateTime raisedAt, LocalDateTime resolvedAt) {
+        long seconds = Math.max(0, Duration.between(raisedAt, resolvedAt).getSeconds());
+        int bucket = (int) Math.floor(4 * Math.log(seconds + 1) / Math.log(2));
+        return String.valueOf(Math.min(bucket, LATENCY_BUCKETS - 1));
+    }
+
+    // Largest latency (seconds) that falls into a bucket
+    static long bucketUpperSeconds(int bucket) {
+        return (long) Math.ceil(Math.pow(2, (bucket + 1) / 4.0) - 1);
+    }
+
+    private static AnalyticsReport.Latency percentiles(long[] histogram) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return new AnalyticsReport.Latency(0, null, null, null);
+        }
+        return new AnalyticsReport.Latency(total, percentile(histogram, total, 0.50),
+                percentile(histogram, total, 0.90), percentile(histogram, total, 0.99));
+    }
+
+    private static Long percentile(long[] histogram, long total, double p) {
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            seen += histogram[b];
+            if (seen >= rank) {
+                return bucketUpperSeconds(b);
+            }
+        }
+        return bucketUpperSeconds(histogram.length - 1);
+    }
+
+    private static AnalyticsReport.ProviderDay providerDay(Map<String, AnalyticsReport.ProviderDay> days, DailyRollup r) {
+        return days.computeIfAbsent(r.getDay() + "|" + r.getDimension(), k -> new AnalyticsReport.ProviderDay(r.getDay(), r.getDimension()));
+    }
+
+    private static AnalyticsReport.TestDay testDay(Map<String, AnalyticsReport.TestDay> days, DailyRollup r, Map<Long, String> names) {
+        return days.computeIfAbsent(r.getDay() + "|" + r.getDimension(), k -> {
+            Long testId = Long.valueOf(r.getDimension());
+            return new AnalyticsReport.TestDay(r.getDay(), testId, names.get(testId));
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingDeltas", deltaRepository.count());
+        stats.put("eventsApplied", eventsApplied.get());
+        stats.put("flushes", flushes.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("lastFlushAt", lastFlushAt);
+        stats.put("lastFlushError", lastFlushError);
+        return stats;
+    }
+
+    // The coalesced deltas of one transaction, inserted just before it commits
+    private class Pending implements TransactionSynchronization {
+        private final Map<DailyRollup.Key, Delta> deltas = new HashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            deltaRepository.saveAll(deltas.entrySet().stream()
+                    .map(e -> new RollupDelta(e.getKey(), e.getValue().count, e.getValue().amount)).toList());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AnalyticsService.this);
+        }
+    }
+
+    // Pending change to one rollup row
+    private static class Delta {
+        private long count;
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        void add(long count, BigDecimal amount) {
+            this.count += count;
+            this.amount = this.amount.add(amount);
+        }
+
+    }
+}
@@ -0,0 +1,151 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.AutoAdjudicationReport;
+import com.testinsure.entity.ClaimStatus;
+import com.testinsure.repository.InsuranceClaimRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Background auto-adjudication (testinsure.claims.auto.*).
+ *
+ * Every interval-ms the worker walks the PENDING claims in id order, chunk-size ids at a
+ * time, and hands each chunk to InsuranceClaimService.autoApprove on a small fixed pool.
+ * Claims that pass ClaimAutoRules are approved exactly as approveClaim would; the rest are
+ * left PENDING for an admin, with the reason counted in the report. At most 'threads'
+ * chunks are in flight so a large backlog cannot flood the connection pool.
+ *
+ * Dry run goes through the same rules and reports what would be approved without writing.
+ */
+@Component
+public class AutoAdjudicationWorker {
+
+    private final InsuranceClaimService claimService;
+    private final InsuranceClaimRepository claimRepository;
+    private final ClaimAutoRules rules;
+    private final boolean enabled;
+    private final boolean dryRun;
+    private final int chunkSize;
+    private final int threads;
+
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Lifetime numbers for /auto-adjudicate/stats
+    private long runs;
+    private long scanned;
+    private long approved;
+    private long leftForReview;
+    private long failed;
+    private AutoAdjudicationReport lastRun;
+
+    public AutoAdjudicationWorker(InsuranceClaimService claimService,
+                                  InsuranceClaimRepository claimRepository,
+                                  ClaimAutoRules rules,
+                                  @Value("${testinsure.claims.auto.enabled:false}") boolean enabled,
+                                  @Value("${testinsure.claims.auto.dry-run:false}") boolean dryRun,
+                                  @Value("${testinsure.claims.auto.chunk-size:200}") int chunkSize,
+                                  @Value("${testinsure.claims.auto.threads:4}") int threads) {
+        this.claimService = claimService;
+        this.claimRepository = claimRepository;
+        this.rules = rules;
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.threads = Math.max(1, threads);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "claim-auto-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.claims.auto.interval-ms:60000}",
+               fixedDelayString = "${testinsure.claims.auto.interval-ms:60000}")
+    public void scheduledRun() {
+        if (enabled && !running.get()) {
+            run(dryRun);
+        }
+    }
+
+    // One pass over every PENDING claim. Also used by the admin endpoint.
+    public AutoAdjudicationReport run(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Auto-adjudication is already running");
+        }
+        try {
+            AutoAdjudicationReport report = new AutoAdjudicationReport(dryRun);
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+
+            Semaphore inFlight = new Semaphore(threads);
+            Long after = 0L;
+            List<Long> ids;
+            while (!(ids = claimRepository.findIdsByStatusAfter(ClaimStatus.PENDING, after, Limit.of(chunkSize))).isEmpty()) {
+                after = ids.get(ids.size() - 1);
+                inFlight.acquireUninterruptibly();
+                List<Long> chunk = ids;
+                executor.execute(() -> {
+                    try {
+                        report.add(claimService.autoApprove(chunk, rules, dryRun));
+                    } catch (RuntimeException e) {
+                        report.failed(chunk.size(), e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquireUninterruptibly(threads); // Wait for the last chunks
+
+            report.finished(startedAt, (System.nanoTime() - start) / 1_000_000);
+            record(report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private synchronized void record(AutoAdjudicationReport report) {
+        runs++;
+        scanned += report.getScanned();
+        if (!report.isDryRun()) {
+            approved += report.getApproved();
+        }
+        leftForReview += report.getLeftForReview();
+        failed += report.getFailed();
+        lastRun = report;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("runs", runs);
+        stats.put("scanned", scanned);
+        stats.put("approved", approved);
+        stats.put("leftForReview", leftForReview);
+        stats.put("failed", failed);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
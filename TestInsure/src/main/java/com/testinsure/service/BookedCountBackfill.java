@@ -0,0 +1,51 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.JobWatermark;
+import com.testinsure.repository.JobWatermarkRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+ * One-off data migration for time_slots.booked_count (the seat counter kept by reserveSeat /
+ * releaseSeat). Slots created before the column existed got 0, whatever their bookings.
+ *
+ * On the first start after the upgrade this counts the live bookings of those slots, once, and
+ * records the highest slot id it covered in the "slot-booked-count" job watermark. Every later
+ * start finds the watermark and does nothing, so there is no table-wide UPDATE on each boot.
+ * Within the one run only counters still at 0 are written: a slot that has already taken a
+ * seat through reserveSeat is left alone, and newer slots (above the watermark) start at 0
+ * correctly anyway.
+ */
+@Component
+public class BookedCountBackfill {
+
+    static final String WATERMARK = "slot-booked-count";
+
+    private final TimeSlotRepository timeSlotRepository;
+    private final JobWatermarkRepository watermarkRepository;
+
+    public BookedCountBackfill(TimeSlotRepository timeSlotRepository, JobWatermarkRepository watermarkRepository) {
+        this.timeSlotRepository = timeSlotRepository;
+        this.watermarkRepository = watermarkRepository;
+    }
+
+    // Returns the number of slots fixed (0 once it has run)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public int backfill() {
+        if (watermarkRepository.existsById(WATERMARK)) {
+            return 0;
+        }
+        Long upTo = timeSlotRepository.findMaxSlotId();
+        int fixed = upTo == null ? 0 : timeSlotRepository.backfillBookedCounts(upTo, BookingStatus.CANCELLED);
+
+        JobWatermark watermark = new JobWatermark(WATERMARK);
+        watermark.setLastId(upTo == null ? 0L : upTo);
+        watermarkRepository.save(watermark);
+        return fixed;
+    }
+}
@@ -0,0 +1,163 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.BookingRequest;
+import com.testinsure.entity.Booking;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Optional single-writer admission for hot slots (testinsure.booking.admission.enabled).
+ *
+ * Every slot is pinned to one of a fixed number of worker threads (slotId mod workers),
+ * so bookings for the same slot never fight over its row. A worker takes whatever has
+ * queued up (up to batch-size) and hands it to BookingService.createBookingBatch, which
+ * admits it in one transaction. Callers block on a future until their batch commits.
+ */
+@Component
+public class BookingAdmissionQueue {
+
+    private final BookingService bookingService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long timeoutMs;
+
+    private final List<BlockingQueue<Ticket>> shards = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public BookingAdmissionQueue(BookingService bookingService,
+                                 @Value("${testinsure.booking.admission.enabled:false}") boolean enabled,
+                                 @Value("${testinsure.booking.admission.workers:4}") int workerCount,
+                                 @Value("${testinsure.booking.admission.batch-size:64}") int batchSize,
+                                 @Value("${testinsure.booking.admission.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${testinsure.booking.admission.timeout-ms:10000}") long timeoutMs) {
+        this.bookingService = bookingService;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.timeoutMs = timeoutMs;
+
+        if (enabled) {
+            for (int i = 0; i < Math.max(1, workerCount); i++) {
+                BlockingQueue<Ticket> queue = new LinkedBlockingQueue<>(queueCapacity);
+                Thread worker = new Thread(() -> drain(queue), "booking-admission-" + i);
+                worker.setDaemon(true);
+                shards.add(queue);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Queue a booking on its slot's shard and wait for the batch it lands in to commit
+    public Booking submit(String userEmail, BookingRequest request) {
+        if (request.getSlotId() == null) {
+            throw new RuntimeException("Slot not found");
+        }
+
+        Ticket ticket = new Ticket(userEmail, request);
+        BlockingQueue<Ticket> shard = shards.get(Math.floorMod(request.getSlotId().hashCode(), shards.size()));
+        if (!running || !shard.offer(ticket)) {
+            throw new RuntimeException("Too many bookings in progress for this slot, please try again.");
+        }
+
+        try {
+            return ticket.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Booking failed", e.getCause());
+        } catch (TimeoutException e) {
+            // The ticket may still commit later; the patient will see it under "My Bookings"
+            throw new RuntimeException("Booking is taking longer than expected, please check your bookings.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Booking interrupted");
+        }
+    }
+
+    private void drain(BlockingQueue<Ticket> queue) {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            commit(batch);
+            batch.clear();
+        }
+
+        // Shutting down: whatever is still queued will never be admitted
+        queue.drainTo(batch);
+        batch.forEach(t -> t.result.completeExceptionally(new RuntimeException("Booking service is shutting down")));
+    }
+
+    private void commit(List<Ticket> batch) {
+        try {
+            bookingService.createBookingBatch(batch);
+        } catch (RuntimeException e) {
+            // The group commit rolled back: nothing in it was saved, so retry each ticket
+            // on its own so one bad row cannot fail its neighbours.
+            for (Ticket ticket : batch) {
+                ticket.booking = null;
+                ticket.error = null;
+                try {
+                    ticket.booking = bookingService.createBooking(ticket.userEmail, ticket.request);
+                } catch (RuntimeException single) {
+                    ticket.error = single;
+                }
+            }
+        }
+
+        // Only now, after commit, tell the callers
+        for (Ticket ticket : batch) {
+            if (ticket.error != null) {
+                ticket.result.completeExceptionally(ticket.error);
+            } else {
+                ticket.result.complete(ticket.booking);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    // One queued booking request and its outcome
+    public static class Ticket {
+        private final String userEmail;
+        private final BookingRequest request;
+        private final CompletableFuture<Booking> result = new CompletableFuture<>();
+        private Booking booking;
+        private RuntimeException error;
+
+        Ticket(String userEmail, BookingRequest request) {
+            this.userEmail = userEmail;
+            this.request = request;
+        }
+
+        public String getUserEmail() { return userEmail; }
+        public BookingRequest getRequest() { return request; }
+
+        public void setBooking(Booking booking) { this.booking = booking; }
+        public void setError(RuntimeException error) { this.error = error; }
+    }
+}
@@ -1,12 +1,31 @@
 package com.testinsure.service;
 
+import com.testinsure.dto.BookingFilter;
 import com.testinsure.dto.BookingRequest;
+import com.testinsure.dto.BookingView;
+import com.testinsure.dto.Cursor;
+import com.testinsure.dto.CursorPage;
 import com.testinsure.entity.*;
+import com.testinsure.event.BookingChangedEvent;
+import com.testinsure.event.ClaimChangedEvent;
+import com.testinsure.event.SlotChangedEvent;
 import com.testinsure.repository.*;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class BookingService {
@@ -16,24 +35,34 @@ public class BookingService {
 	 * 2)Cancel Booking(Includes Refund)
 	 * 3)Get my Bookings(Patient)
 	 * 4)Get all Bookings(Admin)
+	 * 5)Create Booking Batch (group commit for BookingAdmissionQueue)
+	 * 6)Search Bookings (Admin, keyset paginated)
 	 */
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final LaboratoryTestRepository testRepository;
     private final TimeSlotRepository slotRepository;
     private final InsurancePolicyRepository policyRepository;
     private final InsuranceClaimRepository claimRepository;
+    private final CoverageLedger coverageLedger;
+    private final ApplicationEventPublisher eventPublisher;
 
     public BookingService(BookingRepository bookingRepository, UserRepository userRepository,
                           LaboratoryTestRepository testRepository, TimeSlotRepository slotRepository,
-                          InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository) {
+                          InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository,
+                          CoverageLedger coverageLedger, ApplicationEventPublisher eventPublisher) {
         this.bookingRepository = bookingRepository;
         this.userRepository = userRepository;
         this.testRepository = testRepository;
         this.slotRepository = slotRepository;
         this.policyRepository = policyRepository;
         this.claimRepository = claimRepository;
+        this.coverageLedger = coverageLedger;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -54,18 +83,20 @@ public class BookingService {
             throw new RuntimeException("You have already booked this time slot!");
         }
 
-        // FIX 2: Check REAL Capacity (Total - Active Bookings)
-        int activeBookings = bookingRepository.countByTimeSlot_SlotIdAndStatusNot(slot.getSlotId(), BookingStatus.CANCELLED);
-        if (activeBookings >= slot.getCapacity()) {
-            throw new RuntimeException("Slot is fully booked.");
-        }
-
         Booking booking = new Booking();
         booking.setUser(user);
         booking.setLaboratoryTest(test);
         booking.setTimeSlot(slot);
         booking.setStatus(BookingStatus.CONFIRMED); 
 
+        // FIX 2: Reserve the seat with one conditional UPDATE (booked < capacity).
+        // Done as late as possible so the slot row lock is held only until commit;
+        // any exception below rolls the reservation back with the transaction.
+        if (slotRepository.reserveSeat(slot.getSlotId()) == 0) {
+            throw new RuntimeException("Slot is fully booked.");
+        }
+        eventPublisher.publishEvent(SlotChangedEvent.booked(slot.getLaboratoryTest().getTestId(), slot.getSlotId(), 1));
+
         if (request.getIsInsurance()) {
             // INSURANCE FLOW
             booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
@@ -74,37 +105,143 @@ public class BookingService {
             
             InsurancePolicy policy = policyRepository.findById(request.getPolicyId())
                     .orElseThrow(() -> new RuntimeException("Policy not found"));
-
-            // Check Balance
-            if (policy.getCoverageAmount().compareTo(test.getCost()) < 0) {
-                throw new RuntimeException("Insufficient Insurance Coverage! Remaining: " + policy.getCoverageAmount());
-            }
-
-            // FIX: Deduct Immediately
-            policy.setCoverageAmount(policy.getCoverageAmount().subtract(test.getCost()));
-            policyRepository.save(policy);
+            checkUsable(policy);
 
             booking = bookingRepository.save(booking);
 
+            // FIX: Deduct Immediately (ledger debit; throws if the balance is too low)
+            coverageLedger.debit(policy, test.getCost(), booking);
+
             InsuranceClaim claim = new InsuranceClaim();
             claim.setBooking(booking);
             claim.setPolicy(policy);
             claim.setStatus(ClaimStatus.PENDING);
             claim.setRemarks("Auto-generated claim");
             claimRepository.save(claim);
+            eventPublisher.publishEvent(ClaimChangedEvent.raised(policy.getProviderName(), test.getCost(), LocalDateTime.now()));
 
         } else {
             // CARD / CASH FLOW (FIX: Mark PAID immediately)
             // Since frontend simulated the card entry, we treat this as successful.
             booking.setPaymentStatus(PaymentStatus.PAID);
             booking = bookingRepository.save(booking);
+            eventPublisher.publishEvent(BookingChangedEvent.paid(test.getTestId(), test.getCost()));
         }
 
+        eventPublisher.publishEvent(BookingChangedEvent.booked(test.getTestId(), test.getCost()));
         return booking;
     }
 
+    // Group commit for BookingAdmissionQueue: the whole batch is one transaction.
+    // Capacity is decided in memory against the slot's current count, then taken with
+    // one reserveSeats UPDATE per slot. Each ticket gets either its booking or its error;
+    // if the transaction itself fails, the queue retries the tickets one by one.
+    @Transactional
+    public void createBookingBatch(List<BookingAdmissionQueue.Ticket> tickets) {
+        Map<Long, List<BookingAdmissionQueue.Ticket>> bySlot = new LinkedHashMap<>();
+        for (BookingAdmissionQueue.Ticket ticket : tickets) {
+            bySlot.computeIfAbsent(ticket.getRequest().getSlotId(), id -> new ArrayList<>()).add(ticket);
+        }
+
+        List<Booking> bookings = new ArrayList<>();
+        List<InsuranceClaim> claims = new ArrayList<>();
+
+        for (Map.Entry<Long, List<BookingAdmissionQueue.Ticket>> entry : bySlot.entrySet()) {
+            TimeSlot slot = slotRepository.findById(entry.getKey()).orElse(null);
+            if (slot == null) {
+                entry.getValue().forEach(t -> t.setError(new RuntimeException("Slot not found")));
+                continue;
+            }
+
+            int free = slot.getCapacity() - slot.getBookedCount();
+            Set<Long> bookedUsers = new HashSet<>();
+            int admitted = 0;
+
+            for (BookingAdmissionQueue.Ticket ticket : entry.getValue()) {
+                try {
+                    BookingRequest request = ticket.getRequest();
+                    User user = userRepository.findByEmail(ticket.getUserEmail())
+                            .orElseThrow(() -> new RuntimeException("User not found"));
+
+                    LaboratoryTest test = testRepository.findById(request.getTestId())
+                            .orElseThrow(() -> new RuntimeException("Test not found"));
+
+                    if (bookedUsers.contains(user.getUserId())
+                            || bookingRepository.existsByUser_UserIdAndTimeSlot_SlotIdAndStatusNot(
+                                    user.getUserId(), slot.getSlotId(), BookingStatus.CANCELLED)) {
+                        throw new RuntimeException("You have already booked this time slot!");
+                    }
+
+                    if (admitted >= free) {
+                        throw new RuntimeException("Slot is fully booked.");
+                    }
+
+                    Booking booking = new Booking();
+                    booking.setUser(user);
+                    booking.setLaboratoryTest(test);
+                    booking.setTimeSlot(slot);
+                    booking.setStatus(BookingStatus.CONFIRMED);
+
+                    if (request.getIsInsurance()) {
+                        booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
+
+                        if (request.getPolicyId() == null) throw new RuntimeException("Policy ID required");
+
+                        InsurancePolicy policy = policyRepository.findById(request.getPolicyId())
+                                .orElseThrow(() -> new RuntimeException("Policy not found"));
+                        checkUsable(policy);
+
+                        // Taken from the cached balance now; the ledger row is written at commit, after the booking
+                        coverageLedger.debit(policy, test.getCost(), booking);
+
+                        InsuranceClaim claim = new InsuranceClaim();
+                        claim.setBooking(booking);
+                        claim.setPolicy(policy);
+                        claim.setStatus(ClaimStatus.PENDING);
+                        claim.setRemarks("Auto-generated claim");
+                        claims.add(claim);
+                        eventPublisher.publishEvent(ClaimChangedEvent.raised(policy.getProviderName(), test.getCost(), LocalDateTime.now()));
+                    } else {
+                        booking.setPaymentStatus(PaymentStatus.PAID);
+                        eventPublisher.publishEvent(BookingChangedEvent.paid(test.getTestId(), test.getCost()));
+                    }
+                    eventPublisher.publishEvent(BookingChangedEvent.booked(test.getTestId(), test.getCost()));
+
+                    bookings.add(booking);
+                    bookedUsers.add(user.getUserId());
+                    ticket.setBooking(booking);
+                    admitted++;
+                } catch (RuntimeException e) {
+                    ticket.setError(e);
+                }
+            }
+
+            // Someone outside the queue (another node, or the direct path) took seats since we read the slot
+            if (admitted > 0 && slotRepository.reserveSeats(slot.getSlotId(), admitted) == 0) {
+                throw new RuntimeException("Slot capacity changed during batch admission");
+            }
+            if (admitted > 0) {
+                eventPublisher.publishEvent(SlotChangedEvent.booked(slot.getLaboratoryTest().getTestId(), slot.getSlotId(), admitted));
+            }
+        }
+
+        bookingRepository.saveAll(bookings);
+        claimRepository.saveAll(claims);
+    }
+
+    // Status only: PolicyExpirySweeper moves policies past their expiryDate to EXPIRED
+    private static void checkUsable(InsurancePolicy policy) {
+        if (policy.getStatus() != PolicyStatus.ACTIVE) {
+            throw new RuntimeException("Policy is " + policy.getStatus());
+        }
+    }
+
     // Cancel Booking
+    @Transactional
     public void cancelBooking(Long bookingId, String userEmail) {
+        // Lock the claim row first, as adjudication does: a concurrent reject/approve waits, and
+        // whichever comes second sees what the first one committed
+        claimRepository.lockByBooking(bookingId);
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
         
@@ -113,36 +250,108 @@ public class BookingService {
             throw new RuntimeException("Unauthorized cancellation");
         }
 
+        if (booking.getStatus() == BookingStatus.CANCELLED) {
+            throw new RuntimeException("Booking is already cancelled");
+        }
+
         booking.setStatus(BookingStatus.CANCELLED);
         bookingRepository.save(booking);
 
+        // Give the seat back to the slot
+        TimeSlot slot = booking.getTimeSlot();
+        if (slotRepository.releaseSeat(slot.getSlotId()) > 0) {
+            eventPublisher.publishEvent(SlotChangedEvent.released(slot.getLaboratoryTest().getTestId(), slot.getSlotId()));
+        }
+
         // FIX: Refund if insurance was used
+        BigDecimal cost = booking.getLaboratoryTest().getCost();
         if (booking.getPaymentStatus() == PaymentStatus.INSURANCE_PENDING || booking.getPaymentStatus() == PaymentStatus.PAID) {
             java.util.Optional<InsuranceClaim> claimOpt = claimRepository.findByBooking_BookingId(bookingId);
-            if (claimOpt.isPresent()) {
+            // A REJECTED claim has had its refund already
+            if (claimOpt.isPresent() && claimOpt.get().getStatus() != ClaimStatus.REJECTED) {
                 InsuranceClaim claim = claimOpt.get();
-                InsurancePolicy policy = claim.getPolicy();
-                policy.setCoverageAmount(policy.getCoverageAmount().add(booking.getLaboratoryTest().getCost()));
-                policyRepository.save(policy);
-                
+                coverageLedger.credit(claim.getPolicy(), cost, booking);
+
+                eventPublisher.publishEvent(ClaimChangedEvent.rejected(claim.getStatus(), claim.getPolicy().getProviderName(), cost,
+                        claim.getRaisedAt(), LocalDateTime.now()));
                 claim.setStatus(ClaimStatus.REJECTED);
                 claimRepository.save(claim);
             }
         }
+        eventPublisher.publishEvent(BookingChangedEvent.cancelled(booking.getLaboratoryTest().getTestId(),
+                booking.getPaymentStatus() == PaymentStatus.PAID ? cost : BigDecimal.ZERO));
     }
 
-    // Get My Bookings (Patient)
-    public List<Booking> getUserBookings(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return bookingRepository.findByUser_UserId(user.getUserId());
+    // Get My Bookings (Patient) - one query, no entity graph
+    public List<BookingView> getUserBookings(String email) {
+        return bookingRepository.findViewsByUserEmail(email);
     }
     
  // 5. Get All Bookings (Admin Only) - FILTERED
-    public List<Booking> getAllBookings() {
+    public List<BookingView> getAllBookings() {
         // Only return bookings that are NOT Cancelled.
         // This hides rejected claims and user-cancelled bookings from the Admin Report list.
-        return bookingRepository.findByStatusNot(BookingStatus.CANCELLED);
+        return bookingRepository.findViewsByStatusNot(BookingStatus.CANCELLED);
+    }
+
+    // 6. Search Bookings (Admin) - keyset paginated on (createdAt, bookingId), newest first.
+    // Only the filters that are set become SQL predicates, so each query can use one of the
+    // composite indexes on bookings and a page costs the same no matter how deep it is.
+    public CursorPage<BookingView> searchBookings(BookingFilter filter) {
+        int size = filter.getSize() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(filter.getSize(), MAX_PAGE_SIZE));
+        Cursor cursor = Cursor.decode(filter.getCursor());
+
+        Specification<Booking> spec = (root, query, cb) -> {
+            if (query.getResultType() != Long.class) {
+                // Everything the JSON needs in the same statement (no per-row selects)
+                root.fetch("user");
+                root.fetch("laboratoryTest");
+                root.fetch("timeSlot");
+                root.fetch("insuranceClaim", JoinType.LEFT).fetch("policy", JoinType.LEFT); // Eager inverse one-to-one
+            }
+
+            List<Predicate> where = new ArrayList<>();
+            if (filter.getStatus() != null) {
+                where.add(cb.equal(root.get("status"), filter.getStatus()));
+            } else {
+                where.add(cb.notEqual(root.get("status"), BookingStatus.CANCELLED));
+            }
+            if (filter.getPaymentStatus() != null) {
+                where.add(cb.equal(root.get("paymentStatus"), filter.getPaymentStatus()));
+            }
+            if (filter.getTestId() != null) {
+                where.add(cb.equal(root.get("laboratoryTest").get("testId"), filter.getTestId()));
+            }
+            if (filter.getUserId() != null) {
+                where.add(cb.equal(root.get("user").get("userId"), filter.getUserId()));
+            }
+            if (filter.getFrom() != null) {
+                where.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.getFrom().atStartOfDay()));
+            }
+            if (filter.getTo() != null) {
+                where.add(cb.lessThan(root.get("createdAt"), filter.getTo().plusDays(1).atStartOfDay()));
+            }
+            if (cursor != null) {
+                where.add(cb.or(
+                        cb.lessThan(root.get("createdAt"), cursor.getAt()),
+                        cb.and(cb.equal(root.get("createdAt"), cursor.getAt()),
+                               cb.lessThan(root.get("bookingId"), cursor.getId()))));
+            }
+            return cb.and(where.toArray(new Predicate[0]));
+        };
+
+        // Fetch one extra row to know whether there is a next page
+        List<Booking> rows = bookingRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "createdAt", "bookingId"))
+                .limit(size + 1)
+                .all());
+
+        List<BookingView> items = rows.stream().limit(size).map(BookingView::from).toList();
+        if (rows.size() <= size) {
+            return new CursorPage<>(items, null);
+        }
+        Booking last = rows.get(size - 1);
+        return new CursorPage<>(items, new Cursor(last.getCreatedAt(), last.getBookingId()).encode());
     }
 
     // Process Payment (Optional utility if needed later)
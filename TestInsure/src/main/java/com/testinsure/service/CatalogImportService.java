@@ -0,0 +1,385 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.ImportResult;
+import com.testinsure.event.TestCatalogChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class CatalogImportService {
+
+	/*Methods :
+	 * 1)Import lab tests from CSV (header row: name,description,cost,prepInstructions[,testId])
+	 * 2)Import lab tests from JSON (an array of objects, or one object per line)
+	 *
+	 * The upload is read one row at a time and written in JDBC batches of 'batch-size',
+	 * each batch in its own transaction, so memory stays flat and a bad row is reported
+	 * and skipped instead of failing the file. A row updates an existing test when its
+	 * testId is given or its name matches one (case-insensitive), otherwise it is inserted.
+	 */
+
+    public enum Format { CSV, JSON }
+
+    // IDENTITY keys again: Hibernate won't batch these, JDBC will (rewriteBatchedStatements on MySQL)
+    private static final String INSERT_TEST =
+            "insert into laboratory_tests (name, description, cost, prep_instructions) values (?, ?, ?, ?)";
+    private static final String UPDATE_TEST =
+            "update laboratory_tests set name = ?, description = ?, cost = ?, prep_instructions = ? where test_id = ?";
+
+    private static final int MAX_NAME = 255;
+    private static final int MAX_TEXT = 1000; // @Column(length = 1000) on LaboratoryTest
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public CatalogImportService(JdbcTemplate jdbcTemplate, JsonMapper jsonMapper, ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${testinsure.catalog.import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public ImportResult importTests(InputStream in, Format format) throws IOException {
+        Upsert upsert = new Upsert();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        skipByteOrderMark(reader);
+        try {
+            if (format == Format.CSV) {
+                readCsv(reader, upsert);
+            } else {
+                readJson(reader, upsert);
+            }
+            upsert.flush();
+        } finally {
+            if (upsert.result.getInserted() + upsert.result.getUpdated() > 0) {
+                // Whatever committed so far: caches reload the catalog once instead of per row
+                eventPublisher.publishEvent(TestCatalogChangedEvent.reloaded());
+            }
+        }
+        return upsert.result;
+    }
+
+    // Excel's "CSV UTF-8" (and some JSON exporters) start the file with U+FEFF; without this the
+    // first header would read "\uFEFFname" and the file be refused for lacking a name column
+    private static void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    // 1. CSV
+    private void readCsv(Reader reader, Upsert upsert) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new RuntimeException("The file is empty");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("cost")) {
+            throw new RuntimeException("CSV header must include name and cost columns");
+        }
+
+        int row = 0;
+        for (List<String> record = csv.next(); record != null; record = csv.next()) {
+            row++;
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                row--; // Blank line
+                continue;
+            }
+            upsert.accept(row, cell(record, columns, "testid"), cell(record, columns, "name"),
+                    cell(record, columns, "description"), cell(record, columns, "cost"),
+                    cell(record, columns, "prepinstructions"));
+        }
+    }
+
+    // 2. JSON: readValues walks a top-level array element by element, or a stream of objects
+    private void readJson(Reader reader, Upsert upsert) {
+        int row = 0;
+        try (MappingIterator<JsonNode> nodes = jsonMapper.readerFor(JsonNode.class).readValues(reader)) {
+            while (nodes.hasNextValue()) {
+                JsonNode node = nodes.nextValue();
+                row++;
+                if (!node.isObject()) {
+                    upsert.result.rowSeen();
+                    upsert.result.fail(row, "Expected a JSON object");
+                    continue;
+                }
+                upsert.accept(row, text(node, "testId"), text(node, "name"), text(node, "description"),
+                        text(node, "cost"), text(node, "prepInstructions"));
+            }
+        } catch (JacksonException e) {
+            // Broken JSON can't be resynchronised; keep what was read so far and stop
+            upsert.result.fail(row + 1, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static String cell(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < record.size() ? record.get(index) : null;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asString();
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    // Validates rows, resolves insert vs update, and writes them out in batches
+    private class Upsert {
+        private final ImportResult result = new ImportResult();
+        private final Map<String, Long> idsByName = new HashMap<>(); // lower-cased name -> test_id
+        private final Map<Long, String> namesById = new HashMap<>();
+        private final Set<String> seenInFile = new HashSet<>();
+        private final List<Object[]> inserts = new ArrayList<>();
+        private final List<Object[]> updates = new ArrayList<>();
+        private final List<Integer> batchRows = new ArrayList<>();
+        // What the current batch's renames overwrote in the two maps, put back if the batch rolls back
+        private final Map<Long, String> namesBefore = new HashMap<>();
+        private final Map<String, Long> idsBefore = new HashMap<>();
+
+        Upsert() {
+            // Only ids and names: small even for a large catalog
+            jdbcTemplate.query("select test_id, name from laboratory_tests", rs -> {
+                long id = rs.getLong(1);
+                String name = rs.getString(2);
+                namesById.put(id, name);
+                if (name != null) {
+                    idsByName.putIfAbsent(key(name), id);
+                }
+            });
+        }
+
+        void accept(int row, String rawId, String rawName, String rawDescription, String rawCost, String rawPrep) {
+            result.rowSeen();
+
+            String name = trimToNull(rawName);
+            String description = trimToNull(rawDescription);
+            String prep = trimToNull(rawPrep);
+            if (name == null) {
+                result.fail(row, "Name is required");
+                return;
+            }
+            if (name.length() > MAX_NAME) {
+                result.fail(row, "Name is longer than " + MAX_NAME + " characters");
+                return;
+            }
+            if ((description != null && description.length() > MAX_TEXT) || (prep != null && prep.length() > MAX_TEXT)) {
+                result.fail(row, "Description and prep instructions are limited to " + MAX_TEXT + " characters");
+                return;
+            }
+
+            BigDecimal cost;
+            try {
+                cost = new BigDecimal(trimToNull(rawCost));
+            } catch (NullPointerException | NumberFormatException e) {
+                result.fail(row, "Cost must be a number");
+                return;
+            }
+            if (cost.signum() < 0) {
+                result.fail(row, "Cost must not be negative");
+                return;
+            }
+            if (cost.precision() - cost.scale() > 36) {
+                result.fail(row, "Cost is too large"); // Column is DECIMAL(38,2)
+                return;
+            }
+
+            String key = key(name);
+            if (!seenInFile.add(key)) {
+                result.fail(row, "Duplicate test name in file: " + name);
+                return;
+            }
+
+            Long id = null;
+            if (trimToNull(rawId) != null) {
+                try {
+                    id = Long.valueOf(rawId.trim());
+                } catch (NumberFormatException e) {
+                    result.fail(row, "testId must be a number");
+                    return;
+                }
+                if (!namesById.containsKey(id)) {
+                    result.fail(row, "Test not found: " + id);
+                    return;
+                }
+                Long owner = idsByName.get(key);
+                if (owner != null && !owner.equals(id)) {
+                    result.fail(row, "Name already used by test " + owner);
+                    return;
+                }
+            } else {
+                id = idsByName.get(key);
+            }
+
+            if (id == null) {
+                inserts.add(new Object[]{name, description, cost, prep});
+            } else {
+                // Renames free the old name for later rows
+                if (!namesBefore.containsKey(id)) {
+                    namesBefore.put(id, namesById.get(id));
+                }
+                String previous = namesById.put(id, name);
+                if (previous != null && id.equals(idsByName.get(key(previous)))) {
+                    rememberId(key(previous));
+                    idsByName.remove(key(previous));
+                }
+                rememberId(key);
+                idsByName.put(key, id);
+                updates.add(new Object[]{name, description, cost, prep, id});
+            }
+            batchRows.add(row);
+
+            if (inserts.size() + updates.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batchRows.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!inserts.isEmpty()) jdbcTemplate.batchUpdate(INSERT_TEST, inserts);
+                    if (!updates.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_TEST, updates);
+                });
+                result.inserted(inserts.size());
+                result.updated(updates.size());
+            } catch (DataAccessException e) {
+                // The batch rolled back as a whole; report each of its rows and carry on with the file
+                String message = "Not saved: " + e.getMostSpecificCause().getMessage();
+                batchRows.forEach(row -> result.fail(row, message));
+                // Nothing was renamed after all: later rows must match the names still in the table
+                namesById.putAll(namesBefore);
+                idsBefore.forEach((name, id) -> {
+                    if (id == null) {
+                        idsByName.remove(name);
+                    } else {
+                        idsByName.put(name, id);
+                    }
+                });
+            }
+            inserts.clear();
+            updates.clear();
+            batchRows.clear();
+            namesBefore.clear();
+            idsBefore.clear();
+        }
+
+        private void rememberId(String name) {
+            if (!idsBefore.containsKey(name)) {
+                idsBefore.put(name, idsByName.get(name));
+            }
+        }
+
+        private String key(String name) {
+            return name.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Minimal RFC 4180 reader: quoted fields may hold commas, doubled quotes and line breaks
+    static class CsvReader {
+        private final Reader reader;
+        private int pending = -2; // -2: nothing buffered
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        // Next record, or null at end of input
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> record = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new RuntimeException("Unterminated quoted field in CSV");
+                    }
+                    if (c == '"') {
+                        int after = read();
+                        if (after == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = after;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int after = read();
+                        if (after != '\n') {
+                            pending = after;
+                        }
+                    }
+                    record.add(field.toString());
+                    return record;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.InsuranceClaim;
+import com.testinsure.entity.InsurancePolicy;
+import com.testinsure.entity.PolicyStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// When a PENDING claim may be approved without a human (testinsure.claims.auto.*).
+// Every rule has to pass; the first one that fails is the reason it stays in the queue.
+@Component
+public class ClaimAutoRules {
+
+    private final BigDecimal maxAmount;
+    private final Set<String> providers;
+
+    public ClaimAutoRules(@Value("${testinsure.claims.auto.max-amount:1000}") BigDecimal maxAmount,
+                          @Value("${testinsure.claims.auto.providers:}") String providers) {
+        this.maxAmount = maxAmount;
+        this.providers = Arrays.stream(providers.split(","))
+                .map(p -> p.trim().toLowerCase(Locale.ROOT))
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    // null if the claim can be approved automatically, otherwise why not
+    public String reviewReason(InsuranceClaim claim, BigDecimal balance, LocalDate today) {
+        InsurancePolicy policy = claim.getPolicy();
+        BigDecimal amount = claim.getBooking().getLaboratoryTest().getCost();
+
+        if (policy.getStatus() != PolicyStatus.ACTIVE) {
+            return "Policy is " + policy.getStatus();
+        }
+        if (policy.getExpiryDate() != null && policy.getExpiryDate().isBefore(today)) {
+            return "Policy expired";
+        }
+        if (amount == null || amount.compareTo(maxAmount) > 0) {
+            return "Amount over auto-approval limit";
+        }
+        if (policy.getProviderName() == null || !providers.contains(policy.getProviderName().trim().toLowerCase(Locale.ROOT))) {
+            return "Provider not on auto-approval list";
+        }
+        if (balance.compareTo(amount) < 0) {
+            return "Insufficient funds in policy"; // Same check as approveClaim
+        }
+        return null;
+    }
+}
@@ -0,0 +1,341 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.BulkAdjudicationResult;
+import com.testinsure.dto.ClaimAckImportResult;
+import com.testinsure.dto.ClaimBatchExportResult;
+import com.testinsure.dto.ClaimDecision;
+import com.testinsure.entity.JobWatermark;
+import com.testinsure.repository.InsuranceClaimRepository;
+import com.testinsure.repository.JobWatermarkRepository;
+import com.testinsure.repository.RowStreamer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Claims exchanged with insurers as files in a drop directory (testinsure.claims.batch.*).
+ *
+ * Export: every export-interval-ms, the claims raised since the watermark (last claimId sent)
+ * are streamed from the DB in claimId order and written as gzipped NDJSON, one file per
+ * provider: outbox/claims_<provider>_<batchId>.ndjson.gz. A file is written as .part and
+ * renamed when complete, so a consumer never picks up half a file. Only claims older than
+ * settle-seconds are included (a transaction still open may commit a lower id later). The
+ * watermark moves after the files are in place, so a crash in between resends that batch;
+ * insurers dedupe on claimId. Memory is one buffered gzip stream per provider, whatever the
+ * number of claims.
+ *
+ * Acknowledgements: every ack-interval-ms, each inbox/*.ndjson(.gz) file is read line by line:
+ *   {"claimId": 42, "decision": "APPROVE"}  or  {"claimId": 43, "decision": "REJECT", "reason": "..."}
+ * and applied ack-batch-size lines at a time through the bulk adjudication path (one
+ * transaction per batch). The file then moves to inbox/processed/, or inbox/failed/ if it
+ * could not be read. Replaying a file is harmless: decided claims are reported, not changed.
+ * Insurers must write ack files under another name and rename them into place.
+ */
+@Service
+public class ClaimBatchExchange {
+
+    static final String WATERMARK = "claim-batch-export";
+
+    static final List<String> BATCH_COLUMNS = List.of("claimId", "raisedAt", "status", "bookingId",
+            "policyNumber", "patientName", "testName", "amount");
+
+    private static final DateTimeFormatter BATCH_ID = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final InsuranceClaimRepository claimRepository;
+    private final RowStreamer rowStreamer;
+    private final JobWatermarkRepository watermarkRepository;
+    private final InsuranceClaimService claimService;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path outbox;
+    private final Path inbox;
+    private final long settleSeconds;
+    private final int ackBatchSize;
+
+    private final Object exportLock = new Object();
+    private final Object ackLock = new Object();
+
+    private volatile ClaimBatchExportResult lastExport;
+    private volatile ClaimAckImportResult lastAckImport;
+
+    public ClaimBatchExchange(InsuranceClaimRepository claimRepository, RowStreamer rowStreamer,
+                              JobWatermarkRepository watermarkRepository,
+                              InsuranceClaimService claimService, JsonMapper jsonMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${testinsure.claims.batch.enabled:false}") boolean enabled,
+                              @Value("${testinsure.claims.batch.drop-dir:claim-drop}") String dropDir,
+                              @Value("${testinsure.claims.batch.settle-seconds:60}") long settleSeconds,
+                              @Value("${testinsure.claims.batch.ack-batch-size:500}") int ackBatchSize) {
+        this.claimRepository = claimRepository;
+        this.rowStreamer = rowStreamer;
+        this.watermarkRepository = watermarkRepository;
+        this.claimService = claimService;
+        this.jsonMapper = jsonMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.outbox = Paths.get(dropDir, "outbox");
+        this.inbox = Paths.get(dropDir, "inbox");
+        this.settleSeconds = settleSeconds;
+        this.ackBatchSize = Math.max(1, Math.min(ackBatchSize, 1000)); // adjudicateClaims takes at most 1000
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.claims.batch.export-interval-ms:900000}",
+               fixedDelayString = "${testinsure.claims.batch.export-interval-ms:900000}")
+    public void scheduledExport() throws IOException {
+        if (enabled) {
+            exportBatch();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.claims.batch.ack-interval-ms:300000}",
+               fixedDelayString = "${testinsure.claims.batch.ack-interval-ms:300000}")
+    public void scheduledAckImport() throws IOException {
+        if (enabled) {
+            importAcks();
+        }
+    }
+
+    // Write every claim raised since the last batch to per-provider files; returns what was written
+    public ClaimBatchExportResult exportBatch() throws IOException {
+        synchronized (exportLock) {
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+            JobWatermark watermark = watermarkRepository.findById(WATERMARK).orElseGet(() -> new JobWatermark(WATERMARK));
+            Long after = watermark.getLastId();
+            ClaimBatchExportResult result = new ClaimBatchExportResult(startedAt.format(BATCH_ID) + "_" + after, after);
+
+            Long upTo = claimRepository.findMaxIdRaisedBefore(after, startedAt.minusSeconds(settleSeconds));
+            if (upTo != null) {
+                Files.createDirectories(outbox);
+                Map<String, BatchWriter> writers = new LinkedHashMap<>();
+                long claims;
+                try {
+                    claims = readOnlyTransaction.execute(status -> {
+                        long count = 0;
+                        try (Stream<Object[]> rows = rowStreamer.stream(InsuranceClaimRepository.BATCH_ROWS,
+                                Map.of("after", after, "upTo", upTo))) {
+                            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                                String provider = row[8] != null ? (String) row[8] : "unknown";
+                                writers.computeIfAbsent(slug(provider), key -> new BatchWriter(provider, key, result.getBatchId()))
+                                       .write(toJson(row));
+                                count++;
+                            }
+                        }
+                        return count;
+                    });
+                    for (BatchWriter writer : writers.values()) {
+                        writer.close();
+                    }
+                } catch (RuntimeException | IOException e) {
+                    writers.values().forEach(BatchWriter::discard);
+                    throw e;
+                }
+
+                // All complete: make them visible, then move the watermark
+                for (BatchWriter writer : writers.values()) {
+                    result.getFiles().add(writer.publish());
+                }
+                watermark.setLastId(upTo);
+                watermarkRepository.save(watermark);
+                result.exported(upTo, claims);
+            }
+
+            result.finished(startedAt, (System.nanoTime() - start) / 1_000_000);
+            lastExport = result;
+            return result;
+        }
+    }
+
+    // Apply every acknowledgement file waiting in the inbox
+    public ClaimAckImportResult importAcks() throws IOException {
+        synchronized (ackLock) {
+            ClaimAckImportResult result = new ClaimAckImportResult();
+            Files.createDirectories(inbox);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(inbox)) {
+                files = listing.filter(p -> Files.isRegularFile(p) && isAckFile(p.getFileName().toString())).sorted().toList();
+            }
+
+            for (Path file : files) {
+                result.file();
+                Path target;
+                try {
+                    importAckFile(file, result);
+                    target = inbox.resolve("processed");
+                } catch (IOException | UncheckedIOException e) {
+                    result.failedFile(file.getFileName().toString(), e.getMessage());
+                    target = inbox.resolve("failed");
+                }
+                Files.createDirectories(target);
+                Files.move(file, target.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            lastAckImport = result;
+            return result;
+        }
+    }
+
+    private void importAckFile(Path file, ClaimAckImportResult result) throws IOException {
+        String name = file.getFileName().toString();
+        List<ClaimDecision> batch = new ArrayList<>(ackBatchSize);
+        try (InputStream raw = Files.newInputStream(file);
+             InputStream in = name.endsWith(".gz") ? new GZIPInputStream(raw, 64 * 1024) : raw;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.lineSeen();
+                try {
+                    ClaimDecision decision = jsonMapper.readValue(line, ClaimDecision.class);
+                    if (decision.getClaimId() == null || decision.getDecision() == null) {
+                        result.fail(name, number, "claimId and decision are required");
+                        continue;
+                    }
+                    if (decision.getDecision() == ClaimDecision.Decision.REJECT && decision.getReason() == null) {
+                        decision.setReason("Rejected by insurer");
+                    }
+                    batch.add(decision);
+                } catch (JacksonException e) {
+                    result.fail(name, number, "Unreadable line");
+                    continue;
+                }
+                if (batch.size() == ackBatchSize) {
+                    apply(batch, name, result);
+                }
+            }
+        }
+        apply(batch, name, result);
+    }
+
+    private void apply(List<ClaimDecision> batch, String fileName, ClaimAckImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            result.add(claimService.adjudicateClaims(batch));
+        } catch (RuntimeException e) {
+            // Whole batch rolled back
+            for (ClaimDecision decision : batch) {
+                result.fail(fileName, 0, "claim " + decision.getClaimId() + ": " + e.getMessage());
+            }
+        }
+        batch.clear();
+    }
+
+    private static boolean isAckFile(String name) {
+        return !name.startsWith(".") && (name.endsWith(".ndjson") || name.endsWith(".ndjson.gz"));
+    }
+
+    // File-name safe, and one file for "Star Health" and "star health" alike
+    static String slug(String provider) {
+        String slug = provider.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        return slug.isEmpty() ? "unknown" : slug;
+    }
+
+    private String toJson(Object[] row) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (int i = 0; i < BATCH_COLUMNS.size(); i++) {
+            json.put(BATCH_COLUMNS.get(i), row[i]);
+        }
+        return jsonMapper.writeValueAsString(json);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("outbox", outbox.toAbsolutePath().toString());
+        stats.put("inbox", inbox.toAbsolutePath().toString());
+        stats.put("watermark", watermarkRepository.findById(WATERMARK).map(JobWatermark::getLastId).orElse(0L));
+        stats.put("lastExport", lastExport);
+        stats.put("lastAckImport", lastAckImport);
+        return stats;
+    }
+
+    // One provider's file of the current batch, open until the batch is complete
+    private class BatchWriter {
+        private final String provider;
+        private final Path part;
+        private final Path target;
+        private final Writer writer;
+        private long claims;
+
+        BatchWriter(String provider, String slug, String batchId) {
+            this.provider = provider;
+            String fileName = "claims_" + slug + "_" + batchId + ".ndjson.gz";
+            this.target = outbox.resolve(fileName);
+            this.part = outbox.resolve(fileName + ".part");
+            try {
+                this.writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(part), 16 * 1024), StandardCharsets.UTF_8), 16 * 1024);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void write(String line) {
+            try {
+                writer.write(line);
+                writer.write('\n');
+                claims++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Stops the DB stream too
+            }
+        }
+
+        void close() throws IOException {
+            writer.close();
+        }
+
+        void discard() {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Deleting it anyway
+            }
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // A stray .part is never picked up by consumers
+            }
+        }
+
+        ClaimBatchExportResult.BatchFile publish() throws IOException {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            return new ClaimBatchExportResult.BatchFile(provider, target.getFileName().toString(), claims, Files.size(target));
+        }
+    }
+}
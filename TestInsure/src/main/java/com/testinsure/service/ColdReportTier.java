@@ -0,0 +1,245 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Archive tier for reports nobody has asked for in a while (testinsure.reports.tiering.*).
+ *
+ * Blobs are appended to segment files, <dir>/cold/segment-<millis>.pack, each one a
+ * self-contained gzip member; a new segment starts once the current one passes segment-bytes.
+ * A blob that gzip can't shrink by min-saving-percent (JPEGs, most PDFs) is appended raw
+ * instead, so it never grows. Packing keeps millions of old reports in a few hundred files.
+ *
+ * A read opens the segment, bounds it to the blob's own bytes and inflates them as the
+ * client reads, so memory per download is one inflater window whatever the file size, and
+ * only the requested report is decompressed, never its neighbours. A Range into a
+ * compressed blob inflates and discards the bytes before it; into a raw blob it is a seek.
+ *
+ * Segments are append-only, so nothing is moved or shrunk in place. A blob whose last report
+ * goes, or whose packed copy went stale (re-archived after a re-upload, or archived while it
+ * was being re-uploaded), has its bytes overwritten with zeros: the space stays taken
+ * (reported as deadBytes in the stats) but the report can no longer be read back from it. A
+ * re-uploaded blob keeps its packed copy until one of those happens.
+ */
+@Component
+public class ColdReportTier implements ReportTier {
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final Path segmentDir;
+    private final long segmentBytes;
+    private final int minSavingPercent;
+
+    // The segment being appended to; guarded by 'this'
+    private FileChannel current;
+    private String currentName;
+
+    public ColdReportTier(@Value("${testinsure.reports.dir:uploads}") String dir,
+                          @Value("${testinsure.reports.tiering.segment-bytes:268435456}") long segmentBytes,
+                          @Value("${testinsure.reports.tiering.min-saving-percent:10}") int minSavingPercent) {
+        this.segmentDir = Paths.get(dir, "cold");
+        this.segmentBytes = segmentBytes;
+        this.minSavingPercent = Math.max(0, Math.min(100, minSavingPercent));
+    }
+
+    @Override
+    public StorageTier getTier() {
+        return StorageTier.COLD;
+    }
+
+    @Override
+    public synchronized Placement store(String sha256, Path source) throws IOException {
+        FileChannel segment = segment();
+        long offset = segment.size();
+        long size = Files.size(source);
+        try {
+            segment.position(offset);
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream gzip = new GZIPOutputStream(unclosed(Channels.newOutputStream(segment)), BUFFER)) {
+                in.transferTo(gzip);
+            }
+            long stored = segment.size() - offset;
+            boolean compressed = stored * 100 <= size * (100 - minSavingPercent);
+            if (!compressed) {
+                segment.truncate(offset);
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                    long copied = 0;
+                    while (copied < size) {
+                        copied += segment.transferFrom(in, offset + copied, size - copied);
+                    }
+                }
+                stored = size;
+            }
+            segment.force(false);
+            return new Placement(currentName, offset, stored, compressed);
+        } catch (IOException | RuntimeException e) {
+            segment.truncate(offset); // Nothing half-written stays behind for the next blob
+            throw e;
+        }
+    }
+
+    @Override
+    public Path plainFile(String sha256) {
+        return null; // Always packed
+    }
+
+    @Override
+    public InputStream open(ReportBlob blob) throws IOException {
+        FileChannel channel = FileChannel.open(segmentDir.resolve(blob.getSegment()), StandardOpenOption.READ);
+        InputStream slice = new Slice(channel, blob.getSegmentOffset(), blob.getStoredBytes());
+        try {
+            return Boolean.TRUE.equals(blob.getCompressed()) ? new GZIPInputStream(slice, BUFFER) : slice;
+        } catch (IOException e) {
+            slice.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String sha256, Placement placement) throws IOException {
+        if (placement == null) {
+            return;
+        }
+        Path file = segmentDir.resolve(placement.getSegment());
+        if (!Files.exists(file)) {
+            return;
+        }
+        // Positional writes on a channel of its own; appends to the current segment only go past it
+        try (FileChannel segment = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(BUFFER, placement.getStoredBytes()));
+            long position = placement.getOffset();
+            long end = position + placement.getStoredBytes();
+            while (position < end) {
+                zeros.clear().limit((int) Math.min(zeros.capacity(), end - position));
+                position += segment.write(zeros, position);
+            }
+            segment.force(false);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long segments = 0;
+        long bytes = 0;
+        if (Files.isDirectory(segmentDir)) {
+            try (Stream<Path> files = Files.list(segmentDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    segments++;
+                    bytes += Files.size(file);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read cold segments: " + e.getMessage());
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", segments);
+        stats.put("segmentBytes", bytes);
+        return stats;
+    }
+
+    // The segment to append to, rolling over to a new one when it is full
+    private FileChannel segment() throws IOException {
+        if (current != null && current.size() < segmentBytes) {
+            return current;
+        }
+        if (current != null) {
+            current.close();
+        }
+        Files.createDirectories(segmentDir);
+        long id = System.currentTimeMillis();
+        while (Files.exists(segmentDir.resolve(name(id)))) {
+            id++;
+        }
+        currentName = name(id);
+        current = FileChannel.open(segmentDir.resolve(currentName), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return current;
+    }
+
+    private static String name(long id) {
+        return "segment-" + id + ".pack";
+    }
+
+    // Lets GZIPOutputStream finish its trailer without closing the segment underneath
+    private static OutputStream unclosed(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    // One blob's bytes inside a segment, read with positional reads
+    private static class Slice extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        Slice(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n == -1) {
+                throw new IOException("Cold segment is shorter than its index says");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.Booking;
+import com.testinsure.entity.CoverageLedgerEntry;
+import com.testinsure.entity.CoverageSnapshot;
+import com.testinsure.entity.InsurancePolicy;
+import com.testinsure.entity.LedgerEntryType;
+import com.testinsure.repository.CoverageLedgerRepository;
+import com.testinsure.repository.CoverageSnapshotRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Policy coverage as an append-only ledger with an in-memory running balance per policy.
+ *
+ * The balance of a policy is loaded once (latest snapshot + the entries after it, or the
+ * opening coverageAmount + every entry) and from then on kept in an AtomicReference:
+ *   - debit: compare-and-set the balance down, or fail with "Insufficient Insurance Coverage"
+ *     if it would go negative. Given back if the transaction rolls back.
+ *   - credit: added once the transaction commits (a refund is never spent before it exists).
+ * Reads are a plain volatile get, and no booking touches the policy row any more, so
+ * concurrent bookings on one family policy neither lose updates nor queue on a row lock.
+ *
+ * The ledger rows themselves are inserted just before the caller's transaction commits, after
+ * the bookings they point to. Like the slot cache this assumes one application node owns
+ * the balances; CoverageSnapshotWorker.reconcile() checks them against the table.
+ */
+@Component
+public class CoverageLedger {
+
+    private final CoverageLedgerRepository entryRepository;
+    private final CoverageSnapshotRepository snapshotRepository;
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    private final AtomicLong debits = new AtomicLong();
+    private final AtomicLong credits = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    public CoverageLedger(CoverageLedgerRepository entryRepository, CoverageSnapshotRepository snapshotRepository) {
+        this.entryRepository = entryRepository;
+        this.snapshotRepository = snapshotRepository;
+    }
+
+    // Current balance; a lock-free read once the policy is loaded
+    public BigDecimal balance(InsurancePolicy policy) {
+        return account(policy).balance.get();
+    }
+
+    // Load the balances of many policies in two statements (bulk adjudication), instead of two per policy
+    public void preload(Collection<InsurancePolicy> policies) {
+        Map<Long, InsurancePolicy> missing = new HashMap<>();
+        for (InsurancePolicy policy : policies) {
+            if (!accounts.containsKey(policy.getPolicyId())) {
+                missing.put(policy.getPolicyId(), policy);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        missing.forEach((policyId, policy) -> balances.put(policyId, policy.getCoverageAmount()));
+        for (Object[] row : snapshotRepository.findLatestBalances(missing.keySet())) {
+            balances.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        for (Object[] row : entryRepository.sumAfterLatestSnapshots(missing.keySet())) {
+            balances.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+        }
+        balances.forEach((policyId, balance) -> accounts.putIfAbsent(policyId, new Account(balance)));
+    }
+
+    // Take 'amount' off the policy for this booking, or throw if the balance is too low
+    public void debit(InsurancePolicy policy, BigDecimal amount, Booking booking) {
+        Account account = begin(policy);
+        BigDecimal current;
+        do {
+            current = account.balance.get();
+            if (current.compareTo(amount) < 0) {
+                account.end();
+                refused.incrementAndGet();
+                throw new RuntimeException("Insufficient Insurance Coverage! Remaining: " + current);
+            }
+        } while (!account.balance.compareAndSet(current, current.subtract(amount)));
+
+        debits.incrementAndGet();
+        record(new Movement(account, new CoverageLedgerEntry(policy, booking, LedgerEntryType.DEBIT, amount.negate())));
+    }
+
+    // Give 'amount' back to the policy (refund for this booking)
+    public void credit(InsurancePolicy policy, BigDecimal amount, Booking booking) {
+        Account account = begin(policy);
+        credits.incrementAndGet();
+        record(new Movement(account, new CoverageLedgerEntry(policy, booking, LedgerEntryType.CREDIT, amount)));
+    }
+
+    private void record(Movement movement) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // No transaction to wait for
+            entryRepository.save(movement.entry);
+            movement.completed(true);
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.movements.add(movement);
+    }
+
+    // Start a movement on the policy's cached account. begin() runs inside the map, as evict() does,
+    // so a movement either counts as in flight when evict() looks, or finds the account gone and
+    // starts again on a freshly loaded one; it never moves a balance nobody will read again.
+    private Account begin(InsurancePolicy policy) {
+        while (true) {
+            account(policy);
+            Account account = accounts.computeIfPresent(policy.getPolicyId(), (id, a) -> {
+                a.begin();
+                return a;
+            });
+            if (account != null) {
+                return account;
+            }
+        }
+    }
+
+    private Account account(InsurancePolicy policy) {
+        Account account = accounts.get(policy.getPolicyId());
+        if (account != null) {
+            return account;
+        }
+        // Loaded outside the map so a slow query never blocks other policies; first one in wins
+        Account loaded = new Account(load(policy));
+        account = accounts.putIfAbsent(policy.getPolicyId(), loaded);
+        return account != null ? account : loaded;
+    }
+
+    private BigDecimal load(InsurancePolicy policy) {
+        Optional<CoverageSnapshot> snapshot = snapshotRepository.findFirstByPolicy_PolicyIdOrderByLastEntryIdDesc(policy.getPolicyId());
+        BigDecimal base = snapshot.map(CoverageSnapshot::getBalance).orElse(policy.getCoverageAmount());
+        Long after = snapshot.map(CoverageSnapshot::getLastEntryId).orElse(0L);
+        return base.add(entryRepository.sumAfter(policy.getPolicyId(), after));
+    }
+
+    // Cached balances that are not in the middle of a movement, with the movement count they were read at.
+    // The reconciliation compares these against the table and drops any that disagree.
+    Map<Long, Long> settledAccounts() {
+        Map<Long, Long> settled = new LinkedHashMap<>();
+        accounts.forEach((policyId, account) -> {
+            long version = account.version.get();
+            if (account.inFlight.get() == 0) {
+                settled.put(policyId, version);
+            }
+        });
+        return settled;
+    }
+
+    BigDecimal cachedBalance(Long policyId) {
+        Account account = accounts.get(policyId);
+        return account == null ? null : account.balance.get();
+    }
+
+    // Forget a cached balance, but only if nothing touched it since 'version'; the next read reloads it
+    boolean evict(Long policyId, long version) {
+        boolean[] evicted = {false};
+        accounts.computeIfPresent(policyId, (id, account) -> {
+            evicted[0] = account.inFlight.get() == 0 && account.version.get() == version;
+            return evicted[0] ? null : account;
+        });
+        return evicted[0];
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedPolicies", accounts.size());
+        stats.put("debits", debits.get());
+        stats.put("credits", credits.get());
+        stats.put("refusedDebits", refused.get());
+        return stats;
+    }
+
+    // Running balance of one policy
+    private static class Account {
+        private final AtomicReference<BigDecimal> balance;
+        private final AtomicInteger inFlight = new AtomicInteger(); // Movements whose transaction hasn't finished
+        private final AtomicLong version = new AtomicLong();        // Bumped when a movement starts
+
+        Account(BigDecimal balance) {
+            this.balance = new AtomicReference<>(balance);
+        }
+
+        void begin() {
+            version.incrementAndGet();
+            inFlight.incrementAndGet();
+        }
+
+        void end() {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static class Movement {
+        private final Account account;
+        private final CoverageLedgerEntry entry;
+
+        Movement(Account account, CoverageLedgerEntry entry) {
+            this.account = account;
+            this.entry = entry;
+        }
+
+        // Debits were applied up front and are undone on rollback; credits only count once committed
+        void completed(boolean committed) {
+            if (entry.getType() == LedgerEntryType.DEBIT && !committed) {
+                account.balance.accumulateAndGet(entry.getAmount().negate(), BigDecimal::add);
+            } else if (entry.getType() == LedgerEntryType.CREDIT && committed) {
+                account.balance.accumulateAndGet(entry.getAmount(), BigDecimal::add);
+            }
+            account.end();
+        }
+    }
+
+    // The movements of one transaction
+    private class Pending implements TransactionSynchronization {
+        private final List<Movement> movements = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            entryRepository.saveAll(movements.stream().map(m -> m.entry).toList());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CoverageLedger.this);
+            movements.forEach(m -> m.completed(status == STATUS_COMMITTED));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.LedgerReconciliation;
+import com.testinsure.entity.CoverageSnapshot;
+import com.testinsure.entity.InsurancePolicy;
+import com.testinsure.repository.CoverageLedgerRepository;
+import com.testinsure.repository.CoverageSnapshotRepository;
+import com.testinsure.repository.InsurancePolicyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Background upkeep of the coverage ledger.
+ *
+ * snapshot(): every snapshot-interval-ms, one snapshot row per policy that moved since the last
+ * run, covering the ledger up to a cut-off entry. Only entries older than settle-seconds are
+ * included, so a transaction that is still open (and may commit a lower id later) isn't skipped.
+ * Every run starts where the previous one stopped, which keeps "latest snapshot + entries after
+ * it" equal to the full ledger sum while loading only the tail.
+ *
+ * reconcile(): every reconcile-interval-ms, recompute every balance from the ledger and compare
+ * it with the snapshots and the cached balances in CoverageLedger. Snapshot differences are
+ * reported; a cached balance that differs is dropped so it reloads from the table.
+ */
+@Component
+public class CoverageSnapshotWorker {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final CoverageLedgerRepository entryRepository;
+    private final CoverageSnapshotRepository snapshotRepository;
+    private final InsurancePolicyRepository policyRepository;
+    private final CoverageLedger coverageLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final long settleSeconds;
+
+    private volatile LocalDateTime lastSnapshotAt;
+    private volatile int lastSnapshotCount;
+    private volatile LedgerReconciliation lastReconciliation;
+
+    public CoverageSnapshotWorker(CoverageLedgerRepository entryRepository, CoverageSnapshotRepository snapshotRepository,
+                                  InsurancePolicyRepository policyRepository, CoverageLedger coverageLedger,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${testinsure.ledger.snapshot-settle-seconds:60}") long settleSeconds) {
+        this.entryRepository = entryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.policyRepository = policyRepository;
+        this.coverageLedger = coverageLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.settleSeconds = settleSeconds;
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.ledger.snapshot-interval-ms:300000}",
+               fixedDelayString = "${testinsure.ledger.snapshot-interval-ms:300000}")
+    public void scheduledSnapshot() {
+        snapshot();
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.ledger.reconcile-interval-ms:3600000}",
+               fixedDelayString = "${testinsure.ledger.reconcile-interval-ms:3600000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    // Returns how many snapshots were written
+    public synchronized int snapshot() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer written = transactionTemplate.execute(status -> {
+            Long upTo = entryRepository.findMaxIdCreatedBefore(now.minusSeconds(settleSeconds));
+            Long after = snapshotRepository.findMaxLastEntryId();
+            if (upTo == null || upTo <= after) {
+                return 0;
+            }
+
+            Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+            for (Object[] row : entryRepository.sumByPolicyBetween(after, upTo)) {
+                deltas.put((Long) row[0], (BigDecimal) row[1]);
+            }
+
+            List<Long> policyIds = List.copyOf(deltas.keySet());
+            for (int from = 0; from < policyIds.size(); from += CHUNK_SIZE) {
+                List<Long> chunk = policyIds.subList(from, Math.min(from + CHUNK_SIZE, policyIds.size()));
+                Map<Long, BigDecimal> previous = new HashMap<>();
+                for (Object[] row : snapshotRepository.findLatestBalances(chunk)) {
+                    previous.put((Long) row[0], (BigDecimal) row[1]);
+                }
+                for (InsurancePolicy policy : policyRepository.findAllById(chunk)) {
+                    BigDecimal base = previous.getOrDefault(policy.getPolicyId(), policy.getCoverageAmount());
+                    snapshotRepository.save(new CoverageSnapshot(policy, base.add(deltas.get(policy.getPolicyId())), upTo, now));
+                }
+            }
+            return policyIds.size();
+        });
+
+        lastSnapshotAt = now;
+        lastSnapshotCount = written;
+        return written;
+    }
+
+    public LedgerReconciliation reconcile() {
+        LedgerReconciliation report = new LedgerReconciliation(LocalDateTime.now());
+        long start = System.nanoTime();
+
+        // Taken before reading the table: a cached balance is only judged if nothing moved it since
+        Map<Long, Long> settled = coverageLedger.settledAccounts();
+
+        Map<Long, BigDecimal> ledger = new HashMap<>();
+        for (Object[] row : entryRepository.findLedgerBalances()) {
+            ledger.put((Long) row[0], (BigDecimal) row[1]);
+        }
+
+        for (Object[] row : snapshotRepository.findSnapshotBalances()) {
+            Long policyId = (Long) row[0];
+            BigDecimal fromSnapshot = (BigDecimal) row[1];
+            if (ledger.containsKey(policyId) && ledger.get(policyId).compareTo(fromSnapshot) != 0) {
+                report.getSnapshotMismatches().add(new LedgerReconciliation.Mismatch(policyId, ledger.get(policyId), fromSnapshot));
+            }
+        }
+
+        int cachedChecked = 0;
+        for (Map.Entry<Long, Long> account : settled.entrySet()) {
+            Long policyId = account.getKey();
+            BigDecimal cached = coverageLedger.cachedBalance(policyId);
+            if (cached == null || !ledger.containsKey(policyId)) {
+                continue;
+            }
+            cachedChecked++;
+            if (ledger.get(policyId).compareTo(cached) != 0 && coverageLedger.evict(policyId, account.getValue())) {
+                report.getCacheMismatches().add(new LedgerReconciliation.Mismatch(policyId, ledger.get(policyId), cached));
+            }
+        }
+
+        report.checked(ledger.size(), cachedChecked);
+        report.finished((System.nanoTime() - start) / 1_000_000);
+        lastReconciliation = report;
+        return report;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(coverageLedger.getStats());
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastSnapshotCount", lastSnapshotCount);
+        stats.put("lastReconciliation", lastReconciliation);
+        return stats;
+    }
+}
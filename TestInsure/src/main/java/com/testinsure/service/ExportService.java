@@ -0,0 +1,155 @@
+package com.testinsure.service;
+
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.InsuranceClaimRepository;
+import com.testinsure.repository.RowStreamer;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class ExportService {
+
+	/*Methods :
+	 * 1)Export Bookings (NDJSON / CSV, optional gzip)
+	 * 2)Export Claims (NDJSON / CSV, optional gzip)
+	 *
+	 * Rows are streamed from the DB straight into the response, one at a time,
+	 * so memory stays flat however many rows there are (RowStreamer: only these
+	 * queries stream from the server, not every query on the connection).
+	 */
+
+    public enum Format { NDJSON, CSV }
+
+    static final List<String> BOOKING_COLUMNS = List.of("bookingId", "createdAt", "status", "paymentStatus",
+            "userId", "patientName", "patientEmail", "testId", "testName", "cost", "slotDate", "slotTime");
+
+    static final List<String> CLAIM_COLUMNS = List.of("claimId", "raisedAt", "resolvedAt", "status", "approvedAmount",
+            "remarks", "bookingId", "patientName", "patientEmail", "testName", "cost", "policyNumber", "providerName");
+
+    private static final int FLUSH_EVERY = 1000;
+
+    private final RowStreamer rowStreamer;
+    private final EntityManager entityManager;
+    private final JsonMapper jsonMapper;
+
+    public ExportService(RowStreamer rowStreamer, EntityManager entityManager, JsonMapper jsonMapper) {
+        this.rowStreamer = rowStreamer;
+        this.entityManager = entityManager;
+        this.jsonMapper = jsonMapper;
+    }
+
+    // 1. Bookings created in [from, to] (both optional, inclusive days)
+    @Transactional(readOnly = true)
+    public void exportBookings(OutputStream out, Format format, boolean gzip, LocalDate from, LocalDate to) throws IOException {
+        try (Stream<Object[]> rows = rowStreamer.stream(BookingRepository.EXPORT_ROWS, range(from, to))) {
+            write(out, format, gzip, BOOKING_COLUMNS, rows);
+        }
+    }
+
+    // 2. Claims raised in [from, to] (both optional, inclusive days)
+    @Transactional(readOnly = true)
+    public void exportClaims(OutputStream out, Format format, boolean gzip, LocalDate from, LocalDate to) throws IOException {
+        try (Stream<Object[]> rows = rowStreamer.stream(InsuranceClaimRepository.EXPORT_ROWS, range(from, to))) {
+            write(out, format, gzip, CLAIM_COLUMNS, rows);
+        }
+    }
+
+    private void write(OutputStream out, Format format, boolean gzip, List<String> columns, Stream<Object[]> rows) throws IOException {
+        // syncFlush so our periodic flushes actually push compressed bytes to the client
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192, true) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024);
+
+        if (format == Format.CSV) {
+            writer.write(String.join(",", columns));
+            writer.write('\n');
+        }
+        writer.flush(); // First byte goes out before the query has finished
+
+        int[] count = {0};
+        try {
+            rows.forEach(row -> {
+                try {
+                    writer.write(format == Format.CSV ? toCsv(row) : toJson(columns, row));
+                    writer.write('\n');
+                    if (++count[0] % FLUSH_EVERY == 0) {
+                        writer.flush();
+                        entityManager.clear(); // Nothing should be managed here, but never let it grow
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // Client went away; stops the DB stream too
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+    }
+
+    private String toJson(List<String> columns, Object[] row) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            json.put(columns.get(i), row[i]);
+        }
+        return jsonMapper.writeValueAsString(json);
+    }
+
+    private String toCsv(Object[] row) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) line.append(',');
+            if (row[i] == null) continue;
+            String value = row[i].toString();
+            boolean formula = row[i] instanceof String && startsFormula(value);
+            if (formula) {
+                value = "'" + value; // Shown as text by Excel / Sheets instead of being evaluated
+            }
+            if (formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+
+    // Patient names and test names are user input: a spreadsheet would run "=HYPERLINK(...)" as a formula.
+    // Only text columns; a negative number is still a number.
+    private static boolean startsFormula(String value) {
+        if (value.isEmpty()) return false;
+        char first = value.charAt(0);
+        return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+    }
+
+    private static Map<String, Object> range(LocalDate from, LocalDate to) {
+        return Map.of("from", start(from), "to", end(to));
+    }
+
+    private static LocalDateTime start(LocalDate from) {
+        return from == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : from.atStartOfDay();
+    }
+
+    private static LocalDateTime end(LocalDate to) {
+        return to == null ? LocalDateTime.of(9999, 1, 1, 0, 0) : to.plusDays(1).atStartOfDay();
+    }
+}
@@ -0,0 +1,87 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Plain files on the primary disk at <dir>/blobs/<h0h1>/<h2h3>/<sha256>: two levels of 256
+ * directories, so no directory grows past a few hundred entries and finding a file is one path
+ * resolution however many reports there are. Uploads land here; downloads use sendfile.
+ * A blob's preview image (ReportPreviewService) sits beside it as <sha256>.preview.jpg and
+ * stays there when the blob itself moves to another tier.
+ */
+@Component
+public class HotReportTier implements ReportTier {
+
+    private final Path blobDir;
+
+    public HotReportTier(@Value("${testinsure.reports.dir:uploads}") String dir) {
+        this.blobDir = Paths.get(dir, "blobs");
+    }
+
+    @Override
+    public StorageTier getTier() {
+        return StorageTier.HOT;
+    }
+
+    @Override
+    public Placement store(String sha256, Path source) throws IOException {
+        Path target = plainFile(sha256);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(sha256 + ".part");
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return new Placement(null, null, Files.size(target), null);
+    }
+
+    // A fresh upload (same filesystem): renamed into its shard, or dropped if the blob is already there
+    public void adopt(String sha256, Path upload) throws IOException {
+        Path target = plainFile(sha256);
+        if (Files.exists(target)) {
+            Files.deleteIfExists(upload);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    @Override
+    public Path plainFile(String sha256) {
+        return blobDir.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    // Where the blob's preview goes; removed with the blob, not when it is demoted
+    public Path previewFile(String sha256) {
+        return plainFile(sha256).resolveSibling(sha256 + ".preview.jpg");
+    }
+
+    @Override
+    public InputStream open(ReportBlob blob) throws IOException {
+        return Files.newInputStream(plainFile(blob.getSha256()));
+    }
+
+    @Override
+    public void delete(String sha256, Placement placement) throws IOException {
+        Files.deleteIfExists(plainFile(sha256));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dir", blobDir.toString());
+        return stats;
+    }
+}
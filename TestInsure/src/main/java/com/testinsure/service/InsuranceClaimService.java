@@ -1,89 +1,413 @@
 package com.testinsure.service;
 
+import com.testinsure.dto.AutoAdjudicationReport;
+import com.testinsure.dto.BulkAdjudicationResult;
+import com.testinsure.dto.ClaimDecision;
+import com.testinsure.dto.ClaimFilter;
+import com.testinsure.dto.ClaimView;
+import com.testinsure.dto.Cursor;
+import com.testinsure.dto.CursorPage;
 import com.testinsure.entity.Booking;
 import com.testinsure.entity.BookingStatus;
 import com.testinsure.entity.ClaimStatus;
 import com.testinsure.entity.InsuranceClaim;
 import com.testinsure.entity.InsurancePolicy;
 import com.testinsure.entity.PaymentStatus;
+import com.testinsure.entity.TimeSlot;
+import com.testinsure.event.BookingChangedEvent;
+import com.testinsure.event.ClaimChangedEvent;
+import com.testinsure.event.SlotChangedEvent;
 import com.testinsure.repository.BookingRepository;
 import com.testinsure.repository.InsuranceClaimRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class InsuranceClaimService {
 
+    private static final int MAX_BULK_DECISIONS = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final long SUMMARY_REFRESH_MS = 10 * 60_000;
+
     private final InsuranceClaimRepository claimRepository;
     private final BookingRepository bookingRepository;
+    private final TimeSlotRepository slotRepository;
+    private final CoverageLedger coverageLedger;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Per-status counts for the queue landing page: one grouped query, then moved by the claim
+    // events of each committed transaction. Reloaded every SUMMARY_REFRESH_MS in case a status is
+    // ever changed outside the services (e.g. manual SQL). Guarded by 'this'; null = not loaded.
+    private Map<ClaimStatus, Long> statusCounts;
+    private long statusUnknown;  // Claims with no status: in the total only
+    private long statusLoadedAt;
+    private long statusEvents; // A load only installs if no event was applied while it ran
 
-    public InsuranceClaimService(InsuranceClaimRepository claimRepository, BookingRepository bookingRepository) {
+    public InsuranceClaimService(InsuranceClaimRepository claimRepository, BookingRepository bookingRepository,
+                                 TimeSlotRepository slotRepository, CoverageLedger coverageLedger,
+                                 ApplicationEventPublisher eventPublisher) {
         this.claimRepository = claimRepository;
         this.bookingRepository = bookingRepository;
+        this.slotRepository = slotRepository;
+        this.coverageLedger = coverageLedger;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // All claims with booking, patient, test, slot and policy - one query
+    public List<ClaimView> getAllClaims() {
+        return claimRepository.findAllViews();
+    }
+
+    // Claims work queue: filtered, keyset-paginated (raisedAt, claimId), one statement per page
+    public CursorPage<ClaimView> searchClaims(ClaimFilter filter) {
+        int size = filter.getSize() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(filter.getSize(), MAX_PAGE_SIZE));
+        if (filter.getMinAmount() != null && filter.getMaxAmount() != null && filter.getMinAmount().compareTo(filter.getMaxAmount()) > 0) {
+            throw new RuntimeException("minAmount cannot be greater than maxAmount");
+        }
+        Cursor cursor = Cursor.decode(filter.getCursor());
+        boolean ascending = filter.isOldestFirst();
+
+        Specification<InsuranceClaim> spec = (root, query, cb) -> {
+            Join<InsuranceClaim, Booking> booking;
+            Join<InsuranceClaim, InsurancePolicy> policy;
+            if (query.getResultType() != Long.class) {
+                // Everything ClaimView needs in the same statement (no per-row selects)
+                Fetch<InsuranceClaim, Booking> bookingFetch = root.fetch("booking");
+                bookingFetch.fetch("user");
+                bookingFetch.fetch("laboratoryTest");
+                bookingFetch.fetch("timeSlot");
+                bookingFetch.fetch("insuranceClaim", JoinType.LEFT); // Eager inverse one-to-one, already in this row
+                booking = (Join<InsuranceClaim, Booking>) bookingFetch;
+                policy = (Join<InsuranceClaim, InsurancePolicy>) root.<InsuranceClaim, InsurancePolicy>fetch("policy");
+            } else {
+                booking = root.join("booking");
+                policy = root.join("policy");
+            }
+
+            List<Predicate> where = new ArrayList<>();
+            if (filter.getStatus() != null) {
+                where.add(cb.equal(root.get("status"), filter.getStatus()));
+            }
+            if (filter.getProvider() != null && !filter.getProvider().isBlank()) {
+                where.add(cb.equal(policy.get("providerName"), filter.getProvider().trim()));
+            }
+            if (filter.getFrom() != null) {
+                where.add(cb.greaterThanOrEqualTo(root.get("raisedAt"), filter.getFrom().atStartOfDay()));
+            }
+            if (filter.getTo() != null) {
+                where.add(cb.lessThan(root.get("raisedAt"), filter.getTo().plusDays(1).atStartOfDay()));
+            }
+            if (filter.getMinAmount() != null) {
+                where.add(cb.greaterThanOrEqualTo(booking.get("laboratoryTest").get("cost"), filter.getMinAmount()));
+            }
+            if (filter.getMaxAmount() != null) {
+                where.add(cb.lessThanOrEqualTo(booking.get("laboratoryTest").get("cost"), filter.getMaxAmount()));
+            }
+            if (cursor != null) {
+                where.add(ascending
+                        ? cb.or(cb.greaterThan(root.get("raisedAt"), cursor.getAt()),
+                                cb.and(cb.equal(root.get("raisedAt"), cursor.getAt()), cb.greaterThan(root.get("claimId"), cursor.getId())))
+                        : cb.or(cb.lessThan(root.get("raisedAt"), cursor.getAt()),
+                                cb.and(cb.equal(root.get("raisedAt"), cursor.getAt()), cb.lessThan(root.get("claimId"), cursor.getId()))));
+            }
+            return cb.and(where.toArray(new Predicate[0]));
+        };
+
+        // Fetch one extra row to know whether there is a next page
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        List<InsuranceClaim> rows = claimRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(direction, "raisedAt", "claimId"))
+                .limit(size + 1)
+                .all());
+
+        List<ClaimView> items = rows.stream().limit(size).map(ClaimView::from).toList();
+        if (rows.size() <= size) {
+            return new CursorPage<>(items, null);
+        }
+        InsuranceClaim last = rows.get(size - 1);
+        return new CursorPage<>(items, new Cursor(last.getRaisedAt(), last.getClaimId()).encode());
+    }
+
+    // Count per status (every status present, zeros included) plus the total
+    public Map<String, Long> getStatusSummary() {
+        long seen;
+        synchronized (this) {
+            if (statusCounts != null && System.currentTimeMillis() - statusLoadedAt < SUMMARY_REFRESH_MS) {
+                return summary(statusCounts);
+            }
+            seen = statusEvents;
+        }
+
+        Map<ClaimStatus, Long> counts = new EnumMap<>(ClaimStatus.class);
+        for (ClaimStatus status : ClaimStatus.values()) {
+            counts.put(status, 0L);
+        }
+        long unknown = 0; // Rows with no status count towards the total only
+        for (Object[] row : claimRepository.countByStatus()) {
+            if (row[0] != null) {
+                counts.put((ClaimStatus) row[0], (Long) row[1]);
+            } else {
+                unknown += (Long) row[1];
+            }
+        }
+
+        synchronized (this) {
+            if (statusEvents == seen) {
+                statusCounts = counts;
+                statusUnknown = unknown;
+                statusLoadedAt = System.currentTimeMillis();
+            }
+        }
+        return summary(counts, unknown);
     }
 
-    public List<InsuranceClaim> getAllClaims() {
-        return claimRepository.findAll();
+    // Only committed changes move the counts
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onClaimChanged(ClaimChangedEvent event) {
+        statusEvents++;
+        if (statusCounts == null) {
+            return;
+        }
+        if (event.getPrevious() != null) {
+            statusCounts.merge(event.getPrevious(), -1L, Long::sum);
+        } else if (event.getType() != ClaimChangedEvent.Type.RAISED) {
+            statusUnknown--;
+        }
+        statusCounts.merge(event.getStatus(), 1L, Long::sum);
+    }
+
+    private Map<String, Long> summary(Map<ClaimStatus, Long> counts) {
+        return summary(counts, statusUnknown);
+    }
+
+    private static Map<String, Long> summary(Map<ClaimStatus, Long> counts, long unknown) {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        long total = unknown;
+        for (Map.Entry<ClaimStatus, Long> count : counts.entrySet()) {
+            summary.put(count.getKey().name(), count.getValue());
+            total += count.getValue();
+        }
+        summary.put("TOTAL", total);
+        return Collections.unmodifiableMap(summary);
     }
 
     @Transactional
     public InsuranceClaim approveClaim(Long claimId) {
+        InsuranceClaim claim = lockPending(claimId);
+
+        applyApproval(claim);
+        bookingRepository.save(claim.getBooking());
+
+        return claimRepository.save(claim);
+    }
+
+    @Transactional
+    public InsuranceClaim rejectClaim(Long claimId, String reason) { // <--- Must accept String reason
+        InsuranceClaim claim = lockPending(claimId);
+
+        // Cancel the booking so the slot opens up
+        TimeSlot slot = claim.getBooking().getTimeSlot();
+        if (applyRejection(claim, reason) && slotRepository.releaseSeat(slot.getSlotId()) > 0) {
+            eventPublisher.publishEvent(SlotChangedEvent.released(slot.getLaboratoryTest().getTestId(), slot.getSlotId()));
+        }
+        bookingRepository.save(claim.getBooking());
+
+        return claimRepository.save(claim);
+    }
+
+    // Single-claim decisions take the same row lock as adjudicateClaims and, like it, only decide a
+    // PENDING claim: a claim already refunded (rejected, or its booking cancelled) is never credited
+    // twice, and a rejected one can't be approved back without its cost being charged again.
+    private InsuranceClaim lockPending(Long claimId) {
+        claimRepository.lockForAdjudication(List.of(claimId));
         InsuranceClaim claim = claimRepository.findById(claimId)
                 .orElseThrow(() -> new RuntimeException("Claim not found"));
+        if (claim.getStatus() != ClaimStatus.PENDING) {
+            throw new RuntimeException("Claim is already " + claim.getStatus());
+        }
+        return claim;
+    }
+
+    // Bulk adjudication (end-of-day clearing): one fetch-join load, one transaction.
+    // The loaded entities are just modified; the commit flushes them as batched UPDATEs
+    // (hibernate.jdbc.batch_size) and seats go back with one UPDATE per slot.
+    // A claim that can't be decided is reported and skipped; the rest still go through.
+    // The claim rows are locked before they are read, so overlapping calls (another admin, the
+    // expiry sweeper, an insurer ack, a single approve/reject, a booking cancellation, the auto
+    // worker's approveIfPending) take turns and the later one sees the claim already decided:
+    // no second refund, no APPROVED turned REJECTED.
+    @Transactional
+    public BulkAdjudicationResult adjudicateClaims(List<ClaimDecision> decisions) {
+        if (decisions == null || decisions.isEmpty()) {
+            throw new RuntimeException("No claims to adjudicate");
+        }
+        if (decisions.size() > MAX_BULK_DECISIONS) {
+            throw new RuntimeException("Too many claims in one request (max " + MAX_BULK_DECISIONS + ")");
+        }
+
+        Set<Long> ids = new HashSet<>();
+        decisions.forEach(d -> { if (d.getClaimId() != null) ids.add(d.getClaimId()); });
+        Map<Long, InsuranceClaim> claims = new HashMap<>();
+        if (!ids.isEmpty()) {
+            claimRepository.lockForAdjudication(ids);
+        }
+        claimRepository.findAllForAdjudication(ids).forEach(c -> claims.put(c.getClaimId(), c));
+        coverageLedger.preload(claims.values().stream().map(InsuranceClaim::getPolicy).toList());
+
+        BulkAdjudicationResult result = new BulkAdjudicationResult();
+        Set<Long> done = new HashSet<>();
+        Map<TimeSlot, Integer> seatsToRelease = new LinkedHashMap<>();
 
+        for (ClaimDecision decision : decisions) {
+            Long claimId = decision.getClaimId();
+            InsuranceClaim claim = claims.get(claimId);
+            if (claimId == null || decision.getDecision() == null) {
+                result.failed(claimId, decision.getDecision(), "claimId and decision are required");
+            } else if (!done.add(claimId)) {
+                result.failed(claimId, decision.getDecision(), "Claim listed more than once");
+            } else if (claim == null) {
+                result.failed(claimId, decision.getDecision(), "Claim not found");
+            } else if (claim.getStatus() != ClaimStatus.PENDING) {
+                result.failed(claimId, decision.getDecision(), "Claim is already " + claim.getStatus());
+            } else {
+                try {
+                    if (decision.getDecision() == ClaimDecision.Decision.APPROVE) {
+                        applyApproval(claim);
+                    } else {
+                        String reason = decision.getReason() != null ? decision.getReason() : "Claim Rejected by Admin";
+                        if (applyRejection(claim, reason)) {
+                            seatsToRelease.merge(claim.getBooking().getTimeSlot(), 1, Integer::sum);
+                        }
+                    }
+                    result.succeeded(claimId, decision.getDecision(), claim.getStatus());
+                } catch (RuntimeException e) {
+                    result.failed(claimId, decision.getDecision(), e.getMessage());
+                }
+            }
+        }
+
+        seatsToRelease.forEach((slot, seats) -> {
+            if (slotRepository.releaseSeats(slot.getSlotId(), seats) > 0) {
+                eventPublisher.publishEvent(SlotChangedEvent.released(slot.getLaboratoryTest().getTestId(), slot.getSlotId(), seats));
+            }
+        });
+        return result;
+    }
+
+    // One chunk of the auto-adjudication worker: same fetch-join load as the bulk path, then
+    // approve what passes the rules. Approval is a compare-and-set on PENDING so a claim an
+    // admin decided in the meantime is skipped, never overwritten.
+    @Transactional
+    public AutoAdjudicationReport autoApprove(List<Long> claimIds, ClaimAutoRules rules, boolean dryRun) {
+        AutoAdjudicationReport report = new AutoAdjudicationReport(dryRun);
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> paidBookings = new ArrayList<>();
+
+        List<InsuranceClaim> claims = claimRepository.findAllForAdjudication(claimIds);
+        coverageLedger.preload(claims.stream().map(InsuranceClaim::getPolicy).toList());
+
+        for (InsuranceClaim claim : claims) {
+            report.scanned();
+            String reason = claim.getStatus() != ClaimStatus.PENDING ? "Already " + claim.getStatus()
+                    : rules.reviewReason(claim, coverageLedger.balance(claim.getPolicy()), today);
+            if (reason != null) {
+                report.leftForReview(reason);
+            } else if (dryRun) {
+                report.approved();
+            } else if (claimRepository.approveIfPending(claim.getClaimId(), claim.getBooking().getLaboratoryTest().getCost(), now) == 1) {
+                report.approved();
+                paidBookings.add(claim.getBooking().getBookingId());
+                publishApproved(claim, ClaimStatus.PENDING, claim.getBooking().getLaboratoryTest().getCost(), now);
+            } else {
+                report.skipped();
+            }
+        }
+
+        if (!paidBookings.isEmpty()) {
+            bookingRepository.updatePaymentStatus(paidBookings, PaymentStatus.PAID);
+        }
+        return report;
+    }
+
+    // Approval rules. Checks first, so a refused claim is left untouched.
+    private void applyApproval(InsuranceClaim claim) {
         java.math.BigDecimal testCost = claim.getBooking().getLaboratoryTest().getCost();
         InsurancePolicy policy = claim.getPolicy();
 
         // Double check balance
-        if (policy.getCoverageAmount().compareTo(testCost) < 0) {
+        if (coverageLedger.balance(policy).compareTo(testCost) < 0) {
             throw new RuntimeException("Insufficient funds in policy to approve this claim.");
         }
 
         // FIXED: Balance already deducted at booking time.
         // policy.setCoverageAmount(policy.getCoverageAmount().subtract(testCost));
-        // (Since 'policy' is a managed entity in @Transactional, JPA usually saves it auto, 
-        // but let's be safe if your setup varies).
-        
+
+        ClaimStatus previous = claim.getStatus();
         claim.setStatus(ClaimStatus.APPROVED);
         claim.setResolvedAt(LocalDateTime.now());
         claim.setApprovedAmount(testCost);
-        
-        Booking booking = claim.getBooking();
-        booking.setPaymentStatus(PaymentStatus.PAID); 
-        bookingRepository.save(booking);
 
-        return claimRepository.save(claim);
+        claim.getBooking().setPaymentStatus(PaymentStatus.PAID);
+        publishApproved(claim, previous, testCost, claim.getResolvedAt());
     }
 
-    @Transactional
-    public InsuranceClaim rejectClaim(Long claimId, String reason) { // <--- Must accept String reason
-        InsuranceClaim claim = claimRepository.findById(claimId)
-                .orElseThrow(() -> new RuntimeException("Claim not found"));
+    private void publishApproved(InsuranceClaim claim, ClaimStatus previous, java.math.BigDecimal amount, LocalDateTime at) {
+        eventPublisher.publishEvent(ClaimChangedEvent.approved(previous, claim.getPolicy().getProviderName(), amount,
+                claim.getRaisedAt(), at));
+        eventPublisher.publishEvent(BookingChangedEvent.paid(claim.getBooking().getLaboratoryTest().getTestId(), amount));
+    }
 
+    // Rejection rules: refund the policy and cancel the booking.
+    // Returns true if the booking was still holding a seat (the caller gives it back).
+    private boolean applyRejection(InsuranceClaim claim, String reason) {
+        ClaimStatus previous = claim.getStatus();
         claim.setStatus(ClaimStatus.REJECTED);
         claim.setResolvedAt(LocalDateTime.now());
         claim.setRemarks(reason); // Save the remark
 
+        InsurancePolicy policy = claim.getPolicy();
         if (reason != null && reason.toLowerCase().contains("invalid insurance")) {
-            InsurancePolicy policy = claim.getPolicy();
             policy.setStatus(com.testinsure.entity.PolicyStatus.BLOCKED);
         }
 
         // FIX: Refund balance on rejection
-        InsurancePolicy policy = claim.getPolicy();
-        java.math.BigDecimal testCost = claim.getBooking().getLaboratoryTest().getCost();
-        policy.setCoverageAmount(policy.getCoverageAmount().add(testCost));
-        // policyRepository.save(policy); // Managed entity, auto-saved
-
-        // Cancel the booking so the slot opens up
         Booking booking = claim.getBooking();
+        coverageLedger.credit(policy, booking.getLaboratoryTest().getCost(), booking);
+
+        boolean heldSeat = booking.getStatus() != BookingStatus.CANCELLED;
+        boolean wasPaid = booking.getPaymentStatus() == PaymentStatus.PAID;
         booking.setPaymentStatus(PaymentStatus.PENDING);
-        booking.setStatus(BookingStatus.CANCELLED); 
-        bookingRepository.save(booking);
+        booking.setStatus(BookingStatus.CANCELLED);
 
-        return claimRepository.save(claim);
-    }
+        java.math.BigDecimal cost = booking.getLaboratoryTest().getCost();
+        eventPublisher.publishEvent(ClaimChangedEvent.rejected(previous, policy.getProviderName(), cost, claim.getRaisedAt(), claim.getResolvedAt()));
+        if (heldSeat) {
+            eventPublisher.publishEvent(BookingChangedEvent.cancelled(booking.getLaboratoryTest().getTestId(),
+                    wasPaid ? cost : java.math.BigDecimal.ZERO));
+        }
+        return heldSeat;
     }
+}
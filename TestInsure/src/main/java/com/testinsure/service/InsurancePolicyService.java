@@ -13,10 +13,13 @@ public class InsurancePolicyService {
 
     private final InsurancePolicyRepository policyRepository;
     private final UserRepository userRepository;
+    private final CoverageLedger coverageLedger;
 
-    public InsurancePolicyService(InsurancePolicyRepository policyRepository, UserRepository userRepository) {
+    public InsurancePolicyService(InsurancePolicyRepository policyRepository, UserRepository userRepository,
+                                  CoverageLedger coverageLedger) {
         this.policyRepository = policyRepository;
         this.userRepository = userRepository;
+        this.coverageLedger = coverageLedger;
     }
 
     // 1. Add Policy for a specific User
@@ -27,7 +30,9 @@ public class InsurancePolicyService {
         policy.setUser(user);
         policy.setStatus(PolicyStatus.ACTIVE); // Default status is ACTIVE
         
-        return policyRepository.save(policy);
+        InsurancePolicy saved = policyRepository.save(policy);
+        saved.setBalance(saved.getCoverageAmount()); // Nothing spent yet
+        return saved;
     }
 
     // 2. Get all policies for a specific User
@@ -35,6 +40,8 @@ public class InsurancePolicyService {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        return policyRepository.findByUser_UserId(user.getUserId());
+        List<InsurancePolicy> policies = policyRepository.findByUser_UserId(user.getUserId());
+        policies.forEach(p -> p.setBalance(coverageLedger.balance(p)));
+        return policies;
     }
 }
\ No newline at end of file
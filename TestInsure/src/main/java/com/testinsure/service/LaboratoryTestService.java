@@ -1,7 +1,10 @@
 package com.testinsure.service;
 
+import com.testinsure.dto.TestSuggestion;
 import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.event.TestCatalogChangedEvent;
 import com.testinsure.repository.LaboratoryTestRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import java.util.List;
 
@@ -9,19 +12,43 @@ import java.util.List;
 public class LaboratoryTestService {
 
     private final LaboratoryTestRepository testRepository;
+    private final TestCatalogCache catalogCache;
+    private final TestSearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public LaboratoryTestService(LaboratoryTestRepository testRepository) {
+    public LaboratoryTestService(LaboratoryTestRepository testRepository, TestCatalogCache catalogCache,
+                                 TestSearchIndex searchIndex, ApplicationEventPublisher eventPublisher) {
         this.testRepository = testRepository;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     // 1. Add a new Test (Admin only)
     public LaboratoryTest addTest(LaboratoryTest test) {
-        return testRepository.save(test);
+        LaboratoryTest saved = testRepository.save(test);
+        eventPublisher.publishEvent(TestCatalogChangedEvent.saved(saved));
+        return saved;
     }
 
-    // 2. Get all Tests (For Patients to browse)
+    // 2. Get all Tests (For Patients to browse) - served from the in-memory snapshot
     public List<LaboratoryTest> getAllTests() {
-        return testRepository.findAll();
+        return catalogCache.get().getTests();
+    }
+
+    // Same catalog with its pre-serialized JSON and ETag (GET /api/tests)
+    public TestCatalogCache.Snapshot getCatalog() {
+        return catalogCache.get();
+    }
+
+    // Full-text search over name, description and prep instructions (in-memory index)
+    public List<LaboratoryTest> searchTests(String query, Integer limit) {
+        return searchIndex.search(query, clamp(limit, 20, 100));
+    }
+
+    // Search-box suggestions by test name
+    public List<TestSuggestion> suggestTests(String prefix, Integer limit) {
+        return searchIndex.autocomplete(prefix, clamp(limit, 10, 50));
     }
 
     // 3. Update a Test
@@ -34,11 +61,18 @@ public class LaboratoryTestService {
         existing.setCost(updatedTest.getCost());
         existing.setPrepInstructions(updatedTest.getPrepInstructions());
         
-        return testRepository.save(existing);
+        LaboratoryTest saved = testRepository.save(existing);
+        eventPublisher.publishEvent(TestCatalogChangedEvent.saved(saved));
+        return saved;
     }
     
     // 4. Delete a Test
     public void deleteTest(Long id) {
         testRepository.deleteById(id);
+        eventPublisher.publishEvent(TestCatalogChangedEvent.deleted(id));
+    }
+
+    private static int clamp(Integer limit, int defaultLimit, int maxLimit) {
+        return limit == null || limit < 1 ? defaultLimit : Math.min(limit, maxLimit);
     }
-}
\ No newline at end of file
+}
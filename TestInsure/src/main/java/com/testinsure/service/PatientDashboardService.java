@@ -0,0 +1,98 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.BookingView;
+import com.testinsure.dto.ClaimView;
+import com.testinsure.dto.PatientDashboard;
+import com.testinsure.dto.PolicyBalance;
+import com.testinsure.dto.ReportSummary;
+import com.testinsure.entity.BookingStatus;
+import com.testinsure.entity.ClaimStatus;
+import com.testinsure.entity.User;
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.InsuranceClaimRepository;
+import com.testinsure.repository.InsurancePolicyRepository;
+import com.testinsure.repository.ReportRepository;
+import com.testinsure.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * Patient dashboard in one call.
+ *
+ * The five sections are independent single-statement queries keyed by the patient's
+ * email (no user lookup first), so they run side by side on a small shared pool and
+ * the response takes about as long as the slowest one instead of the sum.
+ */
+@Service
+public class PatientDashboardService {
+
+    private static final EnumSet<BookingStatus> UPCOMING = EnumSet.of(BookingStatus.CREATED, BookingStatus.CONFIRMED);
+
+    private final UserRepository userRepository;
+    private final BookingRepository bookingRepository;
+    private final InsurancePolicyRepository policyRepository;
+    private final InsuranceClaimRepository claimRepository;
+    private final ReportRepository reportRepository;
+    private final ExecutorService executor;
+
+    public PatientDashboardService(UserRepository userRepository, BookingRepository bookingRepository,
+                                   InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository,
+                                   ReportRepository reportRepository,
+                                   @Value("${testinsure.dashboard.threads:8}") int threads) {
+        this.userRepository = userRepository;
+        this.bookingRepository = bookingRepository;
+        this.policyRepository = policyRepository;
+        this.claimRepository = claimRepository;
+        this.reportRepository = reportRepository;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "dashboard-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PatientDashboard getDashboard(String email) {
+        CompletableFuture<Optional<User>> user = async(() -> userRepository.findByEmail(email));
+        CompletableFuture<List<BookingView>> bookings =
+                async(() -> bookingRepository.findUpcomingViewsByUserEmail(email, UPCOMING, LocalDate.now()));
+        CompletableFuture<List<PolicyBalance>> policies = async(() -> policyRepository.findBalancesByUserEmail(email));
+        CompletableFuture<List<ClaimView>> claims =
+                async(() -> claimRepository.findViewsByUserEmailAndStatus(email, ClaimStatus.PENDING));
+        CompletableFuture<List<ReportSummary>> reports = async(() -> reportRepository.findSummariesByUserEmail(email));
+
+        try {
+            CompletableFuture.allOf(user, bookings, policies, claims, reports).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Could not load dashboard", e.getCause());
+        }
+
+        User me = user.join().orElseThrow(() -> new RuntimeException("User not found"));
+        return new PatientDashboard(me.getName(), me.getEmail(), bookings.join(), policies.join(), claims.join(), reports.join());
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
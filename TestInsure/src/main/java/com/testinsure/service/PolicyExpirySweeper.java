@@ -0,0 +1,181 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.BulkAdjudicationResult;
+import com.testinsure.dto.ClaimDecision;
+import com.testinsure.dto.PolicyExpiryReport;
+import com.testinsure.repository.InsuranceClaimRepository;
+import com.testinsure.repository.InsurancePolicyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Moves policies past their expiryDate from ACTIVE to EXPIRED (testinsure.policies.expiry.*),
+ * so booking only has to look at the status.
+ *
+ * Every interval-ms the sweeper reads ACTIVE policies with expiryDate < today from the
+ * (status, expiry_date, policy_id) index, chunk-size at a time. Each chunk is its own
+ * transaction: one conditional UPDATE to EXPIRED, then the PENDING claims on those policies
+ * go through the pending-claims rule and the rejected ones through the bulk adjudication path
+ * (refund, booking cancelled, seat released). The status change is the progress marker: a
+ * committed chunk no longer matches the scan, so a sweep stopped half way (restart, crash)
+ * simply resumes with what is still ACTIVE. A chunk that fails is skipped for the rest of the
+ * run and retried by the next one.
+ *
+ * pending-claims rule for claims on a policy that has just expired:
+ *   KEEP                 leave every one for an admin
+ *   REJECT_AFTER_EXPIRY  reject those raised more than grace-days after the expiry date
+ *                        (the booking was made on a policy that had already run out)
+ *   REJECT_ALL           reject every one
+ */
+@Component
+public class PolicyExpirySweeper {
+
+    public enum PendingClaims { KEEP, REJECT_AFTER_EXPIRY, REJECT_ALL }
+
+    private static final int MAX_DECISIONS = 1000; // InsuranceClaimService.adjudicateClaims limit
+
+    private final InsurancePolicyRepository policyRepository;
+    private final InsuranceClaimRepository claimRepository;
+    private final InsuranceClaimService claimService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final PendingClaims pendingClaims;
+    private final int graceDays;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Lifetime numbers for /expiry/stats
+    private long runs;
+    private long expired;
+    private long claimsRejected;
+    private long failedChunks;
+    private PolicyExpiryReport lastRun;
+
+    public PolicyExpirySweeper(InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository,
+                               InsuranceClaimService claimService, PlatformTransactionManager transactionManager,
+                               @Value("${testinsure.policies.expiry.enabled:true}") boolean enabled,
+                               @Value("${testinsure.policies.expiry.chunk-size:500}") int chunkSize,
+                               @Value("${testinsure.policies.expiry.pending-claims:REJECT_AFTER_EXPIRY}") PendingClaims pendingClaims,
+                               @Value("${testinsure.policies.expiry.grace-days:0}") int graceDays) {
+        this.policyRepository = policyRepository;
+        this.claimRepository = claimRepository;
+        this.claimService = claimService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pendingClaims = pendingClaims;
+        this.graceDays = Math.max(0, graceDays);
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.policies.expiry.initial-delay-ms:30000}",
+               fixedDelayString = "${testinsure.policies.expiry.interval-ms:3600000}")
+    public void scheduledSweep() {
+        if (enabled && !running.get()) {
+            sweep(LocalDate.now());
+        }
+    }
+
+    // Expire every ACTIVE policy whose expiryDate is before 'today'. Also used by the admin endpoint.
+    public PolicyExpiryReport sweep(LocalDate today) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Policy expiry sweep is already running");
+        }
+        try {
+            PolicyExpiryReport report = new PolicyExpiryReport(today);
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+
+            List<Object[]> rows = policyRepository.findExpiredActive(today, Limit.of(chunkSize));
+            while (!rows.isEmpty()) {
+                List<Long> ids = rows.stream().map(r -> (Long) r[0]).toList();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> expireChunk(ids, today, report));
+                } catch (RuntimeException e) {
+                    report.failed(e.getMessage());
+                }
+                Object[] last = rows.get(rows.size() - 1);
+                rows = policyRepository.findExpiredActiveAfter(today, (LocalDate) last[1], (Long) last[0], Limit.of(chunkSize));
+            }
+
+            report.finished(startedAt, (System.nanoTime() - start) / 1_000_000);
+            record(report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void expireChunk(List<Long> policyIds, LocalDate today, PolicyExpiryReport report) {
+        int count = policyRepository.expireIfActive(policyIds, today);
+
+        List<ClaimDecision> rejections = new ArrayList<>();
+        int kept = 0;
+        for (Object[] row : claimRepository.findPendingOnExpiredPolicies(policyIds)) {
+            LocalDateTime raisedAt = (LocalDateTime) row[1];
+            LocalDate expiryDate = (LocalDate) row[2];
+            if (shouldReject(raisedAt, expiryDate)) {
+                ClaimDecision decision = new ClaimDecision();
+                decision.setClaimId((Long) row[0]);
+                decision.setDecision(ClaimDecision.Decision.REJECT);
+                decision.setReason("Policy expired on " + expiryDate);
+                rejections.add(decision);
+            } else {
+                kept++;
+            }
+        }
+
+        int rejected = 0;
+        for (int i = 0; i < rejections.size(); i += MAX_DECISIONS) {
+            BulkAdjudicationResult result = claimService.adjudicateClaims(rejections.subList(i, Math.min(i + MAX_DECISIONS, rejections.size())));
+            rejected += result.getRejected();
+            kept += result.getFailed();
+        }
+        report.chunk(count, rejected, kept);
+    }
+
+    private boolean shouldReject(LocalDateTime raisedAt, LocalDate expiryDate) {
+        switch (pendingClaims) {
+            case REJECT_ALL:
+                return true;
+            case REJECT_AFTER_EXPIRY:
+                return raisedAt != null && raisedAt.toLocalDate().isAfter(expiryDate.plusDays(graceDays));
+            default:
+                return false;
+        }
+    }
+
+    private synchronized void record(PolicyExpiryReport report) {
+        runs++;
+        expired += report.getExpired();
+        claimsRejected += report.getClaimsRejected();
+        failedChunks += report.getFailedChunks();
+        lastRun = report;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("pendingClaims", pendingClaims);
+        stats.put("graceDays", graceDays);
+        stats.put("runs", runs);
+        stats.put("expired", expired);
+        stats.put("claimsRejected", claimsRejected);
+        stats.put("failedChunks", failedChunks);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+}
@@ -0,0 +1,443 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.ReportBulkResult;
+import com.testinsure.dto.ReportBulkResult.FileResult;
+import com.testinsure.entity.Booking;
+import com.testinsure.entity.Report;
+import com.testinsure.entity.Role;
+import com.testinsure.entity.User;
+import com.testinsure.event.ReportStoredEvent;
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.ReportRepository;
+import com.testinsure.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/*
+ * Bulk report ingestion (testinsure.reports.bulk.*): a ZIP posted to /api/reports/bulk, or ZIP
+ * files and folders dropped into <drop-dir>/inbox. Every file is named by its booking id,
+ * "1042.pdf" or "1042_lipid-profile.pdf"; anything else is listed as SKIPPED.
+ *
+ * A posted ZIP is spooled to disk first (the container already has it there) and opened as a
+ * ZipFile, so entries can be read independently. Files go through in windows of batch-size:
+ *   1. each file is inflated, hashed and staged in the report store by a pool of 'threads'
+ *      workers (bounded: a window never stages more than batch-size files at once);
+ *   2. the window is committed in one transaction: bookings and their existing reports are
+ *      loaded in one query each, every file is stored (deduplicated) and attached to its
+ *      report exactly like a single upload, bookings go to COMPLETED, and the report rows and
+ *      booking updates are flushed together. Previews are queued as for a single upload.
+ * A file that fails (booking not found, too large, unreadable) is reported and the rest of its
+ * window still commits; a window whose transaction fails is reported file by file and the
+ * following windows carry on. The result lists every file with what became of it.
+ *
+ * Drop folder: every scan-interval-ms, inbox entries untouched for settle-seconds (copy
+ * finished) are ingested and moved to processed/, or failed/ if they couldn't be read at all,
+ * with <name>.manifest.json written beside them. Dropped files carry no login, so the admin
+ * recorded as their uploader is admin-email; until it is set the drop folder is left alone.
+ */
+@Service
+public class ReportBulkImporter {
+
+    // Booking id, then the end of the name or a separator
+    private static final Pattern BOOKING_FILE = Pattern.compile("^(\\d{1,18})(?:[._ -].*)?$");
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final ReportStore reportStore;
+    private final ReportRepository reportRepository;
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final JsonMapper jsonMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Path spoolDir;
+    private final int threads;
+    private final int batchSize;
+    private final int maxFiles;
+    private final boolean dropEnabled;
+    private final Path inbox;
+    private final long settleSeconds;
+    private final String dropAdminEmail;
+
+    private final Object scanLock = new Object();
+
+    // Lifetime numbers for /bulk/stats
+    private long runs;
+    private long files;
+    private long stored;
+    private long replaced;
+    private long failed;
+
+    public ReportBulkImporter(ReportStore reportStore, ReportRepository reportRepository, BookingRepository bookingRepository,
+                              UserRepository userRepository, JsonMapper jsonMapper, ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${testinsure.reports.dir:uploads}") String reportsDir,
+                              @Value("${testinsure.reports.bulk.threads:4}") int threads,
+                              @Value("${testinsure.reports.bulk.batch-size:50}") int batchSize,
+                              @Value("${testinsure.reports.bulk.max-files:5000}") int maxFiles,
+                              @Value("${testinsure.reports.bulk.drop-enabled:false}") boolean dropEnabled,
+                              @Value("${testinsure.reports.bulk.drop-dir:report-drop}") String dropDir,
+                              @Value("${testinsure.reports.bulk.settle-seconds:30}") long settleSeconds,
+                              @Value("${testinsure.reports.bulk.admin-email:}") String dropAdminEmail) {
+        this.reportStore = reportStore;
+        this.reportRepository = reportRepository;
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.jsonMapper = jsonMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.spoolDir = Paths.get(reportsDir, ".tmp");
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFiles = Math.max(1, maxFiles);
+        this.dropEnabled = dropEnabled;
+        this.inbox = Paths.get(dropDir, "inbox");
+        this.settleSeconds = settleSeconds;
+        this.dropAdminEmail = dropAdminEmail;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "report-ingest-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 1. A ZIP uploaded by an admin
+    public ReportBulkResult importZip(MultipartFile file, String adminEmail) throws IOException {
+        if (file.isEmpty()) {
+            throw new RuntimeException("Error: The uploaded file is empty!");
+        }
+        User admin = admin(adminEmail);
+        Files.createDirectories(spoolDir);
+        Path spooled = spoolDir.resolve(UUID.randomUUID() + ".zip");
+        try {
+            file.transferTo(spooled); // Usually a rename of the container's own temp file
+            return importZip(spooled, file.getOriginalFilename(), admin);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    // 2. Everything waiting in the drop folder's inbox
+    @Scheduled(initialDelayString = "${testinsure.reports.bulk.scan-interval-ms:60000}",
+               fixedDelayString = "${testinsure.reports.bulk.scan-interval-ms:60000}")
+    public void scheduledScan() throws IOException {
+        if (dropEnabled) {
+            scanDropFolder();
+        }
+    }
+
+    public List<ReportBulkResult> scanDropFolder() throws IOException {
+        if (dropAdminEmail == null || dropAdminEmail.isBlank()) {
+            // Reports must name the admin who really stands behind them, so nothing is read until one is set
+            throw new RuntimeException("Drop folder ingestion needs testinsure.reports.bulk.admin-email");
+        }
+        synchronized (scanLock) {
+            Files.createDirectories(inbox);
+            List<Path> entries;
+            try (Stream<Path> listing = Files.list(inbox)) {
+                entries = listing.filter(p -> !p.getFileName().toString().startsWith(".")).sorted().toList();
+            }
+
+            List<ReportBulkResult> results = new ArrayList<>();
+            User admin = null;
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                boolean zip = Files.isRegularFile(entry) && name.toLowerCase(Locale.ROOT).endsWith(".zip");
+                if (!zip && !Files.isDirectory(entry) || !settled(entry)) {
+                    continue; // processed/ and failed/ live next to the inbox, so they never show up here
+                }
+
+                if (admin == null) {
+                    admin = admin(dropAdminEmail); // Outside the try: a wrong address fails the scan, not the files
+                }
+                ReportBulkResult result;
+                Path target;
+                try {
+                    result = zip ? importZip(entry, name, admin) : importDirectory(entry, name, admin);
+                    target = inbox.resolveSibling("processed");
+                } catch (IOException | RuntimeException e) {
+                    result = new ReportBulkResult(name);
+                    result.failed(e.getMessage());
+                    target = inbox.resolveSibling("failed");
+                }
+                Files.createDirectories(target);
+                Path moved = unused(target, name);
+                Files.move(entry, moved, StandardCopyOption.ATOMIC_MOVE);
+                jsonMapper.writeValue(moved.resolveSibling(moved.getFileName() + ".manifest.json").toFile(), result);
+                results.add(result);
+            }
+            return results;
+        }
+    }
+
+    ReportBulkResult importZip(Path zip, String source, User admin) throws IOException {
+        try (ZipFile archive = new ZipFile(zip.toFile())) {
+            List<Source> sources = archive.stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .map(entry -> new Source(entry.getName(), () -> archive.getInputStream(entry)))
+                    .toList();
+            return ingest(source, sources, admin);
+        } catch (ZipException e) {
+            throw new RuntimeException("Not a readable ZIP file: " + e.getMessage());
+        }
+    }
+
+    ReportBulkResult importDirectory(Path dir, String source, User admin) throws IOException {
+        List<Source> sources;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            sources = walk.filter(Files::isRegularFile).sorted()
+                    .map(file -> new Source(dir.relativize(file).toString().replace('\\', '/'), () -> Files.newInputStream(file)))
+                    .toList();
+        }
+        return ingest(source, sources, admin);
+    }
+
+    private ReportBulkResult ingest(String source, List<Source> sources, User admin) {
+        if (sources.size() > maxFiles) {
+            throw new RuntimeException("Too many files: " + sources.size() + " (max " + maxFiles + ")");
+        }
+        ReportBulkResult result = new ReportBulkResult(source);
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+
+        // Names are checked up front, so a booking listed twice is caught whichever window it falls in
+        List<Source> wanted = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Source file : sources) {
+            String base = file.name.substring(file.name.lastIndexOf('/') + 1);
+            Matcher matcher = BOOKING_FILE.matcher(base);
+            if (base.startsWith(".") || file.name.startsWith("__MACOSX/")) {
+                result.add(FileResult.skipped(file.name, "Hidden or system file"));
+            } else if (!matcher.matches()) {
+                result.add(FileResult.skipped(file.name, "File name must start with the booking id"));
+            } else if (!seen.add(file.bookingId = Long.valueOf(matcher.group(1)))) {
+                result.add(FileResult.failed(file.name, file.bookingId, "Booking appears more than once in this upload"));
+            } else {
+                wanted.add(file);
+            }
+        }
+
+        for (int from = 0; from < wanted.size(); from += batchSize) {
+            List<Source> window = wanted.subList(from, Math.min(from + batchSize, wanted.size()));
+            commit(stage(window), admin, result);
+        }
+
+        result.finished(startedAt, (System.nanoTime() - start) / 1_000_000);
+        record(result);
+        return result;
+    }
+
+    // Inflate, hash and stage one window of files on the pool
+    private List<Staging> stage(List<Source> window) {
+        List<Future<Staging>> futures = new ArrayList<>(window.size());
+        for (Source file : window) {
+            futures.add(executor.submit(() -> {
+                try (InputStream in = file.opener.open()) {
+                    return new Staging(file, reportStore.stage(in), null);
+                } catch (IOException | RuntimeException e) {
+                    return new Staging(file, null, e.getMessage());
+                }
+            }));
+        }
+        List<Staging> staged = new ArrayList<>(window.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                staged.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                staged.add(new Staging(window.get(i), null, "Interrupted"));
+            } catch (ExecutionException e) {
+                staged.add(new Staging(window.get(i), null, e.getCause().getMessage()));
+            }
+        }
+        return staged;
+    }
+
+    // One transaction for the window: store, attach, complete bookings
+    private void commit(List<Staging> window, User admin, ReportBulkResult result) {
+        List<Staging> ready = new ArrayList<>();
+        for (Staging staging : window) {
+            if (staging.staged == null) {
+                result.add(FileResult.failed(staging.file.name, staging.file.bookingId, staging.error));
+            } else {
+                ready.add(staging);
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+
+        List<FileResult> outcomes = new ArrayList<>(ready.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                outcomes.clear();
+                List<Long> ids = ready.stream().map(s -> s.file.bookingId).toList();
+                Map<Long, Booking> bookings = index(bookingRepository.findAllById(ids), Booking::getBookingId);
+                Map<Long, Report> existing = index(reportRepository.findByBooking_BookingIdIn(ids), r -> r.getBooking().getBookingId());
+
+                List<Report> reports = new ArrayList<>(ready.size());
+                List<Staging> attached = new ArrayList<>(ready.size());
+                for (Staging staging : ready) {
+                    Booking booking = bookings.get(staging.file.bookingId);
+                    if (booking == null) {
+                        reportStore.discard(staging.staged);
+                        outcomes.add(FileResult.failed(staging.file.name, staging.file.bookingId, "Booking not found"));
+                        continue;
+                    }
+                    Report report = existing.getOrDefault(booking.getBookingId(), new Report());
+                    staging.replaced = report.getReportId() != null;
+                    try {
+                        ReportStore.Blob blob = reportStore.put(staging.staged);
+                        ReportService.attach(report, booking, admin, blob, staging.file.name, null, reportStore);
+                        eventPublisher.publishEvent(new ReportStoredEvent(report.getSha256(), report.getContentType()));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                    reports.add(report);
+                    attached.add(staging);
+                }
+                reportRepository.saveAll(reports);
+                for (int i = 0; i < reports.size(); i++) {
+                    Report report = reports.get(i);
+                    Staging staging = attached.get(i);
+                    outcomes.add(FileResult.stored(staging.file.name, staging.file.bookingId, staging.replaced,
+                            report.getReportId(), report.getSha256(), report.getSizeBytes()));
+                }
+            });
+            result.batchCommitted();
+            outcomes.forEach(result::add);
+        } catch (RuntimeException e) {
+            // Rolled back: staged files that were put are removed by the store, the rest here
+            for (Staging staging : ready) {
+                reportStore.discard(staging.staged);
+                result.add(FileResult.failed(staging.file.name, staging.file.bookingId, "Batch not saved: " + e.getMessage()));
+            }
+        }
+    }
+
+    private User admin(String email) {
+        return userRepository.findByEmail(email)
+                .filter(user -> user.getRole() == Role.ADMIN)
+                .orElseThrow(() -> new RuntimeException("Admin not found"));
+    }
+
+    // Nothing inside was modified for settle-seconds
+    private boolean settled(Path entry) throws IOException {
+        Instant cutoff = Instant.now().minusSeconds(settleSeconds);
+        try (Stream<Path> walk = Files.walk(entry)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                if (Files.getLastModifiedTime(path).toInstant().isAfter(cutoff)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Path unused(Path dir, String name) {
+        Path target = dir.resolve(name);
+        return Files.exists(target) ? dir.resolve(LocalDateTime.now().format(STAMP) + "_" + name) : target;
+    }
+
+    private static <T> Map<Long, T> index(List<T> rows, Function<T, Long> key) {
+        Map<Long, T> byId = new HashMap<>();
+        rows.forEach(row -> byId.put(key.apply(row), row));
+        return byId;
+    }
+
+    private synchronized void record(ReportBulkResult result) {
+        runs++;
+        files += result.getFiles();
+        stored += result.getStored();
+        replaced += result.getReplaced();
+        failed += result.getFailed();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("batchSize", batchSize);
+        stats.put("dropEnabled", dropEnabled);
+        stats.put("inbox", inbox.toAbsolutePath().toString());
+        stats.put("runs", runs);
+        stats.put("files", files);
+        stats.put("stored", stored);
+        stats.put("replaced", replaced);
+        stats.put("failed", failed);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    // One file of the ZIP / folder
+    private static class Source {
+        private final String name;
+        private final Opener opener;
+        private Long bookingId;
+
+        Source(String name, Opener opener) {
+            this.name = name;
+            this.opener = opener;
+        }
+    }
+
+    private static class Staging {
+        private final Source file;
+        private final ReportStore.Staged staged; // null if staging failed
+        private final String error;
+        private boolean replaced;
+
+        Staging(Source file, ReportStore.Staged staged, String error) {
+            this.file = file;
+            this.staged = staged;
+            this.error = error;
+        }
+    }
+}
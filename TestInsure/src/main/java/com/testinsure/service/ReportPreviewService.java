@@ -0,0 +1,337 @@
+package com.testinsure.service;
+
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PRStream;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfNumber;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import com.testinsure.entity.Report;
+import com.testinsure.event.ReportStoredEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Small first-page previews of reports (testinsure.reports.preview.*), so the dashboard can
+ * show what a report looks like without pulling the original.
+ *
+ * After an upload commits, the blob is queued for rendering on a pool of 'threads' workers
+ * with a queue of queue-capacity; when the queue is full the request is dropped and the
+ * preview is rendered the first time someone asks for it instead. What gets rendered:
+ *   - images: decoded with subsampling (a 24 MP scan is read at a fraction of its pixels)
+ *     and scaled to 'width' pixels;
+ *   - PDFs: the largest JPEG on the first page (a scanned report) or, for a generated
+ *     report, the first page's text laid out on a page of the same proportions. There is
+ *     no PDF rasteriser on the classpath, so vector drawings are not shown.
+ * The result is a JPEG of a few tens of KB at <sha256>.preview.jpg beside the blob, so it is
+ * shared by identical uploads, survives the blob moving to the cold tier and is deleted with
+ * it. A report that can't be previewed gets an empty file, so it isn't retried on every view.
+ */
+@Service
+public class ReportPreviewService {
+
+    private static final String PDF = "application/pdf";
+
+    private final ReportStore reportStore;
+    private final boolean enabled;
+    private final int width;
+    private final float quality;
+    private final ThreadPoolExecutor executor;
+
+    // Blobs queued or being rendered, so each is rendered once however often it is asked for
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong unsupported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ReportPreviewService(ReportStore reportStore,
+                                @Value("${testinsure.reports.preview.enabled:true}") boolean enabled,
+                                @Value("${testinsure.reports.preview.threads:2}") int threads,
+                                @Value("${testinsure.reports.preview.queue-capacity:500}") int queueCapacity,
+                                @Value("${testinsure.reports.preview.width:320}") int width,
+                                @Value("${testinsure.reports.preview.quality:0.75}") float quality) {
+        this.reportStore = reportStore;
+        this.enabled = enabled;
+        this.width = Math.max(16, width);
+        this.quality = Math.max(0.1f, Math.min(1f, quality));
+
+        AtomicInteger count = new AtomicInteger();
+        int size = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread thread = new Thread(r, "report-preview-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 1. A report was stored: render its preview once the upload has committed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReportStored(ReportStoredEvent event) {
+        request(event.getSha256(), event.getContentType());
+    }
+
+    // 2. The preview file for a report, or null if there is none (yet: a missing one is queued)
+    public Path preview(Report report) throws IOException {
+        if (report.getSha256() == null || report.getFileName() == null) {
+            return null; // Stored before the blob store; no preview
+        }
+        Path preview = reportStore.previewPath(report.getSha256());
+        if (Files.isRegularFile(preview)) {
+            return Files.size(preview) > 0 ? preview : null;
+        }
+        request(report.getSha256(), report.getContentType());
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("threads", executor.getCorePoolSize());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("rendered", rendered.get());
+        stats.put("unsupported", unsupported.get());
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void request(String sha256, String contentType) {
+        if (!enabled || !renderable(contentType) || !pending.add(sha256)) {
+            return;
+        }
+        if (Files.exists(reportStore.previewPath(sha256))) {
+            pending.remove(sha256);
+            return;
+        }
+        try {
+            executor.execute(() -> render(sha256, contentType));
+        } catch (RejectedExecutionException e) {
+            pending.remove(sha256); // Queue full; asked for again on the next view
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void render(String sha256, String contentType) {
+        try {
+            Path target = reportStore.previewPath(sha256);
+            ReportStore.Content content = reportStore.content(sha256);
+            BufferedImage page;
+            try {
+                page = PDF.equals(contentType) ? pdfPage(content) : image(content.open());
+            } catch (IOException | RuntimeException e) {
+                page = null; // Corrupt or unreadable file: nothing to show, same as an unsupported one
+            }
+            write(target, page == null ? null : scaled(page));
+            (page == null ? unsupported : rendered).incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet(); // Blob not there (yet) or disk trouble; tried again on the next view
+        } finally {
+            pending.remove(sha256);
+        }
+    }
+
+    // A scanned first page, else the first page's text; null if the page has neither
+    private BufferedImage pdfPage(ReportStore.Content content) throws IOException {
+        Path file = content.getFile();
+        Path copy = null;
+        if (file == null) {
+            // Packed in the cold tier: the PDF reader needs random access
+            copy = Files.createTempFile("report-preview", ".pdf");
+            try (InputStream in = content.open()) {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            file = copy;
+        }
+        try {
+            // Partial read: only the xref and the objects the first page uses are loaded
+            PdfReader reader = new PdfReader(new RandomAccessFileOrArray(file.toString(), false, true), null);
+            try {
+                byte[] scan = largestJpeg(reader.getPageN(1));
+                BufferedImage image = scan == null ? null : image(new ByteArrayInputStream(scan));
+                if (image != null) {
+                    return image;
+                }
+                Rectangle size = reader.getPageSizeWithRotation(1);
+                return textPage(new PdfTextExtractor(reader).getTextFromPage(1), size.getHeight() / size.getWidth());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            if (copy != null) {
+                Files.deleteIfExists(copy);
+            }
+        }
+    }
+
+    private static byte[] largestJpeg(PdfDictionary page) throws IOException {
+        PdfDictionary resources = page.getAsDict(PdfName.RESOURCES);
+        PdfDictionary xObjects = resources == null ? null : resources.getAsDict(PdfName.XOBJECT);
+        if (xObjects == null) {
+            return null;
+        }
+        PRStream largest = null;
+        long largestPixels = 0;
+        for (PdfName key : xObjects.getKeys()) {
+            PdfObject object = PdfReader.getPdfObject(xObjects.get(key));
+            if (!(object instanceof PRStream stream) || !PdfName.IMAGE.equals(stream.getAsName(PdfName.SUBTYPE))) {
+                continue;
+            }
+            PdfObject filter = PdfReader.getPdfObject(stream.get(PdfName.FILTER));
+            if (filter instanceof PdfArray array && array.size() == 1) {
+                filter = PdfReader.getPdfObject(array.getPdfObject(0));
+            }
+            PdfNumber w = stream.getAsNumber(PdfName.WIDTH);
+            PdfNumber h = stream.getAsNumber(PdfName.HEIGHT);
+            if (PdfName.DCTDECODE.equals(filter) && w != null && h != null && (long) w.intValue() * h.intValue() > largestPixels) {
+                largest = stream;
+                largestPixels = (long) w.intValue() * h.intValue();
+            }
+        }
+        return largest == null ? null : PdfReader.getStreamBytesRaw(largest);
+    }
+
+    // Decoded at roughly twice the preview width, and only the top part a preview can show (at
+    // most twice as tall as wide), so neither a huge scan nor a very long strip sits in memory
+    private BufferedImage image(InputStream source) throws IOException {
+        try (InputStream in = source; ImageInputStream images = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = images == null ? null : ImageIO.getImageReaders(images);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(images, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                int step = Math.max(1, sourceWidth / (width * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new java.awt.Rectangle(0, 0, sourceWidth, (int) Math.min(sourceHeight, 2L * sourceWidth)));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // The first lines of a generated report, on a white page of its proportions
+    private BufferedImage textPage(String text, float aspect) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        int height = Math.round(width * Math.max(0.5f, Math.min(2f, aspect)));
+        BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = page.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(Color.DARK_GRAY);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, Math.max(6, width / 40)));
+            int margin = width / 16;
+            int lineHeight = g.getFontMetrics().getHeight();
+            int y = margin + g.getFontMetrics().getAscent();
+            for (String line : text.split("\\R")) {
+                if (y > height - margin) {
+                    break;
+                }
+                g.drawString(line, margin, y); // Clipped at the page edge
+                y += lineHeight;
+            }
+        } finally {
+            g.dispose();
+        }
+        return page;
+    }
+
+    // To 'width' pixels wide (never enlarged) on white, which also flattens transparency for JPEG
+    private BufferedImage scaled(BufferedImage source) {
+        int w = Math.min(width, source.getWidth());
+        int h = Math.max(1, Math.min(w * 2, Math.round((float) source.getHeight() * w / source.getWidth())));
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = preview.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            // Very tall images keep their top (the header of a long report), not a squashed whole
+            int sourceHeight = Math.min(source.getHeight(), Math.round((float) h * source.getWidth() / w));
+            g.drawImage(source, 0, 0, w, h, 0, 0, source.getWidth(), sourceHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return preview;
+    }
+
+    // JPEG through a temp file and a rename, so a reader never sees half a preview; null writes the "no preview" marker
+    private void write(Path target, BufferedImage preview) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+        Files.deleteIfExists(temp);
+        if (preview == null) {
+            Files.createFile(temp);
+        } else {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(preview, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean renderable(String contentType) {
+        return contentType != null && (contentType.startsWith("image/") || PDF.equals(contentType));
+    }
+}
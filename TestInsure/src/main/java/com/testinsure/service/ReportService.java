@@ -4,72 +4,151 @@ import com.testinsure.entity.Booking;
 import com.testinsure.entity.BookingStatus; // Import the Enum
 import com.testinsure.entity.Report;
 import com.testinsure.entity.User;
+import com.testinsure.event.ReportStoredEvent;
 import com.testinsure.repository.BookingRepository;
 import com.testinsure.repository.ReportRepository;
 import com.testinsure.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Map;
 
+/*
+ * Lab reports, with the bytes kept in ReportStore (content-addressed, deduplicated).
+ *
+ * An upload is streamed to disk, hashed (SHA-256) and capped at max-bytes by the store; the
+ * report row records the blob's path, size, hash and a content type resolved here once, so a
+ * download can answer with Content-Length, ETag and Content-Type without opening or probing
+ * the file. The blob only becomes visible once the report row commits. Old reports may have
+ * moved to the cold tier since; contentOf() finds them wherever they are.
+ *
+ * Uploading again for the same booking replaces its report: the row now points at the new
+ * blob and gives up its reference on the old one. Each upload also queues a preview image
+ * (ReportPreviewService) for the dashboard.
+ */
 @Service
 public class ReportService {
 
-    private static final String UPLOAD_DIR = "uploads/";
-
     private final ReportRepository reportRepository;
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
+    private final ReportStore reportStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long maxBytes;
 
-    public ReportService(ReportRepository reportRepository, BookingRepository bookingRepository, UserRepository userRepository) {
+    public ReportService(ReportRepository reportRepository, BookingRepository bookingRepository, UserRepository userRepository,
+                         ReportStore reportStore, ApplicationEventPublisher eventPublisher,
+                         @Value("${testinsure.reports.max-bytes:209715200}") long maxBytes) {
         this.reportRepository = reportRepository;
         this.bookingRepository = bookingRepository;
         this.userRepository = userRepository;
-        
-        File directory = new File(UPLOAD_DIR);
-        if (!directory.exists()) {
-            directory.mkdirs();
-        }
+        this.reportStore = reportStore;
+        this.eventPublisher = eventPublisher;
+        this.maxBytes = maxBytes;
     }
 
+    @Transactional
     public Report uploadReport(Long bookingId, MultipartFile file, String adminEmail) throws IOException {
-        
+
         if (file.isEmpty()) {
             throw new RuntimeException("Error: The uploaded file is empty!");
         }
+        if (file.getSize() > maxBytes) {
+            throw new RuntimeException("Error: The report is too large (max " + maxBytes + " bytes)");
+        }
 
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
-        
+
         User admin = userRepository.findByEmail(adminEmail)
                 .orElseThrow(() -> new RuntimeException("Admin not found"));
 
-        // 1. Save File
-        String fileName = "report_" + bookingId + "_" + file.getOriginalFilename();
-        Path filePath = Paths.get(UPLOAD_DIR + fileName);
-        Files.write(filePath, file.getBytes());
+        // 1. Store the bytes (deduplicated; moved into place once the row commits)
+        ReportStore.Blob blob = reportStore.put(file);
+
+        // 2. Save Report Entry (replacing an earlier upload for this booking)
+        Report report = reportRepository.findByBooking_BookingId(bookingId).orElseGet(Report::new);
+        attach(report, booking, admin, blob, file.getOriginalFilename(), file.getContentType(), reportStore);
+        bookingRepository.save(booking);
 
-        // 2. Save Report Entry
-        Report report = new Report();
+        // 3. Preview rendered in the background once this commits
+        eventPublisher.publishEvent(new ReportStoredEvent(report.getSha256(), report.getContentType()));
+
+        return reportRepository.save(report);
+    }
+
+    // Point a (new or existing) report at a stored blob and complete its booking; also used by bulk ingestion
+    static void attach(Report report, Booking booking, User admin, ReportStore.Blob blob,
+                       String originalName, String declaredType, ReportStore reportStore) {
+        String fileName = "report_" + booking.getBookingId() + "_" + safeName(originalName);
+        String previous = report.getSha256();
         report.setBooking(booking);
-        report.setFileUrl(filePath.toString());
+        report.setFileUrl(blob.getPath().toString());
+        report.setFileName(fileName);
         report.setUploadedByAdmin(admin);
-        
+        report.setUploadedAt(LocalDateTime.now());
+        report.setSizeBytes(blob.getSize());
+        report.setSha256(blob.getSha256());
+        report.setContentType(contentType(fileName, declaredType));
+        if (previous != null) {
+            reportStore.release(previous);
+        }
+
         // --- THE FIX: AUTO-COMPLETE BOOKING ---
         // This removes the "Cancel" button on the frontend
         booking.setStatus(BookingStatus.COMPLETED);
-        bookingRepository.save(booking);
         // --------------------------------------
-
-        return reportRepository.save(report);
     }
 
     public Report getReportByBooking(Long bookingId) {
         return reportRepository.findByBooking_BookingId(bookingId)
                 .orElseThrow(() -> new RuntimeException("Report not found for this booking"));
     }
-}
\ No newline at end of file
+
+    // The report's bytes: its blob in whichever tier holds it, or the flat file of a report stored before the blob store
+    public ReportStore.Content contentOf(Report report) {
+        if (report.getSha256() != null && report.getFileName() != null) {
+            return reportStore.content(report.getSha256());
+        }
+        Path file = Paths.get(report.getFileUrl());
+        if (!Files.isRegularFile(file)) {
+            throw new RuntimeException("File not found on server");
+        }
+        return ReportStore.Content.of(file);
+    }
+
+    public Map<String, Object> getStoreStats() {
+        return reportStore.getStats();
+    }
+
+    // By extension first (the client's header is only a hint), then what the client said, then a plain download
+    public static String contentType(String fileName, String declared) {
+        return MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElseGet(() -> {
+            try {
+                return declared == null || declared.isBlank()
+                        ? MediaType.APPLICATION_OCTET_STREAM_VALUE
+                        : MediaType.parseMediaType(declared).toString();
+            } catch (InvalidMediaTypeException e) {
+                return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            }
+        });
+    }
+
+    // Just the last path segment, so a crafted name can't point outside the upload directory
+    private static String safeName(String originalName) {
+        String name = originalName == null ? "" : originalName.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() || name.startsWith(".") ? "report" + name : name;
+    }
+}
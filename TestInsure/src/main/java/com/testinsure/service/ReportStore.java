@@ -0,0 +1,389 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+import com.testinsure.repository.ReportBlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Report files stored by content (testinsure.reports.*), over pluggable tiers (ReportTier).
+ *
+ * A blob is named by its SHA-256, so the same bytes uploaded twice are stored once. New blobs go
+ * to the HOT tier (sharded plain files); ReportTierMigrator later packs old ones into the
+ * COLD tier (compressed segments). Readers ask content() and get either a plain file or a
+ * stream that decodes as it is read.
+ *
+ * report_blobs holds one row per blob with a reference count and its current tier, changed in
+ * the caller's transaction together with the report row:
+ *   - put(): stream the upload to <dir>/.tmp (hashing and counting on the way, capped at
+ *     max-bytes), then +1 on the blob row, or insert it at 1. After commit the temp file is
+ *     renamed into the hot tier, or just deleted if the blob is already there. Re-uploading a
+ *     cold blob makes it hot again.
+ *   - release(): -1. After commit, a blob whose count is still 0 loses its row, its bytes (in
+ *     every tier, packed copies included) and its preview.
+ *   - demote(): copy a hot blob into another tier, then record it there and drop the hot file,
+ *     unless it was re-uploaded in the meantime.
+ * Placing, deleting and demoting one hash run under the same lock, and the delete and the
+ * demote only go ahead if the row still says so, so a new upload of a blob being released or
+ * archived either keeps it alive or puts it back. Two first uploads of the same new content at
+ * the same moment collide on the row's primary key; the later one fails and can be retried.
+ */
+@Component
+public class ReportStore {
+
+    private static final long COPY_CHUNK = 1024 * 1024; // Bytes per transferFrom call, not a heap buffer
+
+    private final ReportBlobRepository blobRepository;
+    private final Map<StorageTier, ReportTier> tiers = new EnumMap<>(StorageTier.class);
+    private final HotReportTier hot;
+    private final TransactionTemplate cleanupTx;
+    private final Path tempDir;
+    private final long maxBytes;
+    private final Object[] locks = new Object[64];
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong demoted = new AtomicLong();
+    private final AtomicLong wipeFailed = new AtomicLong();
+
+    public ReportStore(ReportBlobRepository blobRepository, HotReportTier hot, List<ReportTier> tiers,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${testinsure.reports.dir:uploads}") String dir,
+                       @Value("${testinsure.reports.max-bytes:209715200}") long maxBytes) throws IOException {
+        this.blobRepository = blobRepository;
+        this.hot = hot;
+        tiers.forEach(tier -> this.tiers.put(tier.getTier(), tier));
+        this.cleanupTx = new TransactionTemplate(transactionManager);
+        this.cleanupTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tempDir = Paths.get(dir, ".tmp");
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        Files.createDirectories(tempDir);
+    }
+
+    // Store an upload (or take a reference on the identical blob already stored)
+    public Blob put(MultipartFile file) throws IOException {
+        Staged staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = stage(in);
+        }
+        return put(staged);
+    }
+
+    // Bytes hashed into a temp file, not yet part of the store; no transaction needed (bulk ingestion runs these in parallel)
+    public Staged stage(InputStream in) throws IOException {
+        return receive(in);
+    }
+
+    // Take a reference on a staged file in the caller's transaction; it is placed (or dropped as a duplicate) after commit
+    public Blob put(Staged staged) throws IOException {
+        try {
+            boolean known = blobRepository.addReference(staged.sha256, StorageTier.HOT, LocalDateTime.now()) == 1;
+            if (!known) {
+                blobRepository.save(new ReportBlob(staged.sha256, staged.size));
+            }
+            afterTransaction(() -> place(staged), () -> deleteQuietly(staged.temp));
+            if (known) {
+                deduplicated.incrementAndGet();
+            } else {
+                stored.incrementAndGet();
+            }
+            return new Blob(staged.sha256, staged.size, path(staged.sha256));
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(staged.temp);
+            throw e;
+        }
+    }
+
+    // A staged file that won't be stored after all
+    public void discard(Staged staged) {
+        deleteQuietly(staged.temp);
+    }
+
+    // A report stopped using this blob
+    public void release(String sha256) {
+        blobRepository.dropReference(sha256);
+        afterTransaction(() -> deleteIfUnreferenced(sha256), () -> { });
+    }
+
+    // Where a blob sits in the hot tier (the path recorded on new reports)
+    public Path path(String sha256) {
+        return hot.plainFile(sha256);
+    }
+
+    // Where the blob's preview image is kept (it may not exist yet)
+    public Path previewPath(String sha256) {
+        return hot.previewFile(sha256);
+    }
+
+    // The blob's bytes: the hot file when there is one (one stat, no query), else from the tier the row names
+    public Content content(String sha256) {
+        Path file = hot.plainFile(sha256);
+        if (Files.isRegularFile(file)) {
+            return Content.of(file);
+        }
+        ReportBlob blob = blobRepository.findById(sha256)
+                .orElseThrow(() -> new RuntimeException("File not found on server"));
+        ReportTier tier = tiers.get(blob.getTier());
+        if (tier == null || tier == hot) {
+            throw new RuntimeException("File not found on server");
+        }
+        Path plain = tier.plainFile(sha256);
+        return plain != null && Files.isRegularFile(plain)
+                ? Content.of(plain)
+                : new Content(null, () -> tier.open(blob));
+    }
+
+    // Move one hot blob to 'to' if it is still hot since before 'cutoff'; null if it had to stay
+    public ReportTier.Placement demote(ReportBlob blob, StorageTier to, LocalDateTime cutoff) throws IOException {
+        String sha256 = blob.getSha256();
+        ReportTier target = tiers.get(to);
+        if (target == null || target == hot) {
+            throw new RuntimeException("No " + to + " report tier configured");
+        }
+        Path file = hot.plainFile(sha256);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        // Copied outside the lock: a big blob must not hold up uploads that share its stripe
+        ReportTier.Placement placement = target.store(sha256, file);
+        synchronized (lock(sha256)) {
+            Integer moved = cleanupTx.execute(status -> blobRepository.moveTier(sha256, StorageTier.HOT, cutoff, to,
+                    placement.getSegment(), placement.getOffset(), placement.getStoredBytes(), placement.getCompressed()));
+            if (moved == null || moved == 0) {
+                target.delete(sha256, placement); // Re-uploaded or released meanwhile; the copy goes
+                return null;
+            }
+            hot.delete(sha256, null);
+            // Archived before, re-uploaded, and now archived again: the earlier packed copy is stale
+            ReportTier cold = tiers.get(StorageTier.COLD);
+            if (cold != null && blob.getSegment() != null) {
+                cold.delete(sha256, ReportTier.Placement.of(blob));
+            }
+        }
+        demoted.incrementAndGet();
+        return placement;
+    }
+
+    public Map<String, Object> getStats() {
+        Object[] totals = blobRepository.findTotals().get(0);
+        long content = ((Number) totals[1]).longValue();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("blobs", totals[0]);
+        stats.put("contentBytes", content);
+        stats.put("bytesSaved", ((Number) totals[2]).longValue() - content);
+        stats.put("stored", stored.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("deleted", deleted.get());
+        stats.put("demoted", demoted.get());
+        stats.put("wipeFailed", wipeFailed.get());
+
+        Map<String, Object> byTier = new LinkedHashMap<>();
+        tiers.forEach((tier, impl) -> byTier.put(tier.name(), new LinkedHashMap<>(impl.getStats())));
+        for (Object[] row : blobRepository.findTierTotals()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> tier = (Map<String, Object>) byTier.computeIfAbsent(((StorageTier) row[0]).name(), k -> new LinkedHashMap<>());
+            tier.put("blobs", row[1]);
+            tier.put("contentBytes", row[2]);
+            if (row[0] != StorageTier.HOT) {
+                long live = ((Number) row[3]).longValue();
+                tier.put("storedBytes", live);
+                if (tier.get("segmentBytes") instanceof Long segmentBytes) {
+                    tier.put("deadBytes", segmentBytes - live);
+                }
+            }
+        }
+        stats.put("tiers", byTier);
+        return stats;
+    }
+
+    // Copy the bytes to a temp file, hashing and counting as it goes
+    private Staged receive(InputStream upload) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = tempDir.resolve(UUID.randomUUID() + ".part");
+        long size = 0;
+        try (InputStream in = new DigestInputStream(upload, digest);
+             ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long copied;
+            while ((copied = target.transferFrom(source, size, COPY_CHUNK)) > 0) {
+                size += copied;
+                if (size > maxBytes) {
+                    throw new RuntimeException("Error: The report is too large (max " + maxBytes + " bytes)");
+                }
+            }
+            target.force(true); // On disk before the row that points at it commits
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new Staged(temp, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    // Committed: move the temp file into the hot tier unless the blob is already there
+    private void place(Staged staged) {
+        synchronized (lock(staged.sha256)) {
+            try {
+                hot.adopt(staged.sha256, staged.temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Report saved but its file could not be moved into place", e);
+            }
+        }
+    }
+
+    private void deleteIfUnreferenced(String sha256) {
+        synchronized (lock(sha256)) {
+            // Read with the row so a packed copy can be found once the row is gone
+            ReportBlob removed = cleanupTx.execute(status -> {
+                ReportBlob blob = blobRepository.findById(sha256).orElse(null);
+                return blob != null && blobRepository.deleteIfUnreferenced(sha256) == 1 ? blob : null;
+            });
+            if (removed != null) {
+                ReportTier.Placement placement = ReportTier.Placement.of(removed);
+                for (ReportTier tier : tiers.values()) {
+                    try {
+                        tier.delete(sha256, placement);
+                    } catch (IOException e) {
+                        wipeFailed.incrementAndGet(); // The report is gone either way; shows up in the stats
+                    }
+                }
+                deleteQuietly(hot.previewFile(sha256));
+                deleted.incrementAndGet();
+            }
+        }
+    }
+
+    private Object lock(String sha256) {
+        return locks[Integer.parseInt(sha256.substring(0, 2), 16) % locks.length];
+    }
+
+    // Run onCommit once the caller's transaction commits and onRollback if it doesn't; now if there is none
+    private static void afterTransaction(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                onCommit.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Temp files are never referenced; a leftover blob file just costs disk
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM ships SHA-256
+        }
+    }
+
+    // A stored blob as the caller sees it
+    public static class Blob {
+        private final String sha256;
+        private final long size;
+        private final Path path;
+
+        Blob(String sha256, long size, Path path) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.path = path;
+        }
+
+        public String getSha256() { return sha256; }
+        public long getSize() { return size; }
+        public Path getPath() { return path; }
+    }
+
+    // A blob's bytes for a reader: a plain file (sent as is) or a stream that decodes them
+    public static class Content {
+        private final Path file;
+        private final Opener opener;
+
+        Content(Path file, Opener opener) {
+            this.file = file;
+            this.opener = opener;
+        }
+
+        public static Content of(Path file) {
+            return new Content(file, null);
+        }
+
+        // Set when the bytes are a plain file that can be sent as is
+        public Path getFile() { return file; }
+
+        public InputStream open() throws IOException {
+            return file != null ? Files.newInputStream(file) : opener.open();
+        }
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    // An upload sitting in <dir>/.tmp with its hash and size
+    public static class Staged {
+        private final Path temp;
+        private final long size;
+        private final String sha256;
+
+        Staged(Path temp, long size, String sha256) {
+            this.temp = temp;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        public long getSize() { return size; }
+        public String getSha256() { return sha256; }
+    }
+}
@@ -0,0 +1,63 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/*
+ * One place ReportStore can keep blob bytes. Implementations are beans; ReportStore finds them
+ * by getTier(), and where each blob lives is recorded on its report_blobs row (tier, plus the
+ * Placement for tiers that pack blobs together). ReportStore does the reference counting and
+ * the locking, so a tier only moves bytes.
+ */
+public interface ReportTier {
+
+    StorageTier getTier();
+
+    // Copy in the bytes of 'source', a plain file the caller keeps
+    Placement store(String sha256, Path source) throws IOException;
+
+    // A plain file holding exactly the blob, if this tier keeps one (downloads then go out with sendfile); else null
+    Path plainFile(String sha256);
+
+    // The blob's original bytes, decoded as they are read
+    InputStream open(ReportBlob blob) throws IOException;
+
+    // No report uses the blob any more, or this copy of it is stale; 'placement' is where it was
+    // packed (null if it never was). Its bytes must not be readable afterwards.
+    void delete(String sha256, Placement placement) throws IOException;
+
+    Map<String, Object> getStats();
+
+    // Where store() put the bytes, for tiers that don't keep one file per blob
+    class Placement {
+        private final String segment;
+        private final Long offset;
+        private final long storedBytes;
+        private final Boolean compressed;
+
+        public Placement(String segment, Long offset, long storedBytes, Boolean compressed) {
+            this.segment = segment;
+            this.offset = offset;
+            this.storedBytes = storedBytes;
+            this.compressed = compressed;
+        }
+
+        // Where the row says the blob was packed; null if it never was
+        public static Placement of(ReportBlob blob) {
+            if (blob.getSegment() == null) {
+                return null;
+            }
+            return new Placement(blob.getSegment(), blob.getSegmentOffset(), blob.getStoredBytes(), blob.getCompressed());
+        }
+
+        public String getSegment() { return segment; }
+        public Long getOffset() { return offset; }
+        public long getStoredBytes() { return storedBytes; }
+        public Boolean getCompressed() { return compressed; }
+    }
+}
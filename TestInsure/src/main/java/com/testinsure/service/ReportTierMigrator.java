@@ -0,0 +1,128 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.ReportTieringResult;
+import com.testinsure.entity.ReportBlob;
+import com.testinsure.entity.StorageTier;
+import com.testinsure.repository.ReportBlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Moves report blobs nobody has uploaded for hot-days from the HOT to the COLD tier
+ * (testinsure.reports.tiering.*).
+ *
+ * Every interval-ms it pages through HOT blobs with hotSince before the cut-off, oldest first,
+ * batch-size at a time from the (tier, hot_since, sha256) index, and hands each to
+ * ReportStore.demote(). A blob that moved drops out of the scan; one that failed is stepped over
+ * (keyset on hotSince, sha256) and tried again next run. Blobs are archived one at a time, so a
+ * stopped run just leaves the rest hot.
+ */
+@Component
+public class ReportTierMigrator {
+
+    private final ReportBlobRepository blobRepository;
+    private final ReportStore reportStore;
+    private final boolean enabled;
+    private final int hotDays;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Lifetime numbers for the store stats
+    private long runs;
+    private long moved;
+    private long contentBytes;
+    private long storedBytes;
+    private ReportTieringResult lastRun;
+
+    public ReportTierMigrator(ReportBlobRepository blobRepository, ReportStore reportStore,
+                              @Value("${testinsure.reports.tiering.enabled:true}") boolean enabled,
+                              @Value("${testinsure.reports.tiering.hot-days:90}") int hotDays,
+                              @Value("${testinsure.reports.tiering.batch-size:100}") int batchSize) {
+        this.blobRepository = blobRepository;
+        this.reportStore = reportStore;
+        this.enabled = enabled;
+        this.hotDays = Math.max(0, hotDays);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(initialDelayString = "${testinsure.reports.tiering.initial-delay-ms:300000}",
+               fixedDelayString = "${testinsure.reports.tiering.interval-ms:3600000}")
+    public void scheduledMigrate() {
+        if (enabled && !running.get()) {
+            migrate(LocalDateTime.now().minusDays(hotDays));
+        }
+    }
+
+    // Run now with the configured age; the admin endpoint
+    public ReportTieringResult migrate() {
+        return migrate(LocalDateTime.now().minusDays(hotDays));
+    }
+
+    // Archive every blob hot since before 'cutoff'
+    public ReportTieringResult migrate(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Report tiering is already running");
+        }
+        try {
+            ReportTieringResult result = new ReportTieringResult(cutoff);
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+
+            List<ReportBlob> batch = blobRepository.findByTierSince(StorageTier.HOT, cutoff, Limit.of(batchSize));
+            while (!batch.isEmpty()) {
+                for (ReportBlob blob : batch) {
+                    try {
+                        ReportTier.Placement placement = reportStore.demote(blob, StorageTier.COLD, cutoff);
+                        if (placement == null) {
+                            result.skipped();
+                        } else {
+                            result.moved(blob.getSizeBytes(), placement.getStoredBytes());
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        result.failed(blob.getSha256() + ": " + e.getMessage());
+                    }
+                }
+                ReportBlob last = batch.get(batch.size() - 1);
+                batch = blobRepository.findByTierSinceAfter(StorageTier.HOT, cutoff, last.getHotSince(), last.getSha256(),
+                        Limit.of(batchSize));
+            }
+
+            result.finished(startedAt, (System.nanoTime() - start) / 1_000_000);
+            record(result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private synchronized void record(ReportTieringResult result) {
+        runs++;
+        moved += result.getMoved();
+        contentBytes += result.getContentBytes();
+        storedBytes += result.getStoredBytes();
+        lastRun = result;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("hotDays", hotDays);
+        stats.put("runs", runs);
+        stats.put("moved", moved);
+        stats.put("contentBytes", contentBytes);
+        stats.put("storedBytes", storedBytes);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+}
@@ -0,0 +1,150 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.SlotAvailability;
+import com.testinsure.event.SlotChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ * In-process cache of slot availability, one entry per test (LRU, bounded).
+ *
+ * An entry holds a test's slots from one day on (TimeSlotService asks for today), so its
+ * size follows the schedule ahead rather than years of history; an entry from an earlier
+ * day is reloaded. Entries are loaded once from the DB and then kept current by applying
+ * SlotChangedEvents after their transaction commits, so a booking just adjusts
+ * one slot's count instead of throwing the entry away. The TTL is only a safety
+ * net in case an update ever happens outside the services (e.g. manual SQL).
+ */
+@Component
+public class SlotAvailabilityCache {
+
+    private static final Comparator<SlotAvailability> BY_TIME = Comparator
+            .comparing(SlotAvailability::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(SlotAvailability::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final long ttlMillis;
+    private final Map<Long, Entry> entries;
+    // Tests with a load running -> [events seen since it started, loads running]. A load only
+    // installs if no event arrived while it ran; the entry goes when the last load finishes.
+    private final Map<Long, long[]> loading = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SlotAvailabilityCache(@Value("${testinsure.cache.slots.max-tests:1000}") int maxTests,
+                                 @Value("${testinsure.cache.slots.ttl-seconds:300}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxTests) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Cached availability of a test's slots dated 'since' or later; 'loader' runs (outside the lock) on a miss
+    public List<SlotAvailability> get(Long testId, LocalDate since, Supplier<List<SlotAvailability>> loader) {
+        long[] load;
+        long version;
+        synchronized (this) {
+            Entry entry = entries.get(testId);
+            if (entry != null && entry.since.equals(since) && System.currentTimeMillis() - entry.loadedAt < ttlMillis) {
+                hits++;
+                return entry.slots;
+            }
+            if (entry != null) {
+                entries.remove(testId); // Expired, or from another day
+                evictions++;
+            }
+            misses++;
+            load = loading.computeIfAbsent(testId, k -> new long[2]);
+            load[1]++;
+            version = load[0];
+        }
+
+        List<SlotAvailability> slots = null;
+        try {
+            slots = List.copyOf(loader.get());
+            return slots;
+        } finally {
+            synchronized (this) {
+                if (slots != null && load[0] == version) {
+                    entries.put(testId, new Entry(slots, since, System.currentTimeMillis()));
+                }
+                if (--load[1] == 0) {
+                    loading.remove(testId);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSlotChanged(SlotChangedEvent event) {
+        long[] load = loading.get(event.getTestId());
+        if (load != null) {
+            load[0]++;
+        }
+
+        if (event.getType() == SlotChangedEvent.Type.BULK_CREATED) {
+            entries.remove(event.getTestId()); // Cheaper to reload once than to apply thousands of inserts
+            return;
+        }
+
+        Entry entry = entries.get(event.getTestId());
+        if (entry == null) {
+            return; // Nothing cached; the next read loads fresh data
+        }
+
+        List<SlotAvailability> slots = new ArrayList<>(entry.slots.size() + 1);
+        if (event.getType() == SlotChangedEvent.Type.CREATED) {
+            if (event.getSlot().getDate().isBefore(entry.since)) {
+                return; // Before what the entry covers
+            }
+            slots.addAll(entry.slots);
+            slots.add(event.getSlot());
+            slots.sort(BY_TIME);
+        } else {
+            int seats = event.getType() == SlotChangedEvent.Type.BOOKED ? event.getSeats() : -event.getSeats();
+            for (SlotAvailability slot : entry.slots) {
+                slots.add(slot.getSlotId().equals(event.getSlotId()) ? slot.withBooked(seats) : slot);
+            }
+        }
+        entries.put(event.getTestId(), new Entry(List.copyOf(slots), entry.since, entry.loadedAt));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    private static class Entry {
+        private final List<SlotAvailability> slots;
+        private final LocalDate since;
+        private final long loadedAt;
+
+        Entry(List<SlotAvailability> slots, LocalDate since, long loadedAt) {
+            this.slots = slots;
+            this.since = since;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
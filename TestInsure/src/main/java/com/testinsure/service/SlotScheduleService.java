@@ -0,0 +1,176 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.SlotGenerationResult;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.entity.SlotTemplate;
+import com.testinsure.event.SlotChangedEvent;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.repository.SlotTemplateRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class SlotScheduleService {
+
+	/*Methods :
+	 * 1)Create / list / delete templates (Admin)
+	 * 2)Generate slots for one template (idempotent: only missing slots are inserted)
+	 * 3)Generate slots for every template (whole catalog)
+	 */
+
+    private static final int BATCH_SIZE = 500;
+
+    // TimeSlot uses IDENTITY keys, so Hibernate can't batch its inserts; go through JDBC instead.
+    // booked_count starts at 0 like createSlot.
+    private static final String INSERT_SLOT =
+            "insert into time_slots (test_id, date, start_time, end_time, capacity, booked_count) values (?, ?, ?, ?, ?, 0)";
+
+    private final SlotTemplateRepository templateRepository;
+    private final LaboratoryTestRepository testRepository;
+    private final TimeSlotRepository timeSlotRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public SlotScheduleService(SlotTemplateRepository templateRepository, LaboratoryTestRepository testRepository,
+                               TimeSlotRepository timeSlotRepository, JdbcTemplate jdbcTemplate,
+                               ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.templateRepository = templateRepository;
+        this.testRepository = testRepository;
+        this.timeSlotRepository = timeSlotRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // 1. Templates
+    public SlotTemplate createTemplate(Long testId, SlotTemplate template) {
+        LaboratoryTest test = testRepository.findById(testId)
+                .orElseThrow(() -> new RuntimeException("Test not found"));
+
+        parseDays(template.getDaysOfWeek()); // Validate early
+        if (template.getDayStart() == null || template.getDayEnd() == null
+                || !template.getDayEnd().isAfter(template.getDayStart())) {
+            throw new RuntimeException("Day end must be after day start");
+        }
+        if (template.getSlotMinutes() <= 0 || template.getSlotMinutes() >= 24 * 60) {
+            throw new RuntimeException("Slot length must be between 1 minute and 1 day");
+        }
+        if (template.getCapacity() <= 0) throw new RuntimeException("Capacity must be positive");
+        if (template.getHorizonDays() <= 0 || template.getHorizonDays() > 366) {
+            throw new RuntimeException("Horizon must be between 1 and 366 days");
+        }
+
+        template.setLaboratoryTest(test);
+        return templateRepository.save(template);
+    }
+
+    public List<SlotTemplate> getTemplates(Long testId) {
+        return testId == null ? templateRepository.findAll() : templateRepository.findByLaboratoryTest_TestId(testId);
+    }
+
+    public void deleteTemplate(Long templateId) {
+        templateRepository.deleteById(templateId); // Already generated slots stay
+    }
+
+    // 2. Expand one template from 'from' (default today) over its horizon
+    @Transactional
+    public SlotGenerationResult generate(Long templateId, LocalDate from) {
+        SlotTemplate template = templateRepository.findById(templateId)
+                .orElseThrow(() -> new RuntimeException("Template not found"));
+        return expand(template, from == null ? LocalDate.now() : from);
+    }
+
+    // 3. Expand every template (one transaction per template so a quarter for the whole catalog isn't one giant tx)
+    public List<SlotGenerationResult> generateAll(LocalDate from) {
+        List<SlotGenerationResult> results = new ArrayList<>();
+        LocalDate start = from == null ? LocalDate.now() : from;
+        for (SlotTemplate template : templateRepository.findAll()) {
+            results.add(transactionTemplate.execute(status -> expand(template, start)));
+        }
+        return results;
+    }
+
+    private SlotGenerationResult expand(SlotTemplate template, LocalDate from) {
+        Long testId = template.getLaboratoryTest().getTestId();
+        LocalDate to = from.plusDays(template.getHorizonDays() - 1L);
+        Set<DayOfWeek> days = parseDays(template.getDaysOfWeek());
+
+        // Two expansions of the same test (a double click, generateAll on two nodes) would both see
+        // the same gaps and both fill them; the second waits here and then sees the first's slots
+        testRepository.lockForSlotGeneration(testId);
+
+        // One query for what's already there, then only insert the gaps
+        Set<LocalDateTime> existing = new HashSet<>();
+        for (Object[] row : timeSlotRepository.findStartTimes(testId, from, to)) {
+            existing.add(((LocalDate) row[0]).atTime((LocalTime) row[1]));
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        int skipped = 0;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (!days.contains(date.getDayOfWeek())) continue;
+
+            LocalTime start = template.getDayStart();
+            while (true) {
+                LocalTime end = start.plusMinutes(template.getSlotMinutes());
+                if (!end.isAfter(start) || end.isAfter(template.getDayEnd())) break; // Past day end (or midnight)
+
+                if (existing.contains(date.atTime(start))) {
+                    skipped++;
+                } else {
+                    rows.add(new Object[] { testId, Date.valueOf(date), Time.valueOf(start), Time.valueOf(end), template.getCapacity() });
+                }
+                start = end;
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(INSERT_SLOT, rows.subList(i, Math.min(i + BATCH_SIZE, rows.size())));
+        }
+
+        if (!rows.isEmpty()) {
+            eventPublisher.publishEvent(SlotChangedEvent.bulkCreated(testId));
+        }
+        return new SlotGenerationResult(template.getTemplateId(), testId, from, to, rows.size(), skipped);
+    }
+
+    // "MON,TUE" or "MONDAY,TUESDAY" -> set of days
+    private Set<DayOfWeek> parseDays(String daysOfWeek) {
+        if (daysOfWeek == null || daysOfWeek.isBlank()) {
+            throw new RuntimeException("At least one day of the week is required");
+        }
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String part : daysOfWeek.split(",")) {
+            String token = part.trim().toUpperCase();
+            DayOfWeek match = null;
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (token.length() >= 3 && day.name().startsWith(token)) {
+                    match = day;
+                }
+            }
+            if (match == null) {
+                throw new RuntimeException("Unknown day of week: " + part.trim());
+            }
+            days.add(match);
+        }
+        return days;
+    }
+}
@@ -0,0 +1,122 @@
+package com.testinsure.service;
+
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.event.TestCatalogChangedEvent;
+import com.testinsure.repository.LaboratoryTestRepository;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * The whole lab test catalog as one immutable snapshot (list + its JSON bytes + ETag).
+ *
+ * Loaded from the DB once, on first read. After that every add/update/delete is applied
+ * to a copy of the current list (TestCatalogChangedEvent, after commit) and the new
+ * snapshot replaces the old one in a single volatile write, so readers always see either
+ * the old or the new catalog, never a half-updated one, and never wait on a writer.
+ *
+ * Only writes made through this instance are seen; changes made directly in the DB (or
+ * by another app instance) show up after a restart or the next write here.
+ */
+@Component
+public class TestCatalogCache {
+
+    private static final Comparator<LaboratoryTest> BY_ID =
+            Comparator.comparing(LaboratoryTest::getTestId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    // Part of every ETag so versions from an earlier run can never match after a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final LaboratoryTestRepository testRepository;
+    private final JsonMapper jsonMapper;
+
+    private volatile Snapshot snapshot;
+    private long version; // Last version handed out; survives reloads so ETags never repeat
+
+    public TestCatalogCache(LaboratoryTestRepository testRepository, JsonMapper jsonMapper) {
+        this.testRepository = testRepository;
+        this.jsonMapper = jsonMapper;
+    }
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                List<LaboratoryTest> tests = new ArrayList<>();
+                testRepository.findAll().forEach(t -> tests.add(copyOf(t)));
+                snapshot = build(++version, tests);
+            }
+            return snapshot;
+        }
+    }
+
+    @Order(1) // Before TestSearchIndex, which builds from this snapshot
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCatalogChanged(TestCatalogChangedEvent event) {
+        if (snapshot == null) {
+            return; // Nothing loaded yet; the first read sees the change anyway
+        }
+        if (event.getType() == TestCatalogChangedEvent.Type.RELOADED) {
+            snapshot = null; // Cheaper to read the catalog once than to apply thousands of rows
+            return;
+        }
+
+        List<LaboratoryTest> tests = new ArrayList<>(snapshot.tests.size() + 1);
+        for (LaboratoryTest test : snapshot.tests) {
+            if (!test.getTestId().equals(event.getTestId())) {
+                tests.add(test);
+            }
+        }
+        if (event.getType() == TestCatalogChangedEvent.Type.SAVED) {
+            tests.add(copyOf(event.getTest()));
+        }
+        snapshot = build(++version, tests);
+    }
+
+    private Snapshot build(long version, List<LaboratoryTest> tests) {
+        tests.sort(BY_ID); // Same order findAll() gives
+        List<LaboratoryTest> frozen = List.copyOf(tests);
+        return new Snapshot(version, "\"catalog-" + epoch + "-" + version + "\"", frozen, jsonMapper.writeValueAsBytes(frozen));
+    }
+
+    // The snapshot must not share instances with a persistence context or a caller
+    static LaboratoryTest copyOf(LaboratoryTest source) {
+        LaboratoryTest copy = new LaboratoryTest();
+        copy.setTestId(source.getTestId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setCost(source.getCost());
+        copy.setPrepInstructions(source.getPrepInstructions());
+        return copy;
+    }
+
+    // One immutable version of the catalog
+    public static class Snapshot {
+        private final long version;
+        private final String etag;
+        private final List<LaboratoryTest> tests;
+        private final byte[] json;
+
+        Snapshot(long version, String etag, List<LaboratoryTest> tests, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.tests = tests;
+            this.json = json;
+        }
+
+        public long getVersion() { return version; }
+        public String getEtag() { return etag; }
+        public List<LaboratoryTest> getTests() { return tests; }
+
+        // Shared buffer: write it out, never modify it
+        public byte[] getJson() { return json; }
+    }
+}
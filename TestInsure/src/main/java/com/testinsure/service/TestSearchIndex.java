@@ -0,0 +1,336 @@
+package com.testinsure.service;
+
+import com.testinsure.dto.TestSuggestion;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.event.TestCatalogChangedEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/*
+ * In-memory inverted index over the lab test catalog.
+ *
+ * Two term dictionaries (sorted, so a prefix is just a sub-map): one over all text
+ * fields for search, one over names only for autocomplete. Every query token is matched
+ * as a prefix and all tokens must match; exact term hits count double and name hits
+ * outweigh description and prep-instruction hits. Autocomplete first takes names that
+ * start with the typed text from a sorted map of full names, so it stays in the
+ * microseconds even for one-letter prefixes over tens of thousands of tests.
+ *
+ * Built from TestCatalogCache's snapshot on first use, then kept current one test at
+ * a time from TestCatalogChangedEvent. The listener runs after the catalog's own
+ * (@Order), so a build that races an event always sees it in one place or the other.
+ */
+@Component
+public class TestSearchIndex {
+
+    private static final int NAME_WEIGHT = 10;
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int PREP_WEIGHT = 1;
+
+    private final TestCatalogCache catalogCache;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Postings all = new Postings(false);
+    private final Postings names = new Postings(true);
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final TreeMap<String, Doc> byName = new TreeMap<>(); // "lower name\0id" -> test
+    private boolean built;
+
+    public TestSearchIndex(TestCatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
+    // Ranked tests matching every word of the query (last word may be partial)
+    public List<LaboratoryTest> search(String query, int limit) {
+        return rank(query, limit, all);
+    }
+
+    // Test names for the search box: names that start with the text first (alphabetical, straight
+    // off a sorted map, so broad prefixes stay cheap), then names with a word starting with it
+    public List<TestSuggestion> autocomplete(String prefix, int limit) {
+        if (tokenize(prefix).isEmpty() || limit < 1) {
+            return List.of();
+        }
+        ensureBuilt();
+
+        String phrase = prefix.trim().toLowerCase(Locale.ROOT);
+        Map<Long, LaboratoryTest> picked = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Doc doc : byName.subMap(phrase, true, phrase + Character.MAX_VALUE, true).values()) {
+                if (picked.size() == limit) {
+                    break;
+                }
+                picked.put(doc.test.getTestId(), doc.test);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (picked.size() < limit) {
+            for (LaboratoryTest test : rank(prefix, limit, names)) {
+                if (picked.size() < limit) {
+                    picked.putIfAbsent(test.getTestId(), test);
+                }
+            }
+        }
+
+        List<TestSuggestion> suggestions = new ArrayList<>(picked.size());
+        picked.values().forEach(test -> suggestions.add(new TestSuggestion(test.getTestId(), test.getName(), test.getCost())));
+        return suggestions;
+    }
+
+    @Order(2) // After TestCatalogCache (order 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(TestCatalogChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                return; // The first search builds from a snapshot that already has this change
+            }
+            if (event.getType() == TestCatalogChangedEvent.Type.RELOADED) {
+                docs.clear();
+                byName.clear();
+                names.terms.clear();
+                all.terms.clear();
+                built = false; // Next search rebuilds from the reloaded snapshot
+                return;
+            }
+            remove(event.getTestId());
+            if (event.getType() == TestCatalogChangedEvent.Type.SAVED) {
+                add(TestCatalogCache.copyOf(event.getTest()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexed tests are private copies that are never modified, so they can leave the lock
+    private List<LaboratoryTest> rank(String query, int limit, Postings postings) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            // Candidates come from the longest (usually rarest) token's postings; the other
+            // tokens are then checked against each candidate's own few terms.
+            tokens.sort(Comparator.comparingInt(String::length).reversed());
+            String phrase = query.trim().toLowerCase(Locale.ROOT);
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, RANKING.reversed()); // Worst on top
+
+            postings.forEachMatch(tokens.get(0), (doc, weight) -> {
+                int score = weight;
+                for (int i = 1; i < tokens.size(); i++) {
+                    int other = Postings.bestWeight(postings.termsOf(doc), tokens.get(i));
+                    if (other == 0) {
+                        return; // Every token has to match
+                    }
+                    score += other;
+                }
+                if (doc.lowerName.startsWith(phrase)) {
+                    score += NAME_WEIGHT * 2;
+                }
+                // Keep only the best 'limit' candidates instead of sorting them all
+                if (best.size() < limit) {
+                    best.add(new Hit(doc, score));
+                } else if (compare(score, doc, best.peek()) < 0) {
+                    best.poll();
+                    best.add(new Hit(doc, score));
+                }
+            });
+
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING);
+            List<LaboratoryTest> hits = new ArrayList<>(ranked.size());
+            ranked.forEach(hit -> hits.add(hit.doc.test));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // Read the snapshot under the lock so no event can slip in between
+                catalogCache.get().getTests().forEach(this::add);
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(LaboratoryTest test) {
+        Map<String, Integer> nameTerms = new HashMap<>();
+        weigh(nameTerms, test.getName(), NAME_WEIGHT);
+
+        Map<String, Integer> allTerms = new HashMap<>(nameTerms);
+        weigh(allTerms, test.getDescription(), DESCRIPTION_WEIGHT);
+        weigh(allTerms, test.getPrepInstructions(), PREP_WEIGHT);
+
+        Doc doc = new Doc(test, nameTerms, allTerms);
+        docs.put(test.getTestId(), doc);
+        byName.put(doc.nameKey(), doc);
+        names.add(doc, nameTerms);
+        all.add(doc, allTerms);
+    }
+
+    private void remove(Long testId) {
+        Doc doc = docs.remove(testId);
+        if (doc != null) {
+            byName.remove(doc.nameKey());
+            names.remove(doc);
+            all.remove(doc);
+        }
+    }
+
+    private static void weigh(Map<String, Integer> terms, String text, int weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // Lower-cased runs of letters/digits ("HbA1c (Glycated)" -> [hba1c, glycated])
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Higher score first, then the shorter (more specific) name, then the older test
+    private static final Comparator<Hit> RANKING = (a, b) -> compare(a.score, a.doc, b);
+
+    private static int compare(int score, Doc doc, Hit other) {
+        if (score != other.score) {
+            return Integer.compare(other.score, score);
+        }
+        if (doc.lowerName.length() != other.doc.lowerName.length()) {
+            return Integer.compare(doc.lowerName.length(), other.doc.lowerName.length());
+        }
+        return Long.compare(doc.test.getTestId(), other.doc.test.getTestId());
+    }
+
+    // One indexed test and its weighted terms (also needed to take it out again)
+    private static class Doc {
+        private final LaboratoryTest test;
+        private final String lowerName;
+        private final Map<String, Integer> nameTerms;
+        private final Map<String, Integer> allTerms;
+
+        Doc(LaboratoryTest test, Map<String, Integer> nameTerms, Map<String, Integer> allTerms) {
+            this.test = test;
+            this.lowerName = test.getName() != null ? test.getName().toLowerCase(Locale.ROOT) : "";
+            this.nameTerms = nameTerms;
+            this.allTerms = allTerms;
+        }
+
+        String nameKey() {
+            return lowerName + '\0' + test.getTestId();
+        }
+    }
+
+    private static class Hit {
+        private final Doc doc;
+        private final int score;
+
+        Hit(Doc doc, int score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    // One term dictionary: term -> (test -> weight)
+    private static class Postings {
+        private final TreeMap<String, Map<Doc, Integer>> terms = new TreeMap<>();
+        private final boolean namesOnly;
+
+        Postings(boolean namesOnly) {
+            this.namesOnly = namesOnly;
+        }
+
+        Map<String, Integer> termsOf(Doc doc) {
+            return namesOnly ? doc.nameTerms : doc.allTerms;
+        }
+
+        void add(Doc doc, Map<String, Integer> weights) {
+            weights.forEach((term, weight) -> terms.computeIfAbsent(term, t -> new HashMap<>()).put(doc, weight));
+        }
+
+        void remove(Doc doc) {
+            for (String term : termsOf(doc).keySet()) {
+                Map<Doc, Integer> docs = terms.get(term);
+                docs.remove(doc);
+                if (docs.isEmpty()) {
+                    terms.remove(term);
+                }
+            }
+        }
+
+        // Every test with a term starting with 'prefix', with its best weight (the exact term counts double)
+        void forEachMatch(String prefix, BiConsumer<Doc, Integer> action) {
+            NavigableMap<String, Map<Doc, Integer>> matches = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+            if (matches.isEmpty()) {
+                return;
+            }
+            if (matches.firstKey().equals(matches.lastKey())) {
+                // Common case for longer prefixes: one term, no merging needed
+                int factor = matches.firstKey().length() == prefix.length() ? 2 : 1;
+                matches.firstEntry().getValue().forEach((doc, weight) -> action.accept(doc, weight * factor));
+                return;
+            }
+            Map<Doc, Integer> best = new HashMap<>();
+            for (Map.Entry<String, Map<Doc, Integer>> e : matches.entrySet()) {
+                int factor = e.getKey().length() == prefix.length() ? 2 : 1;
+                e.getValue().forEach((doc, weight) -> best.merge(doc, weight * factor, Math::max));
+            }
+            best.forEach(action);
+        }
+
+        // Same rule, applied to one test's own terms
+        static int bestWeight(Map<String, Integer> docTerms, String prefix) {
+            int best = 0;
+            for (Map.Entry<String, Integer> e : docTerms.entrySet()) {
+                if (e.getKey().startsWith(prefix)) {
+                    int factor = e.getKey().length() == prefix.length() ? 2 : 1;
+                    best = Math.max(best, e.getValue() * factor);
+                }
+            }
+            return best;
+        }
+    }
+}
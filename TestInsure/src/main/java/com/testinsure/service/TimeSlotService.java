@@ -1,50 +1,67 @@
 package com.testinsure.service;
 
-import com.testinsure.entity.BookingStatus; // Import
+import com.testinsure.dto.SlotAvailability;
 import com.testinsure.entity.LaboratoryTest;
 import com.testinsure.entity.TimeSlot;
-import com.testinsure.repository.BookingRepository; // Import
+import com.testinsure.event.SlotChangedEvent;
 import com.testinsure.repository.LaboratoryTestRepository;
 import com.testinsure.repository.TimeSlotRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class TimeSlotService {
 
     private final TimeSlotRepository timeSlotRepository;
     private final LaboratoryTestRepository testRepository;
-    private final BookingRepository bookingRepository; // Add this
+    private final SlotAvailabilityCache availabilityCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     public TimeSlotService(TimeSlotRepository timeSlotRepository, 
                            LaboratoryTestRepository testRepository,
-                           BookingRepository bookingRepository) {
+                           SlotAvailabilityCache availabilityCache,
+                           ApplicationEventPublisher eventPublisher) {
         this.timeSlotRepository = timeSlotRepository;
         this.testRepository = testRepository;
-        this.bookingRepository = bookingRepository;
+        this.availabilityCache = availabilityCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public TimeSlot createSlot(Long testId, TimeSlot slot) {
         LaboratoryTest test = testRepository.findById(testId)
                 .orElseThrow(() -> new RuntimeException("Test not found"));
         slot.setLaboratoryTest(test); 
-        return timeSlotRepository.save(slot);
+        slot.setBookedCount(0); // Counter is owned by reserveSeat/releaseSeat
+        TimeSlot saved = timeSlotRepository.save(slot);
+
+        eventPublisher.publishEvent(SlotChangedEvent.created(testId, new SlotAvailability(saved.getSlotId(),
+                saved.getDate(), saved.getStartTime(), saved.getEndTime(), saved.getCapacity(), 0)));
+        return saved;
     }
 
-    // FIX: Calculate Remaining Capacity dynamically
-    public List<TimeSlot> getSlotsForTest(Long testId) {
-        List<TimeSlot> slots = timeSlotRepository.findByLaboratoryTest_TestId(testId);
-        
-        for (TimeSlot slot : slots) {
-            int activeBookings = bookingRepository.countByTimeSlot_SlotIdAndStatusNot(
-                    slot.getSlotId(), BookingStatus.CANCELLED);
-            
-            // We temporarily update the object to show REMAINING capacity to the user
-            // (We don't save this to DB, just send it to Frontend)
-            int remaining = Math.max(0, slot.getCapacity() - activeBookings);
-            slot.setCapacity(remaining); 
+    // Remaining capacity per slot; from/to are optional date bounds (inclusive). Ranges from today
+    // on are served from SlotAvailabilityCache (one query on a miss), which only holds upcoming
+    // slots; a range reaching into the past (or with no 'from') goes to the DB every time.
+    public List<SlotAvailability> getSlotsForTest(Long testId, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        if (from == null || from.isBefore(today)) {
+            return timeSlotRepository.findAvailability(testId, from, to);
+        }
+        List<SlotAvailability> slots = availabilityCache.get(testId, today,
+                () -> timeSlotRepository.findAvailability(testId, today, null));
+        if (from.equals(today) && to == null) {
+            return slots;
         }
-        
-        return slots;
+        return slots.stream()
+                .filter(s -> !s.getDate().isBefore(from))
+                .filter(s -> to == null || !s.getDate().isAfter(to))
+                .toList();
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return availabilityCache.getStats();
     }
 }
\ No newline at end of file
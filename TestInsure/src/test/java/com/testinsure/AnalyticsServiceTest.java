@@ -0,0 +1,134 @@
+package com.testinsure;
+
+import com.testinsure.dto.AnalyticsReport;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.AnalyticsService;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import com.testinsure.service.TestCatalogCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.testinsure.TestFixtures.request;
+
+// Deltas are written as the changes commit, so the bookings and claims here are committed for real.
+@DataJpaTest
+@Import({TestFixtures.class, BookingService.class, InsuranceClaimService.class, CoverageLedger.class, AnalyticsService.class,
+         TestCatalogCache.class, RowStreamer.class, JacksonAutoConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AnalyticsServiceTest {
+
+    private static final BigDecimal COST = new BigDecimal("100.00");
+
+    @Autowired private BookingService bookingService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private InsuranceClaimService claimService;
+    @Autowired private AnalyticsService analyticsService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private CoverageLedgerRepository ledgerRepository;
+    @Autowired private DailyRollupRepository rollupRepository;
+    @Autowired private RollupDeltaRepository deltaRepository;
+    @Autowired private TestCatalogCache catalogCache;
+    @Autowired private RowStreamer rowStreamer;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testRollupsFollowBookingAndClaimChanges() {
+        LaboratoryTest test = fixtures.test("Vitamin D", COST);
+        User user = fixtures.user("rollup@analytics.com", Role.PATIENT);
+        InsurancePolicy policy = fixtures.policy(user, "ANALYTICS-1", "1000.00");
+
+        Booking card = bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 0), null));
+        for (int i = 1; i <= 3; i++) {
+            bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, i), policy));
+        }
+        var claims = claimRepository.findAll();
+        claimService.approveClaim(claims.get(0).getClaimId());
+        claimService.rejectClaim(claims.get(1).getClaimId(), "Not covered");
+        bookingService.cancelBooking(card.getBookingId(), user.getEmail());
+
+        // Pending in the database, not in this instance: a restarted one flushes them just the same
+        Assertions.assertTrue(deltaRepository.count() > 0);
+        Assertions.assertEquals(0, rollupRepository.count());
+        AnalyticsService restarted = new AnalyticsService(rollupRepository, deltaRepository, rowStreamer,
+                testRepository, catalogCache, transactionManager);
+        Assertions.assertTrue(restarted.flush() > 0);
+        Assertions.assertEquals(0, deltaRepository.count());
+        Assertions.assertEquals(0, analyticsService.flush()); // Nothing new
+        AnalyticsReport report = analyticsService.getReport(null, null);
+        assertReport(report, test);
+
+        // Recomputing from the source tables lands on the same totals
+        analyticsService.rebuild();
+        assertReport(analyticsService.getReport(LocalDate.now(), LocalDate.now()), test);
+    }
+
+    @Test
+    public void testReportRangeIsBounded() {
+        Assertions.assertThrows(RuntimeException.class,
+                () -> analyticsService.getReport(LocalDate.now(), LocalDate.now().minusDays(1)));
+        Assertions.assertThrows(RuntimeException.class,
+                () -> analyticsService.getReport(LocalDate.now().minusYears(2), LocalDate.now()));
+        Assertions.assertEquals(0, analyticsService.getReport(null, null).getApprovalLatency().getApprovals());
+    }
+
+    private static void assertReport(AnalyticsReport report, LaboratoryTest test) {
+        Assertions.assertEquals(1, report.getClaims().size());
+        AnalyticsReport.ProviderDay claims = report.getClaims().get(0);
+        Assertions.assertEquals("Star Health", claims.getProvider());
+        Assertions.assertEquals(LocalDate.now(), claims.getDay());
+        Assertions.assertEquals(3, claims.getRaised());
+        Assertions.assertEquals(0, new BigDecimal("300").compareTo(claims.getRaisedAmount()));
+        Assertions.assertEquals(1, claims.getApproved());
+        Assertions.assertEquals(0, COST.compareTo(claims.getApprovedAmount()));
+        Assertions.assertEquals(1, claims.getRejected());
+
+        Assertions.assertEquals(1, report.getRevenue().size());
+        AnalyticsReport.TestDay revenue = report.getRevenue().get(0);
+        Assertions.assertEquals(test.getTestId(), revenue.getTestId());
+        Assertions.assertEquals("Vitamin D", revenue.getTestName());
+        Assertions.assertEquals(4, revenue.getBookings());
+        Assertions.assertEquals(2, revenue.getPayments());              // Card + approved claim
+        Assertions.assertEquals(2, revenue.getCancellations());         // Rejected claim + cancelled card booking
+        Assertions.assertEquals(0, COST.compareTo(revenue.getRefunded())); // Only the card booking had been paid
+        Assertions.assertEquals(0, COST.compareTo(revenue.getRevenue()));
+
+        Assertions.assertEquals(1, report.getApprovalLatency().getApprovals());
+        Assertions.assertNotNull(report.getApprovalLatency().getP99Seconds());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        rollupRepository.deleteAll();
+        deltaRepository.deleteAll();
+        ledgerRepository.deleteAll();
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,161 @@
+package com.testinsure;
+
+import com.testinsure.dto.AutoAdjudicationReport;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.AutoAdjudicationWorker;
+import com.testinsure.service.ClaimAutoRules;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+
+// Chunks run on the worker's pool in their own transactions, so the seed data is committed.
+@DataJpaTest(properties = {
+        "testinsure.claims.auto.providers=Star Health, Care Plus",
+        "testinsure.claims.auto.max-amount=500",
+        "testinsure.claims.auto.chunk-size=2",
+        "testinsure.claims.auto.threads=2"})
+@Import({InsuranceClaimService.class, CoverageLedger.class, ClaimAutoRules.class, AutoAdjudicationWorker.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AutoAdjudicationWorkerTest {
+
+    private static final BigDecimal COST = new BigDecimal("400.00");
+
+    @Autowired private AutoAdjudicationWorker worker;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+
+    private int seq;
+
+    @Test
+    public void testOnlyClaimsPassingEveryRuleAreApproved() {
+        LaboratoryTest cheap = test("Lipid Profile", COST);
+        LaboratoryTest dear = test("Full Body MRI", new BigDecimal("800.00"));
+
+        Long ok = claim(cheap, "star health", PolicyStatus.ACTIVE, 1, "1000.00");
+        Long alsoOk = claim(cheap, "Care Plus", PolicyStatus.ACTIVE, 1, "1000.00");
+        claim(cheap, "Acme Insurance", PolicyStatus.ACTIVE, 1, "1000.00");
+        claim(cheap, "Star Health", PolicyStatus.BLOCKED, 1, "1000.00");
+        claim(cheap, "Star Health", PolicyStatus.ACTIVE, -1, "1000.00");
+        claim(dear, "Star Health", PolicyStatus.ACTIVE, 1, "1000.00");
+        Long poor = claim(cheap, "Star Health", PolicyStatus.ACTIVE, 1, "100.00");
+
+        // Dry run: same verdicts, nothing written
+        AutoAdjudicationReport dryRun = worker.run(true);
+        Assertions.assertTrue(dryRun.isDryRun());
+        Assertions.assertEquals(7, dryRun.getScanned());
+        Assertions.assertEquals(2, dryRun.getApproved());
+        Assertions.assertEquals(5, dryRun.getLeftForReview());
+        Assertions.assertEquals(7, claimRepository.findAll().stream().filter(c -> c.getStatus() == ClaimStatus.PENDING).count());
+
+        AutoAdjudicationReport report = worker.run(false);
+        Assertions.assertEquals(7, report.getScanned());
+        Assertions.assertEquals(2, report.getApproved());
+        Assertions.assertEquals(0, report.getFailed());
+        Assertions.assertEquals(Map.of(
+                "Provider not on auto-approval list", 1,
+                "Policy is BLOCKED", 1,
+                "Policy expired", 1,
+                "Amount over auto-approval limit", 1,
+                "Insufficient funds in policy", 1), report.getReviewReasons());
+
+        for (Long id : new Long[]{ok, alsoOk}) {
+            InsuranceClaim claim = claimRepository.findById(id).orElseThrow();
+            Assertions.assertEquals(ClaimStatus.APPROVED, claim.getStatus());
+            Assertions.assertEquals(0, COST.compareTo(claim.getApprovedAmount()));
+            Assertions.assertNotNull(claim.getResolvedAt());
+            Assertions.assertEquals(PaymentStatus.PAID,
+                    bookingRepository.findById(claim.getBooking().getBookingId()).orElseThrow().getPaymentStatus());
+        }
+        Assertions.assertEquals(ClaimStatus.PENDING, claimRepository.findById(poor).orElseThrow().getStatus());
+
+        // Exceptions stay queued for a human; a second pass changes nothing
+        AutoAdjudicationReport again = worker.run(false);
+        Assertions.assertEquals(5, again.getScanned());
+        Assertions.assertEquals(0, again.getApproved());
+
+        Map<String, Object> stats = worker.getStats();
+        Assertions.assertEquals(3L, stats.get("runs"));
+        Assertions.assertEquals(2L, stats.get("approved"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private LaboratoryTest test(String name, BigDecimal cost) {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName(name);
+        test.setCost(cost);
+        return testRepository.save(test);
+    }
+
+    private Long claim(LaboratoryTest test, String provider, PolicyStatus status, int expiresInYears, String coverage) {
+        int n = seq++;
+        User user = new User();
+        user.setName("Patient " + n);
+        user.setEmail("auto" + n + "@test.com");
+        user.setPassword("x");
+        user.setRole(Role.PATIENT);
+        user = userRepository.save(user);
+
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setUser(user);
+        policy.setProviderName(provider);
+        policy.setPolicyNumber("AUTO-" + n);
+        policy.setCoverageAmount(new BigDecimal(coverage));
+        policy.setExpiryDate(LocalDate.now().plusYears(expiresInYears));
+        policy.setStatus(status);
+        policy = policyRepository.save(policy);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 15));
+        slot.setCapacity(5);
+        slot = slotRepository.save(slot);
+
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
+        booking = bookingRepository.save(booking);
+
+        InsuranceClaim claim = new InsuranceClaim();
+        claim.setBooking(booking);
+        claim.setPolicy(policy);
+        claim.setStatus(ClaimStatus.PENDING);
+        claim.setRaisedAt(LocalDateTime.now());
+        return claimRepository.save(claim).getClaimId();
+    }
+}
@@ -0,0 +1,80 @@
+package com.testinsure;
+
+import com.testinsure.entity.*;
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.JobWatermarkRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import com.testinsure.service.BookedCountBackfill;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+@DataJpaTest
+@Import({TestFixtures.class, BookedCountBackfill.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+public class BookedCountBackfillTest {
+
+    @Autowired private BookedCountBackfill backfill;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private JobWatermarkRepository watermarkRepository;
+    @Autowired private EntityManager entityManager;
+
+    @Test
+    public void testBackfillRunsOnceAndOnlyFillsUntouchedCounters() {
+        // The test context's own start already ran it, on empty tables: pretend this is the upgrade
+        watermarkRepository.deleteById("slot-booked-count");
+
+        LaboratoryTest test = fixtures.test("Serum Iron", new BigDecimal("200"));
+        User patient = fixtures.user("legacy@backfill.com", Role.PATIENT);
+
+        // Booked before the counter existed: still 0
+        TimeSlot legacy = fixtures.slot(test, 0);
+        book(patient, legacy, BookingStatus.CONFIRMED);
+        book(patient, legacy, BookingStatus.CONFIRMED);
+        book(patient, legacy, BookingStatus.CANCELLED);
+
+        // Already counting through reserveSeat: left as it is
+        TimeSlot live = fixtures.slot(test, 1);
+        book(patient, live, BookingStatus.CONFIRMED);
+        book(patient, live, BookingStatus.CONFIRMED);
+        slotRepository.reserveSeat(live.getSlotId());
+
+        TimeSlot empty = fixtures.slot(test, 2);
+
+        Assertions.assertEquals(1, backfill.backfill());
+        Assertions.assertEquals(2, bookedCount(legacy));
+        Assertions.assertEquals(1, bookedCount(live));
+        Assertions.assertEquals(0, bookedCount(empty));
+
+        // Later starts find the watermark and leave every slot alone
+        book(patient, empty, BookingStatus.CONFIRMED);
+        Assertions.assertEquals(0, backfill.backfill());
+        Assertions.assertEquals(0, bookedCount(empty));
+    }
+
+    private void book(User patient, TimeSlot slot, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setUser(patient);
+        booking.setLaboratoryTest(slot.getLaboratoryTest());
+        booking.setTimeSlot(slot);
+        booking.setStatus(status);
+        booking.setPaymentStatus(PaymentStatus.PAID);
+        bookingRepository.save(booking);
+    }
+
+    private int bookedCount(TimeSlot slot) {
+        entityManager.flush();
+        entityManager.clear();
+        return slotRepository.findById(slot.getSlotId()).orElseThrow().getBookedCount();
+    }
+}
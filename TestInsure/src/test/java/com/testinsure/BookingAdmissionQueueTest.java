@@ -0,0 +1,212 @@
+package com.testinsure;
+
+import com.testinsure.dto.BookingRequest;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.BookingAdmissionQueue;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.testinsure.TestFixtures.request;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// One worker, so every ticket below lands on the same shard. The BookingService in front of the queue
+// is a mock: it holds the worker inside a batch while the test lines up the next one.
+@DataJpaTest
+@Import({TestFixtures.class, BookingService.class, CoverageLedger.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the worker commits on its own thread
+public class BookingAdmissionQueueTest {
+
+    @Autowired private BookingService bookingService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+
+    @Test
+    public void testBadTicketFailsOnlyItsOwnFuture() throws Exception {
+        LaboratoryTest test = fixtures.test("Lipid Profile", new BigDecimal("300.00"));
+        TimeSlot slot = fixtures.slot(test, 0);
+        for (int i = 0; i < 4; i++) {
+            fixtures.user("patient" + i + "@queue.com", Role.PATIENT);
+        }
+        BookingRequest unknownTest = request(test, slot, null);
+        unknownTest.setTestId(999999L);
+
+        // The real group commit, held on its first batch until the second one has queued up
+        CountDownLatch inFirstBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        BookingService gated = mock(BookingService.class);
+        doAnswer(inv -> {
+            List<BookingAdmissionQueue.Ticket> batch = inv.getArgument(0);
+            batchSizes.add(batch.size());
+            if (batchSizes.size() == 1) {
+                inFirstBatch.countDown();
+                release.await(30, TimeUnit.SECONDS);
+            }
+            bookingService.createBookingBatch(batch);
+            return null;
+        }).when(gated).createBookingBatch(anyList());
+
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(gated, true, 1, 8, 1000, 60000);
+        try {
+            CompletableFuture<Booking> first = submitQueued(queue, "patient0@queue.com", request(test, slot, null));
+            Assertions.assertTrue(inFirstBatch.await(30, TimeUnit.SECONDS));
+            CompletableFuture<Booking> good = submitQueued(queue, "patient1@queue.com", request(test, slot, null));
+            CompletableFuture<Booking> bad = submitQueued(queue, "patient2@queue.com", unknownTest);
+            CompletableFuture<Booking> alsoGood = submitQueued(queue, "patient3@queue.com", request(test, slot, null));
+            release.countDown();
+
+            Assertions.assertNotNull(first.get(30, TimeUnit.SECONDS).getBookingId());
+            Assertions.assertNotNull(good.get(30, TimeUnit.SECONDS).getBookingId());
+            Assertions.assertNotNull(alsoGood.get(30, TimeUnit.SECONDS).getBookingId());
+            ExecutionException failed = Assertions.assertThrows(ExecutionException.class, () -> bad.get(30, TimeUnit.SECONDS));
+            Assertions.assertEquals("Test not found", failed.getCause().getMessage());
+        } finally {
+            queue.shutdown();
+        }
+
+        // Decided inside the batch: it committed, no per-ticket retry
+        Assertions.assertEquals(List.of(1, 3), batchSizes);
+        verify(gated, never()).createBooking(any(), any());
+        Assertions.assertEquals(3, bookingRepository.count());
+        Assertions.assertEquals(3, slotRepository.findById(slot.getSlotId()).orElseThrow().getBookedCount());
+    }
+
+    @Test
+    public void testRolledBackBatchRetriesEachTicketAlone() {
+        Booking booked = new Booking();
+        BookingService service = mock(BookingService.class);
+        doAnswer(inv -> {
+            // Outcomes set before the rollback must not reach the callers
+            List<BookingAdmissionQueue.Ticket> batch = inv.getArgument(0);
+            batch.forEach(t -> t.setBooking(new Booking()));
+            throw new RuntimeException("Slot capacity changed during batch admission");
+        }).when(service).createBookingBatch(anyList());
+        when(service.createBooking(eq("ok@queue.com"), any())).thenReturn(booked);
+        when(service.createBooking(eq("full@queue.com"), any())).thenThrow(new RuntimeException("Slot is fully booked."));
+
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(service, true, 1, 8, 1000, 60000);
+        try {
+            Assertions.assertSame(booked, queue.submit("ok@queue.com", slotRequest(1L)));
+            RuntimeException ex = Assertions.assertThrows(RuntimeException.class, () -> queue.submit("full@queue.com", slotRequest(1L)));
+            Assertions.assertEquals("Slot is fully booked.", ex.getMessage());
+        } finally {
+            queue.shutdown();
+        }
+        verify(service, times(2)).createBookingBatch(anyList());
+        verify(service).createBooking(eq("ok@queue.com"), any());
+        verify(service).createBooking(eq("full@queue.com"), any());
+    }
+
+    @Test
+    public void testSlowBatchTimesOutTheCaller() throws Exception {
+        CountDownLatch inBatch = new CountDownLatch(1);
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(heldUntilShutdown(inBatch), true, 1, 8, 1000, 100);
+        try {
+            RuntimeException ex = Assertions.assertThrows(RuntimeException.class, () -> queue.submit("slow@queue.com", slotRequest(1L)));
+            Assertions.assertEquals("Booking is taking longer than expected, please check your bookings.", ex.getMessage());
+            Assertions.assertTrue(inBatch.await(30, TimeUnit.SECONDS)); // It did reach the worker
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownFailsQueuedTickets() throws Exception {
+        CountDownLatch inBatch = new CountDownLatch(1);
+        BookingService service = heldUntilShutdown(inBatch);
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(service, true, 1, 8, 1000, 60000);
+
+        CompletableFuture<Booking> running = submitQueued(queue, "first@queue.com", slotRequest(1L));
+        Assertions.assertTrue(inBatch.await(30, TimeUnit.SECONDS));
+        CompletableFuture<Booking> queued = submitQueued(queue, "second@queue.com", slotRequest(1L));
+        queue.shutdown();
+
+        // The batch in hand still finishes; the one behind it never starts
+        Assertions.assertNotNull(running.get(30, TimeUnit.SECONDS));
+        ExecutionException failed = Assertions.assertThrows(ExecutionException.class, () -> queued.get(30, TimeUnit.SECONDS));
+        Assertions.assertEquals("Booking service is shutting down", failed.getCause().getMessage());
+        RuntimeException refused = Assertions.assertThrows(RuntimeException.class, () -> queue.submit("late@queue.com", slotRequest(1L)));
+        Assertions.assertEquals("Too many bookings in progress for this slot, please try again.", refused.getMessage());
+        verify(service, times(1)).createBookingBatch(anyList());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    // Books every ticket of its batch, once shutdown() interrupts the worker
+    private static BookingService heldUntilShutdown(CountDownLatch inBatch) {
+        BookingService service = mock(BookingService.class);
+        doAnswer(inv -> {
+            inBatch.countDown();
+            try {
+                new CountDownLatch(1).await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<BookingAdmissionQueue.Ticket> batch = inv.getArgument(0);
+            batch.forEach(t -> t.setBooking(new Booking()));
+            return null;
+        }).when(service).createBookingBatch(anyList());
+        return service;
+    }
+
+    // Submits from a thread of its own and returns once the ticket is on the queue (the caller is waiting on it)
+    private static CompletableFuture<Booking> submitQueued(BookingAdmissionQueue queue, String email, BookingRequest request)
+            throws InterruptedException {
+        CompletableFuture<Booking> outcome = new CompletableFuture<>();
+        Thread caller = new Thread(() -> {
+            try {
+                outcome.complete(queue.submit(email, request));
+            } catch (RuntimeException e) {
+                outcome.completeExceptionally(e);
+            }
+        });
+        caller.start();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (caller.getState() != Thread.State.TIMED_WAITING && !outcome.isDone()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Ticket was never queued");
+            Thread.sleep(5);
+        }
+        return outcome;
+    }
+
+    private static BookingRequest slotRequest(Long slotId) {
+        BookingRequest request = new BookingRequest();
+        request.setTestId(1L);
+        request.setSlotId(slotId);
+        request.setIsInsurance(false);
+        return request;
+    }
+}
@@ -4,12 +4,14 @@ import com.testinsure.dto.BookingRequest;
 import com.testinsure.entity.*;
 import com.testinsure.repository.*;
 import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
 import com.testinsure.service.InsuranceClaimService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.Optional;
@@ -25,9 +27,12 @@ public class BookingServiceLoopholeTest {
     private TimeSlotRepository slotRepository;
     private InsurancePolicyRepository policyRepository;
     private InsuranceClaimRepository claimRepository; 
+    private CoverageLedgerRepository ledgerRepository;
+    private ApplicationEventPublisher eventPublisher;
     
     private BookingService bookingService;
     private InsuranceClaimService claimService;
+    private CoverageLedger coverageLedger;
 
     @BeforeEach
     public void setup() {
@@ -37,9 +42,16 @@ public class BookingServiceLoopholeTest {
         slotRepository = mock(TimeSlotRepository.class);
         policyRepository = mock(InsurancePolicyRepository.class);
         claimRepository = mock(InsuranceClaimRepository.class);
+        ledgerRepository = mock(CoverageLedgerRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
 
-        bookingService = new BookingService(bookingRepository, userRepository, testRepository, slotRepository, policyRepository, claimRepository);
-        claimService = new InsuranceClaimService(claimRepository, bookingRepository);
+        // Real ledger over mocked tables: no snapshots, no earlier entries, so a balance starts at coverageAmount.
+        // Without a transaction it writes each entry straight away.
+        when(ledgerRepository.sumAfter(any(), any())).thenReturn(BigDecimal.ZERO);
+        coverageLedger = new CoverageLedger(ledgerRepository, mock(CoverageSnapshotRepository.class));
+
+        bookingService = new BookingService(bookingRepository, userRepository, testRepository, slotRepository, policyRepository, claimRepository, coverageLedger, eventPublisher);
+        claimService = new InsuranceClaimService(claimRepository, bookingRepository, slotRepository, coverageLedger, eventPublisher);
     }
 
     @Test
@@ -47,16 +59,18 @@ public class BookingServiceLoopholeTest {
         // Setup
         User user = new User(); user.setUserId(1L); user.setEmail("test@test.com");
         LaboratoryTest test = new LaboratoryTest(); test.setTestId(1L); test.setCost(new BigDecimal("400"));
-        TimeSlot slot = new TimeSlot(); slot.setSlotId(1L); slot.setCapacity(5);
+        TimeSlot slot = new TimeSlot(); slot.setSlotId(1L); slot.setCapacity(5); slot.setLaboratoryTest(test);
         InsurancePolicy policy = new InsurancePolicy(); 
         policy.setPolicyId(1L); 
         policy.setCoverageAmount(new BigDecimal("500")); 
+        policy.setStatus(PolicyStatus.ACTIVE);
 
         when(userRepository.findByEmail("test@test.com")).thenReturn(Optional.of(user));
         when(testRepository.findById(1L)).thenReturn(Optional.of(test));
         when(slotRepository.findById(1L)).thenReturn(Optional.of(slot));
         when(policyRepository.findById(1L)).thenReturn(Optional.of(policy));
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(slotRepository.reserveSeat(1L)).thenReturn(1);
 
         // Execute
         BookingRequest request = new BookingRequest();
@@ -67,9 +81,49 @@ public class BookingServiceLoopholeTest {
 
         bookingService.createBooking("test@test.com", request);
 
-        // Verify: Balance should be 100 (500 - 400)
-        Assertions.assertEquals(new BigDecimal("100"), policy.getCoverageAmount());
-        verify(policyRepository, times(1)).save(policy);
+        // Verify: Balance should be 100 (500 - 400), recorded as a ledger debit, policy row untouched
+        Assertions.assertEquals(new BigDecimal("100"), coverageLedger.balance(policy));
+        ArgumentCaptor<CoverageLedgerEntry> entry = ArgumentCaptor.forClass(CoverageLedgerEntry.class);
+        verify(ledgerRepository, times(1)).save(entry.capture());
+        Assertions.assertEquals(LedgerEntryType.DEBIT, entry.getValue().getType());
+        Assertions.assertEquals(new BigDecimal("-400"), entry.getValue().getAmount());
+        verify(policyRepository, never()).save(policy);
+
+        // A second booking no longer fits in what is left
+        request.setSlotId(2L);
+        TimeSlot other = new TimeSlot(); other.setSlotId(2L); other.setCapacity(5); other.setLaboratoryTest(test);
+        when(slotRepository.findById(2L)).thenReturn(Optional.of(other));
+        when(slotRepository.reserveSeat(2L)).thenReturn(1);
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class, () -> bookingService.createBooking("test@test.com", request));
+        Assertions.assertEquals("Insufficient Insurance Coverage! Remaining: 100", ex.getMessage());
+    }
+
+    @Test
+    public void testOnlyActivePoliciesCanBeCharged() {
+        User user = new User(); user.setUserId(1L); user.setEmail("test@test.com");
+        LaboratoryTest test = new LaboratoryTest(); test.setTestId(1L); test.setCost(new BigDecimal("400"));
+        TimeSlot slot = new TimeSlot(); slot.setSlotId(1L); slot.setCapacity(5); slot.setLaboratoryTest(test);
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setPolicyId(3L);
+        policy.setCoverageAmount(new BigDecimal("500"));
+        policy.setStatus(PolicyStatus.EXPIRED);
+        policy.setExpiryDate(java.time.LocalDate.now().plusYears(1)); // Status decides, not the date
+
+        when(userRepository.findByEmail("test@test.com")).thenReturn(Optional.of(user));
+        when(testRepository.findById(1L)).thenReturn(Optional.of(test));
+        when(slotRepository.findById(1L)).thenReturn(Optional.of(slot));
+        when(policyRepository.findById(3L)).thenReturn(Optional.of(policy));
+        when(slotRepository.reserveSeat(1L)).thenReturn(1);
+
+        BookingRequest request = new BookingRequest();
+        request.setTestId(1L);
+        request.setSlotId(1L);
+        request.setIsInsurance(true);
+        request.setPolicyId(3L);
+
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class, () -> bookingService.createBooking("test@test.com", request));
+        Assertions.assertEquals("Policy is EXPIRED", ex.getMessage());
+        verify(ledgerRepository, never()).save(any(CoverageLedgerEntry.class));
     }
 
     @Test
@@ -79,14 +133,18 @@ public class BookingServiceLoopholeTest {
         LaboratoryTest test = new LaboratoryTest();
         test.setCost(new BigDecimal("400"));
         booking.setLaboratoryTest(test);
+        TimeSlot slot = new TimeSlot(); slot.setSlotId(1L); slot.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
 
         InsurancePolicy policy = new InsurancePolicy();
+        policy.setPolicyId(2L);
         policy.setCoverageAmount(new BigDecimal("100")); // Assume deducted
 
         InsuranceClaim claim = new InsuranceClaim();
         claim.setClaimId(1L);
         claim.setBooking(booking);
         claim.setPolicy(policy);
+        claim.setStatus(ClaimStatus.PENDING);
         
         when(claimRepository.findById(1L)).thenReturn(Optional.of(claim));
         when(claimRepository.save(any(InsuranceClaim.class))).thenReturn(claim);
@@ -95,7 +153,8 @@ public class BookingServiceLoopholeTest {
         claimService.rejectClaim(1L, "Invalid reason");
 
         // Verify: Balance should be 500 (100 + 400)
-        Assertions.assertEquals(new BigDecimal("500"), policy.getCoverageAmount());
+        Assertions.assertEquals(new BigDecimal("500"), coverageLedger.balance(policy));
+        verify(slotRepository, times(1)).releaseSeat(1L);
     }
     
     @Test
@@ -109,8 +168,11 @@ public class BookingServiceLoopholeTest {
         LaboratoryTest test = new LaboratoryTest();
         test.setCost(new BigDecimal("400"));
         booking.setLaboratoryTest(test);
+        TimeSlot slot = new TimeSlot(); slot.setSlotId(1L); slot.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
         
         InsurancePolicy policy = new InsurancePolicy();
+        policy.setPolicyId(3L);
         policy.setCoverageAmount(new BigDecimal("100")); // Assume deducted
         
         InsuranceClaim claim = new InsuranceClaim();
@@ -123,7 +185,8 @@ public class BookingServiceLoopholeTest {
         bookingService.cancelBooking(1L, "test@test.com");
         
         // Verify: Balance restored
-        Assertions.assertEquals(new BigDecimal("500"), policy.getCoverageAmount());
-        verify(policyRepository, times(1)).save(policy);
+        Assertions.assertEquals(new BigDecimal("500"), coverageLedger.balance(policy));
+        verify(ledgerRepository, times(1)).save(any(CoverageLedgerEntry.class));
+        verify(slotRepository, times(1)).releaseSeat(1L);
     }
 }
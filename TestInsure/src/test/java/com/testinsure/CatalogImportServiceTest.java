@@ -0,0 +1,168 @@
+package com.testinsure;
+
+import com.testinsure.dto.ImportResult;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.service.CatalogImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Batches of 3 so every file below spans several batches / transactions.
+@DataJpaTest(properties = "testinsure.catalog.import.batch-size=3")
+@Import({CatalogImportService.class, CatalogImportServiceTest.JsonConfig.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // each batch commits on its own
+public class CatalogImportServiceTest {
+
+    static class JsonConfig {
+        @Bean
+        JsonMapper jsonMapper() {
+            return JsonMapper.builder().build();
+        }
+    }
+
+    @Autowired private CatalogImportService importService;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testCsvImportUpsertsAndReportsBadRows() throws Exception {
+        LaboratoryTest existing = new LaboratoryTest();
+        existing.setName("Lipid Profile");
+        existing.setCost(new BigDecimal("500.00"));
+        existing = testRepository.save(existing);
+
+        String csv = "Name,Description,Cost,PrepInstructions\r\n"
+                + "CBC,\"Red cells, white cells and platelets\",300,\n"
+                + "LIPID PROFILE,Cholesterol,650.50,\"Fast for\n12 hours\"\n"
+                + ",No name,100,\n"
+                + "Vitamin D,,abc,\n"
+                + "Thyroid Panel,\"TSH \"\"and\"\" T4\",-1,\n"
+                + "\n"
+                + "HbA1c,,450,\n"
+                + "cbc,Again,300,\n";
+
+        ImportResult result = importService.importTests(stream(csv), CatalogImportService.Format.CSV);
+
+        Assertions.assertEquals(7, result.getTotalRows());
+        Assertions.assertEquals(2, result.getInserted());
+        Assertions.assertEquals(1, result.getUpdated());
+        Assertions.assertEquals(4, result.getFailed());
+        Assertions.assertEquals(List.of(3, 4, 5, 7), result.getErrors().stream().map(ImportResult.RowError::getRow).toList());
+        Assertions.assertEquals("Cost must be a number", result.getErrors().get(1).getMessage());
+
+        Map<String, LaboratoryTest> byName = byName();
+        Assertions.assertEquals(3, byName.size());
+        Assertions.assertEquals("Red cells, white cells and platelets", byName.get("CBC").getDescription());
+        Assertions.assertEquals(existing.getTestId(), byName.get("LIPID PROFILE").getTestId()); // Updated in place
+        Assertions.assertEquals("Fast for\n12 hours", byName.get("LIPID PROFILE").getPrepInstructions());
+        Assertions.assertEquals(0, new BigDecimal("650.50").compareTo(byName.get("LIPID PROFILE").getCost()));
+    }
+
+    @Test
+    public void testJsonImportByIdAndMalformedTail() throws Exception {
+        LaboratoryTest existing = new LaboratoryTest();
+        existing.setName("Glucose");
+        existing.setCost(new BigDecimal("100"));
+        existing = testRepository.save(existing);
+
+        String json = "[{\"testId\": " + existing.getTestId() + ", \"name\": \"Glucose Fasting\", \"cost\": 120},"
+                + " {\"testId\": 999999, \"name\": \"Ghost\", \"cost\": 1},"
+                + " {\"name\": \"Ferritin\", \"cost\": \"800\", \"prepInstructions\": \"None\"},"
+                + " 42,"
+                + " {\"name\": \"Iron\", \"cost\": 200}, {\"name\": ";
+
+        ImportResult result = importService.importTests(stream(json), CatalogImportService.Format.JSON);
+
+        Assertions.assertEquals(2, result.getInserted()); // Ferritin and Iron; the broken tail is dropped
+        Assertions.assertEquals(1, result.getUpdated());
+        Assertions.assertEquals("Test not found: 999999", result.getErrors().get(0).getMessage());
+        Assertions.assertEquals("Expected a JSON object", result.getErrors().get(1).getMessage());
+        Assertions.assertTrue(result.getErrors().get(2).getMessage().startsWith("Malformed JSON"));
+
+        Map<String, LaboratoryTest> byName = byName();
+        Assertions.assertEquals(existing.getTestId(), byName.get("Glucose Fasting").getTestId());
+        Assertions.assertEquals("None", byName.get("Ferritin").getPrepInstructions());
+        Assertions.assertTrue(byName.containsKey("Iron"));
+    }
+
+    @Test
+    public void testByteOrderMarkIsSkipped() throws Exception {
+        // As saved by Excel's "CSV UTF-8"
+        ImportResult csv = importService.importTests(stream("\uFEFFName,Cost\r\nCBC,300\r\n"), CatalogImportService.Format.CSV);
+        Assertions.assertEquals(1, csv.getInserted());
+        Assertions.assertEquals(0, csv.getFailed());
+
+        ImportResult json = importService.importTests(stream("\uFEFF[{\"name\": \"Iron\", \"cost\": 200}]"), CatalogImportService.Format.JSON);
+        Assertions.assertEquals(1, json.getInserted());
+        Assertions.assertEquals(0, json.getFailed());
+
+        Assertions.assertEquals(Set.of("CBC", "Iron"), byName().keySet());
+    }
+
+    @Test
+    public void testRenameInRolledBackBatchIsForgotten() throws Exception {
+        LaboratoryTest existing = new LaboratoryTest();
+        existing.setName("Glucose");
+        existing.setCost(new BigDecimal("100"));
+        existing = testRepository.save(existing);
+
+        // Passes the row checks, fails in the database, so the whole first batch rolls back
+        jdbcTemplate.execute("alter table laboratory_tests add constraint ck_import_cost check (cost < 10000)");
+        try {
+            String csv = "testId,Name,Cost\n"
+                    + existing.getTestId() + ",Glucose Fasting,120\n"
+                    + ",Ferritin,20000\n"
+                    + ",Iron,200\n"
+                    + ",glucose,130\n";
+
+            ImportResult result = importService.importTests(stream(csv), CatalogImportService.Format.CSV);
+
+            Assertions.assertEquals(List.of(1, 2, 3), result.getErrors().stream().map(ImportResult.RowError::getRow).toList());
+            Assertions.assertEquals(0, result.getInserted());
+            Assertions.assertEquals(1, result.getUpdated());
+        } finally {
+            jdbcTemplate.execute("alter table laboratory_tests drop constraint ck_import_cost");
+        }
+
+        // The rename never committed, so "glucose" still meant the existing test
+        Map<String, LaboratoryTest> byName = byName();
+        Assertions.assertEquals(Set.of("glucose"), byName.keySet());
+        Assertions.assertEquals(existing.getTestId(), byName.get("glucose").getTestId());
+        Assertions.assertEquals(0, new BigDecimal("130").compareTo(byName.get("glucose").getCost()));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        testRepository.deleteAll();
+    }
+
+    private Map<String, LaboratoryTest> byName() {
+        return testRepository.findAll().stream().collect(Collectors.toMap(LaboratoryTest::getName, Function.identity()));
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,246 @@
+package com.testinsure;
+
+import com.testinsure.dto.BulkAdjudicationResult;
+import com.testinsure.dto.ClaimDecision;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({InsuranceClaimService.class, CoverageLedger.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+public class ClaimAdjudicationTest {
+
+    private static final BigDecimal COST = new BigDecimal("400.00");
+
+    @Autowired private InsuranceClaimService claimService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private CoverageLedgerRepository ledgerRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testBulkAdjudicationAppliesRulesInFewStatements() {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("Lipid Profile");
+        test.setCost(COST);
+        test = testRepository.save(test);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 15));
+        slot.setCapacity(10);
+        slot.setBookedCount(6);
+        slot = slotRepository.save(slot);
+
+        List<Long> claimIds = new ArrayList<>();
+        List<Long> policyIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User user = new User();
+            user.setName("Patient " + i);
+            user.setEmail("adjudicate" + i + "@test.com");
+            user.setPassword("x");
+            user.setRole(Role.PATIENT);
+            user = userRepository.save(user);
+
+            InsurancePolicy policy = new InsurancePolicy();
+            policy.setUser(user);
+            policy.setProviderName("Star Health");
+            policy.setPolicyNumber("ADJ-" + i);
+            policy.setCoverageAmount(new BigDecimal("1000.00"));
+            policy.setExpiryDate(LocalDate.now().plusYears(1));
+            policy.setStatus(PolicyStatus.ACTIVE);
+            policyIds.add(policyRepository.save(policy).getPolicyId());
+
+            Booking booking = new Booking();
+            booking.setUser(user);
+            booking.setLaboratoryTest(test);
+            booking.setTimeSlot(slot);
+            booking.setStatus(BookingStatus.CONFIRMED);
+            booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
+            booking = bookingRepository.save(booking);
+
+            InsuranceClaim claim = new InsuranceClaim();
+            claim.setBooking(booking);
+            claim.setPolicy(policy);
+            claim.setStatus(i == 5 ? ClaimStatus.APPROVED : ClaimStatus.PENDING);
+            claim.setRaisedAt(LocalDateTime.now());
+            claimIds.add(claimRepository.save(claim).getClaimId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ClaimDecision> decisions = List.of(
+                decision(claimIds.get(0), ClaimDecision.Decision.APPROVE, null),
+                decision(claimIds.get(1), ClaimDecision.Decision.APPROVE, null),
+                decision(claimIds.get(2), ClaimDecision.Decision.REJECT, "Not covered"),
+                decision(claimIds.get(3), ClaimDecision.Decision.REJECT, "Invalid insurance card"),
+                decision(claimIds.get(4), ClaimDecision.Decision.APPROVE, null),
+                decision(claimIds.get(5), ClaimDecision.Decision.REJECT, null),  // Already approved
+                decision(claimIds.get(0), ClaimDecision.Decision.REJECT, null),  // Listed twice
+                decision(987654L, ClaimDecision.Decision.APPROVE, null));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        BulkAdjudicationResult result = claimService.adjudicateClaims(decisions);
+        entityManager.flush(); // What the commit would do
+
+        // 1 row lock + 1 fetch-join select + 2 to load the policies' ledger balances + 1 seat release
+        // + one batched UPDATE each for claims, bookings and policies (the blocked one)
+        Assertions.assertEquals(8, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(3, result.getApproved());
+        Assertions.assertEquals(2, result.getRejected());
+        Assertions.assertEquals(3, result.getFailed());
+        Assertions.assertEquals("Claim is already APPROVED", result.getOutcomes().get(5).getMessage());
+        Assertions.assertEquals("Claim listed more than once", result.getOutcomes().get(6).getMessage());
+        Assertions.assertEquals("Claim not found", result.getOutcomes().get(7).getMessage());
+        entityManager.clear();
+
+        InsuranceClaim approved = claimRepository.findById(claimIds.get(0)).orElseThrow();
+        Assertions.assertEquals(ClaimStatus.APPROVED, approved.getStatus());
+        Assertions.assertEquals(0, COST.compareTo(approved.getApprovedAmount()));
+        Assertions.assertEquals(PaymentStatus.PAID, approved.getBooking().getPaymentStatus());
+
+        InsuranceClaim rejected = claimRepository.findById(claimIds.get(3)).orElseThrow();
+        Assertions.assertEquals(ClaimStatus.REJECTED, rejected.getStatus());
+        Assertions.assertEquals(BookingStatus.CANCELLED, rejected.getBooking().getStatus());
+        Assertions.assertEquals(PolicyStatus.BLOCKED, rejected.getPolicy().getStatus());
+        // The refund is a ledger credit, written when the transaction commits; the policy row keeps its opening cover
+        Assertions.assertEquals(0, new BigDecimal("1000.00").compareTo(rejected.getPolicy().getCoverageAmount()));
+
+        Assertions.assertEquals(PolicyStatus.ACTIVE, policyRepository.findById(policyIds.get(2)).orElseThrow().getStatus());
+        Assertions.assertEquals(4, slotRepository.findById(slot.getSlotId()).orElseThrow().getBookedCount());
+    }
+
+    // Several admins (or the sweeper and an insurer ack) deciding the same claims at once:
+    // each claim is decided exactly once and refunded at most once.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // every call commits on its own thread
+    public void testOverlappingBulkCallsDecideEachClaimOnce() throws Exception {
+        final int claimCount = 6;
+        final int callers = 4;
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("Thyroid Profile");
+        test.setCost(COST);
+        test = testRepository.save(test);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(10, 0));
+        slot.setEndTime(LocalTime.of(10, 15));
+        slot.setCapacity(10);
+        slot.setBookedCount(claimCount);
+        slot = slotRepository.save(slot);
+
+        List<Long> claimIds = new ArrayList<>();
+        for (int i = 0; i < claimCount; i++) {
+            User user = new User();
+            user.setName("Patient " + i);
+            user.setEmail("overlap" + i + "@test.com");
+            user.setPassword("x");
+            user.setRole(Role.PATIENT);
+            user = userRepository.save(user);
+
+            InsurancePolicy policy = new InsurancePolicy();
+            policy.setUser(user);
+            policy.setProviderName("Star Health");
+            policy.setPolicyNumber("OVL-" + i);
+            policy.setCoverageAmount(new BigDecimal("1000.00"));
+            policy.setExpiryDate(LocalDate.now().plusYears(1));
+            policy.setStatus(PolicyStatus.ACTIVE);
+            policy = policyRepository.save(policy);
+
+            Booking booking = new Booking();
+            booking.setUser(user);
+            booking.setLaboratoryTest(test);
+            booking.setTimeSlot(slot);
+            booking.setStatus(BookingStatus.CONFIRMED);
+            booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
+            booking = bookingRepository.save(booking);
+
+            InsuranceClaim claim = new InsuranceClaim();
+            claim.setBooking(booking);
+            claim.setPolicy(policy);
+            claim.setStatus(ClaimStatus.PENDING);
+            claimIds.add(claimRepository.save(claim).getClaimId());
+        }
+
+        try {
+            // The last caller approves everything, the others reject everything
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(callers);
+            List<Future<BulkAdjudicationResult>> calls = new ArrayList<>();
+            for (int c = 0; c < callers; c++) {
+                ClaimDecision.Decision verdict = c == callers - 1 ? ClaimDecision.Decision.APPROVE : ClaimDecision.Decision.REJECT;
+                List<ClaimDecision> decisions = claimIds.stream().map(id -> decision(id, verdict, "Not covered")).toList();
+                calls.add(pool.submit(() -> {
+                    start.await();
+                    return claimService.adjudicateClaims(decisions);
+                }));
+            }
+            start.countDown();
+            int decided = 0;
+            for (Future<BulkAdjudicationResult> call : calls) {
+                BulkAdjudicationResult result = call.get();
+                decided += result.getApproved() + result.getRejected();
+            }
+            pool.shutdown();
+
+            Assertions.assertEquals(claimCount, decided);
+            long rejected = claimRepository.findAllById(claimIds).stream().filter(c -> c.getStatus() == ClaimStatus.REJECTED).count();
+            Assertions.assertEquals(rejected, ledgerRepository.count()); // One refund per rejected claim, none twice
+            Assertions.assertEquals(claimCount - rejected, slotRepository.findById(slot.getSlotId()).orElseThrow().getBookedCount());
+        } finally {
+            ledgerRepository.deleteAll();
+            claimRepository.deleteAll();
+            bookingRepository.deleteAll();
+            policyRepository.deleteAll();
+            slotRepository.deleteAll();
+            testRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    private static ClaimDecision decision(Long claimId, ClaimDecision.Decision decision, String reason) {
+        ClaimDecision d = new ClaimDecision();
+        d.setClaimId(claimId);
+        d.setDecision(decision);
+        d.setReason(reason);
+        return d;
+    }
+}
@@ -0,0 +1,190 @@
+package com.testinsure;
+
+import com.testinsure.dto.ClaimAckImportResult;
+import com.testinsure.dto.ClaimBatchExportResult;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ClaimBatchExchange;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// The exporter reads in its own transaction, so the claims are committed first.
+@DataJpaTest(properties = {"testinsure.claims.batch.drop-dir=target/claim-drop-test", "testinsure.claims.batch.settle-seconds=0"})
+@Import({ClaimBatchExchange.class, InsuranceClaimService.class, CoverageLedger.class, RowStreamer.class,
+         JacksonAutoConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ClaimBatchExchangeTest {
+
+    private static final Path DROP = Paths.get("target/claim-drop-test");
+
+    @Autowired private ClaimBatchExchange batchExchange;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private CoverageLedgerRepository ledgerRepository;
+    @Autowired private JobWatermarkRepository watermarkRepository;
+
+    private int seq;
+
+    @Test
+    public void testBatchesGoOutPerProviderAndAcksComeBack() throws IOException {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("Ferritin");
+        test.setCost(new BigDecimal("300.00"));
+        test = testRepository.save(test);
+
+        Long first = claim(test, "Star Health");
+        Long second = claim(test, "star health"); // Same insurer, same file
+        Long third = claim(test, "Care Plus");
+
+        ClaimBatchExportResult batch = batchExchange.exportBatch();
+        Assertions.assertEquals(3, batch.getClaims());
+        Assertions.assertEquals(third, batch.getUpToClaimId());
+        Assertions.assertEquals(2, batch.getFiles().size());
+        ClaimBatchExportResult.BatchFile star = batch.getFiles().get(0);
+        Assertions.assertTrue(star.getFileName().startsWith("claims_star-health_"));
+        List<String> lines = readGzip(DROP.resolve("outbox").resolve(star.getFileName()));
+        Assertions.assertEquals(2, lines.size());
+        Assertions.assertTrue(lines.get(0).startsWith("{\"claimId\":" + first + ","));
+        Assertions.assertTrue(lines.get(1).contains("\"testName\":\"Ferritin\""));
+        try (Stream<Path> outbox = Files.list(DROP.resolve("outbox"))) {
+            Assertions.assertTrue(outbox.noneMatch(p -> p.toString().endsWith(".part")));
+        }
+
+        // Nothing new since the watermark
+        Assertions.assertEquals(0, batchExchange.exportBatch().getFiles().size());
+
+        Files.createDirectories(DROP.resolve("inbox"));
+        Files.writeString(DROP.resolve("inbox").resolve("ack_star.ndjson"), String.join("\n",
+                "{\"claimId\":" + first + ",\"decision\":\"APPROVE\"}",
+                "{\"claimId\":" + second + ",\"decision\":\"REJECT\",\"reason\":\"Not covered by plan\"}",
+                "not json",
+                "{\"claimId\":" + first + ",\"decision\":\"REJECT\"}") + "\n");
+
+        ClaimAckImportResult acks = batchExchange.importAcks();
+        Assertions.assertEquals(1, acks.getFiles());
+        Assertions.assertEquals(4, acks.getLines());
+        Assertions.assertEquals(1, acks.getApproved());
+        Assertions.assertEquals(1, acks.getRejected());
+        Assertions.assertEquals(2, acks.getFailed()); // Garbage line, and the claim listed twice
+        Assertions.assertTrue(Files.exists(DROP.resolve("inbox/processed/ack_star.ndjson")));
+
+        Assertions.assertEquals(ClaimStatus.APPROVED, claimRepository.findById(first).orElseThrow().getStatus());
+        InsuranceClaim rejected = claimRepository.findById(second).orElseThrow();
+        Assertions.assertEquals(ClaimStatus.REJECTED, rejected.getStatus());
+        Assertions.assertEquals("Not covered by plan", rejected.getRemarks());
+        Assertions.assertEquals(ClaimStatus.PENDING, claimRepository.findById(third).orElseThrow().getStatus());
+
+        // Replaying the file changes nothing
+        Files.move(DROP.resolve("inbox/processed/ack_star.ndjson"), DROP.resolve("inbox/ack_star.ndjson"));
+        ClaimAckImportResult replay = batchExchange.importAcks();
+        Assertions.assertEquals(0, replay.getApproved() + replay.getRejected());
+
+        // The next batch carries only the new claim
+        Long fourth = claim(test, "Care Plus");
+        ClaimBatchExportResult next = batchExchange.exportBatch();
+        Assertions.assertEquals(1, next.getClaims());
+        Assertions.assertEquals(third, next.getAfterClaimId());
+        Assertions.assertEquals(fourth, next.getUpToClaimId());
+    }
+
+    @BeforeEach
+    @AfterEach
+    public void cleanUp() throws IOException {
+        if (Files.exists(DROP)) {
+            try (Stream<Path> files = Files.walk(DROP)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        watermarkRepository.deleteAll();
+        ledgerRepository.deleteAll();
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private static List<String> readGzip(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    private Long claim(LaboratoryTest test, String provider) {
+        int n = seq++;
+        User user = new User();
+        user.setName("Patient " + n);
+        user.setEmail("batch" + n + "@test.com");
+        user.setPassword("x");
+        user.setRole(Role.PATIENT);
+        user = userRepository.save(user);
+
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setUser(user);
+        policy.setProviderName(provider);
+        policy.setPolicyNumber("BATCH-" + n);
+        policy.setCoverageAmount(new BigDecimal("1000.00"));
+        policy.setExpiryDate(LocalDate.now().plusYears(1));
+        policy.setStatus(PolicyStatus.ACTIVE);
+        policy = policyRepository.save(policy);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 15));
+        slot.setCapacity(5);
+        slot = slotRepository.save(slot);
+
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setPaymentStatus(PaymentStatus.INSURANCE_PENDING);
+        booking = bookingRepository.save(booking);
+
+        InsuranceClaim claim = new InsuranceClaim();
+        claim.setBooking(booking);
+        claim.setPolicy(policy);
+        claim.setStatus(ClaimStatus.PENDING);
+        return claimRepository.save(claim).getClaimId();
+    }
+}
@@ -0,0 +1,204 @@
+package com.testinsure;
+
+import com.testinsure.dto.BookingRequest;
+import com.testinsure.dto.LedgerReconciliation;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.CoverageSnapshotWorker;
+import com.testinsure.service.InsuranceClaimService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.testinsure.TestFixtures.request;
+
+// Bookings commit on their own threads, so everything here is committed for real.
+@DataJpaTest(properties = "testinsure.ledger.snapshot-settle-seconds=0")
+@Import({TestFixtures.class, BookingService.class, InsuranceClaimService.class, CoverageLedger.class, CoverageSnapshotWorker.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CoverageLedgerTest {
+
+    private static final BigDecimal COST = new BigDecimal("100.00");
+    private static final int FAMILY = 20;
+
+    @Autowired private BookingService bookingService;
+    @Autowired private InsuranceClaimService claimService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private CoverageLedger coverageLedger;
+    @Autowired private CoverageSnapshotWorker snapshotWorker;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private CoverageLedgerRepository ledgerRepository;
+    @Autowired private CoverageSnapshotRepository snapshotRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testFamilyPolicyNeverOverspendsUnderConcurrentBookings() throws Exception {
+        LaboratoryTest test = fixtures.test("Thyroid Panel", COST);
+        User holder = fixtures.user("holder@ledger.com", Role.PATIENT);
+        InsurancePolicy policy = fixtures.policy(holder, "LEDGER-" + holder.getEmail(), "1000.00");
+
+        // Twenty family members book at once against one 1000 policy, 100 each
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        List<Long> bookingIds = new ArrayList<>();
+
+        for (int i = 0; i < FAMILY; i++) {
+            String email = fixtures.user("member" + i + "@ledger.com", Role.PATIENT).getEmail();
+            BookingRequest request = request(test, fixtures.slot(test, i), policy);
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    Booking booking = bookingService.createBooking(email, request);
+                    synchronized (bookingIds) {
+                        bookingIds.add(booking.getBookingId());
+                    }
+                    booked.incrementAndGet();
+                } catch (RuntimeException e) {
+                    Assertions.assertTrue(e.getMessage().startsWith("Insufficient Insurance Coverage!"), e.getMessage());
+                    refused.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Assertions.assertEquals(10, booked.get());
+        Assertions.assertEquals(10, refused.get());
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(coverageLedger.balance(policy)));
+        Assertions.assertEquals(10, ledgerRepository.count());
+        // The policy row is never written by a booking
+        Assertions.assertEquals(0, new BigDecimal("1000.00").compareTo(policyRepository.findById(policy.getPolicyId()).orElseThrow().getCoverageAmount()));
+
+        // Refund one: a CREDIT row, not an edit
+        Booking first = bookingRepository.findById(bookingIds.get(0)).orElseThrow();
+        bookingService.cancelBooking(first.getBookingId(), first.getUser().getEmail());
+        Assertions.assertEquals(0, COST.compareTo(coverageLedger.balance(policy)));
+        Assertions.assertEquals(11, ledgerRepository.count());
+
+        LedgerReconciliation report = snapshotWorker.reconcile();
+        Assertions.assertTrue(report.isBalanced());
+        Assertions.assertEquals(1, report.getCachedChecked());
+    }
+
+    @Test
+    public void testRolledBackDebitIsGivenBack() {
+        LaboratoryTest test = fixtures.test("Thyroid Panel", COST);
+        User user = fixtures.user("rollback@ledger.com", Role.PATIENT);
+        InsurancePolicy policy = fixtures.policy(user, "LEDGER-" + user.getEmail(), "150.00");
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 0), policy));
+            Assertions.assertEquals(0, new BigDecimal("50.00").compareTo(coverageLedger.balance(policy)));
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertEquals(0, new BigDecimal("150.00").compareTo(coverageLedger.balance(policy)));
+        Assertions.assertEquals(0, ledgerRepository.count());
+        Assertions.assertEquals(0, bookingRepository.count());
+    }
+
+    @Test
+    public void testSnapshotsAndReconciliation() {
+        LaboratoryTest test = fixtures.test("Thyroid Panel", COST);
+        User user = fixtures.user("snap@ledger.com", Role.PATIENT);
+        InsurancePolicy policy = fixtures.policy(user, "LEDGER-" + user.getEmail(), "500.00");
+        bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 0), policy));
+        bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 1), policy));
+
+        Assertions.assertEquals(1, snapshotWorker.snapshot());
+        Assertions.assertEquals(0, snapshotWorker.snapshot()); // Nothing moved since
+        CoverageSnapshot snapshot = snapshotRepository.findAll().get(0);
+        Assertions.assertEquals(0, new BigDecimal("300.00").compareTo(snapshot.getBalance()));
+
+        // Loading from scratch: snapshot + later entries
+        bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 2), policy));
+        Assertions.assertTrue(snapshotWorker.reconcile().isBalanced());
+
+        // A row written behind the ledger's back: the cached balance is now wrong, gets reported and reloaded
+        Booking booking = bookingRepository.findAll().get(0);
+        ledgerRepository.save(new CoverageLedgerEntry(policy, booking, LedgerEntryType.CREDIT, new BigDecimal("40.00")));
+        LedgerReconciliation report = snapshotWorker.reconcile();
+        Assertions.assertEquals(1, report.getCacheMismatches().size());
+        Assertions.assertEquals(0, new BigDecimal("240.00").compareTo(report.getCacheMismatches().get(0).getLedger()));
+        Assertions.assertTrue(report.getSnapshotMismatches().isEmpty());
+        Assertions.assertEquals(0, new BigDecimal("240.00").compareTo(coverageLedger.balance(policy)));
+
+        // Opening cover edited by hand: the full ledger sum no longer matches the snapshot chain
+        InsurancePolicy stored = policyRepository.findById(policy.getPolicyId()).orElseThrow();
+        stored.setCoverageAmount(new BigDecimal("600.00"));
+        policyRepository.save(stored);
+        Assertions.assertEquals(1, snapshotWorker.reconcile().getSnapshotMismatches().size());
+    }
+
+    @Test
+    public void testCancelledBookingIsRefundedOnce() {
+        LaboratoryTest test = fixtures.test("Thyroid Panel", COST);
+        User user = fixtures.user("cancel@ledger.com", Role.PATIENT);
+        InsurancePolicy policy = fixtures.policy(user, "LEDGER-" + user.getEmail(), "500.00");
+        Booking booking = bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 0), policy));
+        Long claimId = claimRepository.findByBooking_BookingId(booking.getBookingId()).orElseThrow().getClaimId();
+
+        bookingService.cancelBooking(booking.getBookingId(), user.getEmail());
+
+        // The cancellation already gave the cost back: an admin decision afterwards changes nothing
+        RuntimeException rejected = Assertions.assertThrows(RuntimeException.class,
+                () -> claimService.rejectClaim(claimId, "Not covered"));
+        Assertions.assertEquals("Claim is already REJECTED", rejected.getMessage());
+        RuntimeException approved = Assertions.assertThrows(RuntimeException.class,
+                () -> claimService.approveClaim(claimId));
+        Assertions.assertEquals("Claim is already REJECTED", approved.getMessage());
+
+        Assertions.assertEquals(1, ledgerRepository.findAll().stream()
+                .filter(entry -> entry.getType() == LedgerEntryType.CREDIT).count());
+        Assertions.assertEquals(0, new BigDecimal("500.00").compareTo(coverageLedger.balance(policy)));
+        Assertions.assertTrue(snapshotWorker.reconcile().isBalanced());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        snapshotRepository.deleteAll();
+        ledgerRepository.deleteAll();
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
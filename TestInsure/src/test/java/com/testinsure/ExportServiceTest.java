@@ -0,0 +1,264 @@
+package com.testinsure;
+
+import com.testinsure.controller.ExportController;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ExportService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// The export opens its own read-only transaction on the response thread, so the rows are committed first.
+@DataJpaTest
+@Import({ExportService.class, RowStreamer.class, JacksonAutoConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExportServiceTest {
+
+    private static final List<String> BOOKING_COLUMNS = List.of("bookingId", "createdAt", "status", "paymentStatus",
+            "userId", "patientName", "patientEmail", "testId", "testName", "cost", "slotDate", "slotTime");
+
+    @Autowired private ExportService exportService;
+    @Autowired private JsonMapper jsonMapper;
+    @Autowired private EntityManager entityManager;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+
+    private MockMvc mockMvc;
+    private List<Booking> bookings;
+
+    @BeforeEach
+    public void seed() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new ExportController(exportService, null)).build();
+
+        // A name with every character CSV has to quote
+        User patient = user("Doe, \"Jo\"\nJr", "jo@export.com");
+        User other = user("Asha", "asha@export.com");
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("Lipid Profile");
+        test.setCost(new BigDecimal("450.00"));
+        test = testRepository.save(test);
+
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setUser(patient);
+        policy.setProviderName("Star Health");
+        policy.setPolicyNumber("POL-EXP");
+        policy.setCoverageAmount(new BigDecimal("5000"));
+        policy.setExpiryDate(LocalDate.now().plusYears(1));
+        policy.setStatus(PolicyStatus.ACTIVE);
+        policy = policyRepository.save(policy);
+
+        bookings = List.of(booking(patient, test), booking(other, test), booking(patient, test));
+        for (Booking booking : List.of(bookings.get(0), bookings.get(2))) {
+            InsuranceClaim claim = new InsuranceClaim();
+            claim.setBooking(booking);
+            claim.setPolicy(policy);
+            claim.setStatus(ClaimStatus.PENDING);
+            claim.setRaisedAt(LocalDateTime.now());
+            claim.setRemarks("Auto-generated claim");
+            claimRepository.save(claim);
+        }
+    }
+
+    @Test
+    public void testBookingsStreamAsNdjsonAndCsv() throws Exception {
+        MvcResult ndjson = export("/api/exports/bookings", Map.of());
+        Assertions.assertEquals("application/x-ndjson", ndjson.getResponse().getContentType());
+        Assertions.assertEquals("attachment; filename=\"bookings.ndjson\"", ndjson.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION));
+
+        List<String> lines = lines(ndjson.getResponse().getContentAsByteArray());
+        Assertions.assertEquals(bookings.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode row = jsonMapper.readTree(lines.get(i));
+            Assertions.assertEquals(BOOKING_COLUMNS, List.copyOf(row.propertyNames()));
+            Assertions.assertEquals(bookings.get(i).getBookingId().longValue(), row.get("bookingId").asLong()); // Oldest first
+        }
+        Assertions.assertEquals("Doe, \"Jo\"\nJr", jsonMapper.readTree(lines.get(0)).get("patientName").asString());
+
+        MvcResult csv = export("/api/exports/bookings", Map.of("format", "csv"));
+        Assertions.assertEquals("text/csv", csv.getResponse().getContentType());
+        String body = csv.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(body.startsWith(String.join(",", BOOKING_COLUMNS) + "\n"));
+        // Quoted, quotes doubled, the newline kept inside the field
+        Assertions.assertTrue(body.contains("," + "\"Doe, \"\"Jo\"\"\nJr\"" + ",jo@export.com,"), body);
+        Assertions.assertTrue(body.contains(",Asha,asha@export.com,"), body);
+        Assertions.assertEquals(1 + bookings.size() + 2, body.split("\n").length); // Header, rows, two embedded newlines
+
+        // Nothing booked tomorrow
+        MvcResult none = export("/api/exports/bookings", Map.of("format", "csv", "from", LocalDate.now().plusDays(1).toString()));
+        Assertions.assertEquals(String.join(",", BOOKING_COLUMNS) + "\n",
+                none.getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCsvCellsNeverStartAFormula() throws Exception {
+        User other = bookings.get(1).getUser();
+        other.setName("=HYPERLINK(\"http://x.test\",\"Asha\")");
+        userRepository.save(other);
+
+        // Prefixed and quoted in the CSV only; the NDJSON keeps the name as entered
+        String csv = export("/api/exports/bookings", Map.of("format", "csv")).getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(csv.contains(",\"'=HYPERLINK(\"\"http://x.test\"\",\"\"Asha\"\")\",asha@export.com,"), csv);
+        List<String> ndjson = lines(export("/api/exports/bookings", Map.of()).getResponse().getContentAsByteArray());
+        Assertions.assertEquals(other.getName(), jsonMapper.readTree(ndjson.get(1)).get("patientName").asString());
+    }
+
+    @Test
+    public void testClaimsStreamGzipped() throws Exception {
+        MvcResult result = export("/api/exports/claims", Map.of("gzip", "true", "to", LocalDate.now().toString()));
+        Assertions.assertEquals("application/gzip", result.getResponse().getContentType());
+        Assertions.assertEquals("attachment; filename=\"claims.ndjson.gz\"", result.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION));
+
+        byte[] unzipped;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            unzipped = in.readAllBytes();
+        }
+        List<String> lines = lines(unzipped);
+        Assertions.assertEquals(2, lines.size());
+        JsonNode first = jsonMapper.readTree(lines.get(0));
+        Assertions.assertEquals(bookings.get(0).getBookingId().longValue(), first.get("bookingId").asLong());
+        Assertions.assertEquals("POL-EXP", first.get("policyNumber").asString());
+        Assertions.assertEquals("PENDING", first.get("status").asString());
+    }
+
+    @Test
+    public void testClientGoingAwayClosesTheDbStream() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        RowStreamer watched = new RowStreamer(entityManager, 500) {
+            @Override
+            public Stream<Object[]> stream(String jpql, Map<String, Object> params) {
+                return super.stream(jpql, params).onClose(() -> closed.set(true));
+            }
+        };
+        ExportService service = new ExportService(watched, entityManager, jsonMapper);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // Takes the header, then the connection drops
+        OutputStream client = new OutputStream() {
+            private int writes;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++writes > 1) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+        UncheckedIOException thrown = Assertions.assertThrows(UncheckedIOException.class,
+                () -> readOnly.executeWithoutResult(status -> exportBookings(service, client, ExportService.Format.CSV)));
+        Assertions.assertEquals("Broken pipe", thrown.getCause().getMessage());
+        Assertions.assertTrue(closed.get());
+
+        // And the connection is free for the next export
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        readOnly.executeWithoutResult(status -> exportBookings(service, out, ExportService.Format.NDJSON));
+        Assertions.assertEquals(bookings.size(), lines(out.toByteArray()).size());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private MvcResult export(String url, Map<String, String> params) throws Exception {
+        var builder = get(url);
+        params.forEach(builder::param);
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+    }
+
+    private static void exportBookings(ExportService service, OutputStream out, ExportService.Format format) {
+        try {
+            service.exportBookings(out, format, false, null, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> lines(byte[] body) {
+        String text = new String(body, StandardCharsets.UTF_8);
+        return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+    }
+
+    private Booking booking(User patient, LaboratoryTest test) {
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 30));
+        slot.setCapacity(1);
+        slot = slotRepository.save(slot);
+
+        Booking booking = new Booking();
+        booking.setUser(patient);
+        booking.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setPaymentStatus(PaymentStatus.PENDING);
+        return bookingRepository.save(booking);
+    }
+
+    private User user(String name, String email) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        user.setPassword("x");
+        user.setRole(Role.PATIENT);
+        return userRepository.save(user);
+    }
+}
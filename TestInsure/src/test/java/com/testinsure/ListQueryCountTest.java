@@ -0,0 +1,339 @@
+package com.testinsure;
+
+import com.testinsure.controller.BookingController;
+import com.testinsure.dto.BookingFilter;
+import com.testinsure.dto.BookingView;
+import com.testinsure.dto.ClaimFilter;
+import com.testinsure.dto.ClaimView;
+import com.testinsure.dto.CursorPage;
+import com.testinsure.entity.*;
+import com.testinsure.event.ClaimChangedEvent;
+import com.testinsure.repository.*;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The list endpoints must cost one SQL statement no matter how many rows they return.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({BookingService.class, InsuranceClaimService.class, CoverageLedger.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+public class ListQueryCountTest {
+
+    private static final int PATIENTS = 3;
+    private static final int BOOKINGS_EACH = 4;
+
+    @Autowired private BookingService bookingService;
+    @Autowired private InsuranceClaimService claimService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void seed() {
+        for (int p = 0; p < PATIENTS; p++) {
+            User user = new User();
+            user.setName("Patient " + p);
+            user.setEmail("patient" + p + "@test.com");
+            user.setPassword("x");
+            user.setRole(Role.PATIENT);
+            user = userRepository.save(user);
+
+            InsurancePolicy policy = new InsurancePolicy();
+            policy.setUser(user);
+            policy.setProviderName("Provider " + p);
+            policy.setPolicyNumber("POL-" + p);
+            policy.setCoverageAmount(new BigDecimal("5000"));
+            policy.setExpiryDate(LocalDate.now().plusYears(1));
+            policy.setStatus(PolicyStatus.ACTIVE);
+            policy = policyRepository.save(policy);
+
+            for (int b = 0; b < BOOKINGS_EACH; b++) {
+                // Distinct test and slot per booking so a per-row lazy load would show up
+                LaboratoryTest test = new LaboratoryTest();
+                test.setName("Test " + p + "-" + b);
+                test.setCost(new BigDecimal("250"));
+                test = testRepository.save(test);
+
+                TimeSlot slot = new TimeSlot();
+                slot.setLaboratoryTest(test);
+                slot.setDate(LocalDate.now().plusDays(b + 1));
+                slot.setStartTime(LocalTime.of(9, 0));
+                slot.setEndTime(LocalTime.of(9, 15));
+                slot.setCapacity(5);
+                slot = slotRepository.save(slot);
+
+                Booking booking = new Booking();
+                booking.setUser(user);
+                booking.setLaboratoryTest(test);
+                booking.setTimeSlot(slot);
+                booking.setStatus(BookingStatus.CONFIRMED);
+                booking.setPaymentStatus(PaymentStatus.PENDING);
+                booking = bookingRepository.save(booking);
+
+                InsuranceClaim claim = new InsuranceClaim();
+                claim.setBooking(booking);
+                claim.setPolicy(policy);
+                claim.setStatus(b == 0 ? ClaimStatus.REJECTED : ClaimStatus.PENDING);
+                claim.setRaisedAt(LocalDateTime.now());
+                claimRepository.save(claim);
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testMyBookingsIsOneStatement() {
+        List<BookingView> bookings = bookingService.getUserBookings("patient1@test.com");
+
+        Assertions.assertEquals(BOOKINGS_EACH, bookings.size());
+        Assertions.assertEquals("Patient 1", bookings.get(0).getUser().getName());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testAllBookingsIsOneStatement() {
+        List<BookingView> bookings = bookingService.getAllBookings();
+
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH, bookings.size());
+        Assertions.assertNotNull(bookings.get(0).getTimeSlot().getDate());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testAllClaimsIsOneStatement() {
+        List<ClaimView> claims = claimService.getAllClaims();
+
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH, claims.size());
+        Assertions.assertNotNull(claims.get(0).getPolicy().getPolicyNumber());
+        Assertions.assertNotNull(claims.get(0).getBooking().getLaboratoryTest().getCost());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testClaimsQueuePagesAreOneStatementEach() {
+        ClaimFilter filter = new ClaimFilter();
+        filter.setStatus(ClaimStatus.PENDING);
+        filter.setOldestFirst(true);
+        filter.setSize(4);
+
+        Set<Long> seen = new HashSet<>();
+        int pages = 0;
+        CursorPage<ClaimView> page;
+        do {
+            statistics.clear();
+            page = claimService.searchClaims(filter);
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+            for (ClaimView claim : page.getItems()) {
+                Assertions.assertEquals(ClaimStatus.PENDING, claim.getStatus());
+                Assertions.assertTrue(seen.add(claim.getClaimId()), "Claim repeated across pages");
+            }
+            filter.setCursor(page.getNextCursor());
+            pages++;
+        } while (page.isHasMore());
+
+        Assertions.assertEquals(PATIENTS * (BOOKINGS_EACH - 1), seen.size());
+        Assertions.assertEquals(3, pages);
+    }
+
+    @Test
+    public void testClaimsQueueFilters() {
+        ClaimFilter filter = new ClaimFilter();
+        filter.setProvider("Provider 1");
+        List<ClaimView> claims = claimService.searchClaims(filter).getItems();
+        Assertions.assertEquals(BOOKINGS_EACH, claims.size());
+        Assertions.assertTrue(claims.stream().allMatch(c -> c.getPolicy().getProviderName().equals("Provider 1")));
+
+        filter.setStatus(ClaimStatus.REJECTED);
+        Assertions.assertEquals(1, claimService.searchClaims(filter).getItems().size());
+
+        ClaimFilter byAmount = new ClaimFilter();
+        byAmount.setMinAmount(new BigDecimal("250"));
+        byAmount.setMaxAmount(new BigDecimal("250"));
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH, claimService.searchClaims(byAmount).getItems().size());
+        byAmount.setMaxAmount(new BigDecimal("249.99"));
+        Assertions.assertThrows(RuntimeException.class, () -> claimService.searchClaims(byAmount));
+        byAmount.setMinAmount(null);
+        Assertions.assertTrue(claimService.searchClaims(byAmount).getItems().isEmpty());
+
+        ClaimFilter byDate = new ClaimFilter();
+        byDate.setTo(LocalDate.now().minusDays(1));
+        Assertions.assertTrue(claimService.searchClaims(byDate).getItems().isEmpty());
+    }
+
+    @Test
+    public void testBookingPagesAreOneStatementEachAcrossTies() {
+        // Every booking at the same instant: only the id keeps the pages apart
+        LocalDateTime tie = LocalDateTime.now().withNano(0);
+        entityManager.createQuery("update Booking b set b.createdAt = :at").setParameter("at", tie).executeUpdate();
+        entityManager.clear();
+
+        BookingFilter filter = new BookingFilter();
+        filter.setSize(5);
+
+        List<Long> seen = new ArrayList<>();
+        int pages = 0;
+        CursorPage<BookingView> page;
+        do {
+            statistics.clear();
+            page = bookingService.searchBookings(filter);
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+            for (BookingView booking : page.getItems()) {
+                Assertions.assertFalse(seen.contains(booking.getBookingId()), "Booking repeated across pages");
+                seen.add(booking.getBookingId());
+            }
+            filter.setCursor(page.getNextCursor());
+            pages++;
+        } while (page.isHasMore());
+
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH, seen.size());
+        Assertions.assertEquals(3, pages);
+        List<Long> newestFirst = new ArrayList<>(seen);
+        newestFirst.sort(Comparator.reverseOrder());
+        Assertions.assertEquals(newestFirst, seen);
+    }
+
+    @Test
+    public void testBookingSearchFilters() {
+        List<Booking> bookings = bookingRepository.findAll(Sort.by("bookingId"));
+        Booking cancelled = bookings.get(0);
+        cancelled.setStatus(BookingStatus.CANCELLED);
+        Booking paid = bookings.get(1);
+        paid.setPaymentStatus(PaymentStatus.PAID);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Cancelled bookings only when asked for
+        BookingFilter filter = new BookingFilter();
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH - 1, bookingService.searchBookings(filter).getItems().size());
+        filter.setStatus(BookingStatus.CANCELLED);
+        Assertions.assertEquals(List.of(cancelled.getBookingId()), ids(bookingService.searchBookings(filter)));
+
+        BookingFilter byPayment = new BookingFilter();
+        byPayment.setPaymentStatus(PaymentStatus.PAID);
+        Assertions.assertEquals(List.of(paid.getBookingId()), ids(bookingService.searchBookings(byPayment)));
+
+        BookingFilter byTest = new BookingFilter();
+        byTest.setTestId(paid.getLaboratoryTest().getTestId());
+        Assertions.assertEquals(List.of(paid.getBookingId()), ids(bookingService.searchBookings(byTest)));
+
+        BookingFilter byPatient = new BookingFilter();
+        byPatient.setUserId(userRepository.findByEmail("patient1@test.com").orElseThrow().getUserId());
+        List<BookingView> patientBookings = bookingService.searchBookings(byPatient).getItems();
+        Assertions.assertEquals(BOOKINGS_EACH, patientBookings.size());
+        Assertions.assertTrue(patientBookings.stream().allMatch(b -> b.getUser().getName().equals("Patient 1")));
+
+        BookingFilter byDate = new BookingFilter();
+        byDate.setFrom(LocalDate.now());
+        byDate.setTo(LocalDate.now());
+        Assertions.assertEquals(PATIENTS * BOOKINGS_EACH - 1, bookingService.searchBookings(byDate).getItems().size());
+        byDate.setFrom(LocalDate.now().plusDays(1));
+        byDate.setTo(null);
+        Assertions.assertTrue(bookingService.searchBookings(byDate).getItems().isEmpty());
+        byDate.setFrom(null);
+        byDate.setTo(LocalDate.now().minusDays(1));
+        Assertions.assertTrue(bookingService.searchBookings(byDate).getItems().isEmpty());
+
+        // A cursor the server did not hand out is refused, not read as "from the start"
+        BookingFilter forged = new BookingFilter();
+        forged.setCursor("not a cursor");
+        Assertions.assertThrows(RuntimeException.class, () -> bookingService.searchBookings(forged));
+        forged.setCursor(Base64.getUrlEncoder().encodeToString("yesterday|1".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(RuntimeException.class, () -> bookingService.searchBookings(forged));
+    }
+
+    @Test
+    public void testBookingPageEndpointBindsFilters() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new BookingController(bookingService, null, null)).build();
+        String today = LocalDate.now().toString();
+
+        mockMvc.perform(get("/api/bookings/page").param("from", today).param("to", today)
+                        .param("paymentStatus", "PENDING").param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    @Test
+    public void testStatusSummaryIsOneGroupedStatement() {
+        Map<String, Long> summary = claimService.getStatusSummary();
+
+        Assertions.assertEquals(Long.valueOf(PATIENTS * (BOOKINGS_EACH - 1)), summary.get("PENDING"));
+        Assertions.assertEquals(Long.valueOf(PATIENTS), summary.get("REJECTED"));
+        Assertions.assertEquals(Long.valueOf(0), summary.get("APPROVED"));
+        Assertions.assertEquals(Long.valueOf(PATIENTS * BOOKINGS_EACH), summary.get("TOTAL"));
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // The service keeps the counts it moved, so it must not outlive this test
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    public void testStatusSummaryFollowsClaimEventsWithoutRequerying() {
+        claimService.getStatusSummary();
+        statistics.clear();
+
+        // What each committed raise / decision delivers to the service
+        BigDecimal cost = new BigDecimal("250");
+        LocalDateTime now = LocalDateTime.now();
+        claimService.onClaimChanged(ClaimChangedEvent.raised("Provider 0", cost, now));
+        claimService.onClaimChanged(ClaimChangedEvent.approved(ClaimStatus.PENDING, "Provider 0", cost, now, now));
+        claimService.onClaimChanged(ClaimChangedEvent.approved(ClaimStatus.PENDING, "Provider 1", cost, now, now));
+        claimService.onClaimChanged(ClaimChangedEvent.rejected(ClaimStatus.APPROVED, "Provider 1", cost, now, now));
+        Map<String, Long> summary = claimService.getStatusSummary();
+
+        Assertions.assertEquals(Long.valueOf(PATIENTS * (BOOKINGS_EACH - 1) - 1), summary.get("PENDING"));
+        Assertions.assertEquals(Long.valueOf(1), summary.get("APPROVED"));
+        Assertions.assertEquals(Long.valueOf(PATIENTS + 1), summary.get("REJECTED"));
+        Assertions.assertEquals(Long.valueOf(PATIENTS * BOOKINGS_EACH + 1), summary.get("TOTAL"));
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    private static List<Long> ids(CursorPage<BookingView> page) {
+        return page.getItems().stream().map(BookingView::getBookingId).toList();
+    }
+}
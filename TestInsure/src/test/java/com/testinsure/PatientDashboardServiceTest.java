@@ -0,0 +1,171 @@
+package com.testinsure;
+
+import com.testinsure.dto.PatientDashboard;
+import com.testinsure.dto.PolicyBalance;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.PatientDashboardService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// The dashboard queries run on pool threads, so the seed data has to be committed first.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(PatientDashboardService.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PatientDashboardServiceTest {
+
+    private static final BigDecimal COST = new BigDecimal("250.00");
+
+    @Autowired private PatientDashboardService dashboardService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private ReportRepository reportRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private LaboratoryTest test;
+
+    @Test
+    public void testDashboardGathersAllSectionsInFiveStatements() {
+        test = new LaboratoryTest();
+        test.setName("Lipid Profile");
+        test.setCost(COST);
+        test = testRepository.save(test);
+
+        User admin = user("admin@dash.com", Role.ADMIN);
+        User patient = user("patient@dash.com", Role.PATIENT);
+        User other = user("other@dash.com", Role.PATIENT);
+
+        // Balance already reflects the two open/paid bookings, as BookingService deducts up front
+        InsurancePolicy policy = policy(patient, "DASH-1", "4500.00");
+        policy(other, "DASH-2", "5000.00");
+
+        Booking pending = booking(patient, 1, BookingStatus.CONFIRMED, PaymentStatus.INSURANCE_PENDING);
+        claim(pending, policy, ClaimStatus.PENDING, null);
+        Booking paid = booking(patient, 2, BookingStatus.CONFIRMED, PaymentStatus.PAID);
+        claim(paid, policy, ClaimStatus.APPROVED, COST);
+        Booking rejected = booking(patient, 3, BookingStatus.CANCELLED, PaymentStatus.PENDING);
+        claim(rejected, policy, ClaimStatus.REJECTED, null);
+        Booking done = booking(patient, -2, BookingStatus.COMPLETED, PaymentStatus.PAID);
+        booking(other, 1, BookingStatus.CONFIRMED, PaymentStatus.PENDING);
+
+        Report report = new Report();
+        report.setBooking(done);
+        report.setUploadedByAdmin(admin);
+        report.setFileUrl("uploads/report_" + done.getBookingId() + "_lipid.pdf");
+        reportRepository.save(report);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        PatientDashboard dashboard = dashboardService.getDashboard("patient@dash.com");
+
+        Assertions.assertEquals(5, statistics.getPrepareStatementCount());
+        Assertions.assertEquals("patient@dash.com", dashboard.getEmail());
+
+        // Upcoming: the two confirmed future bookings, soonest first
+        Assertions.assertEquals(2, dashboard.getUpcomingBookings().size());
+        Assertions.assertEquals(pending.getBookingId(), dashboard.getUpcomingBookings().get(0).getBookingId());
+        Assertions.assertEquals(paid.getBookingId(), dashboard.getUpcomingBookings().get(1).getBookingId());
+
+        Assertions.assertEquals(1, dashboard.getPolicies().size());
+        PolicyBalance balance = dashboard.getPolicies().get(0);
+        Assertions.assertEquals(0, new BigDecimal("4500").compareTo(balance.getBalance()));
+        Assertions.assertEquals(0, COST.compareTo(balance.getHeld()));
+        Assertions.assertEquals(0, COST.compareTo(balance.getPaid()));
+        Assertions.assertEquals(1, balance.getOpenClaims());
+
+        Assertions.assertEquals(1, dashboard.getOpenClaims().size());
+        Assertions.assertEquals(pending.getBookingId(), dashboard.getOpenClaims().get(0).getBooking().getBookingId());
+
+        Assertions.assertEquals(1, dashboard.getReports().size());
+        Assertions.assertEquals(done.getBookingId(), dashboard.getReports().get(0).getBookingId());
+    }
+
+    @Test
+    public void testUnknownUserIsRejected() {
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class,
+                () -> dashboardService.getDashboard("nobody@dash.com"));
+        Assertions.assertEquals("User not found", ex.getMessage());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        reportRepository.deleteAll();
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private User user(String email, Role role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPassword("x");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private InsurancePolicy policy(User user, String number, String balance) {
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setUser(user);
+        policy.setProviderName("Star Health");
+        policy.setPolicyNumber(number);
+        policy.setCoverageAmount(new BigDecimal(balance));
+        policy.setExpiryDate(LocalDate.now().plusYears(1));
+        policy.setStatus(PolicyStatus.ACTIVE);
+        return policyRepository.save(policy);
+    }
+
+    private Booking booking(User user, int daysAhead, BookingStatus status, PaymentStatus paymentStatus) {
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(daysAhead));
+        slot.setStartTime(LocalTime.of(10, 0));
+        slot.setEndTime(LocalTime.of(10, 15));
+        slot.setCapacity(5);
+        slot = slotRepository.save(slot);
+
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
+        booking.setStatus(status);
+        booking.setPaymentStatus(paymentStatus);
+        return bookingRepository.save(booking);
+    }
+
+    private void claim(Booking booking, InsurancePolicy policy, ClaimStatus status, BigDecimal approvedAmount) {
+        InsuranceClaim claim = new InsuranceClaim();
+        claim.setBooking(booking);
+        claim.setPolicy(policy);
+        claim.setStatus(status);
+        claim.setApprovedAmount(approvedAmount);
+        claim.setRaisedAt(LocalDateTime.now());
+        claimRepository.save(claim);
+    }
+}
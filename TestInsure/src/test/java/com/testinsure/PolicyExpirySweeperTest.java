@@ -0,0 +1,107 @@
+package com.testinsure;
+
+import com.testinsure.dto.PolicyExpiryReport;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import com.testinsure.service.InsuranceClaimService;
+import com.testinsure.service.PolicyExpirySweeper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static com.testinsure.TestFixtures.request;
+
+// Each chunk commits on its own, so the seed data is committed too. Chunks of one policy.
+@DataJpaTest(properties = "testinsure.policies.expiry.chunk-size=1")
+@Import({TestFixtures.class, BookingService.class, InsuranceClaimService.class, CoverageLedger.class, PolicyExpirySweeper.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PolicyExpirySweeperTest {
+
+    private static final BigDecimal COST = new BigDecimal("100.00");
+
+    @Autowired private PolicyExpirySweeper sweeper;
+    @Autowired private BookingService bookingService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private CoverageLedger coverageLedger;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private InsurancePolicyRepository policyRepository;
+    @Autowired private InsuranceClaimRepository claimRepository;
+    @Autowired private CoverageLedgerRepository ledgerRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testSweepExpiresPoliciesInChunksAndRejectsLateClaims() {
+        LaboratoryTest test = fixtures.test("HbA1c", COST);
+        User user = fixtures.user("lapsed@expiry.com", Role.PATIENT);
+        LocalDate today = LocalDate.now();
+
+        InsurancePolicy lapsed = fixtures.policy(user, "EXP-1", "1000.00", PolicyStatus.ACTIVE, today.minusDays(10));
+        fixtures.policy(user, "EXP-2", "1000.00", PolicyStatus.ACTIVE, today.minusDays(3));
+        fixtures.policy(user, "EXP-3", "1000.00", PolicyStatus.ACTIVE, today.minusDays(1));
+        InsurancePolicy blocked = fixtures.policy(user, "EXP-4", "1000.00", PolicyStatus.BLOCKED, today.minusDays(5));
+        InsurancePolicy current = fixtures.policy(user, "EXP-5", "1000.00", PolicyStatus.ACTIVE, today);
+
+        // Not swept yet, so still chargeable: booking only looks at the status
+        Booking early = bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 0), lapsed));
+        Booking late = bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 1), lapsed));
+        // The first claim was raised while the policy was still valid
+        jdbcTemplate.update("update insurance_claims set raised_at = ? where booking_id = ?",
+                today.minusDays(20).atStartOfDay(), early.getBookingId());
+        Assertions.assertEquals(0, new BigDecimal("800.00").compareTo(coverageLedger.balance(lapsed)));
+
+        PolicyExpiryReport report = sweeper.sweep(today);
+        Assertions.assertEquals(3, report.getExpired());
+        Assertions.assertEquals(3, report.getChunks());
+        Assertions.assertEquals(0, report.getFailedChunks());
+        Assertions.assertEquals(1, report.getClaimsRejected());
+        Assertions.assertEquals(1, report.getClaimsKept());
+
+        Assertions.assertEquals(PolicyStatus.EXPIRED, policyRepository.findById(lapsed.getPolicyId()).orElseThrow().getStatus());
+        Assertions.assertEquals(PolicyStatus.BLOCKED, policyRepository.findById(blocked.getPolicyId()).orElseThrow().getStatus());
+        Assertions.assertEquals(PolicyStatus.ACTIVE, policyRepository.findById(current.getPolicyId()).orElseThrow().getStatus());
+
+        InsuranceClaim kept = claimRepository.findByBooking_BookingId(early.getBookingId()).orElseThrow();
+        InsuranceClaim rejected = claimRepository.findByBooking_BookingId(late.getBookingId()).orElseThrow();
+        Assertions.assertEquals(ClaimStatus.PENDING, kept.getStatus());
+        Assertions.assertEquals(ClaimStatus.REJECTED, rejected.getStatus());
+        Assertions.assertEquals("Policy expired on " + today.minusDays(10), rejected.getRemarks());
+        Assertions.assertEquals(BookingStatus.CANCELLED, bookingRepository.findById(late.getBookingId()).orElseThrow().getStatus());
+        Assertions.assertEquals(0, new BigDecimal("900.00").compareTo(coverageLedger.balance(lapsed))); // Refunded
+
+        // Nothing left to do; a restarted sweep picks up only what is still ACTIVE
+        Assertions.assertEquals(0, sweeper.sweep(today).getChunks());
+
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class,
+                () -> bookingService.createBooking(user.getEmail(), request(test, fixtures.slot(test, 2), lapsed)));
+        Assertions.assertEquals("Policy is EXPIRED", ex.getMessage());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        ledgerRepository.deleteAll();
+        claimRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        policyRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
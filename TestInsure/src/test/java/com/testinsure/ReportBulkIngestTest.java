@@ -0,0 +1,188 @@
+package com.testinsure;
+
+import com.testinsure.dto.ReportBulkResult;
+import com.testinsure.dto.ReportBulkResult.FileResult;
+import com.testinsure.dto.ReportBulkResult.Outcome;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ColdReportTier;
+import com.testinsure.service.HotReportTier;
+import com.testinsure.service.ReportBulkImporter;
+import com.testinsure.service.ReportService;
+import com.testinsure.service.ReportStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Every batch commits on its own, so nothing here runs in a test transaction.
+@DataJpaTest(properties = {"testinsure.reports.dir=target/report-bulk-test", "testinsure.reports.bulk.batch-size=5",
+        "testinsure.reports.bulk.drop-dir=target/report-bulk-test/drop", "testinsure.reports.bulk.settle-seconds=0",
+        "testinsure.reports.bulk.admin-email=admin@bulk.com"})
+@Import({TestFixtures.class, ReportService.class, ReportStore.class, HotReportTier.class, ColdReportTier.class, ReportBulkImporter.class,
+        JacksonAutoConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReportBulkIngestTest {
+
+    private static final Path DIR = Paths.get("target/report-bulk-test");
+
+    @Autowired private ReportBulkImporter bulkImporter;
+    @Autowired private ReportService reportService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private ReportRepository reportRepository;
+    @Autowired private ReportBlobRepository blobRepository;
+
+    private User admin;
+    private User patient;
+    private LaboratoryTest test;
+
+    @BeforeEach
+    public void seed() {
+        admin = fixtures.user("admin@bulk.com", Role.ADMIN);
+        patient = fixtures.user("patient@bulk.com", Role.PATIENT);
+        test = fixtures.test("Lipid Profile", new BigDecimal("800"));
+    }
+
+    @Test
+    public void testZipIsIngestedInBatchesWithAManifest() throws Exception {
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            bookings.add(fixtures.paidBooking(patient, test));
+        }
+        // One booking already has a report, which the ZIP replaces
+        Report earlier = reportService.uploadReport(bookings.get(0).getBookingId(),
+                new MockMultipartFile("file", "old.txt", "text/plain", "old result".getBytes(StandardCharsets.UTF_8)),
+                admin.getEmail());
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < bookings.size(); i++) {
+            // The last two carry the same bytes, stored once
+            String text = i >= 10 ? "Cholesterol 180 mg/dL" : "Cholesterol " + (150 + i) + " mg/dL";
+            entries.put("reports/" + bookings.get(i).getBookingId() + (i % 2 == 0 ? ".pdf" : "_lipid profile.txt"),
+                    text.getBytes(StandardCharsets.UTF_8));
+        }
+        entries.put(bookings.get(3).getBookingId() + "-copy.pdf", new byte[]{1});
+        entries.put("999999.pdf", new byte[]{2});
+        entries.put("notes.txt", new byte[]{3});
+        entries.put("__MACOSX/reports/._" + bookings.get(1).getBookingId() + ".pdf", new byte[]{4});
+
+        ReportBulkResult result = bulkImporter.importZip(
+                new MockMultipartFile("file", "lab-run.zip", "application/zip", zip(entries)), admin.getEmail());
+
+        Assertions.assertEquals("lab-run.zip", result.getSource());
+        Assertions.assertEquals(16, result.getFiles());
+        Assertions.assertEquals(11, result.getStored());
+        Assertions.assertEquals(1, result.getReplaced());
+        Assertions.assertEquals(2, result.getSkipped());
+        Assertions.assertEquals(2, result.getFailed());
+        Assertions.assertEquals(3, result.getBatches()); // 12 files, 5 per batch
+
+        Map<String, FileResult> byName = result.getManifest().stream()
+                .collect(Collectors.toMap(FileResult::getName, Function.identity()));
+        Assertions.assertEquals("Booking not found", byName.get("999999.pdf").getMessage());
+        Assertions.assertEquals(Outcome.FAILED, byName.get(bookings.get(3).getBookingId() + "-copy.pdf").getOutcome());
+        Assertions.assertEquals(Outcome.SKIPPED, byName.get("notes.txt").getOutcome());
+
+        for (Booking booking : bookings) {
+            Assertions.assertEquals(BookingStatus.COMPLETED, bookingRepository.findById(booking.getBookingId()).orElseThrow().getStatus());
+            Report report = reportService.getReportByBooking(booking.getBookingId());
+            Assertions.assertEquals(admin.getUserId(), report.getUploadedByAdmin().getUserId());
+            Assertions.assertTrue(Files.isRegularFile(Paths.get(report.getFileUrl())));
+        }
+        Report replaced = reportService.getReportByBooking(bookings.get(0).getBookingId());
+        Assertions.assertEquals(earlier.getReportId(), replaced.getReportId());
+        Assertions.assertEquals("report_" + bookings.get(0).getBookingId() + "_" + bookings.get(0).getBookingId() + ".pdf",
+                replaced.getFileName());
+        Assertions.assertEquals("application/pdf", replaced.getContentType());
+        Assertions.assertFalse(blobRepository.existsById(earlier.getSha256())); // Its only reference was replaced
+        Assertions.assertEquals(12, reportRepository.count());
+        Assertions.assertEquals(11, blobRepository.count());
+    }
+
+    @Test
+    public void testDropFolderIsIngestedAndFiled() throws Exception {
+        Booking booking = fixtures.paidBooking(patient, test);
+        Path inbox = DIR.resolve("drop/inbox");
+        Files.createDirectories(inbox.resolve("evening-run"));
+        Files.writeString(inbox.resolve("evening-run/" + booking.getBookingId() + ".txt"), "TSH 2.1 mIU/L");
+        Files.write(inbox.resolve("broken.zip"), new byte[]{'n', 'o', 'p', 'e'});
+
+        List<ReportBulkResult> results = bulkImporter.scanDropFolder();
+
+        Assertions.assertEquals(2, results.size());
+        Assertions.assertNotNull(results.get(0).getError()); // broken.zip sorts first
+        Assertions.assertEquals(1, results.get(1).getStored());
+        Assertions.assertTrue(Files.exists(DIR.resolve("drop/failed/broken.zip")));
+        Assertions.assertTrue(Files.exists(DIR.resolve("drop/failed/broken.zip.manifest.json")));
+        Assertions.assertTrue(Files.isDirectory(DIR.resolve("drop/processed/evening-run")));
+        Assertions.assertTrue(Files.readString(DIR.resolve("drop/processed/evening-run.manifest.json")).contains("\"STORED\""));
+        Assertions.assertEquals(BookingStatus.COMPLETED, bookingRepository.findById(booking.getBookingId()).orElseThrow().getStatus());
+        try (Stream<Path> left = Files.list(inbox)) {
+            Assertions.assertEquals(0, left.count());
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        reportRepository.deleteAll();
+        blobRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+        try (Stream<Path> files = Files.walk(DIR)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!path.equals(DIR) && !path.equals(DIR.resolve(".tmp"))) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("reports/"));
+            zip.closeEntry();
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
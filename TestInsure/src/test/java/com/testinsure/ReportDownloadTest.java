@@ -0,0 +1,134 @@
+package com.testinsure;
+
+import com.testinsure.controller.ReportController;
+import com.testinsure.entity.Report;
+import com.testinsure.service.ReportService;
+import com.testinsure.service.ReportStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ReportDownloadTest {
+
+    private static final String SHA = "ab".repeat(32);
+    private static final String ETAG = "\"" + SHA + "\"";
+    private static final LocalDateTime UPLOADED = LocalDateTime.of(2026, 3, 1, 10, 30, 15);
+
+    private Path file;
+    private byte[] content;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        content = new byte[5000];
+        new Random(7).nextBytes(content);
+        file = Files.createTempFile("report_42_", ".pdf");
+        Files.write(file, content);
+
+        Report report = new Report();
+        report.setFileUrl(file.toString());
+        report.setSizeBytes((long) content.length);
+        report.setSha256(SHA);
+        report.setContentType("application/pdf");
+        report.setUploadedAt(UPLOADED);
+
+        ReportService reportService = mock(ReportService.class);
+        when(reportService.getReportByBooking(42L)).thenReturn(report);
+        when(reportService.contentOf(report)).thenReturn(ReportStore.Content.of(file));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReportController(reportService, null, null, null)).build();
+    }
+
+    @AfterEach
+    public void cleanUp() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testFullDownloadCarriesStoredMetadata() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/reports/download/42"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, lastModified()))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, content.length))
+                .andExpect(content().contentType("application/pdf"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + file.getFileName() + "\""))
+                .andReturn();
+        Assertions.assertArrayEquals(content, result.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/api/reports/download/42").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void testRangesResumeADownload() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/reports/download/42").header(HttpHeaders.RANGE, "bytes=1000-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-4999/5000"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4000))
+                .andReturn();
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 1000, 5000), result.getResponse().getContentAsByteArray());
+
+        result = mockMvc.perform(get("/api/reports/download/42").header(HttpHeaders.RANGE, "bytes=-100"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4900-4999/5000"))
+                .andReturn();
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 4900, 5000), result.getResponse().getContentAsByteArray());
+
+        mockMvc.perform(get("/api/reports/download/42").header(HttpHeaders.RANGE, "bytes=5000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */5000"));
+    }
+
+    @Test
+    public void testIfRangeOnlyResumesTheSameVersion() throws Exception {
+        mockMvc.perform(get("/api/reports/download/42")
+                        .header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, ETAG))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10));
+
+        mockMvc.perform(get("/api/reports/download/42")
+                        .header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, content.length));
+
+        HttpHeaders dates = new HttpHeaders();
+        dates.setDate(HttpHeaders.IF_RANGE, lastModified());
+        mockMvc.perform(get("/api/reports/download/42")
+                        .header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, dates.getFirst(HttpHeaders.IF_RANGE)))
+                .andExpect(status().isPartialContent());
+    }
+
+    @Test
+    public void testSendfileIsHandedToTheConnector() throws Exception {
+        mockMvc.perform(get("/api/reports/download/42").header(HttpHeaders.RANGE, "bytes=100-199")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 100L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 200L))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    private static long lastModified() {
+        return UPLOADED.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
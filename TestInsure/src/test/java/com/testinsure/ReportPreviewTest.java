@@ -0,0 +1,202 @@
+package com.testinsure;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Image;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import com.testinsure.controller.ReportController;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ColdReportTier;
+import com.testinsure.service.HotReportTier;
+import com.testinsure.service.ReportPreviewService;
+import com.testinsure.service.ReportService;
+import com.testinsure.service.ReportStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Previews are rendered after the upload commits, so nothing here runs in a test transaction.
+@DataJpaTest(properties = {"testinsure.reports.dir=target/report-preview-test", "testinsure.reports.preview.width=200"})
+@Import({TestFixtures.class, ReportService.class, ReportStore.class, HotReportTier.class, ColdReportTier.class, ReportPreviewService.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReportPreviewTest {
+
+    private static final Path DIR = Paths.get("target/report-preview-test");
+
+    @Autowired private ReportService reportService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private ReportPreviewService previewService;
+    @Autowired private ReportStore reportStore;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private ReportRepository reportRepository;
+    @Autowired private ReportBlobRepository blobRepository;
+
+    private User admin;
+    private User patient;
+    private LaboratoryTest test;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void seed() {
+        admin = fixtures.user("admin@preview.com", Role.ADMIN);
+        patient = fixtures.user("patient@preview.com", Role.PATIENT);
+        test = fixtures.test("Chest X-Ray", new BigDecimal("600"));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReportController(reportService, null, null, previewService)).build();
+    }
+
+    @Test
+    public void testPreviewsAreRenderedAfterUploadAndCached() throws Exception {
+        byte[] scan = jpeg(2400, 3200);
+        Booking image = fixtures.paidBooking(patient, test);
+        Booking scanned = fixtures.paidBooking(patient, test);
+        Booking generated = fixtures.paidBooking(patient, test);
+        Booking text = fixtures.paidBooking(patient, test);
+        Report imageReport = upload(image, "xray.jpg", "image/jpeg", scan);
+        Report scannedReport = upload(scanned, "scan.pdf", "application/pdf", scannedPdf(scan));
+        Report generatedReport = upload(generated, "cbc.pdf", "application/pdf", textPdf());
+        upload(text, "notes.txt", "text/plain", "Normal".getBytes(StandardCharsets.UTF_8));
+
+        for (Report report : new Report[]{imageReport, scannedReport, generatedReport}) {
+            Assertions.assertEquals(200, ImageIO.read(awaitPreview(report.getSha256()).toFile()).getWidth());
+        }
+        // A sliver of the scan it stands for
+        long previewBytes = Files.size(reportStore.previewPath(imageReport.getSha256()));
+        Assertions.assertTrue(previewBytes * 20 < scan.length, "Preview is " + previewBytes + " of " + scan.length + " bytes");
+        Assertions.assertEquals(3L, previewService.getStats().get("rendered"));
+
+        String etag = "\"" + imageReport.getSha256() + "-preview\"";
+        mockMvc.perform(get("/api/reports/preview/" + image.getBookingId()).param("v", imageReport.getSha256()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable"));
+        mockMvc.perform(get("/api/reports/preview/" + image.getBookingId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+
+        // The patient's booking list carries the version the preview URL is cached under
+        Assertions.assertEquals(imageReport.getSha256(), bookingRepository.findViewsByUserEmail(patient.getEmail()).stream()
+                .filter(v -> v.getBookingId().equals(image.getBookingId())).findFirst().orElseThrow().getReportSha256());
+
+        // A long strip: only its top is decoded, and the preview is that top, not a squashed sliver
+        Report strip = upload(fixtures.paidBooking(patient, test), "ecg.jpg", "image/jpeg", jpeg(100, 30000));
+        BufferedImage stripPreview = ImageIO.read(awaitPreview(strip.getSha256()).toFile());
+        Assertions.assertEquals(100, stripPreview.getWidth());
+        Assertions.assertEquals(200, stripPreview.getHeight());
+
+        // Plain text has no preview
+        mockMvc.perform(get("/api/reports/preview/" + text.getBookingId()))
+                .andExpect(status().isNotFound());
+
+        // Replaced: the old blob goes, and its preview with it
+        Path old = reportStore.previewPath(imageReport.getSha256());
+        Report replacement = upload(image, "xray.jpg", "image/jpeg", jpeg(800, 600));
+        Assertions.assertFalse(Files.exists(old));
+        awaitPreview(replacement.getSha256());
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        reportRepository.deleteAll();
+        blobRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+        try (Stream<Path> files = Files.walk(DIR)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!path.equals(DIR) && !path.equals(DIR.resolve(".tmp"))) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private Path awaitPreview(String sha256) throws InterruptedException, IOException {
+        Path preview = reportStore.previewPath(sha256);
+        for (int i = 0; i < 200 && !Files.exists(preview); i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertTrue(Files.exists(preview) && Files.size(preview) > 0, "No preview for " + sha256);
+        return preview;
+    }
+
+    private Report upload(Booking booking, String name, String type, byte[] bytes) throws IOException {
+        return reportService.uploadReport(booking.getBookingId(), new MockMultipartFile("file", name, type, bytes), admin.getEmail());
+    }
+
+    // A noisy "scan", so it compresses like a photo rather than a flat colour
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int y = 0; y < height; y += 8) {
+            for (int x = 0; x < width; x += 8) {
+                g.setColor(new Color((x * 31 + y * 17) % 256, (x * y) % 256, (x + y * 7) % 256));
+                g.fillRect(x, y, 8, 8);
+            }
+        }
+        g.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] scannedPdf(byte[] jpeg) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter.getInstance(document, bytes);
+        document.open();
+        Image page = Image.getInstance(jpeg);
+        page.scaleToFit(500, 700);
+        document.add(page);
+        document.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] textPdf() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Document document = new Document();
+        PdfWriter.getInstance(document, bytes);
+        document.open();
+        document.add(new Paragraph("Complete Blood Count"));
+        document.add(new Paragraph("Haemoglobin 13.5 g/dL"));
+        document.add(new Paragraph("Platelets 250000 /uL"));
+        document.close();
+        return bytes.toByteArray();
+    }
+}
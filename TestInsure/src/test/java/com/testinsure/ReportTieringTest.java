@@ -0,0 +1,156 @@
+package com.testinsure;
+
+import com.testinsure.controller.ReportController;
+import com.testinsure.dto.ReportTieringResult;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ColdReportTier;
+import com.testinsure.service.HotReportTier;
+import com.testinsure.service.ReportService;
+import com.testinsure.service.ReportStore;
+import com.testinsure.service.ReportTierMigrator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Blobs are placed and archived after real commits, so nothing here runs in a test transaction.
+@DataJpaTest(properties = {"testinsure.reports.dir=target/report-tiering-test", "testinsure.reports.tiering.segment-bytes=4096"})
+@Import({TestFixtures.class, ReportService.class, ReportStore.class, HotReportTier.class, ColdReportTier.class, ReportTierMigrator.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReportTieringTest {
+
+    private static final Path DIR = Paths.get("target/report-tiering-test");
+
+    @Autowired private ReportService reportService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private ReportTierMigrator tierMigrator;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private ReportRepository reportRepository;
+    @Autowired private ReportBlobRepository blobRepository;
+
+    private User admin;
+    private User patient;
+    private LaboratoryTest test;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void seed() {
+        admin = fixtures.user("admin@tiering.com", Role.ADMIN);
+        patient = fixtures.user("patient@tiering.com", Role.PATIENT);
+        test = fixtures.test("CT Chest", new BigDecimal("3000"));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReportController(reportService, tierMigrator, null, null)).build();
+    }
+
+    @Test
+    public void testOldReportsArePackedAndStillServed() throws Exception {
+        byte[] text = "Haemoglobin 13.5 g/dL  WBC 7200 /uL  Platelets 250000 /uL\n".repeat(400).getBytes(StandardCharsets.UTF_8);
+        byte[] image = new byte[3000];
+        new Random(3).nextBytes(image);
+
+        Booking first = fixtures.paidBooking(patient, test);
+        Booking second = fixtures.paidBooking(patient, test);
+        Report textReport = reportService.uploadReport(first.getBookingId(),
+                new MockMultipartFile("file", "cbc.txt", "text/plain", text), admin.getEmail());
+        Report imageReport = reportService.uploadReport(second.getBookingId(),
+                new MockMultipartFile("file", "scan.jpg", "image/jpeg", image), admin.getEmail());
+
+        // Nothing is old enough yet
+        Assertions.assertEquals(0, tierMigrator.migrate(LocalDateTime.now().minusDays(1)).getMoved());
+
+        ReportTieringResult result = tierMigrator.migrate(LocalDateTime.now().plusMinutes(1));
+        Assertions.assertEquals(2, result.getMoved());
+        Assertions.assertEquals(0, result.getFailed());
+        Assertions.assertFalse(Files.exists(Paths.get(textReport.getFileUrl())));
+        Assertions.assertFalse(Files.exists(Paths.get(imageReport.getFileUrl())));
+
+        ReportBlob textBlob = blobRepository.findById(textReport.getSha256()).orElseThrow();
+        Assertions.assertEquals(StorageTier.COLD, textBlob.getTier());
+        Assertions.assertTrue(textBlob.getCompressed());
+        Assertions.assertTrue(textBlob.getStoredBytes() * 10 < text.length, "Stored " + textBlob.getStoredBytes());
+        ReportBlob imageBlob = blobRepository.findById(imageReport.getSha256()).orElseThrow();
+        Assertions.assertFalse(imageBlob.getCompressed()); // Random bytes don't shrink; packed raw
+        Assertions.assertEquals(image.length, imageBlob.getStoredBytes());
+
+        // Served from the segments, whole or from the middle
+        mockMvc.perform(get("/api/reports/download/" + first.getBookingId()))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, text.length))
+                .andExpect(content().bytes(text));
+        mockMvc.perform(get("/api/reports/download/" + first.getBookingId()).header(HttpHeaders.RANGE, "bytes=10000-10099"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(text, 10000, 10100)));
+        mockMvc.perform(get("/api/reports/download/" + second.getBookingId()).header(HttpHeaders.RANGE, "bytes=-500"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 2500, 3000)));
+
+        // Uploading the same bytes again brings the blob back to the hot tier
+        Report again = reportService.uploadReport(fixtures.paidBooking(patient, test).getBookingId(),
+                new MockMultipartFile("file", "cbc.txt", "text/plain", text), admin.getEmail());
+        Assertions.assertEquals(StorageTier.HOT, blobRepository.findById(again.getSha256()).orElseThrow().getTier());
+        Assertions.assertEquals(Paths.get(again.getFileUrl()), reportService.contentOf(textReport).getFile());
+        Assertions.assertArrayEquals(text, Files.readAllBytes(Paths.get(again.getFileUrl())));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cold = (Map<String, Object>) ((Map<String, Object>) reportService.getStoreStats().get("tiers")).get("COLD");
+        Assertions.assertEquals(1L, cold.get("blobs"));
+        Assertions.assertEquals(textBlob.getStoredBytes(), cold.get("deadBytes"));
+
+        // Replacing the scan drops its blob, and its packed bytes are wiped, not just forgotten
+        reportService.uploadReport(second.getBookingId(),
+                new MockMultipartFile("file", "scan.txt", "text/plain", "Rescanned".getBytes(StandardCharsets.UTF_8)), admin.getEmail());
+        Assertions.assertTrue(blobRepository.findById(imageReport.getSha256()).isEmpty());
+        byte[] segment = Files.readAllBytes(DIR.resolve("cold").resolve(imageBlob.getSegment()));
+        int offset = imageBlob.getSegmentOffset().intValue();
+        Assertions.assertArrayEquals(new byte[image.length], Arrays.copyOfRange(segment, offset, offset + image.length));
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        reportRepository.deleteAll();
+        blobRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+        try (Stream<Path> files = Files.walk(DIR)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!path.equals(DIR) && !path.equals(DIR.resolve(".tmp"))) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.testinsure;
+
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.ColdReportTier;
+import com.testinsure.service.HotReportTier;
+import com.testinsure.service.ReportService;
+import com.testinsure.service.ReportStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Files are only renamed into place on a real commit, so nothing here runs in a test transaction.
+@DataJpaTest(properties = {"testinsure.reports.dir=target/report-upload-test", "testinsure.reports.max-bytes=4096"})
+@Import({TestFixtures.class, ReportService.class, ReportStore.class, HotReportTier.class, ColdReportTier.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReportUploadTest {
+
+    private static final Path DIR = Paths.get("target/report-upload-test");
+
+    @Autowired private ReportService reportService;
+    @Autowired private TestFixtures fixtures;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+    @Autowired private ReportRepository reportRepository;
+    @Autowired private ReportBlobRepository blobRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private User admin;
+    private User patient;
+    private LaboratoryTest test;
+    private Booking booking;
+
+    @BeforeEach
+    public void seed() throws IOException {
+        Files.createDirectories(DIR.resolve(".tmp"));
+        admin = fixtures.user("admin@reports.com", Role.ADMIN);
+        patient = fixtures.user("patient@reports.com", Role.PATIENT);
+
+        test = fixtures.test("MRI Brain", new BigDecimal("4000"));
+
+        booking = fixtures.paidBooking(patient, test);
+    }
+
+    @Test
+    public void testUploadIsStreamedHashedAndRenamedAfterCommit() throws Exception {
+        byte[] content = bytes(3000);
+        Report report = reportService.uploadReport(booking.getBookingId(),
+                new MockMultipartFile("file", "../../scan results.pdf", "application/pdf", content), admin.getEmail());
+
+        String sha = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        Path stored = Paths.get(report.getFileUrl());
+        Assertions.assertEquals(DIR.resolve("blobs").resolve(sha.substring(0, 2)).resolve(sha.substring(2, 4)).resolve(sha), stored);
+        Assertions.assertEquals(stored, reportService.contentOf(report).getFile());
+        Assertions.assertEquals("report_" + booking.getBookingId() + "_scan_results.pdf", report.getFileName());
+        Assertions.assertArrayEquals(content, Files.readAllBytes(stored));
+        Assertions.assertEquals(3000L, report.getSizeBytes());
+        Assertions.assertEquals("application/pdf", report.getContentType());
+        Assertions.assertEquals(sha, report.getSha256());
+        Assertions.assertEquals(BookingStatus.COMPLETED, bookingRepository.findById(booking.getBookingId()).orElseThrow().getStatus());
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testRolledBackUploadLeavesNoFile() throws IOException {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            try {
+                reportService.uploadReport(booking.getBookingId(),
+                        new MockMultipartFile("file", "scan.pdf", "application/pdf", bytes(100)), admin.getEmail());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertEquals(0, reportRepository.count());
+        Assertions.assertEquals(0, blobRepository.count());
+        Assertions.assertEquals(0, blobFiles());
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testIdenticalUploadsShareOneBlobUntilTheLastReferenceGoes() throws Exception {
+        byte[] content = bytes(2000);
+        Booking second = fixtures.paidBooking(patient, test);
+        Report first = reportService.uploadReport(booking.getBookingId(),
+                new MockMultipartFile("file", "scan.pdf", "application/pdf", content), admin.getEmail());
+        Report copy = reportService.uploadReport(second.getBookingId(),
+                new MockMultipartFile("file", "scan.pdf", "application/pdf", content), admin.getEmail());
+
+        Assertions.assertEquals(first.getFileUrl(), copy.getFileUrl());
+        Assertions.assertEquals(1, blobFiles());
+        Assertions.assertEquals(2, blobRepository.findById(first.getSha256()).orElseThrow().getRefCount());
+        Assertions.assertEquals(2000L, reportService.getStoreStats().get("bytesSaved"));
+
+        // Re-uploading for a booking replaces its report and drops its reference
+        Report replaced = reportService.uploadReport(booking.getBookingId(),
+                new MockMultipartFile("file", "scan-v2.pdf", "application/pdf", bytes(1500)), admin.getEmail());
+        Assertions.assertEquals(first.getReportId(), replaced.getReportId());
+        Assertions.assertEquals(2, reportRepository.count());
+        Assertions.assertEquals(1, blobRepository.findById(first.getSha256()).orElseThrow().getRefCount());
+        Assertions.assertEquals(2, blobFiles());
+
+        reportService.uploadReport(second.getBookingId(),
+                new MockMultipartFile("file", "scan-v2.pdf", "application/pdf", bytes(1500)), admin.getEmail());
+        Assertions.assertTrue(blobRepository.findById(first.getSha256()).isEmpty());
+        Assertions.assertFalse(Files.exists(Paths.get(first.getFileUrl())));
+        Assertions.assertEquals(1, blobFiles());
+        Assertions.assertEquals(2, blobRepository.findById(replaced.getSha256()).orElseThrow().getRefCount());
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testSizeCapIsEnforcedWhileStreaming() throws IOException {
+        // Declared size passes the up-front check; the copy itself has to stop it
+        MockMultipartFile lying = new MockMultipartFile("file", "big.pdf", "application/pdf", bytes(10_000)) {
+            @Override
+            public long getSize() {
+                return 10;
+            }
+        };
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class,
+                () -> reportService.uploadReport(booking.getBookingId(), lying, admin.getEmail()));
+        Assertions.assertTrue(ex.getMessage().contains("too large"));
+
+        MockMultipartFile honest = new MockMultipartFile("file", "big.pdf", "application/pdf", bytes(10_000));
+        Assertions.assertThrows(RuntimeException.class,
+                () -> reportService.uploadReport(booking.getBookingId(), honest, admin.getEmail()));
+
+        Assertions.assertEquals(0, reportRepository.count());
+        Assertions.assertEquals(0, blobRepository.count());
+        assertNoTempFiles();
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        reportRepository.deleteAll();
+        blobRepository.deleteAll();
+        bookingRepository.deleteAll();
+        slotRepository.deleteAll();
+        testRepository.deleteAll();
+        userRepository.deleteAll();
+        try (Stream<Path> files = Files.walk(DIR)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!path.equals(DIR) && !path.equals(DIR.resolve(".tmp"))) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static void assertNoTempFiles() throws IOException {
+        try (Stream<Path> temp = Files.list(DIR.resolve(".tmp"))) {
+            Assertions.assertEquals(0, temp.count());
+        }
+    }
+
+    private static long blobFiles() throws IOException {
+        if (!Files.exists(DIR.resolve("blobs"))) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(DIR.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
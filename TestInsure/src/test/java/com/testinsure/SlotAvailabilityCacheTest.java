@@ -0,0 +1,89 @@
+package com.testinsure;
+
+import com.testinsure.dto.SlotAvailability;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.entity.TimeSlot;
+import com.testinsure.event.SlotChangedEvent;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import com.testinsure.service.SlotAvailabilityCache;
+import com.testinsure.service.TimeSlotService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SlotAvailabilityCacheTest {
+
+    private static final Long TEST_ID = 1L;
+
+    private final LocalDate today = LocalDate.now();
+    private TimeSlotRepository slotRepository;
+    private TimeSlotService slotService;
+
+    @BeforeEach
+    public void setup() {
+        slotRepository = mock(TimeSlotRepository.class);
+        LaboratoryTestRepository testRepository = mock(LaboratoryTestRepository.class);
+        SlotAvailabilityCache cache = new SlotAvailabilityCache(100, 300);
+
+        // No Spring context here: deliver events straight to the cache
+        ApplicationEventPublisher eventPublisher = event -> cache.onSlotChanged((SlotChangedEvent) event);
+        slotService = new TimeSlotService(slotRepository, testRepository, cache, eventPublisher);
+
+        LaboratoryTest test = new LaboratoryTest();
+        test.setTestId(TEST_ID);
+        when(testRepository.findById(TEST_ID)).thenReturn(Optional.of(test));
+        when(slotRepository.findAvailability(TEST_ID, today, null)).thenReturn(List.of(
+                slot(10L, today), slot(11L, today.plusDays(4)), slot(12L, today.plusDays(9))));
+    }
+
+    @Test
+    public void testOnlyUpcomingSlotsAreCached() {
+        Assertions.assertEquals(3, slotService.getSlotsForTest(TEST_ID, today, null).size());
+        Assertions.assertEquals(3, slotService.getSlotsForTest(TEST_ID, today, null).size());
+        Assertions.assertEquals(List.of(11L), slotService.getSlotsForTest(TEST_ID, today.plusDays(1), today.plusDays(5))
+                .stream().map(SlotAvailability::getSlotId).toList());
+        verify(slotRepository, times(1)).findAvailability(TEST_ID, today, null);
+
+        // History is never loaded into the cache; asking for it goes to the DB each time
+        slotService.getSlotsForTest(TEST_ID, null, null);
+        slotService.getSlotsForTest(TEST_ID, today.minusDays(30), today);
+        slotService.getSlotsForTest(TEST_ID, today.minusDays(30), today);
+        verify(slotRepository, times(1)).findAvailability(TEST_ID, null, null);
+        verify(slotRepository, times(2)).findAvailability(TEST_ID, today.minusDays(30), today);
+
+        // A slot added in the past stays out of the cached list; a future one goes in, in order
+        when(slotRepository.save(any(TimeSlot.class))).thenAnswer(call -> {
+            TimeSlot slot = call.getArgument(0);
+            slot.setSlotId(slot.getDate().isBefore(today) ? 20L : 21L);
+            return slot;
+        });
+        slotService.createSlot(TEST_ID, timeSlot(today.minusDays(2)));
+        slotService.createSlot(TEST_ID, timeSlot(today.plusDays(1)));
+        Assertions.assertEquals(List.of(10L, 21L, 11L, 12L), slotService.getSlotsForTest(TEST_ID, today, null)
+                .stream().map(SlotAvailability::getSlotId).toList());
+        verify(slotRepository, times(1)).findAvailability(TEST_ID, today, null);
+    }
+
+    private static SlotAvailability slot(Long slotId, LocalDate date) {
+        return new SlotAvailability(slotId, date, LocalTime.of(9, 0), LocalTime.of(9, 30), 4, 0);
+    }
+
+    private static TimeSlot timeSlot(LocalDate date) {
+        TimeSlot slot = new TimeSlot();
+        slot.setDate(date);
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 30));
+        slot.setCapacity(4);
+        return slot;
+    }
+}
@@ -0,0 +1,129 @@
+package com.testinsure;
+
+import com.testinsure.dto.BookingRequest;
+import com.testinsure.dto.SlotAvailability;
+import com.testinsure.entity.*;
+import com.testinsure.repository.*;
+import com.testinsure.service.BookingAdmissionQueue;
+import com.testinsure.service.BookingService;
+import com.testinsure.service.CoverageLedger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+// Hammers one slot from many threads and checks the conditional UPDATE never overbooks it.
+@DataJpaTest
+@Import({BookingService.class, CoverageLedger.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every booking commits on its own thread
+public class SlotReservationStressTest {
+
+    private static final int CAPACITY = 5;
+    private static final int PATIENTS = 40;
+
+    @Autowired private BookingService bookingService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private BookingRepository bookingRepository;
+
+    @Test
+    public void testSlotNeverOverbooksUnderConcurrentBookings() throws Exception {
+        runRush("direct", bookingService::createBooking);
+    }
+
+    @Test
+    public void testSlotNeverOverbooksThroughAdmissionQueue() throws Exception {
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(bookingService, true, 4, 8, 1000, 60000);
+        try {
+            runRush("queued", queue::submit);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    private void runRush(String tag, BiFunction<String, BookingRequest, Booking> book) throws Exception {
+        // Setup
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("CBC");
+        test.setCost(new BigDecimal("400"));
+        test = testRepository.save(test);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setDate(LocalDate.now().plusDays(1));
+        slot.setStartTime(LocalTime.of(8, 0));
+        slot.setEndTime(LocalTime.of(8, 15));
+        slot.setCapacity(CAPACITY);
+        slot.setLaboratoryTest(test);
+        slot = slotRepository.save(slot);
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            User user = new User();
+            user.setName("Patient " + i);
+            user.setEmail(tag + i + "@test.com");
+            user.setPassword("x");
+            user.setRole(Role.PATIENT);
+            emails.add(userRepository.save(user).getEmail());
+        }
+
+        // Execute: release every thread at once
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (String email : emails) {
+            BookingRequest request = new BookingRequest();
+            request.setTestId(test.getTestId());
+            request.setSlotId(slot.getSlotId());
+            request.setIsInsurance(false);
+
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    book.apply(email, request);
+                    booked.incrementAndGet();
+                } catch (RuntimeException e) {
+                    Assertions.assertEquals("Slot is fully booked.", e.getMessage());
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Verify: exactly CAPACITY seats sold, counter matches the bookings table
+        Assertions.assertEquals(CAPACITY, booked.get());
+        Assertions.assertEquals(PATIENTS - CAPACITY, rejected.get());
+        Assertions.assertEquals(CAPACITY, bookingRepository.countByTimeSlot_SlotIdAndStatusNot(slot.getSlotId(), BookingStatus.CANCELLED));
+        Assertions.assertEquals(CAPACITY, slotRepository.findById(slot.getSlotId()).orElseThrow().getBookedCount());
+
+        List<SlotAvailability> availability = slotRepository.findAvailability(test.getTestId(), null, null);
+        Assertions.assertEquals(1, availability.size());
+        Assertions.assertEquals(CAPACITY, availability.get(0).getCapacity());
+        Assertions.assertEquals(0, availability.get(0).getRemaining());
+        Assertions.assertTrue(slotRepository.findAvailability(test.getTestId(), null, LocalDate.now()).isEmpty());
+    }
+}
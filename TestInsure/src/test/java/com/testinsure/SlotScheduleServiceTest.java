@@ -0,0 +1,124 @@
+package com.testinsure;
+
+import com.testinsure.dto.SlotAvailability;
+import com.testinsure.dto.SlotGenerationResult;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.entity.SlotTemplate;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.repository.SlotTemplateRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import com.testinsure.service.SlotScheduleService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(SlotScheduleService.class)
+public class SlotScheduleServiceTest {
+
+    @Autowired private SlotScheduleService scheduleService;
+    @Autowired private LaboratoryTestRepository testRepository;
+    @Autowired private TimeSlotRepository slotRepository;
+    @Autowired private SlotTemplateRepository templateRepository;
+
+    @Test
+    public void testTemplateExpandsOnceAndRerunFillsOnlyGaps() {
+        // Setup: weekdays 08:00-12:00, 15 min slots, capacity 4, two weeks from a Monday
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("Lipid Profile");
+        test.setCost(new BigDecimal("300"));
+        test = testRepository.save(test);
+
+        SlotTemplate template = new SlotTemplate();
+        template.setDaysOfWeek("MON,TUE,WED,THU,FRI");
+        template.setDayStart(LocalTime.of(8, 0));
+        template.setDayEnd(LocalTime.of(12, 0));
+        template.setSlotMinutes(15);
+        template.setCapacity(4);
+        template.setHorizonDays(14);
+        template = scheduleService.createTemplate(test.getTestId(), template);
+
+        LocalDate monday = LocalDate.of(2030, 1, 7);
+
+        // Execute
+        SlotGenerationResult first = scheduleService.generate(template.getTemplateId(), monday);
+        SlotGenerationResult second = scheduleService.generate(template.getTemplateId(), monday);
+
+        // Verify: 10 weekdays x 16 slots, re-run inserts nothing
+        Assertions.assertEquals(160, first.getCreated());
+        Assertions.assertEquals(0, first.getExisting());
+        Assertions.assertEquals(0, second.getCreated());
+        Assertions.assertEquals(160, second.getExisting());
+
+        List<SlotAvailability> slots = slotRepository.findAvailability(test.getTestId(), monday, monday);
+        Assertions.assertEquals(16, slots.size());
+        Assertions.assertEquals(LocalTime.of(8, 0), slots.get(0).getStartTime());
+        Assertions.assertEquals(LocalTime.of(12, 0), slots.get(15).getEndTime());
+        Assertions.assertEquals(4, slots.get(0).getRemaining());
+    }
+
+    // Each generate() commits on its own thread here, so this test cleans up after itself
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testConcurrentGenerationInsertsEachSlotOnce() throws Exception {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName("HbA1c");
+        test.setCost(new BigDecimal("450"));
+        test = testRepository.save(test);
+
+        SlotTemplate template = new SlotTemplate();
+        template.setDaysOfWeek("MON,TUE,WED,THU,FRI,SAT,SUN");
+        template.setDayStart(LocalTime.of(9, 0));
+        template.setDayEnd(LocalTime.of(11, 0));
+        template.setSlotMinutes(30);
+        template.setCapacity(2);
+        template.setHorizonDays(7);
+        Long templateId = scheduleService.createTemplate(test.getTestId(), template).getTemplateId();
+        LocalDate from = LocalDate.of(2030, 2, 4);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SlotGenerationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return scheduleService.generate(templateId, from);
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (Future<SlotGenerationResult> result : results) {
+                created += result.get(60, TimeUnit.SECONDS).getCreated();
+            }
+
+            // 7 days x 4 slots, inserted by whichever call got there first
+            Assertions.assertEquals(28, created);
+            Assertions.assertEquals(28, slotRepository.findAvailability(test.getTestId(), from, from.plusDays(6)).size());
+        } finally {
+            pool.shutdown();
+            slotRepository.deleteAll();
+            templateRepository.deleteAll();
+            testRepository.deleteAll();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.testinsure;
+
+import com.testinsure.controller.TestController;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.event.TestCatalogChangedEvent;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.service.LaboratoryTestService;
+import com.testinsure.service.TestCatalogCache;
+import com.testinsure.service.TestSearchIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class TestCatalogCacheTest {
+
+    private LaboratoryTestRepository testRepository;
+    private TestCatalogCache catalogCache;
+    private LaboratoryTestService testService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        testRepository = mock(LaboratoryTestRepository.class);
+        catalogCache = new TestCatalogCache(testRepository, JsonMapper.builder().build());
+
+        TestSearchIndex searchIndex = new TestSearchIndex(catalogCache);
+
+        // No Spring context here: deliver events straight to the listeners, in their @Order
+        ApplicationEventPublisher eventPublisher = event -> {
+            catalogCache.onCatalogChanged((TestCatalogChangedEvent) event);
+            searchIndex.onCatalogChanged((TestCatalogChangedEvent) event);
+        };
+        testService = new LaboratoryTestService(testRepository, catalogCache, searchIndex, eventPublisher);
+        mockMvc = MockMvcBuilders.standaloneSetup(new TestController(testService, null)).build();
+
+        when(testRepository.findAll()).thenReturn(List.of(test(1L, "CBC"), test(2L, "Lipid Profile")));
+    }
+
+    @Test
+    public void testCatalogIsLoadedOnceAndServedFromMemory() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(2, testService.getAllTests().size());
+        }
+        verify(testRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testWritesSwapInNewVersionWithoutReloading() {
+        TestCatalogCache.Snapshot before = testService.getCatalog();
+
+        when(testRepository.save(any(LaboratoryTest.class))).thenAnswer(inv -> {
+            LaboratoryTest saved = inv.getArgument(0);
+            saved.setTestId(3L);
+            return saved;
+        });
+        testService.addTest(test(null, "Thyroid Panel"));
+
+        TestCatalogCache.Snapshot added = testService.getCatalog();
+        Assertions.assertEquals(before.getVersion() + 1, added.getVersion());
+        Assertions.assertNotEquals(before.getEtag(), added.getEtag());
+        Assertions.assertEquals(3, added.getTests().size());
+        Assertions.assertTrue(new String(added.getJson(), StandardCharsets.UTF_8).contains("Thyroid Panel"));
+        Assertions.assertEquals(2, before.getTests().size()); // Old snapshot untouched
+
+        when(testRepository.findById(1L)).thenReturn(Optional.of(test(1L, "CBC")));
+        when(testRepository.save(any(LaboratoryTest.class))).thenAnswer(inv -> inv.getArgument(0));
+        testService.updateTest(1L, test(null, "Complete Blood Count"));
+        testService.deleteTest(2L);
+
+        TestCatalogCache.Snapshot latest = testService.getCatalog();
+        Assertions.assertEquals(before.getVersion() + 3, latest.getVersion());
+        Assertions.assertEquals(List.of("Complete Blood Count", "Thyroid Panel"),
+                latest.getTests().stream().map(LaboratoryTest::getName).toList());
+        verify(testRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testGetReturnsNotModifiedForCurrentEtag() throws Exception {
+        String etag = testService.getCatalog().getEtag();
+
+        mockMvc.perform(get("/api/tests"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$[1].name").value("Lipid Profile"));
+
+        mockMvc.perform(get("/api/tests").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        testService.deleteTest(1L);
+        mockMvc.perform(get("/api/tests").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    private static LaboratoryTest test(Long id, String name) {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setTestId(id);
+        test.setName(name);
+        test.setCost(new BigDecimal("300"));
+        return test;
+    }
+}
@@ -0,0 +1,108 @@
+package com.testinsure;
+
+import com.testinsure.dto.BookingRequest;
+import com.testinsure.entity.*;
+import com.testinsure.repository.BookingRepository;
+import com.testinsure.repository.InsurancePolicyRepository;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.repository.TimeSlotRepository;
+import com.testinsure.repository.UserRepository;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Saved rows for the DB-backed tests: @Import it and autowire. Each test still cleans up its own tables.
+@TestComponent
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final LaboratoryTestRepository testRepository;
+    private final TimeSlotRepository slotRepository;
+    private final BookingRepository bookingRepository;
+    private final InsurancePolicyRepository policyRepository;
+
+    public TestFixtures(UserRepository userRepository, LaboratoryTestRepository testRepository,
+                        TimeSlotRepository slotRepository, BookingRepository bookingRepository,
+                        InsurancePolicyRepository policyRepository) {
+        this.userRepository = userRepository;
+        this.testRepository = testRepository;
+        this.slotRepository = slotRepository;
+        this.bookingRepository = bookingRepository;
+        this.policyRepository = policyRepository;
+    }
+
+    // Named after its email
+    public User user(String email, Role role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPassword("x");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    public LaboratoryTest test(String name, BigDecimal cost) {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setName(name);
+        test.setCost(cost);
+        return testRepository.save(test);
+    }
+
+    // Active, expiring in a year
+    public InsurancePolicy policy(User user, String number, String cover) {
+        return policy(user, number, cover, PolicyStatus.ACTIVE, LocalDate.now().plusYears(1));
+    }
+
+    public InsurancePolicy policy(User user, String number, String cover, PolicyStatus status, LocalDate expiryDate) {
+        InsurancePolicy policy = new InsurancePolicy();
+        policy.setUser(user);
+        policy.setProviderName("Star Health");
+        policy.setPolicyNumber(number);
+        policy.setCoverageAmount(new BigDecimal(cover));
+        policy.setExpiryDate(expiryDate);
+        policy.setStatus(status);
+        return policyRepository.save(policy);
+    }
+
+    // Five seats, 09:00 on day + 1 (day 0 = tomorrow), so each day is a distinct slot
+    public TimeSlot slot(LaboratoryTest test, int day) {
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now().plusDays(day + 1));
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 15));
+        slot.setCapacity(5);
+        return slotRepository.save(slot);
+    }
+
+    // Confirmed and paid, on a one-seat slot of its own today (saved directly, not through BookingService)
+    public Booking paidBooking(User patient, LaboratoryTest test) {
+        TimeSlot slot = new TimeSlot();
+        slot.setLaboratoryTest(test);
+        slot.setDate(LocalDate.now());
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(9, 30));
+        slot.setCapacity(1);
+        slot = slotRepository.save(slot);
+
+        Booking booking = new Booking();
+        booking.setUser(patient);
+        booking.setLaboratoryTest(test);
+        booking.setTimeSlot(slot);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setPaymentStatus(PaymentStatus.PAID);
+        return bookingRepository.save(booking);
+    }
+
+    // Insurance booking on the given policy; no policy = paid at booking
+    public static BookingRequest request(LaboratoryTest test, TimeSlot slot, InsurancePolicy policy) {
+        BookingRequest request = new BookingRequest();
+        request.setTestId(test.getTestId());
+        request.setSlotId(slot.getSlotId());
+        request.setIsInsurance(policy != null);
+        request.setPolicyId(policy == null ? null : policy.getPolicyId());
+        return request;
+    }
+}
@@ -0,0 +1,106 @@
+package com.testinsure;
+
+import com.testinsure.dto.TestSuggestion;
+import com.testinsure.entity.LaboratoryTest;
+import com.testinsure.event.TestCatalogChangedEvent;
+import com.testinsure.repository.LaboratoryTestRepository;
+import com.testinsure.service.LaboratoryTestService;
+import com.testinsure.service.TestCatalogCache;
+import com.testinsure.service.TestSearchIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestSearchIndexTest {
+
+    private LaboratoryTestRepository testRepository;
+    private LaboratoryTestService testService;
+
+    @BeforeEach
+    public void setup() {
+        testRepository = mock(LaboratoryTestRepository.class);
+        TestCatalogCache catalogCache = new TestCatalogCache(testRepository, JsonMapper.builder().build());
+        TestSearchIndex searchIndex = new TestSearchIndex(catalogCache);
+        ApplicationEventPublisher eventPublisher = event -> {
+            catalogCache.onCatalogChanged((TestCatalogChangedEvent) event);
+            searchIndex.onCatalogChanged((TestCatalogChangedEvent) event);
+        };
+        testService = new LaboratoryTestService(testRepository, catalogCache, searchIndex, eventPublisher);
+
+        when(testRepository.findAll()).thenReturn(List.of(
+                test(1L, "Complete Blood Count (CBC)", "Counts red cells, white cells and platelets", "No fasting required"),
+                test(2L, "Lipid Profile", "Cholesterol and triglycerides", "Fast for 10-12 hours"),
+                test(3L, "Blood Glucose Fasting", "Sugar level in blood", "Fast for 8 hours"),
+                test(4L, "HbA1c", "Average blood sugar over three months", null)));
+    }
+
+    @Test
+    public void testSearchMatchesAllWordsAndRanksNameHitsFirst() {
+        List<Long> ids = ids(testService.searchTests("blood", null));
+        Assertions.assertEquals(List.of(3L, 1L, 4L), ids); // Name hits first, the description-only hit last
+
+        // Both words in the name beat a name word plus a prep-instruction word
+        Assertions.assertEquals(List.of(3L, 1L), ids(testService.searchTests("blood fasting", null)));
+        Assertions.assertEquals(List.of(3L, 2L, 1L), ids(testService.searchTests("fast", null)));
+        Assertions.assertEquals(List.of(4L), ids(testService.searchTests("HBA1", null)));
+        Assertions.assertTrue(testService.searchTests("urine", null).isEmpty());
+        Assertions.assertTrue(testService.searchTests("  ", null).isEmpty());
+    }
+
+    @Test
+    public void testAutocompleteUsesNamesOnly() {
+        List<TestSuggestion> suggestions = testService.suggestTests("bl", 5);
+        Assertions.assertEquals(List.of("Blood Glucose Fasting", "Complete Blood Count (CBC)"),
+                suggestions.stream().map(TestSuggestion::getName).toList());
+
+        // "cholesterol" is only in a description
+        Assertions.assertTrue(testService.suggestTests("chol", 5).isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsCatalogChanges() {
+        Assertions.assertEquals(1, testService.suggestTests("lip", 5).size()); // Builds the index
+
+        when(testRepository.save(any(LaboratoryTest.class))).thenAnswer(inv -> {
+            LaboratoryTest saved = inv.getArgument(0);
+            if (saved.getTestId() == null) {
+                saved.setTestId(5L);
+            }
+            return saved;
+        });
+        testService.addTest(test(null, "Thyroid Panel", "TSH, T3 and T4", null));
+        Assertions.assertEquals(List.of(5L), ids(testService.searchTests("tsh", null)));
+
+        when(testRepository.findById(2L)).thenReturn(Optional.of(test(2L, "Lipid Profile", null, null)));
+        testService.updateTest(2L, test(null, "Lipoprotein Panel", "LDL and HDL", null));
+        Assertions.assertTrue(testService.searchTests("profile", null).isEmpty());
+        Assertions.assertEquals(List.of(2L), ids(testService.searchTests("ldl", null)));
+
+        testService.deleteTest(3L);
+        Assertions.assertEquals(List.of(1L, 4L), ids(testService.searchTests("blood", null)));
+        verify(testRepository, times(1)).findAll();
+    }
+
+    private static List<Long> ids(List<LaboratoryTest> tests) {
+        return tests.stream().map(LaboratoryTest::getTestId).toList();
+    }
+
+    private static LaboratoryTest test(Long id, String name, String description, String prep) {
+        LaboratoryTest test = new LaboratoryTest();
+        test.setTestId(id);
+        test.setName(name);
+        test.setDescription(description);
+        test.setPrepInstructions(prep);
+        test.setCost(new BigDecimal("300"));
+        return test;
+    }
+}
@@ -0,0 +1,41 @@
+import { useEffect, useState } from 'react';
+import api from '../services/api';
+
+// Small first-page image of a report (a few KB instead of the whole file).
+// Renders nothing until the server has a preview. 'version' is the report's sha256: with it the
+// URL names one exact report, so the browser keeps the image for good (a new report is a new URL);
+// without it the browser revalidates with the ETag.
+const ReportPreview = ({ bookingId, version, onClick }) => {
+  const [src, setSrc] = useState(null);
+
+  useEffect(() => {
+    let url = null;
+    let cancelled = false;
+    api.get(`/reports/preview/${bookingId}`, { params: version ? { v: version } : {}, responseType: 'blob' })
+      .then((response) => {
+        if (cancelled) return;
+        url = window.URL.createObjectURL(response.data);
+        setSrc(url);
+      })
+      .catch(() => {}); // 404: no preview (yet) - just leave it out
+    return () => {
+      cancelled = true;
+      if (url) window.URL.revokeObjectURL(url);
+    };
+  }, [bookingId, version]);
+
+  if (!src) return null;
+
+  return (
+    <img
+      src={src}
+      alt="Report preview"
+      onClick={onClick}
+      className="rounded-2 border shadow-sm"
+      style={{ height: '48px', cursor: 'pointer' }}
+      title="Result"
+    />
+  );
+};
+
+export default ReportPreview;
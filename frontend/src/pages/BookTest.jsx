@@ -68,7 +68,9 @@ const BookTest = () => {
   };
 
   const fetchSlots = async (testId) => {
-    try { const res = await api.get(`/tests/${testId}/slots`); setSlots(res.data); } 
+    // Only upcoming slots can be booked (and those are the ones the server keeps cached)
+    const today = new Date().toLocaleDateString('en-CA'); // YYYY-MM-DD, local
+    try { const res = await api.get(`/tests/${testId}/slots`, { params: { from: today } }); setSlots(res.data); } 
     catch (err) { toast.error("Failed to load slots"); }
   };
 
@@ -166,8 +168,8 @@ const BookTest = () => {
                   >
                     <option value="">-- Available Time Slots --</option>
                     {slots.map(s => (
-                      <option key={s.slotId} value={s.slotId} disabled={s.capacity <= 0}>
-                        {s.date} @ {s.startTime} — {s.capacity > 0 ? `${s.capacity} spots available` : 'SOLD OUT'}
+                      <option key={s.slotId} value={s.slotId} disabled={s.remaining <= 0}>
+                        {s.date} @ {s.startTime} — {s.remaining > 0 ? `${s.remaining} spots available` : 'SOLD OUT'}
                       </option>
                     ))}
                   </select>
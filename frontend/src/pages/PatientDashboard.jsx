@@ -1,5 +1,6 @@
 import { useEffect, useState, useContext } from 'react';
 import Navbar from '../components/Navbar';
+import ReportPreview from '../components/ReportPreview';
 import api from '../services/api';
 import { toast } from 'react-toastify';
 import { AuthContext } from '../context/AuthContext';
@@ -164,7 +165,7 @@ const PatientDashboard = () => {
                     <div className="mt-auto position-relative">
                       <div className="font-monospace fs-5 mb-3 opacity-90 text-shadow" style={{letterSpacing: '2px', textShadow: '0 2px 4px rgba(0,0,0,0.1)'}}>{p.policyNumber}</div>
                       <div className="d-flex justify-content-between opacity-90 small fw-semibold">
-                        <span>LIMIT: ${p.coverageAmount}</span>
+                        <span>LIMIT: ${p.balance ?? p.coverageAmount}</span>
                         <span>EXP: {p.expiryDate}</span>
                       </div>
                     </div>
@@ -258,6 +259,11 @@ const PatientDashboard = () => {
                                     </button>
                                   )}
                                   
+                                  {/* REPORT PREVIEW (Completed = report uploaded) */}
+                                  {b.status === 'COMPLETED' && (
+                                    <ReportPreview bookingId={b.bookingId} version={b.reportSha256} onClick={() => downloadReport(b.bookingId)} />
+                                  )}
+
                                   {/* RESULT BUTTON (Show if Completed or Paid) */}
                                   {(b.status === 'COMPLETED' || b.paymentStatus === 'PAID') && (
                                     <button onClick={() => downloadReport(b.bookingId)} className="btn btn-success shadow-sm btn-sm rounded-2 fw-bold" title="Result">